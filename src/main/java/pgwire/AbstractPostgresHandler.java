@@ -2,6 +2,7 @@ package pgwire;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.EmptyByteBuf;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import java.nio.charset.StandardCharsets;
 
@@ -10,9 +11,48 @@ import java.nio.charset.StandardCharsets;
  * An {@link io.netty.channel.ChannelInboundHandler} that decodes Postgres messages.
  *
  * It assumes that received {@link ByteBuf} is already framed (see {@link PgFrameDecoder}).
+ * Messages streamed by the decoder are received as a {@link StreamedMessageHeader} followed by
+ * {@link StreamedMessageChunk}s.
  */
 public abstract class AbstractPostgresHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg)
+      throws Exception {
+    if (msg instanceof StreamedMessageHeader) {
+      channelReadStreamedHeader(ctx, (StreamedMessageHeader) msg);
+    } else if (msg instanceof StreamedMessageChunk) {
+      StreamedMessageChunk chunk = (StreamedMessageChunk) msg;
+      try {
+        channelReadStreamedChunk(ctx, chunk);
+      } finally {
+        chunk.release();
+      }
+    } else {
+      super.channelRead(ctx, msg);
+    }
+  }
+
+  /**
+   * Called when {@link PgFrameDecoder} starts streaming a message instead of buffering it.
+   *
+   * By default streamed messages are not supported and the channel is closed.
+   */
+  protected void channelReadStreamedHeader(ChannelHandlerContext ctx, StreamedMessageHeader header)
+      throws Exception {
+    ctx.close();
+    throw new UnsupportedOperationException("Message type " + header.getId() + " cannot be streamed");
+  }
+
+  /**
+   * Called for each chunk of a streamed message. The chunk is released once this method returns.
+   */
+  protected void channelReadStreamedChunk(ChannelHandlerContext ctx, StreamedMessageChunk chunk)
+      throws Exception {
+    ctx.close();
+    throw new UnsupportedOperationException("Streamed messages are not supported");
+  }
+
   /**
    * Returns a slice of the given buf, assuming the first 4 bytes (read as int32) indicate the length of the slice.
    *
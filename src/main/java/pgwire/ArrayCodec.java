@@ -0,0 +1,937 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * The codec of the arrays of a type, which encodes and decodes the elements with the codec of the element type.
+ *
+ * <p>
+ * Values can be encoded from:
+ * <ul>
+ *   <li>{@code int[]}, {@code long[]} and {@code short[]}, for arrays of integers, floats and numerics</li>
+ *   <li>{@code double[]} and {@code float[]}, for arrays of floats and numerics</li>
+ *   <li>{@code boolean[]}, for arrays of booleans</li>
+ *   <li>{@link List}s and {@code Object[]} of the Java type of the element codec, which may contain nulls</li>
+ * </ul>
+ * Primitive arrays are written without boxing their elements. Multidimensional arrays are nested arrays or lists, like
+ * {@code int[][]} or {@code List<List<String>>}, which must be rectangular. Arrays with an empty dimension are empty.
+ * <p>
+ * Values are decoded as (nested) {@link List}s of the Java type of the element codec, with nulls for null elements.
+ * The static methods {@link #decodeIntArray(ByteBuf, int, int, Format)},
+ * {@link #decodeLongArray(ByteBuf, int, int, Format)} and {@link #decodeDoubleArray(ByteBuf, int, int, Format)}
+ * decode one dimensional arrays of numbers without boxing, whatever the type of their elements.
+ * <p>
+ * The binary format is the number of dimensions, a flag that tells whether there are nulls, the OID of the element
+ * type, the size and lower bound of each dimension and then each element with its length, like DataRow cells. The text
+ * format is like {@code {1,2,3}} or {@code {{"a b",NULL},{c,"d\"e"}}}.
+ */
+public class ArrayCodec<E> implements PgCodec<Object> {
+  /**
+   * The max number of dimensions Postgres supports.
+   */
+  static final int MAX_DIMENSIONS = 6;
+
+  private final PgType type;
+  private final PgCodec<E> elementCodec;
+  private final int elementOid;
+
+  /**
+   * @param type the array type, whose element type must be the type of the codec
+   */
+  public ArrayCodec(PgType type, PgCodec<E> elementCodec) {
+    if (type.getElementType() != elementCodec.getType().getOid()) {
+      throw new IllegalArgumentException("The elements of " + type.getName() + " are not of type "
+          + elementCodec.getType().getName());
+    }
+    this.type = type;
+    this.elementCodec = elementCodec;
+    this.elementOid = elementCodec.getType().getOid();
+  }
+
+  /**
+   * Creates the codec of the arrays of the type of the given codec, see {@link PgType#arrayOf(PgType)}.
+   */
+  public static <E> ArrayCodec<E> of(PgCodec<E> elementCodec) {
+    return new ArrayCodec<>(PgType.arrayOf(elementCodec.getType()), elementCodec);
+  }
+
+  @Override
+  public PgType getType() {
+    return type;
+  }
+
+  public PgCodec<E> getElementCodec() {
+    return elementCodec;
+  }
+
+  @Override
+  public void encodeText(ByteBuf out, Object value) {
+    int dimensions = dimensions(value);
+    if (dimensions == 0) {
+      out.writeByte('{').writeByte('}');
+      return;
+    }
+    writeTextLevel(out, value, value, 0, dimensions);
+  }
+
+  @Override
+  public void encodeBinary(ByteBuf out, Object value) {
+    int dimensions = dimensions(value);
+    int start = out.writerIndex();
+    out.writeInt(dimensions);
+    out.writeInt(0); // whether there are nulls, written at the end
+    out.writeInt(elementOid);
+    Object level = value;
+    for (int i = 0; i < dimensions; i++) {
+      int size = size(level);
+      out.writeInt(size);
+      out.writeInt(1); // lower bound
+      level = element(level, 0);
+    }
+    if (dimensions > 0 && writeBinaryLevel(out, value, value, 0, dimensions)) {
+      out.setInt(start + 4, 1);
+    }
+  }
+
+  @Override
+  public List<?> decodeText(ByteBuf in, int index, int length) {
+    TextParser parser = new TextParser(in, index, length);
+    parser.skipDimensions();
+    List<Object> result = parser.readLevel(0);
+    parser.expectEnd();
+    return result;
+  }
+
+  @Override
+  public List<?> decodeBinary(ByteBuf in, int index, int length) {
+    int dimensions = checkBinaryHeader(in, index, length);
+    int elementIndex = index + 12 + dimensions * 8;
+    if (dimensions == 0) {
+      return new ArrayList<>(0);
+    }
+    int[] position = {elementIndex};
+    List<Object> result = readBinaryLevel(in, index, index + length, position, 0, dimensions);
+    if (position[0] != index + length) {
+      throw new IllegalArgumentException("Invalid binary array of " + length + " bytes");
+    }
+    return result;
+  }
+
+  /**
+   * Decodes a one dimensional array (or an empty array) of integers of any size or of integral numerics without boxing.
+   *
+   * @throws IllegalArgumentException if the array has nulls, more dimensions or values out of range
+   */
+  public static int[] decodeIntArray(ByteBuf in, int index, int length, Format format) {
+    long[] values = decodeLongArray(in, index, length, format);
+    int[] result = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] < Integer.MIN_VALUE || values[i] > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Value is out of range for type integer");
+      }
+      result[i] = (int) values[i];
+    }
+    return result;
+  }
+
+  /**
+   * Like {@link #decodeIntArray(ByteBuf, int, int, Format)} for longs.
+   */
+  public static long[] decodeLongArray(ByteBuf in, int index, int length, Format format) {
+    if (format == Format.TEXT) {
+      NumberScanner scanner = new NumberScanner(in, index, length);
+      long[] result = new long[8];
+      int count = 0;
+      while (scanner.next()) {
+        if (count == result.length) {
+          result = Arrays.copyOf(result, count * 2);
+        }
+        result[count++] = StandardCodecs.parseLong(in, scanner.start, scanner.length);
+      }
+      return Arrays.copyOf(result, count);
+    }
+    int size = checkOneDimension(in, index, length);
+    int oid = in.getInt(index + 8);
+    boolean unsigned = oid == PgType.StandardTypes.OID.getOid() || oid == PgType.StandardTypes.REG_PROC.getOid();
+    long[] result = new long[size];
+    int elementIndex = index + 12 + in.getInt(index) * 8;
+    for (int i = 0; i < size; i++) {
+      int elementLength = nonNullLength(in, elementIndex, index + length);
+      if (oid == PgType.StandardTypes.NUMERIC.getOid()) {
+        try {
+          result[i] = NumericCodec.INSTANCE.decodeBinary(in, elementIndex + 4, elementLength).longValueExact();
+        } catch (ArithmeticException ex) {
+          throw new IllegalArgumentException("Numeric element " + i + " is not a long", ex);
+        }
+        elementIndex += 4 + elementLength;
+        continue;
+      }
+      switch (elementLength) {
+        case 2:
+          result[i] = in.getShort(elementIndex + 4);
+          break;
+        case 4:
+          int value = in.getInt(elementIndex + 4);
+          result[i] = unsigned ? Integer.toUnsignedLong(value) : value;
+          break;
+        case 8:
+          result[i] = in.getLong(elementIndex + 4);
+          break;
+        default:
+          throw new IllegalArgumentException("Binary element of " + elementLength + " bytes is not an integer");
+      }
+      elementIndex += 4 + elementLength;
+    }
+    checkEnd(elementIndex, index + length);
+    return result;
+  }
+
+  /**
+   * Like {@link #decodeIntArray(ByteBuf, int, int, Format)} for doubles, accepting arrays of floats, numerics and
+   * integers.
+   */
+  public static double[] decodeDoubleArray(ByteBuf in, int index, int length, Format format) {
+    if (format == Format.TEXT) {
+      NumberScanner scanner = new NumberScanner(in, index, length);
+      double[] result = new double[8];
+      int count = 0;
+      while (scanner.next()) {
+        if (count == result.length) {
+          result = Arrays.copyOf(result, count * 2);
+        }
+        result[count++] = StandardCodecs.parseDouble(in, scanner.start, scanner.length, "double precision");
+      }
+      return Arrays.copyOf(result, count);
+    }
+    int size = checkOneDimension(in, index, length);
+    int oid = in.getInt(index + 8);
+    boolean floats = oid == PgType.StandardTypes.FLOAT4.getOid() || oid == PgType.StandardTypes.FLOAT8.getOid();
+    double[] result = new double[size];
+    int elementIndex = index + 12 + in.getInt(index) * 8;
+    for (int i = 0; i < size; i++) {
+      int elementLength = nonNullLength(in, elementIndex, index + length);
+      int valueIndex = elementIndex + 4;
+      if (oid == PgType.StandardTypes.NUMERIC.getOid()) {
+        result[i] = NumericCodec.INSTANCE.decodeDouble(in, valueIndex, elementLength, Format.BINARY);
+      } else if (elementLength == 4) {
+        result[i] = floats ? in.getFloat(valueIndex) : in.getInt(valueIndex);
+      } else if (elementLength == 8) {
+        result[i] = floats ? in.getDouble(valueIndex) : in.getLong(valueIndex);
+      } else if (elementLength == 2 && !floats) {
+        result[i] = in.getShort(valueIndex);
+      } else {
+        throw new IllegalArgumentException("Binary element of " + elementLength + " bytes is not a number");
+      }
+      elementIndex += 4 + elementLength;
+    }
+    checkEnd(elementIndex, index + length);
+    return result;
+  }
+
+  /**
+   * @return whether a null was written
+   */
+  private boolean writeBinaryLevel(ByteBuf out, Object root, Object value, int level, int dimensions) {
+    int size = checkSize(root, value, level);
+    if (level < dimensions - 1) {
+      boolean nulls = false;
+      for (int i = 0; i < size; i++) {
+        nulls |= writeBinaryLevel(out, root, element(value, i), level + 1, dimensions);
+      }
+      return nulls;
+    }
+    if (value instanceof int[]) {
+      for (int element : (int[]) value) {
+        writeBinaryLong(out, element);
+      }
+    } else if (value instanceof long[]) {
+      for (long element : (long[]) value) {
+        writeBinaryLong(out, element);
+      }
+    } else if (value instanceof short[]) {
+      for (short element : (short[]) value) {
+        writeBinaryLong(out, element);
+      }
+    } else if (value instanceof double[]) {
+      for (double element : (double[]) value) {
+        writeBinaryDouble(out, element);
+      }
+    } else if (value instanceof float[]) {
+      for (float element : (float[]) value) {
+        writeBinaryDouble(out, element);
+      }
+    } else if (value instanceof boolean[]) {
+      checkPrimitive(value, elementOid == PgType.StandardTypes.BOOL.getOid());
+      for (boolean element : (boolean[]) value) {
+        out.writeInt(1).writeByte(element ? 1 : 0);
+      }
+    } else {
+      boolean nulls = false;
+      for (int i = 0; i < size; i++) {
+        Object element = checkLeaf(element(value, i));
+        if (element == null) {
+          out.writeInt(-1);
+          nulls = true;
+        } else {
+          int lengthIndex = out.writerIndex();
+          out.writeInt(0);
+          elementCodec.encodeBinary(out, cast(element));
+          out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+      }
+      return nulls;
+    }
+    return false;
+  }
+
+  private void writeBinaryLong(ByteBuf out, long value) {
+    switch (elementOid) {
+      case 21: // int2
+        checkRange(value, Short.MIN_VALUE, Short.MAX_VALUE, "smallint");
+        out.writeInt(2).writeShort((int) value);
+        break;
+      case 23: // int4
+        checkRange(value, Integer.MIN_VALUE, Integer.MAX_VALUE, "integer");
+        out.writeInt(4).writeInt((int) value);
+        break;
+      case 24: // regproc
+      case 26: // oid
+        checkRange(value, 0, 0xFFFFFFFFL, "oid");
+        out.writeInt(4).writeInt((int) value);
+        break;
+      case 20: // int8
+        out.writeInt(8).writeLong(value);
+        break;
+      case 700: // float4
+        out.writeInt(4).writeFloat(value);
+        break;
+      case 701: // float8
+        out.writeInt(8).writeDouble(value);
+        break;
+      case 1700: // numeric
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        NumericCodec.INSTANCE.encodeBinary(out, value, 0);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        break;
+      default:
+        throw new IllegalArgumentException("Integers cannot be encoded as elements of " + type.getName());
+    }
+  }
+
+  private void writeBinaryDouble(ByteBuf out, double value) {
+    switch (elementOid) {
+      case 700: // float4
+        out.writeInt(4).writeFloat((float) value);
+        break;
+      case 701: // float8
+        out.writeInt(8).writeDouble(value);
+        break;
+      case 1700: // numeric
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        if (Double.isFinite(value)) {
+          NumericCodec.INSTANCE.encodeBinary(out, BigDecimal.valueOf(value));
+        } else {
+          NumericCodec.INSTANCE.encodeSpecial(out, value, Format.BINARY);
+        }
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        break;
+      default:
+        throw new IllegalArgumentException("Floats cannot be encoded as elements of " + type.getName());
+    }
+  }
+
+  private void writeTextLevel(ByteBuf out, Object root, Object value, int level, int dimensions) {
+    int size = checkSize(root, value, level);
+    out.writeByte('{');
+    if (level < dimensions - 1) {
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          out.writeByte(',');
+        }
+        writeTextLevel(out, root, element(value, i), level + 1, dimensions);
+      }
+    } else if (value instanceof int[] || value instanceof long[] || value instanceof short[]) {
+      checkPrimitive(value, isNumber(true));
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          out.writeByte(',');
+        }
+        SenderUtils.writeAscii(out, value instanceof int[] ? ((int[]) value)[i]
+            : value instanceof long[] ? ((long[]) value)[i] : ((short[]) value)[i]);
+      }
+    } else if (value instanceof double[] || value instanceof float[]) {
+      checkPrimitive(value, isNumber(false));
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          out.writeByte(',');
+        }
+        if (value instanceof float[]) {
+          RyuFormatter.writeFloat(out, ((float[]) value)[i]);
+        } else if (elementOid == PgType.StandardTypes.FLOAT4.getOid()) {
+          RyuFormatter.writeFloat(out, (float) ((double[]) value)[i]);
+        } else {
+          RyuFormatter.writeDouble(out, ((double[]) value)[i]);
+        }
+      }
+    } else if (value instanceof boolean[]) {
+      checkPrimitive(value, elementOid == PgType.StandardTypes.BOOL.getOid());
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          out.writeByte(',');
+        }
+        out.writeByte(((boolean[]) value)[i] ? 't' : 'f');
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          out.writeByte(',');
+        }
+        Object element = checkLeaf(element(value, i));
+        if (element == null) {
+          out.writeByte('N').writeByte('U').writeByte('L').writeByte('L');
+        } else {
+          int start = out.writerIndex();
+          elementCodec.encodeText(out, cast(element));
+          quoteIfNeeded(out, start);
+        }
+      }
+    }
+    out.writeByte('}');
+  }
+
+  /**
+   * Quotes the element written since the given index if it is empty, it is {@code NULL} or it contains special
+   * characters, escaping quotes and backslashes. The element is moved in place, without copying it to another buffer.
+   */
+  private static void quoteIfNeeded(ByteBuf out, int start) {
+    int end = out.writerIndex();
+    boolean quote = end == start || end - start == 4 && (out.getByte(start) | 0x20) == 'n'
+        && (out.getByte(start + 1) | 0x20) == 'u' && (out.getByte(start + 2) | 0x20) == 'l'
+        && (out.getByte(start + 3) | 0x20) == 'l';
+    int escapes = 0;
+    for (int i = start; i < end; i++) {
+      byte b = out.getByte(i);
+      if (b == '"' || b == '\\') {
+        escapes++;
+        quote = true;
+      } else if (b == '{' || b == '}' || b == ',' || QuerySplitter.isWhitespace(b)) {
+        quote = true;
+      }
+    }
+    if (!quote) {
+      return;
+    }
+    out.ensureWritable(escapes + 2);
+    int target = end + escapes + 1;
+    out.setByte(target, '"');
+    for (int i = end - 1; i >= start; i--) {
+      byte b = out.getByte(i);
+      out.setByte(--target, b);
+      if (b == '"' || b == '\\') {
+        out.setByte(--target, '\\');
+      }
+    }
+    out.setByte(start, '"');
+    out.writerIndex(end + escapes + 2);
+  }
+
+  private List<Object> readBinaryLevel(ByteBuf in, int index, int end, int[] position, int level, int dimensions) {
+    int size = in.getInt(index + 12 + level * 8);
+    List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      if (level < dimensions - 1) {
+        result.add(readBinaryLevel(in, index, end, position, level + 1, dimensions));
+        continue;
+      }
+      int elementIndex = position[0];
+      if (elementIndex + 4 > end) {
+        throw new IllegalArgumentException("Invalid binary array of " + (end - index) + " bytes");
+      }
+      int elementLength = in.getInt(elementIndex);
+      if (elementLength < 0) {
+        result.add(null);
+        position[0] = elementIndex + 4;
+      } else {
+        if (elementIndex + 4 + elementLength > end) {
+          throw new IllegalArgumentException("Invalid binary array of " + (end - index) + " bytes");
+        }
+        result.add(elementCodec.decodeBinary(in, elementIndex + 4, elementLength));
+        position[0] = elementIndex + 4 + elementLength;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The number of dimensions of the value, following its first elements, or 0 if any of them is empty.
+   */
+  private int dimensions(Object value) {
+    int dimensions = 0;
+    Object level = value;
+    while (isNested(level)) {
+      if (++dimensions > MAX_DIMENSIONS) {
+        throw new IllegalArgumentException("Arrays have at most " + MAX_DIMENSIONS + " dimensions");
+      }
+      if (size(level) == 0) {
+        return 0;
+      }
+      level = element(level, 0);
+    }
+    if (dimensions == 0) {
+      throw new IllegalArgumentException(value.getClass().getName() + " is not an array nor a list");
+    }
+    return dimensions;
+  }
+
+  /**
+   * Checks that the sub-array has the same size as the first one of the same level.
+   */
+  private static int checkSize(Object root, Object value, int level) {
+    Object first = root;
+    for (int i = 0; i < level; i++) {
+      first = element(first, 0);
+    }
+    int size = size(value);
+    if (!isNested(value) || size != size(first)) {
+      throw new IllegalArgumentException("Multidimensional arrays must have sub-arrays with matching dimensions");
+    }
+    return size;
+  }
+
+  private Object checkLeaf(Object element) {
+    if (element != null && isNested(element)) {
+      throw new IllegalArgumentException("Multidimensional arrays must have sub-arrays with matching dimensions");
+    }
+    return element;
+  }
+
+  private void checkPrimitive(Object value, boolean supported) {
+    if (!supported) {
+      throw new IllegalArgumentException(value.getClass().getSimpleName() + " cannot be encoded as "
+          + type.getName());
+    }
+  }
+
+  private boolean isNumber(boolean integers) {
+    switch (elementOid) {
+      case 21: // int2
+      case 23: // int4
+      case 20: // int8
+      case 24: // regproc
+      case 26: // oid
+        return integers;
+      case 700: // float4
+      case 701: // float8
+      case 1700: // numeric
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Whether the value is a dimension of the array rather than an element, given byte arrays are bytea values.
+   */
+  private static boolean isNested(Object value) {
+    return value instanceof List || value instanceof Object[] || value instanceof int[] || value instanceof long[]
+        || value instanceof short[] || value instanceof double[] || value instanceof float[]
+        || value instanceof boolean[];
+  }
+
+  private static int size(Object value) {
+    if (value instanceof List) {
+      return ((List<?>) value).size();
+    } else if (value instanceof Object[]) {
+      return ((Object[]) value).length;
+    } else if (value instanceof int[]) {
+      return ((int[]) value).length;
+    } else if (value instanceof long[]) {
+      return ((long[]) value).length;
+    } else if (value instanceof short[]) {
+      return ((short[]) value).length;
+    } else if (value instanceof double[]) {
+      return ((double[]) value).length;
+    } else if (value instanceof float[]) {
+      return ((float[]) value).length;
+    } else if (value instanceof boolean[]) {
+      return ((boolean[]) value).length;
+    }
+    return -1;
+  }
+
+  /**
+   * The element of a list or an array of objects, or the first element of a primitive array, which is only used to
+   * find the dimensions of the value.
+   */
+  private static Object element(Object value, int i) {
+    if (value instanceof List) {
+      return ((List<?>) value).get(i);
+    } else if (value instanceof Object[]) {
+      return ((Object[]) value)[i];
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private E cast(Object element) {
+    return (E) element;
+  }
+
+  private static void checkRange(long value, long min, long max, String typeName) {
+    if (value < min || value > max) {
+      throw new IllegalArgumentException("Value " + value + " is out of range for type " + typeName);
+    }
+  }
+
+  /**
+   * @return the number of dimensions
+   */
+  private static int checkBinaryHeader(ByteBuf in, int index, int length) {
+    if (length < 12) {
+      throw new IllegalArgumentException("Binary arrays must have at least 12 bytes, but " + length + " were found");
+    }
+    int dimensions = in.getInt(index);
+    if (dimensions < 0 || dimensions > MAX_DIMENSIONS || length < 12 + dimensions * 8) {
+      throw new IllegalArgumentException("Invalid binary array of " + dimensions + " dimensions and " + length
+          + " bytes");
+    }
+    int elements = dimensions == 0 ? 0 : 1;
+    for (int i = 0; i < dimensions; i++) {
+      int size = in.getInt(index + 12 + i * 8);
+      if (size < 0) {
+        throw new IllegalArgumentException("Invalid binary array with negative dimensions");
+      }
+      try {
+        elements = Math.multiplyExact(elements, size);
+      } catch (ArithmeticException ex) {
+        throw new IllegalArgumentException("Invalid binary array with too many elements", ex);
+      }
+    }
+    // each element has at least its length, so the count cannot be trusted to allocate before that is checked
+    if (elements * 4L > length - 12 - dimensions * 8) {
+      throw new IllegalArgumentException("Invalid binary array of " + elements + " elements and " + length + " bytes");
+    }
+    return dimensions;
+  }
+
+  /**
+   * @return the number of elements of a binary array with one or no dimension
+   */
+  private static int checkOneDimension(ByteBuf in, int index, int length) {
+    int dimensions = checkBinaryHeader(in, index, length);
+    if (dimensions > 1) {
+      throw new IllegalArgumentException("Expected an array of one dimension, but it has " + dimensions);
+    }
+    return dimensions == 0 ? 0 : in.getInt(index + 12);
+  }
+
+  private static int nonNullLength(ByteBuf in, int elementIndex, int end) {
+    if (elementIndex + 4 > end) {
+      throw new IllegalArgumentException("Invalid binary array truncated at index " + elementIndex);
+    }
+    int length = in.getInt(elementIndex);
+    if (length < 0) {
+      throw new IllegalArgumentException("Arrays of primitives cannot contain nulls");
+    }
+    if (length > end - elementIndex - 4) {
+      throw new IllegalArgumentException("Invalid binary array element of " + length + " bytes");
+    }
+    return length;
+  }
+
+  private static void checkEnd(int elementIndex, int end) {
+    if (elementIndex != end) {
+      throw new IllegalArgumentException("Invalid binary array with " + (end - elementIndex) + " trailing bytes");
+    }
+  }
+
+  /**
+   * Iterates the elements of a one dimensional array in text format, which may be quoted but not escaped.
+   */
+  private static class NumberScanner {
+    private final ByteBuf in;
+    private final int index;
+    private final int totalLength;
+    private final int end;
+    private int position;
+    private boolean closed;
+    int start;
+    int length;
+
+    NumberScanner(ByteBuf in, int index, int length) {
+      this.in = in;
+      this.index = index;
+      this.totalLength = length;
+      this.end = index + length;
+      this.position = skipWhitespaces(in, index, end);
+      if (position < end && in.getByte(position) == '[') {
+        position = in.indexOf(position, end, (byte) '=');
+        if (position < 0) {
+          throw invalid();
+        }
+        position = skipWhitespaces(in, position + 1, end);
+      }
+      if (position >= end || in.getByte(position) != '{') {
+        throw invalid();
+      }
+      position = skipWhitespaces(in, position + 1, end);
+      if (position < end && in.getByte(position) == '}') {
+        close();
+      }
+    }
+
+    /**
+     * Moves to the next element.
+     *
+     * @return false if there are no more elements
+     */
+    boolean next() {
+      if (closed) {
+        return false;
+      } else if (position >= end) {
+        throw invalid();
+      }
+      byte first = in.getByte(position);
+      if (first == '{') {
+        throw new IllegalArgumentException("Expected an array of one dimension");
+      }
+      int elementEnd;
+      if (first == '"') {
+        start = position + 1;
+        elementEnd = in.indexOf(start, end, (byte) '"');
+        if (elementEnd < 0 || in.indexOf(start, elementEnd, (byte) '\\') >= 0) {
+          throw invalid();
+        }
+        position = skipWhitespaces(in, elementEnd + 1, end);
+      } else {
+        start = position;
+        while (position < end && in.getByte(position) != ',' && in.getByte(position) != '}') {
+          position++;
+        }
+        elementEnd = position;
+        while (elementEnd > start && QuerySplitter.isWhitespace(in.getByte(elementEnd - 1))) {
+          elementEnd--;
+        }
+        if (elementEnd - start == 4 && (in.getByte(start) | 0x20) == 'n' && (in.getByte(start + 1) | 0x20) == 'u'
+            && (in.getByte(start + 2) | 0x20) == 'l' && (in.getByte(start + 3) | 0x20) == 'l') {
+          throw new IllegalArgumentException("Arrays of primitives cannot contain nulls");
+        }
+      }
+      length = elementEnd - start;
+      if (position >= end) {
+        throw invalid();
+      }
+      byte separator = in.getByte(position);
+      if (separator == ',') {
+        position = skipWhitespaces(in, position + 1, end);
+      } else if (separator == '}') {
+        close();
+      } else {
+        throw invalid();
+      }
+      return true;
+    }
+
+    /**
+     * Consumes the closing brace at the current position, which must be followed by whitespaces only.
+     */
+    private void close() {
+      if (skipWhitespaces(in, position + 1, end) != end) {
+        throw invalid();
+      }
+      closed = true;
+    }
+
+    private IllegalArgumentException invalid() {
+      return StandardCodecs.invalidText(in, index, totalLength, "array");
+    }
+  }
+
+  private static int skipWhitespaces(ByteBuf in, int index, int end) {
+    while (index < end && QuerySplitter.isWhitespace(in.getByte(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Parses an array in text format, decoding each element with the element codec. Quoted and escaped elements are
+   * unescaped into a temporary buffer, the rest are decoded in place.
+   */
+  private class TextParser {
+    private final ByteBuf in;
+    private final int start;
+    private final int end;
+    private int index;
+    /**
+     * The size of the sub-arrays of each level, or -1 until the first one is read, and the level of the elements, or
+     * -1 until the first one is read, which must be the same for all the sub-arrays for the array to be rectangular.
+     */
+    private final int[] sizes = new int[MAX_DIMENSIONS + 1];
+    private int elementLevel = -1;
+
+    TextParser(ByteBuf in, int index, int length) {
+      this.in = in;
+      this.start = index;
+      this.end = index + length;
+      this.index = skipWhitespaces(in, index, end);
+      Arrays.fill(sizes, -1);
+    }
+
+    /**
+     * Skips the bounds of the dimensions, like {@code [0:2]=}, which are not kept.
+     */
+    void skipDimensions() {
+      if (index < end && in.getByte(index) == '[') {
+        int equals = in.indexOf(index, end, (byte) '=');
+        if (equals < 0) {
+          throw invalid();
+        }
+        index = skipWhitespaces(in, equals + 1, end);
+      }
+    }
+
+    List<Object> readLevel(int level) {
+      if (level >= MAX_DIMENSIONS) {
+        throw new IllegalArgumentException("Arrays have at most " + MAX_DIMENSIONS + " dimensions");
+      }
+      expect('{');
+      List<Object> result = new ArrayList<>();
+      index = skipWhitespaces(in, index, end);
+      if (peek() == '}') {
+        index++;
+        return checkLevelSize(result, level);
+      }
+      while (true) {
+        index = skipWhitespaces(in, index, end);
+        if (peek() == '{') {
+          if (elementLevel == level) {
+            throw notRectangular();
+          }
+          result.add(readLevel(level + 1));
+        } else {
+          if (elementLevel != level && (elementLevel >= 0 || sizes[level + 1] >= 0)) {
+            throw notRectangular();
+          }
+          elementLevel = level;
+          result.add(readElement());
+        }
+        index = skipWhitespaces(in, index, end);
+        int separator = peek();
+        index++;
+        if (separator == '}') {
+          return checkLevelSize(result, level);
+        } else if (separator != ',') {
+          throw invalid();
+        }
+      }
+    }
+
+    private List<Object> checkLevelSize(List<Object> values, int level) {
+      if (sizes[level] < 0) {
+        sizes[level] = values.size();
+      } else if (sizes[level] != values.size()) {
+        throw notRectangular();
+      }
+      return values;
+    }
+
+    void expectEnd() {
+      if (skipWhitespaces(in, index, end) != end) {
+        throw invalid();
+      }
+    }
+
+    private E readElement() {
+      int elementStart = index;
+      boolean quoted = peek() == '"';
+      boolean escaped = false;
+      if (quoted) {
+        index++;
+        elementStart = index;
+        while (index < end && in.getByte(index) != '"') {
+          if (in.getByte(index) == '\\') {
+            escaped = true;
+            index++;
+          }
+          index++;
+        }
+        if (index >= end) {
+          throw invalid();
+        }
+        int elementEnd = index++;
+        return decode(elementStart, elementEnd, escaped);
+      }
+      while (index < end && in.getByte(index) != ',' && in.getByte(index) != '}') {
+        byte b = in.getByte(index);
+        if (b == '"' || b == '{') {
+          throw invalid();
+        }
+        if (b == '\\') {
+          if (index + 1 >= end) {
+            throw invalid();
+          }
+          escaped = true;
+          index++;
+        }
+        index++;
+      }
+      int elementEnd = index;
+      while (elementEnd > elementStart && QuerySplitter.isWhitespace(in.getByte(elementEnd - 1))
+          && (elementEnd - 2 < elementStart || in.getByte(elementEnd - 2) != '\\')) {
+        elementEnd--;
+      }
+      if (elementStart == elementEnd) {
+        throw invalid();
+      }
+      if (!escaped && elementEnd - elementStart == 4 && (in.getByte(elementStart) | 0x20) == 'n'
+          && (in.getByte(elementStart + 1) | 0x20) == 'u' && (in.getByte(elementStart + 2) | 0x20) == 'l'
+          && (in.getByte(elementStart + 3) | 0x20) == 'l') {
+        return null;
+      }
+      return decode(elementStart, elementEnd, escaped);
+    }
+
+    private E decode(int elementStart, int elementEnd, boolean escaped) {
+      if (!escaped) {
+        return elementCodec.decodeText(in, elementStart, elementEnd - elementStart);
+      }
+      ByteBuf unescaped = Unpooled.buffer(elementEnd - elementStart);
+      for (int i = elementStart; i < elementEnd; i++) {
+        byte b = in.getByte(i);
+        if (b == '\\') {
+          b = in.getByte(++i);
+        }
+        unescaped.writeByte(b);
+      }
+      return elementCodec.decodeText(unescaped, 0, unescaped.readableBytes());
+    }
+
+    private int peek() {
+      return index < end ? in.getByte(index) : -1;
+    }
+
+    private void expect(char c) {
+      if (peek() != c) {
+        throw invalid();
+      }
+      index++;
+    }
+
+    private IllegalArgumentException invalid() {
+      return StandardCodecs.invalidText(in, start, end - start, "array");
+    }
+
+    private IllegalArgumentException notRectangular() {
+      return new IllegalArgumentException("Multidimensional arrays must have sub-arrays with matching dimensions");
+    }
+  }
+}
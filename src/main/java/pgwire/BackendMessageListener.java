@@ -30,14 +30,31 @@ public interface BackendMessageListener<C, S, B> {
 
   void onBindComplete(C ctx);
 
-  void onCommandComplete(C ctx, int affectedRows, CommandType type);
+  /**
+   * @param affectedRows The number of rows affected by the command. It is ignored when the type does not
+   *                     {@link CommandType#hasRowCount() include a row count}.
+   */
+  void onCommandComplete(C ctx, long affectedRows, CommandType type);
 
   void onNoData(C ctx);
 
   void onParameterDescription(C ctx, List<PgType> data);
 
+  /**
+   * @param cells The values of the row, with null for NULL values.
+   */
   void onDataRow(C ctx, List<B> cells);
 
+  /**
+   * An allocation free alternative to {@link #onDataRow(Object, List)}.
+   *
+   * When decoding, it is called instead of the other method if the handler is configured to do so
+   * (see {@link BackendPostgresHandler#setDataRowView(boolean)}).
+   *
+   * @param row A view of the row. Both the view and its content are reused once this method returns.
+   */
+  void onDataRow(C ctx, DataRowView row);
+
   void onParseComplete(C ctx);
 
   /**
@@ -157,6 +174,34 @@ public interface BackendMessageListener<C, S, B> {
    */
   void onNegotiateProtocolVersion(C ctx, int protocolLatest, List<S> unrecognizedProtocolOptions);
 
+  /**
+   * Called instead of the specific <em>onXXX</em> method when a message is too large to be buffered
+   * (see {@link PgFrameDecoder}). It is followed by one or more calls to
+   * {@link #onStreamedMessageChunk(Object, Object, boolean)}.
+   *
+   * @param id The message type, usually {@link MessageConstants#DATA_ROW} or {@link MessageConstants#COPY_DATA}.
+   * @param length The length of the message content, which does not include the id nor the length field itself.
+   */
+  void onStreamedMessageStart(C ctx, char id, int length);
+
+  /**
+   * @param chunk A part of the content of the message announced by the last
+   *              {@link #onStreamedMessageStart(Object, char, int)}. It is only valid during the call.
+   * @param last Whether this is the last chunk of the message.
+   */
+  void onStreamedMessageChunk(C ctx, B chunk, boolean last);
+
+  /**
+   * Called for messages that are not decoded, either because the decoder was configured to do so
+   * (see {@link BackendPostgresHandler#setRawMessages(char...)}) or because the message type is unknown. Authentication
+   * requests of unknown types are delivered here too, with their content starting with the type.
+   *
+   * @param id The message type.
+   * @param content The content of the message, which does not include the id nor the length field itself. It is only
+   *                valid during the call.
+   */
+  void onRawMessage(C ctx, char id, B content);
+
   public static class Abstract<C, S, B> implements BackendMessageListener<C, S, B> {
     @Override
     public void onBindComplete(C ctx) {
@@ -164,7 +209,7 @@ public interface BackendMessageListener<C, S, B> {
     }
 
     @Override
-    public void onCommandComplete(C ctx, int affectedRows, CommandType type) {
+    public void onCommandComplete(C ctx, long affectedRows, CommandType type) {
       throw new UnsupportedOperationException();
     }
 
@@ -186,6 +231,11 @@ public interface BackendMessageListener<C, S, B> {
       throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void onDataRow(C ctx, DataRowView row) {
+      throw new UnsupportedOperationException();
+    }
+
     @Override
     public void onParseComplete(C ctx) {
       throw new UnsupportedOperationException();
@@ -328,5 +378,20 @@ public interface BackendMessageListener<C, S, B> {
     public void onNegotiateProtocolVersion(C ctx, int protocolLatest, List<S> unrecognizedProtocolOptions) {
       throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void onStreamedMessageStart(C ctx, char id, int length) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void onStreamedMessageChunk(C ctx, B chunk, boolean last) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void onRawMessage(C ctx, char id, B content) {
+      throw new UnsupportedOperationException();
+    }
   }
 }
@@ -2,8 +2,9 @@ package pgwire;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import static pgwire.SenderUtils.*;
@@ -16,67 +17,118 @@ import static pgwire.SenderUtils.*;
  * By using this class, servers can focus on what they want to send and not how to send it.
  * This class is still pretty low level and other higher level apis (like {@link High} or even a BackendMessageListener
  * that uses Strings and byte[]) could be created on top of this.
+ *
+ * By default each message is written to the channel as soon as it is sent. See {@link #setWriteCombining(int)} to
+ * combine all the messages of a query into fewer writes.
  */
 public class BackendMessageSender implements BackendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> {
 
+  private static final AttributeKey<ChannelState> STATE = AttributeKey.valueOf(BackendMessageSender.class, "state");
+  private static final int MAX_INITIAL_COMBINED_CAPACITY = 1024;
+
+  /**
+   * The size at which the combined buffer is flushed or 0 if write combining is disabled.
+   */
+  private int flushThreshold;
+  private int earlyFlushRows;
+
+  /**
+   * Enables or disables write combining.
+   *
+   * By default each message is written to the channel in its own buffer. When write combining is enabled, all the
+   * messages sent to a channel are appended to a single pooled buffer instead. That buffer is written and flushed when
+   * it reaches the given size, when a message that requires an answer from the frontend (like ReadyForQuery or an
+   * authentication request) is sent or when {@link #flush(ChannelHandlerContext)} is called. This reduces the number
+   * of writes and syscalls per query, specially for small queries.
+   *
+   * The combined buffer belongs to the channel and is not synchronized, so when write combining is enabled messages
+   * must be sent from the event loop of the channel, as handlers do. Code running in other threads has to hand the
+   * messages off with {@code ctx.executor().execute(...)}, otherwise an {@link IllegalStateException} is thrown.
+   * Without write combining each message is an independent {@code ctx.write}, which Netty already hands off.
+   *
+   * @param flushThreshold the size in bytes at which the combined buffer is flushed or 0 to disable write combining.
+   */
+  public void setWriteCombining(int flushThreshold) {
+    if (flushThreshold < 0) {
+      throw new IllegalArgumentException("Flush threshold cannot be negative, but " + flushThreshold + " was found");
+    }
+    this.flushThreshold = flushThreshold;
+  }
+
+  /**
+   * When write combining is enabled, flushes the combined buffer as soon as the given number of DataRow messages has
+   * been sent since the last ReadyForQuery, so the frontend receives the first rows of large results without waiting
+   * for the threshold to be reached.
+   *
+   * @param rows the number of rows or 0 to only flush when the threshold is reached.
+   */
+  public void setEarlyFlushRows(int rows) {
+    if (rows < 0) {
+      throw new IllegalArgumentException("Early flush rows cannot be negative, but " + rows + " was found");
+    }
+    this.earlyFlushRows = rows;
+  }
+
+  public boolean isWriteCombining() {
+    return flushThreshold > 0;
+  }
+
+  /**
+   * Writes and flushes all the messages sent to the channel, which is usually called in response to a Flush message.
+   */
+  public void flush(ChannelHandlerContext ctx) {
+    if (isWriteCombining()) {
+      emit(ctx, getState(ctx));
+    }
+    ctx.flush();
+  }
+
   @Override
   public void onBindComplete(ChannelHandlerContext ctx) {
-    int length = 5;
-    ByteBuf byteBuf = ctx.alloc().buffer(length)
-        .writeByte(MessageConstants.BIND_COMPLETE)
-        .writeInt(length);
-    ctx.write(byteBuf);
+    writeSimpleMessage(ctx, MessageConstants.BIND_COMPLETE);
   }
 
   @Override
-  public void onCommandComplete(ChannelHandlerContext ctx, int affectedRows, CommandType type) {
-    StringBuilder sb = new StringBuilder(128);
-    sb.append(type.name().toUpperCase(Locale.US));
-    if (type == CommandType.INSERT) {
-      sb.append(" 0");
+  public void onCommandComplete(ChannelHandlerContext ctx, long affectedRows, CommandType type) {
+    byte[] prefix = type.getPrefix();
+    int length = 4 + prefix.length + (type.hasRowCount() ? asciiLength(affectedRows) : 0) + 1;
+    ByteBuf byteBuf = allocate(ctx, 1 + length);
+    int start = byteBuf.writerIndex();
+    byteBuf.writeByte(MessageConstants.COMMAND_COMPLETE)
+        .writeInt(length)
+        .writeBytes(prefix);
+    if (type.hasRowCount()) {
+      writeAscii(byteBuf, affectedRows);
     }
-    sb.append(' ').append(affectedRows);
+    byteBuf.writeByte(0);
+    assert byteBuf.writerIndex() - start == length + 1;
 
-    int length = sb.length() + 1 + 4; // sb does only contain ascii characters
-    ByteBuf byteBuf = ctx.alloc()
-        .buffer(1 + length)
-        .writeByte(MessageConstants.COMMAND_COMPLETE)
-        .writeInt(length);
-    writeCStr(byteBuf, sb);
-    assert byteBuf.writerIndex() == length + 1;
-
-    ctx.write(byteBuf);
+    write(ctx, byteBuf);
   }
 
   @Override
   public void onNoData(ChannelHandlerContext ctx) {
-    sendSimpleMsg(ctx, MessageConstants.NO_DATA);
+    writeSimpleMessage(ctx, MessageConstants.NO_DATA);
   }
 
   @Override
   public void onParameterDescription(ChannelHandlerContext ctx, List<PgType> parameters) {
-    int length = 4 + 2 + parameters.size();
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
-    buffer.writeByte(MessageConstants.PARAMETER_DESCRIPTION);
-    buffer.writeByte(length);
+    ByteBuf buffer = allocate(ctx, StatementDescription.parameterDescriptionLength(parameters));
+    StatementDescription.writeParameterDescription(buffer, parameters);
 
-    if (parameters.size() > Short.MAX_VALUE) {
-      buffer.release();
-      throw new IllegalArgumentException("Too many parameters. Trying to send " + parameters.size()
-          + " when max is " + Short.MAX_VALUE);
-    }
-    writeUnsignedShort(buffer, parameters.size());
-    for (PgType parameter : parameters) {
-      buffer.writeInt(parameter.getOid());
-    }
-
-    ctx.write(buffer);
+    write(ctx, buffer);
   }
 
   @Override
   public void onDataRow(ChannelHandlerContext ctx, List<ByteBuf> cells) {
-    int length = 4 + 2 + cells.stream().mapToInt(ByteBuf::readableBytes).sum() + cells.size() * 4;
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    int length = 4 + 2 + cells.size() * 4;
+    for (int i = 0; i < cells.size(); i++) {
+      ByteBuf cell = cells.get(i);
+      if (cell != null) {
+        length += cell.readableBytes();
+      }
+    }
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.DATA_ROW);
     buffer.writeInt(length);
 
@@ -85,12 +137,43 @@ public class BackendMessageSender implements BackendMessageListener<ChannelHandl
       writeByteN(buffer, cell);
     }
 
-    ctx.write(buffer);
+    writeDataRow(ctx, buffer);
+  }
+
+  /**
+   * Starts a DataRow message whose cells are encoded directly into the outbound buffer.
+   *
+   * This is cheaper than {@link #onDataRow(ChannelHandlerContext, List)}, which requires a buffer per cell. The
+   * returned writer is reused for all the rows of the channel, so each row must be ended before the next one starts.
+   * Like the combined buffer, the writer is confined to the event loop of the channel.
+   *
+   * @throws IllegalStateException if called outside the event loop of the channel
+   */
+  public RowWriter beginDataRow(ChannelHandlerContext ctx) {
+    ChannelState state = getState(ctx);
+    if (state.rowWriter == null) {
+      state.rowWriter = new RowWriter(this);
+    }
+    return state.rowWriter.begin(ctx);
+  }
+
+  /**
+   * Sends the row as it is, which is useful to relay rows without decoding each cell.
+   */
+  @Override
+  public void onDataRow(ChannelHandlerContext ctx, DataRowView row) {
+    int length = 4 + row.getContentLength();
+    ByteBuf buffer = allocate(ctx, 1 + length);
+    buffer.writeByte(MessageConstants.DATA_ROW);
+    buffer.writeInt(length);
+    buffer.writeBytes(row.getBuffer(), row.getContentIndex(), row.getContentLength());
+
+    writeDataRow(ctx, buffer);
   }
 
   @Override
   public void onParseComplete(ChannelHandlerContext ctx) {
-    sendSimpleMsg(ctx, MessageConstants.PARSE_COMPLETE);
+    writeSimpleMessage(ctx, MessageConstants.PARSE_COMPLETE);
   }
 
   @Override
@@ -100,23 +183,23 @@ public class BackendMessageSender implements BackendMessageListener<ChannelHandl
 
   @Override
   public void onCloseComplete(ChannelHandlerContext ctx) {
-    sendSimpleMsg(ctx, MessageConstants.CLOSE_COMPLETE);
+    writeSimpleMessage(ctx, MessageConstants.CLOSE_COMPLETE);
   }
 
   @Override
   public void onEmptyQueryResponse(ChannelHandlerContext ctx) {
-    sendSimpleMsg(ctx, MessageConstants.EMPTY_QUERY_RESPONSE);
+    writeSimpleMessage(ctx, MessageConstants.EMPTY_QUERY_RESPONSE);
   }
 
   @Override
   public void onFunctionCallResponse(ChannelHandlerContext ctx, ByteBuf data) {
     int length = 4 + 4 + (data != null ? data.readableBytes() : 0);
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.FUNCTION_CALL_RESPONSE);
     buffer.writeInt(length);
     writeByteN(buffer, data);
 
-    ctx.write(buffer);
+    write(ctx, buffer);
   }
 
   @Override
@@ -128,104 +211,124 @@ public class BackendMessageSender implements BackendMessageListener<ChannelHandl
   public void onNotificationResponse(ChannelHandlerContext ctx, int processId, ByteBuf channel,
       ByteBuf payload) {
     int length = 4 + 4 + channel.readableBytes() + 1 + payload.readableBytes() + 1;
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.NOTIFICATION_RESPONSE);
     buffer.writeInt(length);
     buffer.writeInt(processId);
     writeCStr(buffer, channel);
     writeCStr(buffer, payload);
 
-    ctx.write(buffer);
+    write(ctx, buffer);
   }
 
   @Override
   public void onParameterStatus(ChannelHandlerContext ctx, ByteBuf name, ByteBuf value) {
     int length = 4 + name.readableBytes() + 1 + value.readableBytes() + 1;
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.PARAMETER_STATUS);
     buffer.writeInt(length);
     writeCStr(buffer, name);
     writeCStr(buffer, value);
 
-    ctx.write(buffer);
+    write(ctx, buffer);
   }
 
   @Override
   public void onPortalSuspended(ChannelHandlerContext ctx) {
-    sendSimpleMsg(ctx, MessageConstants.PORTAL_SUSPENDED);
+    writeSimpleMessage(ctx, MessageConstants.PORTAL_SUSPENDED);
   }
 
   @Override
   public void onReadyForQuery(ChannelHandlerContext ctx, TransactionStatus status) {
-    ByteBuf buffer = ctx.alloc().buffer(1 + 4 + 1);
+    ByteBuf buffer = allocate(ctx, 1 + 4 + 1);
     buffer.writeByte(MessageConstants.READY_FOR_QUERY);
     buffer.writeInt(5);
     buffer.writeByte(status.getId());
 
-    ctx.writeAndFlush(buffer);
+    if (isWriteCombining()) {
+      getState(ctx).rows = 0;
+    }
+    writeAndFlush(ctx, buffer);
+    InboundFlowControl.onReadyForQuery(ctx);
   }
 
   @Override
   public void onRowDescription(ChannelHandlerContext ctx, List<Field> fields) {
-    int fieldSize = 4 + 2 + 4 + 2 + 4 + 2;
-    int length = 4 + 2 + fields.size() * fieldSize + fields.stream().mapToInt(f -> f.getName().readableBytes()).sum();
-
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
-    buffer.writeByte(MessageConstants.ROW_DESCRIPTION);
-    buffer.writeInt(-1);
-    
-    writeUnsignedShort(buffer, fields.size());
-
-    for (Field field : fields) {
-      writeCStr(buffer, field.getName());
-      buffer.writeInt(field.getTableOid());
-      writeUnsignedShort(buffer, field.getColumnIdx());
-      buffer.writeInt(field.getPgType().getOid());
-      writeUnsignedShort(buffer, field.getPgType().getByteLength());
-      buffer.writeInt(field.getTypeModifier());
-      writeUnsignedShort(buffer, field.getFormat().getId());
-    }
+    ByteBuf buffer = allocate(ctx, StatementDescription.rowDescriptionLength(fields));
+    StatementDescription.writeRowDescription(buffer, fields, null);
 
-    buffer.setInt(1, buffer.readableBytes() - 1);
+    write(ctx, buffer);
+  }
 
-    ctx.write(buffer);
+  /**
+   * Answers a Describe of a prepared statement with the pre-encoded ParameterDescription and RowDescription (or
+   * NoData) messages.
+   *
+   * The messages are not encoded again: the shared buffer is written as it is or, when write combining is enabled,
+   * copied into the combined buffer.
+   */
+  public void onStatementDescription(ChannelHandlerContext ctx, StatementDescription description) {
+    writeShared(ctx, description.getStatementMessages());
+  }
+
+  /**
+   * Answers a Describe of a portal with the pre-encoded RowDescription (or NoData) message.
+   *
+   * @param resultFormats the result formats of the portal, as received in its Bind message. When they are the ones
+   *                      used to create the description, the shared buffer is written as it is. Otherwise the message
+   *                      is copied and its format codes are patched.
+   * @throws IllegalArgumentException if there are several result formats, but not one per column, before anything is
+   *                                  sent, so the listener can answer with an ErrorResponse
+   */
+  public void onPortalDescription(ChannelHandlerContext ctx, StatementDescription description,
+      List<Format> resultFormats) {
+    if (description.hasFormats(resultFormats)) {
+      writeShared(ctx, description.getRowMessage());
+    } else {
+      ByteBuf buffer = allocate(ctx, description.getRowMessageLength());
+      description.writeRowMessage(buffer, resultFormats);
+
+      write(ctx, buffer);
+    }
   }
 
   @Override
   public void onCopyData(ChannelHandlerContext ctx, ByteBuf bytes) {
-    int length = 4 + 4 + byteNLength(bytes);
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    int length = 4 + bytes.readableBytes();
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.COPY_DATA);
     buffer.writeInt(length);
-    writeByteN(buffer, bytes);
+    buffer.writeBytes(bytes, bytes.readerIndex(), bytes.readableBytes());
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlushIfNotCombining(ctx, buffer);
   }
 
   @Override
   public void onCopyDone(ChannelHandlerContext ctx) {
-    sendSimpleMsg(ctx, MessageConstants.COPY_DONE);
+    writeSimpleMessage(ctx, MessageConstants.COPY_DONE);
   }
 
   @Override
   public void onCopyInResponse(ChannelHandlerContext ctx, Format overallFormat, List<Format> columnFormats) {
-    copyAnyResponse(ctx, overallFormat, columnFormats, MessageConstants.COPY_IN_RESPONSE);
+    InboundFlowControl.onCopyIn(ctx);
+    writeCopyResponse(ctx, overallFormat, columnFormats, MessageConstants.COPY_IN_RESPONSE, true);
   }
 
   @Override
   public void onCopyOutResponse(ChannelHandlerContext ctx, Format overallFormat, List<Format> columnFormats) {
-    copyAnyResponse(ctx, overallFormat, columnFormats, MessageConstants.COPY_OUT_RESPONSE);
+    writeCopyResponse(ctx, overallFormat, columnFormats, MessageConstants.COPY_OUT_RESPONSE, false);
   }
 
   @Override
   public void onCopyBothResponse(ChannelHandlerContext ctx, Format overallFormat, List<Format> columnFormats) {
-    copyAnyResponse(ctx, overallFormat, columnFormats, MessageConstants.COPY_BOTH_RESPONSE);
+    InboundFlowControl.onCopyIn(ctx);
+    writeCopyResponse(ctx, overallFormat, columnFormats, MessageConstants.COPY_BOTH_RESPONSE, true);
   }
 
   @Override
   public void onAuthenticationSASL(ChannelHandlerContext ctx, List<ByteBuf> authMechNames) {
     int length = 4 + 4 + authMechNames.stream().mapToInt(SenderUtils::cStrLength).sum() + 1;
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.AUTHENTICATION_SASL);
     buffer.writeInt(length);
     buffer.writeInt(10);
@@ -234,132 +337,181 @@ public class BackendMessageSender implements BackendMessageListener<ChannelHandl
     }
     buffer.writeByte(0);
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationSASLContinue(ChannelHandlerContext ctx, ByteBuf data) {
-    int length = 4 + 4 + byteNLength(data);
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    int length = 4 + 4 + data.readableBytes();
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.AUTHENTICATION_SASL);
     buffer.writeInt(length);
     buffer.writeInt(11);
 
-    writeByteN(buffer, data);
+    buffer.writeBytes(data, data.readerIndex(), data.readableBytes());
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationSASLFinal(ChannelHandlerContext ctx, ByteBuf data) {
-    int length = 4 + 4 + byteNLength(data);
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    int length = 4 + 4 + data.readableBytes();
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.AUTHENTICATION_SASL);
     buffer.writeInt(length);
     buffer.writeInt(12);
 
-    writeByteN(buffer, data);
+    buffer.writeBytes(data, data.readerIndex(), data.readableBytes());
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlushIfNotCombining(ctx, buffer);
   }
 
   @Override
   public void onBackendKeyData(ChannelHandlerContext ctx, int processId, int secretKey) {
-    ByteBuf buffer = ctx.alloc().buffer(17);
+    ByteBuf buffer = allocate(ctx, 17);
     buffer.writeByte(MessageConstants.BACKEND_KEY_DATA);
     buffer.writeInt(12);
     buffer.writeInt(processId);
     buffer.writeInt(secretKey);
 
-    ctx.write(buffer);
+    write(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationOk(ChannelHandlerContext ctx) {
-    ByteBuf buffer = ctx.alloc().buffer(9);
+    ByteBuf buffer = allocate(ctx, 9);
     buffer.writeByte(MessageConstants.AUTHENTICATION_OK);
     buffer.writeInt(8);
     buffer.writeInt(0); // Specifies that the authentication was successful.
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlushIfNotCombining(ctx, buffer);
+  }
+
+  /**
+   * Sends the whole sequence of messages that follows a successful authentication with a single write and flush.
+   *
+   * This is equivalent to (but cheaper than) calling {@link #onAuthenticationOk(ChannelHandlerContext)},
+   * {@link #onParameterStatus(ChannelHandlerContext, ByteBuf, ByteBuf)} for each parameter,
+   * {@link #onBackendKeyData(ChannelHandlerContext, int, int)} and
+   * {@link #onReadyForQuery(ChannelHandlerContext, TransactionStatus)}.
+   */
+  public void onStartupGreeting(ChannelHandlerContext ctx, StartupGreeting greeting, int processId, int secretKey) {
+    ByteBuf buffer = allocate(ctx, greeting.getLength());
+    greeting.writeTo(buffer, processId, secretKey);
+
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationMD5Password(ChannelHandlerContext ctx, int salt) {
-    ByteBuf buffer = ctx.alloc().buffer(13);
+    ByteBuf buffer = allocate(ctx, 13);
     buffer.writeByte(MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED);
     buffer.writeInt(12);
     buffer.writeInt(5); // Specifies that an MD5-encrypted password is required.
     buffer.writeInt(salt);
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationKerberosV5(ChannelHandlerContext ctx) {
-    ByteBuf buffer = ctx.alloc().buffer(9);
+    ByteBuf buffer = allocate(ctx, 9);
     buffer.writeByte(MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED);
     buffer.writeInt(8);
     buffer.writeInt(2); // Specifies that Kerberos V5 authentication is required.
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationCleartextPassword(ChannelHandlerContext ctx) {
-    ByteBuf buffer = ctx.alloc().buffer(9);
+    ByteBuf buffer = allocate(ctx, 9);
     buffer.writeByte(MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED);
     buffer.writeInt(8);
     buffer.writeInt(3); // Specifies that a clear-text password is required.
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationGSS(ChannelHandlerContext ctx) {
-    ByteBuf buffer = ctx.alloc().buffer(9);
+    ByteBuf buffer = allocate(ctx, 9);
     buffer.writeByte(MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED);
     buffer.writeInt(8);
     buffer.writeInt(7); // Specifies that GSSAPI authentication is required.
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationGSSContinue(ChannelHandlerContext ctx, ByteBuf bytes) {
-    int length = 4 + 4 + bytes.readableBytes() + 1;
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    int length = 4 + 4 + bytes.readableBytes();
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED);
     buffer.writeInt(length);
     buffer.writeInt(8); // Specifies that this message contains GSSAPI or SSPI data.
 
-    writeByteN(buffer, bytes);
+    buffer.writeBytes(bytes, bytes.readerIndex(), bytes.readableBytes());
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onAuthenticationSSPI(ChannelHandlerContext ctx) {
-    ByteBuf buffer = ctx.alloc().buffer(9);
+    ByteBuf buffer = allocate(ctx, 9);
     buffer.writeByte(MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED);
     buffer.writeInt(8);
     buffer.writeInt(9); // Specifies that SSPI authentication is required.
 
-    ctx.writeAndFlush(buffer);
+    writeAndFlush(ctx, buffer);
   }
 
   @Override
   public void onNegotiateProtocolVersion(ChannelHandlerContext ctx, int protocolLatest,
       List<ByteBuf> unrecognizedProtocolOptions) {
-    int length = 4 + 4 + unrecognizedProtocolOptions.stream().mapToInt(ByteBuf::readableBytes).sum()
-        + unrecognizedProtocolOptions.size();
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    int length = 4 + 4 + 4 + unrecognizedProtocolOptions.stream().mapToInt(SenderUtils::cStrLength).sum();
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(MessageConstants.NEGOTIATE_PROTOCOL_VERSION);
     buffer.writeInt(length);
+    buffer.writeInt(protocolLatest);
     buffer.writeInt(unrecognizedProtocolOptions.size());
     for (ByteBuf unrecognized : unrecognizedProtocolOptions) {
       writeCStr(buffer, unrecognized);
     }
+
+    writeAndFlushIfNotCombining(ctx, buffer);
+  }
+
+  /**
+   * Sends the header of a message whose content will be sent by
+   * {@link #onStreamedMessageChunk(ChannelHandlerContext, ByteBuf, boolean)}.
+   * This is useful to relay large messages without buffering them.
+   */
+  @Override
+  public void onStreamedMessageStart(ChannelHandlerContext ctx, char id, int length) {
+    ByteBuf buffer = allocate(ctx, 5);
+    buffer.writeByte(id);
+    buffer.writeInt(4 + length);
+
+    write(ctx, buffer);
+  }
+
+  @Override
+  public void onStreamedMessageChunk(ChannelHandlerContext ctx, ByteBuf chunk, boolean last) {
+    writeThrough(ctx, chunk.retainedSlice(), true);
+  }
+
+  /**
+   * Relays the message as it is. The content is not copied.
+   */
+  @Override
+  public void onRawMessage(ChannelHandlerContext ctx, char id, ByteBuf content) {
+    ByteBuf header = allocate(ctx, 5);
+    header.writeByte(id);
+    header.writeInt(4 + content.readableBytes());
+
+    write(ctx, header);
+    writeThrough(ctx, content.retainedSlice(), false);
   }
 
   /**
@@ -368,9 +520,10 @@ public class BackendMessageSender implements BackendMessageListener<ChannelHandl
    */
   private void onErrorLikeResponse(ChannelHandlerContext ctx, Map<Character, ByteBuf> fields, char id) {
     int length = 4 + //length itself
-        3 * fields.size() + // 2 bytes for the char and 1 for the null termination
+        2 * fields.size() + // 1 byte for the char and 1 for the null termination
+        1 + // the null byte that marks the end of the message
         fields.values().stream().mapToInt(ByteBuf::readableBytes).sum(); // the byte content
-    ByteBuf buffer = ctx.alloc().buffer(1 + length);
+    ByteBuf buffer = allocate(ctx, 1 + length);
     buffer.writeByte(id);
     buffer.writeInt(length);
 
@@ -379,5 +532,202 @@ public class BackendMessageSender implements BackendMessageListener<ChannelHandl
       writeCStr(buffer, entry.getValue());
     }
     buffer.writeByte(0); // marks the end of the message
+
+    write(ctx, buffer);
+  }
+
+  private void writeSimpleMessage(ChannelHandlerContext ctx, char id) {
+    writeShared(ctx, simpleMessage(id));
+  }
+
+  /**
+   * Writes one or more messages encoded in an immutable buffer shared between channels.
+   */
+  private void writeShared(ChannelHandlerContext ctx, ByteBuf shared) {
+    if (isWriteCombining()) {
+      ByteBuf buffer = allocate(ctx, shared.readableBytes());
+      buffer.writeBytes(shared, shared.readerIndex(), shared.readableBytes());
+
+      write(ctx, buffer);
+    } else {
+      ctx.write(shared.retainedDuplicate());
+    }
+  }
+
+  /**
+   * This is used by onCopyInResponse, onCopyOutResponse and onCopyBothResponse.
+   *
+   * @param flush whether the message has to be flushed even when write combining is enabled, which is the case when
+   *              the frontend is expected to answer.
+   */
+  private void writeCopyResponse(ChannelHandlerContext ctx, Format overallFormat, List<Format> columnFormats, char id,
+      boolean flush) {
+    int length = 4 + 1 + 2 + columnFormats.size() * 2;
+    ByteBuf buffer = allocate(ctx, 1 + length);
+    buffer.writeByte(id);
+    buffer.writeInt(length);
+    buffer.writeByte(overallFormat.getId());
+    writeUnsignedShort(buffer, columnFormats.size());
+    for (Format columnFormat : columnFormats) {
+      writeUnsignedShort(buffer, columnFormat.getId());
+    }
+
+    if (flush) {
+      writeAndFlush(ctx, buffer);
+    } else {
+      writeAndFlushIfNotCombining(ctx, buffer);
+    }
+  }
+
+  /**
+   * Returns a buffer with at least the given writable bytes where a message has to be written.
+   *
+   * When write combining is enabled, the buffer is the one shared by all the messages of the channel, so messages
+   * must be written from its writer index. Once the message is written, it has to be sent with one of the
+   * <em>write</em> methods.
+   */
+  ByteBuf allocate(ChannelHandlerContext ctx, int length) {
+    if (!isWriteCombining()) {
+      return ctx.alloc().buffer(length);
+    }
+    ChannelState state = getState(ctx);
+    if (state.pending == null) {
+      state.pending = ctx.alloc().buffer(Math.max(length, Math.min(flushThreshold, MAX_INITIAL_COMBINED_CAPACITY)));
+    } else {
+      state.pending.ensureWritable(length);
+    }
+    return state.pending;
+  }
+
+  /**
+   * Sends a message written in a buffer returned by {@link #allocate(ChannelHandlerContext, int)}.
+   */
+  void write(ChannelHandlerContext ctx, ByteBuf buffer) {
+    if (!isWriteCombining()) {
+      ctx.write(buffer);
+      return;
+    }
+    if (buffer.readableBytes() >= flushThreshold) {
+      emit(ctx, getState(ctx));
+      ctx.flush();
+    }
+  }
+
+  /**
+   * Sends and flushes a message written in a buffer returned by {@link #allocate(ChannelHandlerContext, int)}.
+   */
+  void writeAndFlush(ChannelHandlerContext ctx, ByteBuf buffer) {
+    if (!isWriteCombining()) {
+      ctx.writeAndFlush(buffer);
+      return;
+    }
+    emit(ctx, getState(ctx));
+    ctx.flush();
+  }
+
+  /**
+   * Used by messages that are flushed by default, but do not need to be flushed when write combining is enabled
+   * because the frontend is not expected to answer them.
+   */
+  void writeAndFlushIfNotCombining(ChannelHandlerContext ctx, ByteBuf buffer) {
+    if (isWriteCombining()) {
+      write(ctx, buffer);
+    } else {
+      ctx.writeAndFlush(buffer);
+    }
+  }
+
+  /**
+   * Sends a DataRow message, which may trigger an early flush.
+   */
+  void writeDataRow(ChannelHandlerContext ctx, ByteBuf buffer) {
+    if (isWriteCombining() && earlyFlushRows > 0 && ++getState(ctx).rows == earlyFlushRows) {
+      writeAndFlush(ctx, buffer);
+    } else {
+      write(ctx, buffer);
+    }
+  }
+
+  /**
+   * Discards a message that was being written in a buffer returned by {@link #allocate(ChannelHandlerContext, int)}.
+   *
+   * @param start the index where the message starts
+   */
+  void discard(ByteBuf buffer, int start) {
+    if (isWriteCombining()) {
+      buffer.writerIndex(start);
+    } else {
+      buffer.release();
+    }
+  }
+
+  /**
+   * Writes a buffer that has not been returned by {@link #allocate(ChannelHandlerContext, int)}, like the content of a
+   * relayed message, after the messages that are waiting in the combined buffer.
+   */
+  void writeThrough(ChannelHandlerContext ctx, ByteBuf buffer, boolean flush) {
+    if (isWriteCombining()) {
+      emit(ctx, getState(ctx));
+    }
+    if (flush) {
+      ctx.writeAndFlush(buffer);
+    } else {
+      ctx.write(buffer);
+    }
+  }
+
+  /**
+   * Writes the combined buffer to the channel, without flushing it.
+   */
+  private void emit(ChannelHandlerContext ctx, ChannelState state) {
+    ByteBuf pending = state.pending;
+    if (pending != null) {
+      state.pending = null;
+      ctx.write(pending);
+    }
+  }
+
+  /**
+   * Returns the outbound state of the channel, which can only be used from its event loop.
+   */
+  private ChannelState getState(ChannelHandlerContext ctx) {
+    if (!ctx.executor().inEventLoop()) {
+      throw new IllegalStateException("Messages must be sent from the event loop of the channel when write combining "
+          + "is enabled or rows are written with beginDataRow");
+    }
+    Attribute<ChannelState> attribute = ctx.channel().attr(STATE);
+    ChannelState state = attribute.get();
+    if (state == null) {
+      state = new ChannelState();
+      attribute.set(state);
+      ChannelState closedState = state;
+      ctx.channel().closeFuture().addListener(future -> closedState.release());
+    }
+    return state;
+  }
+
+  /**
+   * The outbound state of each channel.
+   */
+  private static class ChannelState {
+    /**
+     * The buffer where messages are combined, if any.
+     */
+    private ByteBuf pending;
+    private RowWriter rowWriter;
+    /**
+     * The number of rows sent since the last ReadyForQuery.
+     */
+    private int rows;
+
+    private void release() {
+      if (rowWriter != null) {
+        rowWriter.cancel();
+      }
+      if (pending != null) {
+        pending.release();
+        pending = null;
+      }
+    }
   }
 }
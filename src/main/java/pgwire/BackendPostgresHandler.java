@@ -2,10 +2,10 @@ package pgwire;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.function.IntFunction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,52 +15,106 @@ import org.apache.logging.log4j.Logger;
  * This class can be used to decode messages from the backend.
  *
  * This could be useful to implement a postgres client (or driver) or a proxy.
+ *
+ * Each message type is decoded into the corresponding {@link BackendMessageListener} method. Message types the
+ * listener does not need decoded (see {@link #setRawMessages(char...)}) and unknown message types are delivered
+ * with {@link BackendMessageListener#onRawMessage(Object, char, Object)}.
  */
 public class BackendPostgresHandler extends AbstractPostgresHandler {
 
   private static final Logger LOGGER = LogManager.getLogger(BackendPostgresHandler.class);
   private final IntFunction<PgType> typeLibrary;
   private final BackendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener;
+  private DataRowView dataRowView;
+  /**
+   * The decoder to use for each message id. Ids without decoder are delivered as raw messages.
+   */
+  private final MessageDecoder[] decoders = new MessageDecoder[128];
 
   public BackendPostgresHandler(IntFunction<PgType> typeLibrary,
       BackendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener) {
     this.typeLibrary = typeLibrary;
     this.listener = listener;
+
+    decoders[MessageConstants.PARSE_COMPLETE] = (ctx, id, buf) -> listener.onParseComplete(ctx);
+    decoders[MessageConstants.BIND_COMPLETE] = (ctx, id, buf) -> listener.onBindComplete(ctx);
+    decoders[MessageConstants.CLOSE_COMPLETE] = (ctx, id, buf) -> listener.onCloseComplete(ctx);
+    decoders[MessageConstants.NO_DATA] = (ctx, id, buf) -> listener.onNoData(ctx);
+    decoders[MessageConstants.PORTAL_SUSPENDED] = (ctx, id, buf) -> listener.onPortalSuspended(ctx);
+    decoders[MessageConstants.EMPTY_QUERY_RESPONSE] = (ctx, id, buf) -> listener.onEmptyQueryResponse(ctx);
+    decoders[MessageConstants.COPY_DONE] = (ctx, id, buf) -> listener.onCopyDone(ctx);
+    decoders[MessageConstants.COPY_DATA] = (ctx, id, buf) -> listener.onCopyData(ctx, buf);
+    decoders[MessageConstants.BACKEND_KEY_DATA] =
+        (ctx, id, buf) -> listener.onBackendKeyData(ctx, buf.readInt(), buf.readInt());
+    decoders[MessageConstants.AUTHENTICATION_PROTOCOL_REQUESTED] = this::decodeAuthentication;
+    decoders[MessageConstants.PARAMETER_DESCRIPTION] = this::decodeParameterDescription;
+    decoders[MessageConstants.NOTIFICATION_RESPONSE] = this::decodeNotificationResponse;
+    decoders[MessageConstants.FUNCTION_CALL_RESPONSE] =
+        (ctx, id, buf) -> listener.onFunctionCallResponse(ctx, readSliceFromLength(buf));
+    decoders[MessageConstants.COPY_IN_RESPONSE] = this::decodeCopyResponse;
+    decoders[MessageConstants.COPY_OUT_RESPONSE] = this::decodeCopyResponse;
+    decoders[MessageConstants.COPY_BOTH_RESPONSE] = this::decodeCopyResponse;
+    decoders[MessageConstants.NEGOTIATE_PROTOCOL_VERSION] = this::decodeNegotiateProtocolVersion;
+    decoders[MessageConstants.ERROR_RESPONSE] = this::decodeErrorLikeResponse;
+    decoders[MessageConstants.NOTICE_RESPONSE] = this::decodeErrorLikeResponse;
+    decoders[MessageConstants.COMMAND_COMPLETE] = this::decodeCommandComplete;
+    decoders[MessageConstants.DATA_ROW] = this::decodeDataRow;
+    decoders[MessageConstants.PARAMETER_STATUS] = this::decodeParameterStatus;
+    decoders[MessageConstants.READY_FOR_QUERY] = this::decodeReadyForQuery;
+    decoders[MessageConstants.ROW_DESCRIPTION] = this::decodeRowDescription;
+  }
+
+  /**
+   * Whether DataRow messages are delivered with {@link BackendMessageListener#onDataRow(Object, DataRowView)}, which
+   * does not allocate, or with {@link BackendMessageListener#onDataRow(Object, List)}.
+   */
+  public void setDataRowView(boolean useDataRowView) {
+    this.dataRowView = useDataRowView ? new DataRowView() : null;
+  }
+
+  /**
+   * Makes the handler deliver messages with the given ids with
+   * {@link BackendMessageListener#onRawMessage(Object, char, Object)} instead of decoding them.
+   *
+   * This is useful when the listener does not need these messages to be decoded, for example when they are just
+   * relayed.
+   */
+  public void setRawMessages(char... ids) {
+    for (char id : ids) {
+      if (id >= decoders.length) {
+        throw new IllegalArgumentException("Invalid message id " + id);
+      }
+      decoders[id] = this::decodeRaw;
+    }
   }
 
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, ByteBuf buf)
       throws Exception {
     char id = (char) buf.readByte();
-    int length = buf.readInt();
+    buf.skipBytes(4); // length
     LOGGER.debug("Read regular message with id {}", id);
 
-    switch (id) {
-      case MessageConstants.COMMAND_COMPLETE:
-        decodeCommandComplete(ctx, buf);
-        break;
-      case MessageConstants.DATA_ROW:
-        decodeDataRow(ctx, buf);
-        break;
-      case MessageConstants.ERROR_RESPONSE:
-        decodeErrorResponse(ctx, buf);
-        break;
-      case MessageConstants.PARAMETER_STATUS:
-        decodeParameterStatus(ctx, buf);
-        break;
-      case MessageConstants.READY_FOR_QUERY:
-        decodeReadyForQuery(ctx, buf);
-        break;
-      case MessageConstants.ROW_DESCRIPTION:
-        decodeRowDescription(ctx, buf);
-        break;
-      default: {
-        throw new UnsupportedOperationException("Unknown message type " + id);
-      }
+    MessageDecoder decoder = id < decoders.length ? decoders[id] : null;
+    if (decoder == null) {
+      decodeRaw(ctx, id, buf);
+    } else {
+      decoder.decode(ctx, id, buf);
     }
   }
 
-  private void decodeRowDescription(ChannelHandlerContext ctx, ByteBuf slice) {
+  @Override
+  protected void channelReadStreamedHeader(ChannelHandlerContext ctx, StreamedMessageHeader header) {
+    LOGGER.debug("Streaming message with id {} and {} bytes", header.getId(), header.getLength());
+    listener.onStreamedMessageStart(ctx, header.getId(), header.getLength());
+  }
+
+  @Override
+  protected void channelReadStreamedChunk(ChannelHandlerContext ctx, StreamedMessageChunk chunk) {
+    listener.onStreamedMessageChunk(ctx, chunk.content(), chunk.isLast());
+  }
+
+  private void decodeRowDescription(ChannelHandlerContext ctx, char id, ByteBuf slice) {
     int numFields = slice.readUnsignedShort();
     ArrayList<Field> fields = new ArrayList<>(numFields);
     for (int i = 0; i < numFields; i++) {
@@ -70,6 +124,7 @@ public class BackendPostgresHandler extends AbstractPostgresHandler {
 
       int typeOid = slice.readInt();
       PgType type = typeLibrary.apply(typeOid);
+      slice.skipBytes(2); // type size, which is already known by the type
 
       int typeModifier = slice.readInt();
 
@@ -79,55 +134,196 @@ public class BackendPostgresHandler extends AbstractPostgresHandler {
     listener.onRowDescription(ctx, fields);
   }
 
-  private void decodeReadyForQuery(ChannelHandlerContext ctx, ByteBuf slice) {
+  private void decodeReadyForQuery(ChannelHandlerContext ctx, char id, ByteBuf slice) {
     TransactionStatus status = TransactionStatus.fromValue(slice.readByte());
     listener.onReadyForQuery(ctx, status);
   }
 
-  private void decodeParameterStatus(ChannelHandlerContext ctx, ByteBuf slice) {
+  private void decodeParameterStatus(ChannelHandlerContext ctx, char id, ByteBuf slice) {
     ByteBuf name = readNullEndedSlice(slice);
     ByteBuf value = readNullEndedSlice(slice);
     listener.onParameterStatus(ctx, name, value);
   }
 
-  private void decodeErrorResponse(ChannelHandlerContext ctx, ByteBuf slice) {
+  private void decodeErrorLikeResponse(ChannelHandlerContext ctx, char id, ByteBuf slice) {
     HashMap<Character, ByteBuf> data = new HashMap<>();
     while (slice.isReadable() && slice.getByte(slice.readerIndex()) != 0) {
-      char entry = (char) slice.readUnsignedShort();
+      char entry = (char) slice.readByte();
       ByteBuf value = readNullEndedSlice(slice);
       data.put(entry, value);
     }
-    listener.onErrorResponse(ctx, data);
+    if (id == MessageConstants.ERROR_RESPONSE) {
+      listener.onErrorResponse(ctx, data);
+    } else {
+      listener.onNoticeResponse(ctx, data);
+    }
   }
 
-  private void decodeDataRow(ChannelHandlerContext ctx, ByteBuf slice) {
+  private void decodeAuthentication(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    int start = slice.readerIndex();
+    int type = slice.readInt();
+    switch (type) {
+      case 0:
+        listener.onAuthenticationOk(ctx);
+        break;
+      case 2:
+        listener.onAuthenticationKerberosV5(ctx);
+        break;
+      case 3:
+        listener.onAuthenticationCleartextPassword(ctx);
+        break;
+      case 5:
+        listener.onAuthenticationMD5Password(ctx, slice.readInt());
+        break;
+      case 7:
+        listener.onAuthenticationGSS(ctx);
+        break;
+      case 8:
+        listener.onAuthenticationGSSContinue(ctx, slice);
+        break;
+      case 9:
+        listener.onAuthenticationSSPI(ctx);
+        break;
+      case 10: {
+        List<ByteBuf> mechanisms = new ArrayList<>(2);
+        while (slice.isReadable() && slice.getByte(slice.readerIndex()) != 0) {
+          mechanisms.add(readNullEndedSlice(slice));
+        }
+        listener.onAuthenticationSASL(ctx, mechanisms);
+        break;
+      }
+      case 11:
+        listener.onAuthenticationSASLContinue(ctx, slice);
+        break;
+      case 12:
+        listener.onAuthenticationSASLFinal(ctx, slice);
+        break;
+      default:
+        // unknown or unsupported types, like SCMCredential (6), are delivered with their type
+        LOGGER.debug("Unknown authentication request type {}", type);
+        decodeRaw(ctx, id, slice.readerIndex(start));
+        break;
+    }
+  }
+
+  private void decodeParameterDescription(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    int numParams = slice.readUnsignedShort();
+    List<PgType> types = new ArrayList<>(numParams);
+    for (int i = 0; i < numParams; i++) {
+      types.add(typeLibrary.apply(slice.readInt()));
+    }
+    listener.onParameterDescription(ctx, types);
+  }
+
+  private void decodeNotificationResponse(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    int processId = slice.readInt();
+    ByteBuf channel = readNullEndedSlice(slice);
+    ByteBuf payload = readNullEndedSlice(slice);
+    listener.onNotificationResponse(ctx, processId, channel, payload);
+  }
+
+  private void decodeCopyResponse(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    Format overallFormat = Format.fromId(slice.readByte());
+    int numColumns = slice.readUnsignedShort();
+    List<Format> columnFormats = new ArrayList<>(numColumns);
+    for (int i = 0; i < numColumns; i++) {
+      columnFormats.add(Format.fromId(slice.readUnsignedShort()));
+    }
+    switch (id) {
+      case MessageConstants.COPY_IN_RESPONSE:
+        listener.onCopyInResponse(ctx, overallFormat, columnFormats);
+        break;
+      case MessageConstants.COPY_OUT_RESPONSE:
+        listener.onCopyOutResponse(ctx, overallFormat, columnFormats);
+        break;
+      default:
+        listener.onCopyBothResponse(ctx, overallFormat, columnFormats);
+        break;
+    }
+  }
+
+  private void decodeNegotiateProtocolVersion(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    int protocolLatest = slice.readInt();
+    int numOptions = slice.readInt();
+    List<ByteBuf> options = new ArrayList<>(numOptions);
+    for (int i = 0; i < numOptions; i++) {
+      options.add(readNullEndedSlice(slice));
+    }
+    listener.onNegotiateProtocolVersion(ctx, protocolLatest, options);
+  }
+
+  private void decodeRaw(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    listener.onRawMessage(ctx, id, slice);
+  }
+
+  private void decodeDataRow(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    if (dataRowView != null) {
+      listener.onDataRow(ctx, dataRowView.wrap(slice));
+      return;
+    }
     int numValues = slice.readUnsignedShort();
     List<ByteBuf> values = new ArrayList<>(numValues);
     for (int i = 0; i < numValues; i++) {
       int valueLength = slice.readInt();
-      ByteBuf value = slice.readSlice(valueLength);
-      values.add(value);
+      values.add(valueLength < 0 ? null : slice.readSlice(valueLength));
     }
     listener.onDataRow(ctx, values);
   }
 
-  private void decodeCommandComplete(ChannelHandlerContext ctx, ByteBuf slice) {
-    String cmd = readNullEndedString(slice);
-    int affectedRows;
-    CommandType type;
-    String[] splits = cmd.split(" ");
-    if (splits.length == 0) {
-      throw new IllegalArgumentException("Unexpected text '" + cmd + "'");
-    }
-    try {
-      type = CommandType.valueOf(splits[0].toUpperCase(Locale.US));
-    } catch (IllegalArgumentException ex) {
-      throw new IllegalArgumentException("Unexpected text '" + cmd + "'", ex);
-    }
-    if (splits.length == 1) {
-      throw new IllegalArgumentException("Unexpected text '" + cmd + "'");
+  /**
+   * Parses the command tag directly from the buffer, without allocating.
+   *
+   * The tag is a known {@link CommandType} optionally followed by numbers separated by spaces (like
+   * {@code INSERT 0 5}), where the last number is the number of affected rows.
+   */
+  private void decodeCommandComplete(ChannelHandlerContext ctx, char id, ByteBuf slice) {
+    int start = slice.readerIndex();
+    int end = slice.bytesBefore((byte) 0);
+    end = end < 0 ? slice.writerIndex() : start + end;
+
+    long affectedRows = 0;
+    int tagEnd = end;
+    CommandType type = CommandType.fromTag(slice, start, tagEnd - start);
+    boolean first = true;
+    while (type == null) {
+      int numberStart = tagEnd;
+      while (numberStart > start && isDigit(slice.getByte(numberStart - 1))) {
+        numberStart--;
+      }
+      if (numberStart == tagEnd || numberStart - 1 <= start || slice.getByte(numberStart - 1) != ' ') {
+        LOGGER.debug("Unexpected command tag {}", slice.toString(start, end - start, StandardCharsets.US_ASCII));
+        type = CommandType.UNKNOWN;
+        affectedRows = 0;
+        break;
+      }
+      if (first) {
+        affectedRows = parseAsciiLong(slice, numberStart, tagEnd);
+        first = false;
+      }
+      tagEnd = numberStart - 1;
+      type = CommandType.fromTag(slice, start, tagEnd - start);
     }
-    affectedRows = Integer.parseInt(splits[splits.length - 1]);
+    slice.readerIndex(Math.min(end + 1, slice.writerIndex()));
     listener.onCommandComplete(ctx, affectedRows, type);
   }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static long parseAsciiLong(ByteBuf buf, int start, int end) {
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      result = result * 10 + (buf.getByte(i) - '0');
+    }
+    return result;
+  }
+
+  @FunctionalInterface
+  private interface MessageDecoder {
+    /**
+     * @param content the content of the message, after the id and the length
+     */
+    void decode(ChannelHandlerContext ctx, char id, ByteBuf content);
+  }
 }
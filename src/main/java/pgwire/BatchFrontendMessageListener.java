@@ -0,0 +1,28 @@
+package pgwire;
+
+/**
+ * A {@link FrontendMessageListener} that is notified when a group of pipelined messages is received.
+ *
+ * <p>
+ * Drivers usually pipeline several messages (like Parse, Bind, Describe, Execute and Sync) in a single write.
+ * When batching is enabled (see {@link PostgresBackendChannelInitializer#withBatching(boolean)}), all messages
+ * decoded from a single read are delivered together, ending at each Sync. Each batch is delivered as a call to
+ * {@link #onBatchStart(Object, int)}, followed by the usual call per message and a final call to
+ * {@link #onBatchEnd(Object, boolean)}.
+ * <p>
+ * This way implementations can defer the actual work until the end of the batch, for example to plan and execute all
+ * the statements of the pipeline at once.
+ */
+public interface BatchFrontendMessageListener<C, S, B> extends FrontendMessageListener<C, S, B> {
+
+  /**
+   * @param messages The number of messages in the batch.
+   */
+  void onBatchStart(C ctx, int messages);
+
+  /**
+   * @param synced Whether the last message of the batch was a Sync. Batches that do not end with a Sync are
+   *               followed by more messages in later reads.
+   */
+  void onBatchEnd(C ctx, boolean synced);
+}
@@ -0,0 +1,243 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A reusable view over the content of a Bind message.
+ *
+ * <p>
+ * Contrary to {@link FrontendMessageListener#onBind(Object, Object, Object, List, List)}, this class does not create
+ * any object per message or parameter. Instead, it records the position of each field in the original buffer and
+ * offers indexed access to them. Each {@link FrontendPostgresHandler} reuses the same instance for all the Bind
+ * messages of the connection, so the instance and the buffer it wraps are only valid during the listener call.
+ * <p>
+ * Methods that return a {@link ByteBuf} (like {@link #getParameter(int)}) return derived buffers that share the
+ * content with the message. They do not copy the bytes but they do allocate a small object, so they should be avoided
+ * in hot paths in favor of methods like {@link #getParameterIndex(int)} and {@link #getParameterLength(int)}.
+ * {@link BindParameters} decodes the values in place as primitives.
+ */
+public class BindMessage {
+  private ByteBuf buf;
+  private int portalNameIndex;
+  private int portalNameLength;
+  private int statementNameIndex;
+  private int statementNameLength;
+  private int paramFormatCount;
+  private int paramFormatsIndex;
+  private int paramCount;
+  /**
+   * The index of the first byte of each parameter value.
+   */
+  private int[] paramIndexes = new int[16];
+  /**
+   * The length of each parameter value, where -1 means null.
+   */
+  private int[] paramLengths = new int[16];
+  private int resultFormatCount;
+  private int resultFormatsIndex;
+
+  /**
+   * Makes this instance a view of the given Bind message.
+   *
+   * @param buf the content of the message, starting just after the length field. It is fully consumed.
+   * @return this instance
+   */
+  public BindMessage wrap(ByteBuf buf) {
+    this.buf = buf;
+    int index = buf.readerIndex();
+
+    portalNameIndex = index;
+    portalNameLength = buf.bytesBefore((byte) 0);
+    index += portalNameLength + 1;
+
+    statementNameIndex = index;
+    statementNameLength = buf.indexOf(index, buf.writerIndex(), (byte) 0) - index;
+    index += statementNameLength + 1;
+
+    paramFormatCount = buf.getUnsignedShort(index);
+    paramFormatsIndex = index + 2;
+    index = paramFormatsIndex + 2 * paramFormatCount;
+
+    paramCount = buf.getUnsignedShort(index);
+    index += 2;
+    if (paramIndexes.length < paramCount) {
+      paramIndexes = new int[Math.max(paramCount, paramIndexes.length * 2)];
+      paramLengths = new int[paramIndexes.length];
+    }
+    for (int i = 0; i < paramCount; i++) {
+      int length = buf.getInt(index);
+      index += 4;
+      paramIndexes[i] = index;
+      paramLengths[i] = length;
+      if (length > 0) {
+        index += length;
+      }
+    }
+
+    resultFormatCount = buf.getUnsignedShort(index);
+    resultFormatsIndex = index + 2;
+    index = resultFormatsIndex + 2 * resultFormatCount;
+
+    buf.readerIndex(index);
+    return this;
+  }
+
+  /**
+   * The buffer that contains the message, which can be used in conjunction with the index methods.
+   */
+  public ByteBuf getBuffer() {
+    return buf;
+  }
+
+  public int getPortalNameIndex() {
+    return portalNameIndex;
+  }
+
+  public int getPortalNameLength() {
+    return portalNameLength;
+  }
+
+  /**
+   * The name of the destination portal (an empty string selects the unnamed portal).
+   */
+  public ByteBuf getPortalName() {
+    return buf.slice(portalNameIndex, portalNameLength);
+  }
+
+  public int getStatementNameIndex() {
+    return statementNameIndex;
+  }
+
+  public int getStatementNameLength() {
+    return statementNameLength;
+  }
+
+  /**
+   * The name of the source prepared statement (an empty string selects the unnamed prepared statement).
+   */
+  public ByteBuf getStatementName() {
+    return buf.slice(statementNameIndex, statementNameLength);
+  }
+
+  public int getParameterCount() {
+    return paramCount;
+  }
+
+  public Format getParameterFormat(int param) {
+    checkParameter(param);
+    switch (paramFormatCount) {
+      case 0:
+        return Format.TEXT;
+      case 1:
+        return Format.fromId(buf.getUnsignedShort(paramFormatsIndex));
+      default:
+        return Format.fromId(buf.getUnsignedShort(paramFormatsIndex + 2 * param));
+    }
+  }
+
+  public boolean isNull(int param) {
+    checkParameter(param);
+    return paramLengths[param] < 0;
+  }
+
+  /**
+   * The length of the parameter value or -1 if the value is null.
+   */
+  public int getParameterLength(int param) {
+    checkParameter(param);
+    return paramLengths[param];
+  }
+
+  /**
+   * The index in {@link #getBuffer()} of the first byte of the parameter value.
+   */
+  public int getParameterIndex(int param) {
+    checkParameter(param);
+    return paramIndexes[param];
+  }
+
+  /**
+   * Copies the parameter value into the given array.
+   *
+   * @return the number of copied bytes or -1 if the value is null.
+   */
+  public int getParameterBytes(int param, byte[] dst, int dstIndex) {
+    checkParameter(param);
+    int length = paramLengths[param];
+    if (length > 0) {
+      buf.getBytes(paramIndexes[param], dst, dstIndex, length);
+    }
+    return length;
+  }
+
+  /**
+   * Returns a slice with the parameter value or null if the value is null.
+   */
+  public ByteBuf getParameter(int param) {
+    checkParameter(param);
+    int length = paramLengths[param];
+    if (length < 0) {
+      return null;
+    }
+    return buf.slice(paramIndexes[param], length);
+  }
+
+  /**
+   * The number of result format codes, which follows the protocol semantics: zero means all columns use text, one
+   * means all columns use the same format and any other value is the actual number of result columns.
+   */
+  public int getResultFormatCount() {
+    return resultFormatCount;
+  }
+
+  /**
+   * The format that has to be used to send the given result column.
+   */
+  public Format getResultFormat(int column) {
+    switch (resultFormatCount) {
+      case 0:
+        return Format.TEXT;
+      case 1:
+        return Format.fromId(buf.getUnsignedShort(resultFormatsIndex));
+      default:
+        if (column < 0 || column >= resultFormatCount) {
+          throw new IndexOutOfBoundsException("Column " + column + " is out of bounds for "
+              + resultFormatCount + " result formats");
+        }
+        return Format.fromId(buf.getUnsignedShort(resultFormatsIndex + 2 * column));
+    }
+  }
+
+  /**
+   * Creates the parameters as expected by {@link FrontendMessageListener#onBind(Object, Object, Object, List, List)}.
+   */
+  public List<ParameterBound<ByteBuf>> toParameterList() {
+    List<ParameterBound<ByteBuf>> params = new ArrayList<>(paramCount);
+    for (int i = 0; i < paramCount; i++) {
+      params.add(new ParameterBound<>(getParameterFormat(i), getParameter(i)));
+    }
+    return params;
+  }
+
+  /**
+   * Creates the result formats as expected by
+   * {@link FrontendMessageListener#onBind(Object, Object, Object, List, List)}.
+   */
+  public List<Format> toResultFormatList() {
+    List<Format> resultFormats = new ArrayList<>(resultFormatCount);
+    for (int i = 0; i < resultFormatCount; i++) {
+      resultFormats.add(Format.fromId(buf.getUnsignedShort(resultFormatsIndex + 2 * i)));
+    }
+    return resultFormats;
+  }
+
+  private void checkParameter(int param) {
+    if (param < 0 || param >= paramCount) {
+      throw new IndexOutOfBoundsException("Parameter " + param + " is out of bounds for " + paramCount
+          + " parameters");
+    }
+  }
+}
@@ -0,0 +1,350 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.function.IntFunction;
+
+
+/**
+ * Typed access to the parameters of a Bind message.
+ *
+ * <p>
+ * The types of the parameters are resolved once, when the statement is parsed, from the OIDs received in
+ * {@link FrontendMessageListener#onParse(Object, Object, Object, List)}. Then the same instance is pointed to the
+ * parameters of each execution with {@link #wrap(BindMessage)} (or {@link #wrap(ParameterBatch, int)} for batches) and
+ * methods like {@link #getLong(int)} or {@link #getDouble(int)} decode the values in place, whatever format the
+ * frontend chose, without boxing and without creating intermediate Strings:
+ *
+ * <pre>
+ *   // on Parse
+ *   BindParameters params = new BindParameters(library, paramOids);
+ *   // on Bind
+ *   params.wrap(bind);
+ *   long id = params.getLong(0);
+ * </pre>
+ *
+ * Parameters whose type was not specified (OID 0) are decoded according to the getter: text values are parsed and
+ * binary values are interpreted by their length. Binary parameters declared as {@code float4} or {@code float8} are
+ * only returned as integers if they have no fractional part. Primitive getters throw {@link IllegalStateException}
+ * when the value is null, so nullable parameters have to be checked with {@link #isNull(int)} first, and
+ * {@link IllegalArgumentException} when the value cannot be decoded as the requested type.
+ * <p>
+ * Instances are reusable but not thread safe, and they are only valid while the wrapped message is.
+ */
+public class BindParameters {
+  private final PgType[] types;
+
+  private BindMessage bind;
+  private ParameterBatch batch;
+  private int row;
+
+  /**
+   * @param library the types known by the server, see {@link StandardTypeLibrary}.
+   * @param paramOids the OIDs of the parameters as received in the Parse message, where 0 means unspecified. Bind
+   *                  messages may have more parameters than OIDs.
+   */
+  public BindParameters(IntFunction<PgType> library, List<Integer> paramOids) {
+    types = new PgType[paramOids.size()];
+    for (int i = 0; i < types.length; i++) {
+      int oid = paramOids.get(i);
+      types[i] = oid == 0 ? null : library.apply(oid);
+    }
+  }
+
+  /**
+   * @return this instance
+   */
+  public BindParameters wrap(BindMessage bind) {
+    this.bind = bind;
+    this.batch = null;
+    return this;
+  }
+
+  /**
+   * Points this instance to the given row of a batch.
+   *
+   * @return this instance
+   */
+  public BindParameters wrap(ParameterBatch batch, int row) {
+    this.bind = null;
+    this.batch = batch;
+    this.row = row;
+    return this;
+  }
+
+  public int size() {
+    return bind != null ? bind.getParameterCount() : batch.getParameterCount();
+  }
+
+  /**
+   * The type of the parameter or null if it was not specified or it is not known by the library.
+   */
+  public PgType getType(int param) {
+    return param < types.length ? types[param] : null;
+  }
+
+  public Format getFormat(int param) {
+    return bind != null ? bind.getParameterFormat(param) : batch.getParameterFormat(param);
+  }
+
+  public boolean isNull(int param) {
+    return length(param) < 0;
+  }
+
+  public long getLong(int param) {
+    int length = nonNullLength(param);
+    int index = index(param);
+    ByteBuf buf = buffer();
+    if (getFormat(param) == Format.TEXT) {
+      return StandardCodecs.parseLong(buf, index, length);
+    }
+    PgType type = getType(param);
+    if (type == PgType.StandardTypes.NUMERIC) {
+      try {
+        return NumericCodec.INSTANCE.decodeBinary(buf, index, length).longValueExact();
+      } catch (ArithmeticException ex) {
+        throw new IllegalArgumentException("Numeric parameter " + param + " is not an integer", ex);
+      }
+    }
+    if (isFloat(type)) {
+      double value = getDouble(param);
+      // the range is [-2^63, 2^63), which excludes infinities, and NaN is not equal to itself
+      if (value != Math.rint(value) || value < -0x1p63 || value >= 0x1p63) {
+        throw new IllegalArgumentException("Float parameter " + param + " is not an integer");
+      }
+      return (long) value;
+    }
+    switch (length) {
+      case 2:
+        return buf.getShort(index);
+      case 4:
+        int value = buf.getInt(index);
+        return type == PgType.StandardTypes.OID || type == PgType.StandardTypes.REG_PROC
+            ? Integer.toUnsignedLong(value) : value;
+      case 8:
+        return buf.getLong(index);
+      default:
+        throw new IllegalArgumentException("Binary parameter " + param + " of " + length + " bytes is not an integer");
+    }
+  }
+
+  public int getInt(int param) {
+    long value = getLong(param);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Parameter " + param + " is out of range for type integer");
+    }
+    return (int) value;
+  }
+
+  public double getDouble(int param) {
+    int length = nonNullLength(param);
+    int index = index(param);
+    ByteBuf buf = buffer();
+    if (getFormat(param) == Format.TEXT) {
+      return StandardCodecs.parseDouble(buf, index, length, "double precision");
+    }
+    PgType type = getType(param);
+    if (type == null || isFloat(type)) {
+      switch (length) {
+        case 4:
+          return buf.getFloat(index);
+        case 8:
+          return buf.getDouble(index);
+        default:
+          throw new IllegalArgumentException("Binary parameter " + param + " of " + length + " bytes is not a float");
+      }
+    }
+    if (type == PgType.StandardTypes.NUMERIC) {
+      return NumericCodec.INSTANCE.decodeDouble(buf, index, length, Format.BINARY);
+    }
+    return getLong(param);
+  }
+
+  /**
+   * Decodes a {@code numeric} value (or any integer) as the unscaled long of the given scale, so {@code 123.45} with
+   * scale 2 is {@code 12345}. See {@link NumericCodec#decodeUnscaled(ByteBuf, int, int, Format, int)}.
+   */
+  public long getUnscaledLong(int param, int scale) {
+    int length = nonNullLength(param);
+    if (getFormat(param) == Format.TEXT || getType(param) == PgType.StandardTypes.NUMERIC) {
+      return NumericCodec.INSTANCE.decodeUnscaled(buffer(), index(param), length, getFormat(param), scale);
+    }
+    if (isFloat(getType(param))) {
+      // rounded half up like numerics
+      double value = getDouble(param);
+      if (!Double.isFinite(value)) {
+        throw new IllegalArgumentException("Parameter " + param + " is not a finite number");
+      }
+      try {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+      } catch (ArithmeticException ex) {
+        throw new IllegalArgumentException("Parameter " + param + " is out of range for scale " + scale, ex);
+      }
+    }
+    long value = getLong(param);
+    for (int i = 0; i < scale; i++) {
+      try {
+        value = Math.multiplyExact(value, 10);
+      } catch (ArithmeticException ex) {
+        throw new IllegalArgumentException("Parameter " + param + " is out of range for scale " + scale, ex);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Decodes a {@code bool} value, accepting all the text representations Postgres accepts, see
+   * {@link StandardCodecs#parseBoolean(ByteBuf, int, int)}.
+   */
+  public boolean getBoolean(int param) {
+    int length = nonNullLength(param);
+    int index = index(param);
+    ByteBuf buf = buffer();
+    if (getFormat(param) == Format.BINARY) {
+      StandardCodecs.checkLength(PgType.StandardTypes.BOOL, length, 1);
+      return buf.getByte(index) != 0;
+    }
+    int value = StandardCodecs.parseBoolean(buf, index, length);
+    if (value < 0) {
+      throw StandardCodecs.invalidText(buf, index, length, "boolean");
+    }
+    return value == 1;
+  }
+
+  /**
+   * Decodes a {@code timestamp}, {@code timestamptz} or {@code date} value as microseconds since 2000-01-01, the
+   * Postgres epoch. Dates are converted to their midnight and timestamps with an offset are converted to UTC, except
+   * when the parameter is declared as {@code timestamp} (without time zone), whose offsets are ignored like Postgres
+   * does.
+   *
+   * @return the microseconds or {@link Long#MAX_VALUE} and {@link Long#MIN_VALUE} for infinity and -infinity.
+   */
+  public long getTimestampMicros(int param) {
+    return getTimestampMicros(param, null);
+  }
+
+  /**
+   * Like {@link #getTimestampMicros(int)}, but text values without offset of {@code timestamptz} parameters (or of
+   * unspecified type) are local times of the time zone of the session, like Postgres does.
+   *
+   * @param settings the settings of the session or null to use UTC
+   */
+  public long getTimestampMicros(int param, DateTimeSettings settings) {
+    int length = nonNullLength(param);
+    int index = index(param);
+    ByteBuf buf = buffer();
+    PgType type = getType(param);
+    if (getFormat(param) == Format.TEXT) {
+      return DateTimeCodecs.parseTimestampMicros(buf, index, length, type == PgType.StandardTypes.TIMESTAMP, settings);
+    }
+    switch (length) {
+      case 4:
+        int days = buf.getInt(index);
+        if (days == Integer.MAX_VALUE) {
+          return Long.MAX_VALUE;
+        } else if (days == Integer.MIN_VALUE) {
+          return Long.MIN_VALUE;
+        }
+        return days * DateTimeCodecs.MICROS_PER_DAY;
+      case 8:
+        return buf.getLong(index);
+      default:
+        throw new IllegalArgumentException("Binary parameter " + param + " of " + length
+            + " bytes is not a timestamp");
+    }
+  }
+
+  /**
+   * Decodes a one dimensional array of integers without boxing, see
+   * {@link ArrayCodec#decodeIntArray(ByteBuf, int, int, Format)}.
+   */
+  public int[] getIntArray(int param) {
+    return ArrayCodec.decodeIntArray(buffer(), index(param), nonNullLength(param), getFormat(param));
+  }
+
+  /**
+   * Like {@link #getIntArray(int)} for longs.
+   */
+  public long[] getLongArray(int param) {
+    return ArrayCodec.decodeLongArray(buffer(), index(param), nonNullLength(param), getFormat(param));
+  }
+
+  /**
+   * Like {@link #getIntArray(int)} for doubles.
+   */
+  public double[] getDoubleArray(int param) {
+    return ArrayCodec.decodeDoubleArray(buffer(), index(param), nonNullLength(param), getFormat(param));
+  }
+
+  /**
+   * Returns the value of a text like parameter as a buffer that shares the content with the message, or null if the
+   * value is null. The content is UTF-8 in both formats.
+   */
+  public ByteBuf getUtf8(int param) {
+    int length = length(param);
+    return length < 0 ? null : buffer().slice(index(param), length);
+  }
+
+  /**
+   * Decodes the value with the given codec, or returns null if the value is null.
+   */
+  public <T> T get(int param, PgCodec<T> codec) {
+    int length = length(param);
+    return length < 0 ? null : codec.decode(buffer(), index(param), length, getFormat(param));
+  }
+
+  /**
+   * Like {@link #get(int, PgCodec)}, using the declared type of the parameter.
+   */
+  public Object get(int param, CodecRegistry registry) {
+    PgType type = getType(param);
+    if (type == null) {
+      throw new IllegalStateException("The type of parameter " + param + " is not known");
+    }
+    return get(param, registry.get(type));
+  }
+
+  /**
+   * Decodes a {@code numeric} value (or any other number) as a BigDecimal, or returns null if the value is null.
+   */
+  public BigDecimal getBigDecimal(int param) {
+    int length = length(param);
+    if (length < 0) {
+      return null;
+    }
+    PgType type = getType(param);
+    if (getFormat(param) == Format.TEXT || type == PgType.StandardTypes.NUMERIC) {
+      return NumericCodec.INSTANCE.decode(buffer(), index(param), length, getFormat(param));
+    }
+    if (isFloat(type)) {
+      return BigDecimal.valueOf(getDouble(param));
+    }
+    return BigDecimal.valueOf(getLong(param));
+  }
+
+  private static boolean isFloat(PgType type) {
+    return type == PgType.StandardTypes.FLOAT4 || type == PgType.StandardTypes.FLOAT8;
+  }
+
+  private ByteBuf buffer() {
+    return bind != null ? bind.getBuffer() : batch.getData();
+  }
+
+  private int index(int param) {
+    return bind != null ? bind.getParameterIndex(param) : batch.getOffset(param, row);
+  }
+
+  private int length(int param) {
+    return bind != null ? bind.getParameterLength(param) : batch.getLength(param, row);
+  }
+
+  private int nonNullLength(int param) {
+    int length = length(param);
+    if (length < 0) {
+      throw new IllegalStateException("Parameter " + param + " is null");
+    }
+    return length;
+  }
+}
@@ -0,0 +1,112 @@
+package pgwire;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The codecs used to encode and decode values, indexed by the OID of their type.
+ *
+ * <p>
+ * Lookups of the standard types are array accesses. The registry returned by {@link #standard()} contains the codecs
+ * of {@link StandardCodecs#allCodecs()} and can be extended with {@link #register(PgCodec)}, which replaces any codec
+ * previously registered for the same OID. Registries are meant to be configured when the server starts and then
+ * shared by all the connections: lookups are thread safe, but registrations must not run concurrently with them.
+ */
+public class CodecRegistry {
+  /**
+   * OIDs below this value are stored in an array. The rest, usually user defined types, are stored in a map.
+   */
+  private static final int MAX_INDEXED_OID = 1 << 14;
+
+  private PgCodec<?>[] indexed = new PgCodec<?>[0];
+  private final Map<Integer, PgCodec<?>> others = new HashMap<>();
+
+  /**
+   * Returns a new registry with the codecs of all the standard types.
+   */
+  public static CodecRegistry standard() {
+    CodecRegistry registry = new CodecRegistry();
+    for (PgCodec<?> codec : StandardCodecs.allCodecs()) {
+      registry.register(codec);
+    }
+    return registry;
+  }
+
+  /**
+   * Returns a new registry with the same codecs, which can be extended without modifying this one. This is how codecs
+   * that depend on the settings of a session, like the ones of {@link DateTimeSettings#registerCodecs(CodecRegistry)},
+   * are combined with the codecs shared by all the sessions.
+   */
+  public CodecRegistry copy() {
+    CodecRegistry copy = new CodecRegistry();
+    copy.indexed = indexed.clone();
+    copy.others.putAll(others);
+    return copy;
+  }
+
+  /**
+   * @return this instance
+   */
+  public CodecRegistry register(PgCodec<?> codec) {
+    int oid = codec.getType().getOid();
+    if (oid >= 0 && oid < MAX_INDEXED_OID) {
+      if (oid >= indexed.length) {
+        indexed = Arrays.copyOf(indexed, Math.max(oid + 1, Math.min(indexed.length * 2, MAX_INDEXED_OID)));
+      }
+      indexed[oid] = codec;
+    } else {
+      others.put(oid, codec);
+    }
+    return this;
+  }
+
+  /**
+   * @return the codec of the type with the given oid or null if there is none.
+   */
+  public PgCodec<?> get(int oid) {
+    if (oid >= 0 && oid < indexed.length) {
+      return indexed[oid];
+    }
+    return oid >= MAX_INDEXED_OID || oid < 0 ? others.get(oid) : null;
+  }
+
+  /**
+   * Like {@link #get(int)}, but typed by the caller and failing if there is no codec for the given type.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> PgCodec<T> get(PgType type) {
+    PgCodec<?> codec = get(type.getOid());
+    if (codec == null) {
+      throw new IllegalArgumentException("There is no codec for type " + type.getName() + " (" + type.getOid() + ")");
+    }
+    return (PgCodec<T>) codec;
+  }
+
+  /**
+   * Creates an array for the codecs of several columns, whose values are only known to be objects.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static PgCodec<Object>[] newCodecArray(int size) {
+    return new PgCodec[size];
+  }
+
+  /**
+   * Creates the encoder of the rows of a result, which uses the codec of each field and the format requested for it.
+   *
+   * @param resultFormats the result formats of the portal, with the semantics of the Bind message: no formats means
+   *                      text, a single format applies to all the columns and otherwise there is one per column.
+   */
+  public RowEncoder rowEncoder(List<Field> fields, List<Format> resultFormats) {
+    return new RowEncoder(this, fields, resultFormats);
+  }
+
+  /**
+   * Like {@link #rowEncoder(List, List)} with the result formats of the given Bind message.
+   */
+  public RowEncoder rowEncoder(List<Field> fields, BindMessage bind) {
+    return new RowEncoder(this, fields, bind.toResultFormatList());
+  }
+}
@@ -1,5 +1,315 @@
 package pgwire;
 
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * The command tags that can be sent in a CommandComplete message.
+ *
+ * Each type keeps its tag pre-encoded in ASCII, so encoding a CommandComplete is just a copy of the prefix followed by
+ * the number of affected rows (if the tag includes it).
+ */
 public enum CommandType {
-  SELECT, INSERT, UPDATE, DELETE, MOVE, FETCH, COPY
+  SELECT("SELECT", true),
+  INSERT("INSERT", true),
+  UPDATE("UPDATE", true),
+  DELETE("DELETE", true),
+  MOVE("MOVE", true),
+  FETCH("FETCH", true),
+  COPY("COPY", true),
+  MERGE("MERGE", true),
+  ALTER_ACCESS_METHOD("ALTER ACCESS METHOD", false),
+  ALTER_AGGREGATE("ALTER AGGREGATE", false),
+  ALTER_CAST("ALTER CAST", false),
+  ALTER_COLLATION("ALTER COLLATION", false),
+  ALTER_CONSTRAINT("ALTER CONSTRAINT", false),
+  ALTER_CONVERSION("ALTER CONVERSION", false),
+  ALTER_DATABASE("ALTER DATABASE", false),
+  ALTER_DEFAULT_PRIVILEGES("ALTER DEFAULT PRIVILEGES", false),
+  ALTER_DOMAIN("ALTER DOMAIN", false),
+  ALTER_EVENT_TRIGGER("ALTER EVENT TRIGGER", false),
+  ALTER_EXTENSION("ALTER EXTENSION", false),
+  ALTER_FOREIGN_DATA_WRAPPER("ALTER FOREIGN DATA WRAPPER", false),
+  ALTER_FOREIGN_TABLE("ALTER FOREIGN TABLE", false),
+  ALTER_FUNCTION("ALTER FUNCTION", false),
+  ALTER_INDEX("ALTER INDEX", false),
+  ALTER_LANGUAGE("ALTER LANGUAGE", false),
+  ALTER_LARGE_OBJECT("ALTER LARGE OBJECT", false),
+  ALTER_MATERIALIZED_VIEW("ALTER MATERIALIZED VIEW", false),
+  ALTER_OPERATOR("ALTER OPERATOR", false),
+  ALTER_OPERATOR_CLASS("ALTER OPERATOR CLASS", false),
+  ALTER_OPERATOR_FAMILY("ALTER OPERATOR FAMILY", false),
+  ALTER_POLICY("ALTER POLICY", false),
+  ALTER_PROCEDURE("ALTER PROCEDURE", false),
+  ALTER_PUBLICATION("ALTER PUBLICATION", false),
+  ALTER_ROLE("ALTER ROLE", false),
+  ALTER_ROUTINE("ALTER ROUTINE", false),
+  ALTER_RULE("ALTER RULE", false),
+  ALTER_SCHEMA("ALTER SCHEMA", false),
+  ALTER_SEQUENCE("ALTER SEQUENCE", false),
+  ALTER_SERVER("ALTER SERVER", false),
+  ALTER_STATISTICS("ALTER STATISTICS", false),
+  ALTER_SUBSCRIPTION("ALTER SUBSCRIPTION", false),
+  ALTER_SYSTEM("ALTER SYSTEM", false),
+  ALTER_TABLE("ALTER TABLE", false),
+  ALTER_TABLESPACE("ALTER TABLESPACE", false),
+  ALTER_TEXT_SEARCH_CONFIGURATION("ALTER TEXT SEARCH CONFIGURATION", false),
+  ALTER_TEXT_SEARCH_DICTIONARY("ALTER TEXT SEARCH DICTIONARY", false),
+  ALTER_TEXT_SEARCH_PARSER("ALTER TEXT SEARCH PARSER", false),
+  ALTER_TEXT_SEARCH_TEMPLATE("ALTER TEXT SEARCH TEMPLATE", false),
+  ALTER_TRANSFORM("ALTER TRANSFORM", false),
+  ALTER_TRIGGER("ALTER TRIGGER", false),
+  ALTER_TYPE("ALTER TYPE", false),
+  ALTER_USER_MAPPING("ALTER USER MAPPING", false),
+  ALTER_VIEW("ALTER VIEW", false),
+  ANALYZE("ANALYZE", false),
+  BEGIN("BEGIN", false),
+  CALL("CALL", false),
+  CHECKPOINT("CHECKPOINT", false),
+  CLOSE("CLOSE", false),
+  CLOSE_CURSOR("CLOSE CURSOR", false),
+  CLOSE_CURSOR_ALL("CLOSE CURSOR ALL", false),
+  CLUSTER("CLUSTER", false),
+  COMMENT("COMMENT", false),
+  COMMIT("COMMIT", false),
+  COMMIT_PREPARED("COMMIT PREPARED", false),
+  COPY_FROM("COPY FROM", false),
+  CREATE_ACCESS_METHOD("CREATE ACCESS METHOD", false),
+  CREATE_AGGREGATE("CREATE AGGREGATE", false),
+  CREATE_CAST("CREATE CAST", false),
+  CREATE_COLLATION("CREATE COLLATION", false),
+  CREATE_CONSTRAINT("CREATE CONSTRAINT", false),
+  CREATE_CONVERSION("CREATE CONVERSION", false),
+  CREATE_DATABASE("CREATE DATABASE", false),
+  CREATE_DOMAIN("CREATE DOMAIN", false),
+  CREATE_EVENT_TRIGGER("CREATE EVENT TRIGGER", false),
+  CREATE_EXTENSION("CREATE EXTENSION", false),
+  CREATE_FOREIGN_DATA_WRAPPER("CREATE FOREIGN DATA WRAPPER", false),
+  CREATE_FOREIGN_TABLE("CREATE FOREIGN TABLE", false),
+  CREATE_FUNCTION("CREATE FUNCTION", false),
+  CREATE_INDEX("CREATE INDEX", false),
+  CREATE_LANGUAGE("CREATE LANGUAGE", false),
+  CREATE_MATERIALIZED_VIEW("CREATE MATERIALIZED VIEW", false),
+  CREATE_OPERATOR("CREATE OPERATOR", false),
+  CREATE_OPERATOR_CLASS("CREATE OPERATOR CLASS", false),
+  CREATE_OPERATOR_FAMILY("CREATE OPERATOR FAMILY", false),
+  CREATE_POLICY("CREATE POLICY", false),
+  CREATE_PROCEDURE("CREATE PROCEDURE", false),
+  CREATE_PUBLICATION("CREATE PUBLICATION", false),
+  CREATE_ROLE("CREATE ROLE", false),
+  CREATE_ROUTINE("CREATE ROUTINE", false),
+  CREATE_RULE("CREATE RULE", false),
+  CREATE_SCHEMA("CREATE SCHEMA", false),
+  CREATE_SEQUENCE("CREATE SEQUENCE", false),
+  CREATE_SERVER("CREATE SERVER", false),
+  CREATE_STATISTICS("CREATE STATISTICS", false),
+  CREATE_SUBSCRIPTION("CREATE SUBSCRIPTION", false),
+  CREATE_TABLE("CREATE TABLE", false),
+  CREATE_TABLE_AS("CREATE TABLE AS", false),
+  CREATE_TABLESPACE("CREATE TABLESPACE", false),
+  CREATE_TEXT_SEARCH_CONFIGURATION("CREATE TEXT SEARCH CONFIGURATION", false),
+  CREATE_TEXT_SEARCH_DICTIONARY("CREATE TEXT SEARCH DICTIONARY", false),
+  CREATE_TEXT_SEARCH_PARSER("CREATE TEXT SEARCH PARSER", false),
+  CREATE_TEXT_SEARCH_TEMPLATE("CREATE TEXT SEARCH TEMPLATE", false),
+  CREATE_TRANSFORM("CREATE TRANSFORM", false),
+  CREATE_TRIGGER("CREATE TRIGGER", false),
+  CREATE_TYPE("CREATE TYPE", false),
+  CREATE_USER_MAPPING("CREATE USER MAPPING", false),
+  CREATE_VIEW("CREATE VIEW", false),
+  DEALLOCATE("DEALLOCATE", false),
+  DEALLOCATE_ALL("DEALLOCATE ALL", false),
+  DECLARE_CURSOR("DECLARE CURSOR", false),
+  DISCARD("DISCARD", false),
+  DISCARD_ALL("DISCARD ALL", false),
+  DISCARD_PLANS("DISCARD PLANS", false),
+  DISCARD_SEQUENCES("DISCARD SEQUENCES", false),
+  DISCARD_TEMP("DISCARD TEMP", false),
+  DO("DO", false),
+  DROP_ACCESS_METHOD("DROP ACCESS METHOD", false),
+  DROP_AGGREGATE("DROP AGGREGATE", false),
+  DROP_CAST("DROP CAST", false),
+  DROP_COLLATION("DROP COLLATION", false),
+  DROP_CONSTRAINT("DROP CONSTRAINT", false),
+  DROP_CONVERSION("DROP CONVERSION", false),
+  DROP_DATABASE("DROP DATABASE", false),
+  DROP_DOMAIN("DROP DOMAIN", false),
+  DROP_EVENT_TRIGGER("DROP EVENT TRIGGER", false),
+  DROP_EXTENSION("DROP EXTENSION", false),
+  DROP_FOREIGN_DATA_WRAPPER("DROP FOREIGN DATA WRAPPER", false),
+  DROP_FOREIGN_TABLE("DROP FOREIGN TABLE", false),
+  DROP_FUNCTION("DROP FUNCTION", false),
+  DROP_INDEX("DROP INDEX", false),
+  DROP_LANGUAGE("DROP LANGUAGE", false),
+  DROP_MATERIALIZED_VIEW("DROP MATERIALIZED VIEW", false),
+  DROP_OPERATOR("DROP OPERATOR", false),
+  DROP_OPERATOR_CLASS("DROP OPERATOR CLASS", false),
+  DROP_OPERATOR_FAMILY("DROP OPERATOR FAMILY", false),
+  DROP_OWNED("DROP OWNED", false),
+  DROP_POLICY("DROP POLICY", false),
+  DROP_PROCEDURE("DROP PROCEDURE", false),
+  DROP_PUBLICATION("DROP PUBLICATION", false),
+  DROP_REPLICATION_SLOT("DROP REPLICATION SLOT", false),
+  DROP_ROLE("DROP ROLE", false),
+  DROP_ROUTINE("DROP ROUTINE", false),
+  DROP_RULE("DROP RULE", false),
+  DROP_SCHEMA("DROP SCHEMA", false),
+  DROP_SEQUENCE("DROP SEQUENCE", false),
+  DROP_SERVER("DROP SERVER", false),
+  DROP_STATISTICS("DROP STATISTICS", false),
+  DROP_SUBSCRIPTION("DROP SUBSCRIPTION", false),
+  DROP_TABLE("DROP TABLE", false),
+  DROP_TABLESPACE("DROP TABLESPACE", false),
+  DROP_TEXT_SEARCH_CONFIGURATION("DROP TEXT SEARCH CONFIGURATION", false),
+  DROP_TEXT_SEARCH_DICTIONARY("DROP TEXT SEARCH DICTIONARY", false),
+  DROP_TEXT_SEARCH_PARSER("DROP TEXT SEARCH PARSER", false),
+  DROP_TEXT_SEARCH_TEMPLATE("DROP TEXT SEARCH TEMPLATE", false),
+  DROP_TRANSFORM("DROP TRANSFORM", false),
+  DROP_TRIGGER("DROP TRIGGER", false),
+  DROP_TYPE("DROP TYPE", false),
+  DROP_USER_MAPPING("DROP USER MAPPING", false),
+  DROP_VIEW("DROP VIEW", false),
+  EXECUTE("EXECUTE", false),
+  EXPLAIN("EXPLAIN", false),
+  GRANT("GRANT", false),
+  GRANT_ROLE("GRANT ROLE", false),
+  IMPORT_FOREIGN_SCHEMA("IMPORT FOREIGN SCHEMA", false),
+  LISTEN("LISTEN", false),
+  LOAD("LOAD", false),
+  LOCK_TABLE("LOCK TABLE", false),
+  NOTIFY("NOTIFY", false),
+  PREPARE("PREPARE", false),
+  PREPARE_TRANSACTION("PREPARE TRANSACTION", false),
+  REASSIGN_OWNED("REASSIGN OWNED", false),
+  REFRESH_MATERIALIZED_VIEW("REFRESH MATERIALIZED VIEW", false),
+  REINDEX("REINDEX", false),
+  RELEASE("RELEASE", false),
+  RESET("RESET", false),
+  REVOKE("REVOKE", false),
+  REVOKE_ROLE("REVOKE ROLE", false),
+  ROLLBACK("ROLLBACK", false),
+  ROLLBACK_PREPARED("ROLLBACK PREPARED", false),
+  SAVEPOINT("SAVEPOINT", false),
+  SECURITY_LABEL("SECURITY LABEL", false),
+  SELECT_FOR_KEY_SHARE("SELECT FOR KEY SHARE", false),
+  SELECT_FOR_NO_KEY_UPDATE("SELECT FOR NO KEY UPDATE", false),
+  SELECT_FOR_SHARE("SELECT FOR SHARE", false),
+  SELECT_FOR_UPDATE("SELECT FOR UPDATE", false),
+  SELECT_INTO("SELECT INTO", false),
+  SET("SET", false),
+  SET_CONSTRAINTS("SET CONSTRAINTS", false),
+  SHOW("SHOW", false),
+  START_TRANSACTION("START TRANSACTION", false),
+  TRUNCATE_TABLE("TRUNCATE TABLE", false),
+  UNLISTEN("UNLISTEN", false),
+  VACUUM("VACUUM", false),
+  /**
+   * The tag used by Postgres when the command is not known.
+   */
+  UNKNOWN("???", false);
+
+  private static final CommandType[] TABLE;
+  private static final int TABLE_MASK;
+
+  static {
+    CommandType[] values = values();
+    int tableSize = Integer.highestOneBit(values.length * 4);
+    TABLE = new CommandType[tableSize];
+    TABLE_MASK = tableSize - 1;
+    for (CommandType value : values) {
+      int slot = hash(value.tagBytes, 0, value.tagBytes.length) & TABLE_MASK;
+      while (TABLE[slot] != null) {
+        slot = (slot + 1) & TABLE_MASK;
+      }
+      TABLE[slot] = value;
+    }
+  }
+
+  private final String tag;
+  private final boolean rowCount;
+  private final byte[] tagBytes;
+  private final byte[] prefix;
+
+  CommandType(String tag, boolean rowCount) {
+    this.tag = tag;
+    this.rowCount = rowCount;
+    this.tagBytes = tag.getBytes(StandardCharsets.US_ASCII);
+    String prefixStr;
+    if (!rowCount) {
+      prefixStr = tag;
+    } else if (tag.equals("INSERT")) {
+      prefixStr = "INSERT 0 "; // the oid, which is always 0 since Postgres 12
+    } else {
+      prefixStr = tag + ' ';
+    }
+    this.prefix = prefixStr.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * The tag as sent by Postgres, like {@code CREATE TABLE}.
+   */
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * Whether the tag is followed by the number of affected rows.
+   */
+  public boolean hasRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * The ASCII bytes that precede the number of affected rows (or the whole tag if {@link #hasRowCount()} is false).
+   *
+   * The returned array is shared and must not be modified.
+   */
+  byte[] getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * Returns the type whose tag is exactly equal to the given bytes or null if there is none.
+   *
+   * This method does not allocate.
+   */
+  public static CommandType fromTag(ByteBuf buf, int index, int length) {
+    int slot = hash(buf, index, length) & TABLE_MASK;
+    CommandType candidate;
+    while ((candidate = TABLE[slot]) != null) {
+      if (candidate.tagEquals(buf, index, length)) {
+        return candidate;
+      }
+      slot = (slot + 1) & TABLE_MASK;
+    }
+    return null;
+  }
+
+  private boolean tagEquals(ByteBuf buf, int index, int length) {
+    if (tagBytes.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (tagBytes[i] != buf.getByte(index + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(byte[] bytes, int index, int length) {
+    int hash = 0;
+    for (int i = index; i < index + length; i++) {
+      hash = hash * 31 + bytes[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int hash(ByteBuf buf, int index, int length) {
+    int hash = 0;
+    for (int i = index; i < index + length; i++) {
+      hash = hash * 31 + buf.getByte(i);
+    }
+    return hash ^ (hash >>> 16);
+  }
 }
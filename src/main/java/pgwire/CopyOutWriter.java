@@ -0,0 +1,424 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ByteProcessor;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Sends the result of a {@code COPY ... TO STDOUT} packing many rows into each CopyData message.
+ *
+ * <p>
+ * Sending each row with {@link BackendMessageSender#onCopyData(ChannelHandlerContext, ByteBuf)} costs a message, a
+ * buffer and (unless write combining is enabled) a flush per row. Instead the writer encodes the rows with the codec
+ * of each column directly into a CopyData message, which is sent and flushed once it reaches the
+ * {@link #setMessageSize(int) message size} or, for rows produced slowly, once the oldest row in it has waited for the
+ * {@link #setMaxDelay(long, TimeUnit) max delay}. Clients do not depend on the boundaries between CopyData messages,
+ * so a row may be split between two messages:
+ *
+ * <pre>
+ *   CopyOutWriter writer = new CopyOutWriter(ctx, sender, registry, types, CopyOutWriter.Mode.CSV);
+ *   writer.begin();
+ *   while (rows.hasNext()) {
+ *     writer.writeRow(rows.next());
+ *   }
+ *   writer.end();
+ *   sender.onCommandComplete(ctx, writer.getRowCount(), CommandType.COPY);
+ *   sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+ * </pre>
+ *
+ * The text and CSV modes use the default options of Postgres (tab and comma delimiters, {@code \N} and empty nulls)
+ * and escape or quote the text of each value as needed. The binary mode writes the signature and the header of the
+ * binary COPY format, the field count of each tuple and the trailer.
+ * <p>
+ * Writers belong to a single COPY and must be used from the event loop of the channel. Large exports should check
+ * {@link io.netty.channel.Channel#isWritable()} between rows, so the outbound buffer does not hold the whole result.
+ */
+public class CopyOutWriter implements ChannelFutureListener {
+  private static final int DEFAULT_MESSAGE_SIZE = 64 * 1024;
+  private static final long DEFAULT_MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+  private static final byte[] TEXT_NULL = {'\\', 'N'};
+  /**
+   * The letter that follows the backslash for each byte that has to be escaped in text mode, or 0.
+   */
+  private static final byte[] TEXT_ESCAPES = new byte[256];
+  private static final ByteProcessor TEXT_SAFE = value -> TEXT_ESCAPES[value & 0xFF] == 0;
+  private static final ByteProcessor CSV_SAFE = value -> value != ',' && value != '"' && value != '\n' && value != '\r';
+
+  static {
+    TEXT_ESCAPES['\\'] = '\\';
+    TEXT_ESCAPES['\b'] = 'b';
+    TEXT_ESCAPES['\f'] = 'f';
+    TEXT_ESCAPES['\n'] = 'n';
+    TEXT_ESCAPES['\r'] = 'r';
+    TEXT_ESCAPES['\t'] = 't';
+    TEXT_ESCAPES[0x0B] = 'v';
+  }
+
+  /**
+   * The formats of {@code COPY ... TO STDOUT}.
+   */
+  public enum Mode {
+    TEXT,
+    CSV,
+    BINARY
+  }
+
+  private final ChannelHandlerContext ctx;
+  private final BackendMessageSender sender;
+  private final PgCodec<Object>[] codecs;
+  private final Mode mode;
+  private int messageSize = DEFAULT_MESSAGE_SIZE;
+  private long maxDelayNanos = DEFAULT_MAX_DELAY_NANOS;
+  private List<String> header = Collections.emptyList();
+
+  /**
+   * The CopyData message in progress, whose length is written when it is sent.
+   */
+  private ByteBuf message;
+  /**
+   * Where the text of values with characters to escape or quote is copied to.
+   */
+  private ByteBuf scratch;
+  private ScheduledFuture<?> delayedFlush;
+  private long rows;
+  private boolean begun;
+  private boolean closed;
+
+  /**
+   * @param types the types of the columns, whose codecs are looked up in the registry
+   * @throws IllegalArgumentException if there is no codec for some type
+   */
+  public CopyOutWriter(ChannelHandlerContext ctx, BackendMessageSender sender, CodecRegistry registry,
+      List<PgType> types, Mode mode) {
+    this.ctx = ctx;
+    this.sender = sender;
+    this.mode = mode;
+    this.codecs = CodecRegistry.newCodecArray(types.size());
+    for (int i = 0; i < codecs.length; i++) {
+      codecs[i] = registry.get(types.get(i));
+    }
+  }
+
+  /**
+   * The size in bytes at which CopyData messages are sent, 64 KiB by default.
+   */
+  public void setMessageSize(int messageSize) {
+    if (messageSize <= 0) {
+      throw new IllegalArgumentException("Message size must be positive, but " + messageSize + " was found");
+    }
+    this.messageSize = messageSize;
+  }
+
+  /**
+   * The max time rows wait in a CopyData message that has not reached the message size, 100 milliseconds by default.
+   * 0 disables the timer, so messages are only sent when they are full, on {@link #flush()} and on {@link #end()}.
+   */
+  public void setMaxDelay(long delay, TimeUnit unit) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("Max delay cannot be negative, but " + delay + " was found");
+    }
+    this.maxDelayNanos = unit.toNanos(delay);
+  }
+
+  /**
+   * Writes a header line with the given column names before the rows, like the {@code HEADER} option.
+   *
+   * @throws IllegalArgumentException in binary mode, which has no header line
+   */
+  public void setHeader(List<String> names) {
+    if (mode == Mode.BINARY) {
+      throw new IllegalArgumentException("The binary format does not have a header line");
+    }
+    this.header = names;
+  }
+
+  /**
+   * Sends CopyOutResponse and, depending on the mode, the header of the binary format or the header line.
+   */
+  public void begin() {
+    if (begun) {
+      throw new IllegalStateException("The copy has already begun");
+    }
+    begun = true;
+    ctx.channel().closeFuture().addListener(this);
+    Format format = mode == Mode.BINARY ? Format.BINARY : Format.TEXT;
+    sender.onCopyOutResponse(ctx, format, Collections.nCopies(codecs.length, format));
+    ByteBuf out = message();
+    if (mode == Mode.BINARY) {
+      out.writeBytes(BINARY_SIGNATURE);
+      out.writeInt(0); // flags
+      out.writeInt(0); // length of the header extension
+    } else if (!header.isEmpty()) {
+      for (int i = 0; i < header.size(); i++) {
+        if (i > 0) {
+          out.writeByte(mode == Mode.CSV ? ',' : '\t');
+        }
+        int start = out.writerIndex();
+        ByteBufUtil.writeUtf8(out, header.get(i));
+        escape(out, start);
+      }
+      out.writeByte('\n');
+    }
+  }
+
+  /**
+   * Encodes a row with the codecs of the columns. If some value cannot be encoded, nothing of the row is sent.
+   *
+   * @throws IllegalArgumentException if the number of values is not the number of columns
+   */
+  public void writeRow(Object[] values) {
+    checkColumns(values.length);
+    ByteBuf out = message();
+    int rowStart = out.writerIndex();
+    try {
+      if (mode == Mode.BINARY) {
+        out.writeShort(codecs.length);
+        for (int i = 0; i < codecs.length; i++) {
+          writeBinary(out, i, values[i]);
+        }
+      } else {
+        for (int i = 0; i < codecs.length; i++) {
+          writeText(out, i, values[i]);
+        }
+        out.writeByte('\n');
+      }
+    } catch (RuntimeException ex) {
+      out.writerIndex(rowStart);
+      throw ex;
+    }
+    endRow(out);
+  }
+
+  /**
+   * Like {@link #writeRow(Object[])} with a list of values.
+   */
+  public void writeRow(List<?> values) {
+    checkColumns(values.size());
+    ByteBuf out = message();
+    int rowStart = out.writerIndex();
+    try {
+      if (mode == Mode.BINARY) {
+        out.writeShort(codecs.length);
+        for (int i = 0; i < codecs.length; i++) {
+          writeBinary(out, i, values.get(i));
+        }
+      } else {
+        for (int i = 0; i < codecs.length; i++) {
+          writeText(out, i, values.get(i));
+        }
+        out.writeByte('\n');
+      }
+    } catch (RuntimeException ex) {
+      out.writerIndex(rowStart);
+      throw ex;
+    }
+    endRow(out);
+  }
+
+  /**
+   * Sends and flushes the rows written so far, even if the message has not reached the message size.
+   */
+  public void flush() {
+    if (message != null) {
+      sendMessage(true);
+    }
+  }
+
+  /**
+   * Sends the rows written so far, the trailer of the binary format and CopyDone. The CommandComplete message has to
+   * be sent afterwards.
+   */
+  public void end() {
+    if (!begun || closed) {
+      throw new IllegalStateException("The copy is not in progress");
+    }
+    if (mode == Mode.BINARY) {
+      message().writeShort(-1);
+    }
+    sendMessage(false);
+    sender.onCopyDone(ctx);
+    close();
+  }
+
+  /**
+   * Discards the rows that have not been sent yet, which has to be called when the copy fails before the
+   * ErrorResponse is sent.
+   */
+  public void cancel() {
+    close();
+  }
+
+  /**
+   * The number of rows written.
+   */
+  public long getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Called when the channel is closed, which releases the rows that have not been sent.
+   */
+  @Override
+  public void operationComplete(ChannelFuture future) {
+    close();
+  }
+
+  private void writeBinary(ByteBuf out, int column, Object value) {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    int lengthIndex = out.writerIndex();
+    out.writeInt(0);
+    codecs[column].encodeBinary(out, value);
+    out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+  }
+
+  private void writeText(ByteBuf out, int column, Object value) {
+    if (column > 0) {
+      out.writeByte(mode == Mode.CSV ? ',' : '\t');
+    }
+    if (value == null) {
+      if (mode == Mode.TEXT) {
+        out.writeBytes(TEXT_NULL);
+      }
+      return;
+    }
+    int start = out.writerIndex();
+    codecs[column].encodeText(out, value);
+    escape(out, start);
+  }
+
+  /**
+   * Escapes (in text mode) or quotes (in CSV mode) the text written since the given index, if needed.
+   */
+  private void escape(ByteBuf out, int start) {
+    int length = out.writerIndex() - start;
+    if (mode == Mode.TEXT) {
+      int index = out.forEachByte(start, length, TEXT_SAFE);
+      if (index < 0) {
+        return;
+      }
+      ByteBuf text = copy(out, index);
+      while (text.isReadable()) {
+        byte value = text.readByte();
+        byte escape = TEXT_ESCAPES[value & 0xFF];
+        if (escape == 0) {
+          out.writeByte(value);
+        } else {
+          out.writeByte('\\').writeByte(escape);
+        }
+      }
+    } else {
+      // empty strings are quoted to tell them from nulls, and so is \. to tell it from the end of data marker
+      boolean quote = length == 0 || out.forEachByte(start, length, CSV_SAFE) >= 0
+          || length == 2 && out.getByte(start) == '\\' && out.getByte(start + 1) == '.';
+      if (!quote) {
+        return;
+      }
+      ByteBuf text = copy(out, start);
+      out.writeByte('"');
+      while (text.isReadable()) {
+        byte value = text.readByte();
+        if (value == '"') {
+          out.writeByte('"');
+        }
+        out.writeByte(value);
+      }
+      out.writeByte('"');
+    }
+  }
+
+  /**
+   * Moves the bytes written since the given index to the scratch buffer.
+   */
+  private ByteBuf copy(ByteBuf out, int start) {
+    if (scratch == null) {
+      scratch = ctx.alloc().buffer();
+    }
+    scratch.clear();
+    scratch.writeBytes(out, start, out.writerIndex() - start);
+    out.writerIndex(start);
+    return scratch;
+  }
+
+  private void endRow(ByteBuf out) {
+    rows++;
+    if (out.readableBytes() >= messageSize) {
+      sendMessage(true);
+    }
+  }
+
+  /**
+   * Returns the CopyData message in progress, starting one if needed.
+   */
+  private ByteBuf message() {
+    if (closed) {
+      throw new IllegalStateException("The copy is not in progress");
+    }
+    if (!begun) {
+      throw new IllegalStateException("The copy has not begun");
+    }
+    if (message == null) {
+      // rows rarely end exactly at the message size, so leave room for the last one
+      message = ctx.alloc().buffer(messageSize + messageSize / 8);
+      message.writeByte(MessageConstants.COPY_DATA);
+      message.writeInt(0); // length, written when it is sent
+      if (maxDelayNanos > 0) {
+        delayedFlush = ctx.executor().schedule(this::flush, maxDelayNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+    return message;
+  }
+
+  private void sendMessage(boolean flush) {
+    ByteBuf out = message;
+    message = null;
+    cancelDelayedFlush();
+    if (out.readableBytes() == 1 + 4) {
+      out.release();
+      return;
+    }
+    out.setInt(1, out.readableBytes() - 1);
+    sender.writeThrough(ctx, out, flush);
+  }
+
+  private void cancelDelayedFlush() {
+    if (delayedFlush != null) {
+      delayedFlush.cancel(false);
+      delayedFlush = null;
+    }
+  }
+
+  private void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    cancelDelayedFlush();
+    ctx.channel().closeFuture().removeListener(this);
+    if (message != null) {
+      message.release();
+      message = null;
+    }
+    if (scratch != null) {
+      scratch.release();
+      scratch = null;
+    }
+  }
+
+  private void checkColumns(int values) {
+    if (values != codecs.length) {
+      throw new IllegalArgumentException("Expected " + codecs.length + " values, but " + values + " were found");
+    }
+  }
+}
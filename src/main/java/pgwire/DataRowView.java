@@ -0,0 +1,169 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+
+
+/**
+ * A reusable view over the content of a DataRow message.
+ *
+ * <p>
+ * Contrary to {@link BackendMessageListener#onDataRow(Object, java.util.List)}, this class does not create any object
+ * per row or cell. The index and length of each cell are recorded in a primitive array that is reused between rows.
+ * Each {@link BackendPostgresHandler} reuses the same instance for all the rows of the connection, so the instance and
+ * the buffer it wraps are only valid during the listener call.
+ * <p>
+ * Typed accessors like {@link #getInt(int)} assume the cell is encoded in {@link Format#BINARY}.
+ */
+public class DataRowView {
+  private ByteBuf buf;
+  private int contentIndex;
+  private int contentLength;
+  private int size;
+  /**
+   * Two entries per cell: the index of the first byte of the cell and its length, where -1 means null.
+   */
+  private int[] cells = new int[32];
+
+  /**
+   * Makes this instance a view of the given DataRow message.
+   *
+   * @param buf the content of the message, starting just after the length field. It is fully consumed.
+   * @return this instance
+   */
+  public DataRowView wrap(ByteBuf buf) {
+    this.buf = buf;
+    contentIndex = buf.readerIndex();
+    contentLength = buf.readableBytes();
+
+    int index = contentIndex;
+    size = buf.getUnsignedShort(index);
+    index += 2;
+    if (cells.length < size * 2) {
+      cells = new int[Math.max(size * 2, cells.length * 2)];
+    }
+    for (int i = 0; i < size; i++) {
+      int length = buf.getInt(index);
+      index += 4;
+      cells[i * 2] = index;
+      cells[i * 2 + 1] = length;
+      if (length > 0) {
+        index += length;
+      }
+    }
+    buf.readerIndex(index);
+    return this;
+  }
+
+  /**
+   * The buffer that contains the message, which can be used in conjunction with the index methods.
+   */
+  public ByteBuf getBuffer() {
+    return buf;
+  }
+
+  /**
+   * The index in {@link #getBuffer()} of the message content, which starts with the number of cells.
+   */
+  public int getContentIndex() {
+    return contentIndex;
+  }
+
+  /**
+   * The length of the message content, which does not include the id nor the length field itself.
+   */
+  public int getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * The number of cells in the row.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isNull(int cell) {
+    return getLength(cell) < 0;
+  }
+
+  /**
+   * The length of the cell or -1 if the value is null.
+   */
+  public int getLength(int cell) {
+    checkCell(cell);
+    return cells[cell * 2 + 1];
+  }
+
+  /**
+   * The index in {@link #getBuffer()} of the first byte of the cell.
+   */
+  public int getIndex(int cell) {
+    checkCell(cell);
+    return cells[cell * 2];
+  }
+
+  public short getShort(int cell) {
+    return buf.getShort(fixedLengthIndex(cell, 2));
+  }
+
+  public int getInt(int cell) {
+    return buf.getInt(fixedLengthIndex(cell, 4));
+  }
+
+  public long getLong(int cell) {
+    return buf.getLong(fixedLengthIndex(cell, 8));
+  }
+
+  public float getFloat(int cell) {
+    return buf.getFloat(fixedLengthIndex(cell, 4));
+  }
+
+  public double getDouble(int cell) {
+    return buf.getDouble(fixedLengthIndex(cell, 8));
+  }
+
+  public boolean getBoolean(int cell) {
+    return buf.getByte(fixedLengthIndex(cell, 1)) != 0;
+  }
+
+  /**
+   * Copies the cell into the given array.
+   *
+   * @return the number of copied bytes or -1 if the value is null.
+   */
+  public int getBytes(int cell, byte[] dst, int dstIndex) {
+    int length = getLength(cell);
+    if (length > 0) {
+      buf.getBytes(cells[cell * 2], dst, dstIndex, length);
+    }
+    return length;
+  }
+
+  /**
+   * Returns a slice with the cell content or null if the value is null.
+   *
+   * The slice shares the content with the message, but it is an object allocation.
+   */
+  public ByteBuf cellSlice(int cell) {
+    int length = getLength(cell);
+    if (length < 0) {
+      return null;
+    }
+    return buf.slice(cells[cell * 2], length);
+  }
+
+  private int fixedLengthIndex(int cell, int expectedLength) {
+    int length = getLength(cell);
+    if (length != expectedLength) {
+      throw new IllegalArgumentException("Cell " + cell + " has " + length + " bytes, but " + expectedLength
+          + " were expected");
+    }
+    return cells[cell * 2];
+  }
+
+  private void checkCell(int cell) {
+    if (cell < 0 || cell >= size) {
+      throw new IndexOutOfBoundsException("Cell " + cell + " is out of bounds for a row of " + size + " cells");
+    }
+  }
+}
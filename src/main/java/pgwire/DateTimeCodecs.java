@@ -0,0 +1,975 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+
+/**
+ * The codecs of the date and time types.
+ *
+ * <p>
+ * The Java types used by each codec are:
+ * <ul>
+ *   <li>{@code date}: {@link LocalDate}</li>
+ *   <li>{@code time}: {@link LocalTime}</li>
+ *   <li>{@code timestamp}: {@link LocalDateTime}</li>
+ *   <li>{@code timestamptz}: {@link OffsetDateTime}, decoded with the offset of the text or UTC</li>
+ *   <li>{@code interval}: {@link PgInterval}</li>
+ * </ul>
+ * The binary formats count days or microseconds since 2000-01-01, which is the Postgres epoch. The text formats are
+ * the ISO ones, like {@code 2000-01-31 13:45:00.5+01}. The {@code infinity} and {@code -infinity} special values are
+ * mapped to the MAX and MIN constants of the Java types.
+ */
+public class DateTimeCodecs {
+  /**
+   * The number of days between the Unix epoch and the Postgres epoch (2000-01-01).
+   */
+  static final long POSTGRES_EPOCH_DAYS = 10957;
+  static final long POSTGRES_EPOCH_SECONDS = POSTGRES_EPOCH_DAYS * 86400;
+  static final long MICROS_PER_SECOND = 1_000_000L;
+  static final long MICROS_PER_DAY = 86400 * MICROS_PER_SECOND;
+  /**
+   * Returned when parsing an offset that is not present.
+   */
+  static final int NO_OFFSET = Integer.MIN_VALUE;
+
+  public static final PgCodec<LocalDate> DATE = new DateCodec();
+  public static final PgCodec<LocalTime> TIME = new TimeCodec();
+  public static final PgCodec<LocalDateTime> TIMESTAMP = new TimestampCodec();
+  public static final PgCodec<OffsetDateTime> TIMESTAMPTZ = new TimestampTzCodec();
+  public static final PgCodec<PgInterval> INTERVAL = new IntervalCodec();
+
+  public static class DateCodec implements PgCodec<LocalDate> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.DATE;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, LocalDate value) {
+      if (!writeInfinity(out, value.equals(LocalDate.MAX), value.equals(LocalDate.MIN))) {
+        writeDate(out, value);
+        writeEra(out, value);
+      }
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, LocalDate value) {
+      if (value.equals(LocalDate.MAX)) {
+        out.writeInt(Integer.MAX_VALUE);
+      } else if (value.equals(LocalDate.MIN)) {
+        out.writeInt(Integer.MIN_VALUE);
+      } else {
+        out.writeInt(Math.toIntExact(value.toEpochDay() - POSTGRES_EPOCH_DAYS));
+      }
+    }
+
+    @Override
+    public LocalDate decodeText(ByteBuf in, int index, int length) {
+      TextReader reader = new TextReader(in, index, length, "date");
+      int infinity = reader.readInfinity();
+      if (infinity != 0) {
+        return infinity > 0 ? LocalDate.MAX : LocalDate.MIN;
+      }
+      long date = reader.readDate();
+      LocalDate value = reader.toLocalDate(reader.readEra(civilYear(date)), date);
+      reader.expectEnd();
+      return value;
+    }
+
+    @Override
+    public LocalDate decodeBinary(ByteBuf in, int index, int length) {
+      StandardCodecs.checkLength(getType(), length, 4);
+      int days = in.getInt(index);
+      if (days == Integer.MAX_VALUE) {
+        return LocalDate.MAX;
+      } else if (days == Integer.MIN_VALUE) {
+        return LocalDate.MIN;
+      }
+      return LocalDate.ofEpochDay(days + POSTGRES_EPOCH_DAYS);
+    }
+  }
+
+  public static class TimeCodec implements PgCodec<LocalTime> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.TIME;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, LocalTime value) {
+      writeTime(out, toMicrosOfDay(value));
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, LocalTime value) {
+      out.writeLong(toMicrosOfDay(value));
+    }
+
+    @Override
+    public LocalTime decodeText(ByteBuf in, int index, int length) {
+      TextReader reader = new TextReader(in, index, length, "time");
+      long micros = reader.readTime();
+      reader.expectEnd();
+      return LocalTime.ofNanoOfDay(micros * 1000);
+    }
+
+    @Override
+    public LocalTime decodeBinary(ByteBuf in, int index, int length) {
+      StandardCodecs.checkLength(getType(), length, 8);
+      long micros = in.getLong(index);
+      if (micros < 0 || micros >= MICROS_PER_DAY) {
+        throw new IllegalArgumentException("Binary time of " + micros + " microseconds is out of range");
+      }
+      return LocalTime.ofNanoOfDay(micros * 1000);
+    }
+
+    /**
+     * The microseconds of the time rounded half up, except the times from 23:59:59.9999995, which are not rounded to
+     * 24:00:00 given it cannot be decoded as a LocalTime.
+     */
+    private static long toMicrosOfDay(LocalTime value) {
+      return Math.min(toMicros(value.toNanoOfDay()), MICROS_PER_DAY - 1);
+    }
+  }
+
+  public static class TimestampCodec implements PgCodec<LocalDateTime> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.TIMESTAMP;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, LocalDateTime value) {
+      if (!writeInfinity(out, value.equals(LocalDateTime.MAX), value.equals(LocalDateTime.MIN))) {
+        value = roundToMicros(value);
+        writeDate(out, value.toLocalDate());
+        out.writeByte(' ');
+        writeTime(out, value.toLocalTime().toNanoOfDay() / 1000);
+        writeEra(out, value.toLocalDate());
+      }
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, LocalDateTime value) {
+      if (value.equals(LocalDateTime.MAX)) {
+        out.writeLong(Long.MAX_VALUE);
+      } else if (value.equals(LocalDateTime.MIN)) {
+        out.writeLong(Long.MIN_VALUE);
+      } else {
+        out.writeLong(toPostgresMicros(value.toEpochSecond(ZoneOffset.UTC), value.getNano()));
+      }
+    }
+
+    @Override
+    public LocalDateTime decodeText(ByteBuf in, int index, int length) {
+      TextReader reader = new TextReader(in, index, length, "timestamp");
+      int infinity = reader.readInfinity();
+      if (infinity != 0) {
+        return infinity > 0 ? LocalDateTime.MAX : LocalDateTime.MIN;
+      }
+      long date = reader.readDate();
+      reader.readDateTimeSeparator();
+      long micros = reader.readTime();
+      LocalDate day = reader.toLocalDate(reader.readEra(civilYear(date)), date);
+      reader.expectEnd();
+      return LocalDateTime.of(day, LocalTime.ofNanoOfDay(micros * 1000));
+    }
+
+    @Override
+    public LocalDateTime decodeBinary(ByteBuf in, int index, int length) {
+      StandardCodecs.checkLength(getType(), length, 8);
+      long micros = in.getLong(index);
+      if (micros == Long.MAX_VALUE) {
+        return LocalDateTime.MAX;
+      } else if (micros == Long.MIN_VALUE) {
+        return LocalDateTime.MIN;
+      }
+      return fromPostgresMicros(micros);
+    }
+  }
+
+  public static class TimestampTzCodec implements PgCodec<OffsetDateTime> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.TIMESTAMPTZ;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, OffsetDateTime value) {
+      if (!writeInfinity(out, value.equals(OffsetDateTime.MAX), value.equals(OffsetDateTime.MIN))) {
+        value = roundToMicros(value);
+        writeDate(out, value.toLocalDate());
+        out.writeByte(' ');
+        writeTime(out, value.toLocalTime().toNanoOfDay() / 1000);
+        writeOffset(out, value.getOffset().getTotalSeconds());
+        writeEra(out, value.toLocalDate());
+      }
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, OffsetDateTime value) {
+      if (value.equals(OffsetDateTime.MAX)) {
+        out.writeLong(Long.MAX_VALUE);
+      } else if (value.equals(OffsetDateTime.MIN)) {
+        out.writeLong(Long.MIN_VALUE);
+      } else {
+        out.writeLong(toPostgresMicros(value.toEpochSecond(), value.getNano()));
+      }
+    }
+
+    @Override
+    public OffsetDateTime decodeText(ByteBuf in, int index, int length) {
+      TextReader reader = new TextReader(in, index, length, "timestamp with time zone");
+      int infinity = reader.readInfinity();
+      if (infinity != 0) {
+        return infinity > 0 ? OffsetDateTime.MAX : OffsetDateTime.MIN;
+      }
+      long date = reader.readDate();
+      reader.readDateTimeSeparator();
+      long micros = reader.readTime();
+      int offsetSeconds = reader.readOffset();
+      if (offsetSeconds == NO_OFFSET) {
+        offsetSeconds = 0;
+      }
+      LocalDate day = reader.toLocalDate(reader.readEra(civilYear(date)), date);
+      reader.expectEnd();
+      return OffsetDateTime.of(day, LocalTime.ofNanoOfDay(micros * 1000), ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    @Override
+    public OffsetDateTime decodeBinary(ByteBuf in, int index, int length) {
+      StandardCodecs.checkLength(getType(), length, 8);
+      long micros = in.getLong(index);
+      if (micros == Long.MAX_VALUE) {
+        return OffsetDateTime.MAX;
+      } else if (micros == Long.MIN_VALUE) {
+        return OffsetDateTime.MIN;
+      }
+      return fromPostgresMicros(micros).atOffset(ZoneOffset.UTC);
+    }
+  }
+
+  /**
+   * Intervals, whose text format is the {@code postgres} interval style, like {@code 1 year 2 mons 3 days 04:05:06}.
+   */
+  public static class IntervalCodec implements PgCodec<PgInterval> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.INTERVAL;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, PgInterval value) {
+      int years = value.getMonths() / 12;
+      int months = value.getMonths() % 12;
+      boolean negative = false;
+      boolean empty = true;
+      if (years != 0) {
+        empty = writeIntervalField(out, years, " year", empty);
+        negative = years < 0;
+      }
+      if (months != 0) {
+        empty = writeIntervalField(out, months, " mon", empty);
+        negative |= months < 0;
+      }
+      if (value.getDays() != 0) {
+        empty = writeIntervalField(out, value.getDays(), " day", empty);
+        negative |= value.getDays() < 0;
+      }
+      long micros = value.getMicros();
+      if (micros != 0 || empty) {
+        if (!empty) {
+          out.writeByte(' ');
+        }
+        if (micros < 0) {
+          out.writeByte('-');
+        } else if (negative) {
+          out.writeByte('+');
+        }
+        writeTime(out, Math.abs(micros));
+      }
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, PgInterval value) {
+      out.writeLong(value.getMicros());
+      out.writeInt(value.getDays());
+      out.writeInt(value.getMonths());
+    }
+
+    /**
+     * Accepts the {@code postgres} interval style, with units like {@code years}, {@code mons}, {@code days},
+     * {@code hours}, {@code minutes} or {@code seconds} and an optional {@code [-]hh:mm:ss} time.
+     */
+    @Override
+    public PgInterval decodeText(ByteBuf in, int index, int length) {
+      TextReader reader = new TextReader(in, index, length, "interval");
+      int months = 0;
+      int days = 0;
+      long micros = 0;
+      reader.skipWhitespaces();
+      if (reader.peek() == '@') {
+        reader.next();
+      }
+      boolean ago = false;
+      while (reader.skipWhitespaces()) {
+        if (reader.peekWord("ago")) {
+          reader.readWord();
+          ago = true;
+          continue;
+        }
+        boolean negative = reader.readSign();
+        long number = reader.readNumber();
+        if (reader.peek() == ':') {
+          long time = reader.readTimeAfterHours(number);
+          micros = addMicros(reader, micros, negative ? -time : time, 1);
+          continue;
+        }
+        if (negative) {
+          number = -number;
+        }
+        reader.skipWhitespaces();
+        String unit = reader.readWord();
+        switch (unit) {
+          case "y":
+          case "year":
+          case "years":
+            months = addField(reader, months, number, 12);
+            break;
+          case "mon":
+          case "mons":
+          case "month":
+          case "months":
+            months = addField(reader, months, number, 1);
+            break;
+          case "w":
+          case "week":
+          case "weeks":
+            days = addField(reader, days, number, 7);
+            break;
+          case "d":
+          case "day":
+          case "days":
+            days = addField(reader, days, number, 1);
+            break;
+          case "h":
+          case "hour":
+          case "hours":
+            micros = addMicros(reader, micros, number, 3600 * MICROS_PER_SECOND);
+            break;
+          case "m":
+          case "min":
+          case "mins":
+          case "minute":
+          case "minutes":
+            micros = addMicros(reader, micros, number, 60 * MICROS_PER_SECOND);
+            break;
+          case "s":
+          case "sec":
+          case "secs":
+          case "second":
+          case "seconds":
+            micros = addMicros(reader, micros, number, MICROS_PER_SECOND);
+            break;
+          default:
+            throw reader.invalid();
+        }
+      }
+      if (!ago) {
+        return new PgInterval(months, days, micros);
+      }
+      try {
+        return new PgInterval(Math.negateExact(months), Math.negateExact(days), Math.negateExact(micros));
+      } catch (ArithmeticException ex) {
+        throw reader.invalid();
+      }
+    }
+
+    @Override
+    public PgInterval decodeBinary(ByteBuf in, int index, int length) {
+      StandardCodecs.checkLength(getType(), length, 16);
+      return new PgInterval(in.getInt(index + 12), in.getInt(index + 8), in.getLong(index));
+    }
+
+    /**
+     * Adds {@code number * unit} to a field of an interval.
+     */
+    private static int addField(TextReader reader, int field, long number, int unit) {
+      try {
+        return Math.toIntExact(Math.addExact(field, Math.multiplyExact(number, unit)));
+      } catch (ArithmeticException ex) {
+        throw reader.invalid();
+      }
+    }
+
+    private static long addMicros(TextReader reader, long micros, long number, long unit) {
+      try {
+        return Math.addExact(micros, Math.multiplyExact(number, unit));
+      } catch (ArithmeticException ex) {
+        throw reader.invalid();
+      }
+    }
+
+    /**
+     * @return false, given the text is no longer empty
+     */
+    private static boolean writeIntervalField(ByteBuf out, int value, String unit, boolean empty) {
+      if (!empty) {
+        out.writeByte(' ');
+      }
+      SenderUtils.writeAscii(out, value);
+      out.writeCharSequence(unit, StandardCharsets.US_ASCII);
+      if (value != 1) {
+        out.writeByte('s');
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Parses a date or a timestamp in text format as microseconds since the Postgres epoch, without creating any
+   * {@code java.time} object. The offset, if any, is applied unless it has to be ignored, which is what Postgres does
+   * with timestamps without time zone.
+   *
+   * @return the microseconds or {@link Long#MAX_VALUE} and {@link Long#MIN_VALUE} for infinity and -infinity.
+   */
+  static long parseTimestampMicros(ByteBuf in, int index, int length, boolean ignoreOffset) {
+    return parseTimestampMicros(in, index, length, ignoreOffset, null);
+  }
+
+  /**
+   * Like {@link #parseTimestampMicros(ByteBuf, int, int, boolean)}, but values without offset are local times of the
+   * time zone of the given settings, unless they are null or the offset is ignored.
+   */
+  static long parseTimestampMicros(ByteBuf in, int index, int length, boolean ignoreOffset,
+      DateTimeSettings localZone) {
+    TextReader reader = new TextReader(in, index, length, "timestamp");
+    int infinity = reader.readInfinity();
+    if (infinity != 0) {
+      return infinity > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+    long date = reader.readDate();
+    long micros = 0;
+    int offsetSeconds = NO_OFFSET;
+    int next = reader.peek();
+    if (next == 'T' || next == 't' || next >= 0 && QuerySplitter.isWhitespace((byte) next)) {
+      reader.readDateTimeSeparator();
+      if (reader.peek() >= '0' && reader.peek() <= '9') {
+        micros = reader.readTime();
+        offsetSeconds = reader.readOffset();
+      }
+    }
+    int year = reader.readEra(civilYear(date));
+    int month = civilMonth(date);
+    int day = civilDay(date);
+    reader.expectEnd();
+    if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      throw reader.invalid();
+    }
+    long days = epochDay(year, month, day) - POSTGRES_EPOCH_DAYS;
+    long local = days * MICROS_PER_DAY + micros;
+    if (ignoreOffset) {
+      return local;
+    }
+    if (offsetSeconds == NO_OFFSET) {
+      offsetSeconds = localZone == null ? 0
+          : localZone.getLocalOffsetSeconds(toEpochSecond(local));
+    }
+    return local - offsetSeconds * MICROS_PER_SECOND;
+  }
+
+  /**
+   * The days since 1970-01-01 of the given date of the proleptic Gregorian calendar.
+   */
+  static long epochDay(int year, int month, int day) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * The date of the proleptic Gregorian calendar of the given days since 1970-01-01, packed in a long as
+   * {@code year << 16 | month << 8 | day}, so it can be computed without creating a {@link LocalDate}. The year is
+   * negative before year 1 (0 is 1 BC).
+   */
+  static long civilDate(long epochDay) {
+    long z = epochDay + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long shiftedMonth = (5 * dayOfYear + 2) / 153;
+    long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    return year << 16 | month << 8 | day;
+  }
+
+  static int civilYear(long civilDate) {
+    return (int) (civilDate >> 16);
+  }
+
+  static int civilMonth(long civilDate) {
+    return (int) (civilDate >> 8) & 0xFF;
+  }
+
+  static int civilDay(long civilDate) {
+    return (int) civilDate & 0xFF;
+  }
+
+  /**
+   * The microseconds since 2000-01-01 of the given instant, where the nanoseconds are rounded half up to microseconds
+   * like Postgres rounds fractional seconds, carrying into the seconds if needed.
+   */
+  static long toPostgresMicros(long epochSecond, int nanos) {
+    return (epochSecond - POSTGRES_EPOCH_SECONDS) * MICROS_PER_SECOND + toMicros(nanos);
+  }
+
+  /**
+   * Rounds the given (non-negative) nanoseconds half up to microseconds.
+   */
+  static long toMicros(long nanos) {
+    return (nanos + 500) / 1000;
+  }
+
+  /**
+   * Rounds the nanoseconds of the value half up to microseconds, which may change the date.
+   */
+  static LocalDateTime roundToMicros(LocalDateTime value) {
+    int remainder = value.getNano() % 1000;
+    return remainder == 0 ? value : value.plusNanos(remainder < 500 ? -remainder : 1000 - remainder);
+  }
+
+  static OffsetDateTime roundToMicros(OffsetDateTime value) {
+    int remainder = value.getNano() % 1000;
+    return remainder == 0 ? value : value.plusNanos(remainder < 500 ? -remainder : 1000 - remainder);
+  }
+
+  /**
+   * The seconds since 1970-01-01 of the given microseconds since 2000-01-01.
+   */
+  static long toEpochSecond(long micros) {
+    return Math.floorDiv(micros, MICROS_PER_SECOND) + POSTGRES_EPOCH_SECONDS;
+  }
+
+  static LocalDateTime fromPostgresMicros(long micros) {
+    long days = Math.floorDiv(micros, MICROS_PER_DAY);
+    long microOfDay = Math.floorMod(micros, MICROS_PER_DAY);
+    return LocalDateTime.of(LocalDate.ofEpochDay(days + POSTGRES_EPOCH_DAYS), LocalTime.ofNanoOfDay(microOfDay * 1000));
+  }
+
+  /**
+   * Writes {@code infinity} or {@code -infinity} if the value is one of them.
+   *
+   * @return whether something was written
+   */
+  static boolean writeInfinity(ByteBuf out, boolean positive, boolean negative) {
+    if (positive) {
+      out.writeCharSequence("infinity", StandardCharsets.US_ASCII);
+    } else if (negative) {
+      out.writeCharSequence("-infinity", StandardCharsets.US_ASCII);
+    }
+    return positive || negative;
+  }
+
+  /**
+   * Writes the date as {@code yyyy-mm-dd}, using the year of the era, so BC years have to be marked with
+   * {@link #writeEra(ByteBuf, LocalDate)}.
+   */
+  static void writeDate(ByteBuf out, LocalDate date) {
+    writeDate(out, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+  }
+
+  static void writeDate(ByteBuf out, int year, int month, int day) {
+    writeYear(out, year);
+    out.writeByte('-');
+    writePadded(out, month, 2);
+    out.writeByte('-');
+    writePadded(out, day, 2);
+  }
+
+  /**
+   * Writes the year of the era with at least 4 digits.
+   */
+  static void writeYear(ByteBuf out, int year) {
+    writePadded(out, year > 0 ? year : 1 - year, 4);
+  }
+
+  static void writeEra(ByteBuf out, LocalDate date) {
+    writeEra(out, date.getYear());
+  }
+
+  static void writeEra(ByteBuf out, int year) {
+    if (year <= 0) {
+      out.writeCharSequence(" BC", StandardCharsets.US_ASCII);
+    }
+  }
+
+  /**
+   * Writes the time as {@code hh:mm:ss} followed by the fraction of second without trailing zeros, if any. Hours are
+   * not limited to 24, so this is also used for the time of intervals.
+   */
+  static void writeTime(ByteBuf out, long micros) {
+    long seconds = micros / MICROS_PER_SECOND;
+    int fraction = (int) (micros % MICROS_PER_SECOND);
+    long hours = seconds / 3600;
+    if (hours < 10) {
+      out.writeByte('0');
+    }
+    SenderUtils.writeAscii(out, hours);
+    out.writeByte(':');
+    writePadded(out, (int) (seconds / 60 % 60), 2);
+    out.writeByte(':');
+    writePadded(out, (int) (seconds % 60), 2);
+    if (fraction != 0) {
+      int digits = 6;
+      while (fraction % 10 == 0) {
+        fraction /= 10;
+        digits--;
+      }
+      out.writeByte('.');
+      writePadded(out, fraction, digits);
+    }
+  }
+
+  /**
+   * Writes the offset as {@code +hh}, adding the minutes and seconds only when they are not zero.
+   */
+  static void writeOffset(ByteBuf out, int offsetSeconds) {
+    out.writeByte(offsetSeconds < 0 ? '-' : '+');
+    int abs = Math.abs(offsetSeconds);
+    writePadded(out, abs / 3600, 2);
+    int minutes = abs / 60 % 60;
+    int seconds = abs % 60;
+    if (minutes != 0 || seconds != 0) {
+      out.writeByte(':');
+      writePadded(out, minutes, 2);
+      if (seconds != 0) {
+        out.writeByte(':');
+        writePadded(out, seconds, 2);
+      }
+    }
+  }
+
+  /**
+   * Writes a non-negative value in base 10 with at least the given number of digits.
+   */
+  static void writePadded(ByteBuf out, int value, int width) {
+    for (int i = SenderUtils.asciiLength(value); i < width; i++) {
+      out.writeByte('0');
+    }
+    SenderUtils.writeAscii(out, value);
+  }
+
+  /**
+   * A cursor used to parse the text format of dates and times directly from a buffer.
+   */
+  private static class TextReader {
+    private final ByteBuf in;
+    private final int start;
+    private final int end;
+    private final String typeName;
+    private int index;
+
+    TextReader(ByteBuf in, int index, int length, String typeName) {
+      this.in = in;
+      this.start = index;
+      this.end = index + length;
+      this.typeName = typeName;
+      this.index = index;
+    }
+
+    IllegalArgumentException invalid() {
+      return StandardCodecs.invalidText(in, start, end - start, typeName);
+    }
+
+    int peek() {
+      return index < end ? in.getByte(index) : -1;
+    }
+
+    int next() {
+      if (index >= end) {
+        throw invalid();
+      }
+      return in.getByte(index++);
+    }
+
+    /**
+     * @return whether there is something after the whitespaces
+     */
+    boolean skipWhitespaces() {
+      while (index < end && QuerySplitter.isWhitespace(in.getByte(index))) {
+        index++;
+      }
+      return index < end;
+    }
+
+    void expectEnd() {
+      if (skipWhitespaces()) {
+        throw invalid();
+      }
+    }
+
+    void expect(char c) {
+      if (next() != c) {
+        throw invalid();
+      }
+    }
+
+    /**
+     * @return true if a minus sign was read
+     */
+    boolean readSign() {
+      int c = peek();
+      if (c == '-' || c == '+') {
+        index++;
+        return c == '-';
+      }
+      return false;
+    }
+
+    long readNumber() {
+      int numberStart = index;
+      long value = 0;
+      while (index < end) {
+        int digit = in.getByte(index) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        try {
+          value = Math.addExact(Math.multiplyExact(value, 10), digit);
+        } catch (ArithmeticException ex) {
+          throw invalid();
+        }
+        index++;
+      }
+      if (index == numberStart) {
+        throw invalid();
+      }
+      return value;
+    }
+
+    /**
+     * Reads exactly the given number of digits.
+     */
+    int readDigits(int count) {
+      int value = 0;
+      for (int i = 0; i < count; i++) {
+        int digit = next() - '0';
+        if (digit < 0 || digit > 9) {
+          throw invalid();
+        }
+        value = value * 10 + digit;
+      }
+      return value;
+    }
+
+    String readWord() {
+      int wordStart = index;
+      while (index < end && Character.isLetter(in.getByte(index))) {
+        index++;
+      }
+      if (index == wordStart) {
+        throw invalid();
+      }
+      return in.toString(wordStart, index - wordStart, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+    }
+
+    boolean peekWord(String word) {
+      int wordEnd = index;
+      while (wordEnd < end && Character.isLetter(in.getByte(wordEnd))) {
+        wordEnd++;
+      }
+      return wordEnd - index == word.length()
+          && in.toString(index, wordEnd - index, StandardCharsets.US_ASCII).equalsIgnoreCase(word);
+    }
+
+    /**
+     * @return 1 for infinity, -1 for -infinity or 0 if the text is not one of them
+     */
+    int readInfinity() {
+      skipWhitespaces();
+      int save = index;
+      boolean negative = readSign();
+      if (peekWord("infinity")) {
+        readWord();
+        expectEnd();
+        return negative ? -1 : 1;
+      }
+      index = save;
+      return 0;
+    }
+
+    /**
+     * Reads {@code yyyy-mm-dd}, whose year is the year of the era, so the date can only be validated once the era is
+     * read with {@link #readEra(int)}.
+     *
+     * @return the date packed like {@link #civilDate(long)}
+     */
+    long readDate() {
+      skipWhitespaces();
+      long year = readNumber();
+      expect('-');
+      int month = readDigits(2);
+      expect('-');
+      int day = readDigits(2);
+      // there is no year 0, 1 BC is followed by 1 AD
+      if (year == 0 || year > Year.MAX_VALUE) {
+        throw invalid();
+      }
+      return year << 16 | month << 8 | day;
+    }
+
+    /**
+     * Reads the optional {@code BC} or {@code AD} that follows a date.
+     *
+     * @return the proleptic year of the given year of the era
+     */
+    int readEra(int yearOfEra) {
+      skipWhitespaces();
+      if (peekWord("BC")) {
+        readWord();
+        return 1 - yearOfEra;
+      }
+      if (peekWord("AD")) {
+        readWord();
+      }
+      return yearOfEra;
+    }
+
+    /**
+     * Validates a date read with {@link #readDate()}.
+     */
+    LocalDate toLocalDate(int year, long date) {
+      try {
+        return LocalDate.of(year, civilMonth(date), civilDay(date));
+      } catch (DateTimeException ex) {
+        throw invalid();
+      }
+    }
+
+    void readDateTimeSeparator() {
+      int c = next();
+      if (c == 'T' || c == 't') {
+        return;
+      }
+      if (!QuerySplitter.isWhitespace((byte) c)) {
+        throw invalid();
+      }
+      skipWhitespaces();
+    }
+
+    /**
+     * Reads {@code hh:mm[:ss[.ffffff]]} as microseconds.
+     */
+    long readTime() {
+      skipWhitespaces();
+      long hours = readNumber();
+      if (peek() != ':') {
+        throw invalid();
+      }
+      long micros = readTimeAfterHours(hours);
+      if (micros >= MICROS_PER_DAY) {
+        throw invalid();
+      }
+      return micros;
+    }
+
+    long readTimeAfterHours(long hours) {
+      expect(':');
+      int minutes = readDigits(2);
+      int seconds = 0;
+      int fraction = 0;
+      if (peek() == ':') {
+        index++;
+        seconds = readDigits(2);
+        if (peek() == '.') {
+          index++;
+          int digits = 0;
+          while (index < end && in.getByte(index) >= '0' && in.getByte(index) <= '9') {
+            if (digits < 6) {
+              fraction = fraction * 10 + in.getByte(index) - '0';
+              digits++;
+            }
+            index++;
+          }
+          for (; digits < 6; digits++) {
+            fraction *= 10;
+          }
+        }
+      }
+      if (minutes > 59 || seconds > 60) {
+        throw invalid();
+      }
+      try {
+        long totalSeconds = Math.addExact(Math.multiplyExact(hours, 3600), minutes * 60 + seconds);
+        return Math.addExact(Math.multiplyExact(totalSeconds, MICROS_PER_SECOND), fraction);
+      } catch (ArithmeticException ex) {
+        throw invalid();
+      }
+    }
+
+    /**
+     * Reads an offset like {@code +hh}, {@code -hh:mm}, {@code +hhmm} or {@code Z}, if any.
+     *
+     * @return the offset in seconds or {@link #NO_OFFSET} if there is none, in which case the caller decides which
+     *         offset applies
+     */
+    int readOffset() {
+      skipWhitespaces();
+      int c = peek();
+      if (c == 'Z' || c == 'z') {
+        index++;
+        return 0;
+      }
+      if (c != '+' && c != '-') {
+        return NO_OFFSET;
+      }
+      boolean negative = readSign();
+      int hours = readDigits(2);
+      int minutes = 0;
+      int seconds = 0;
+      if (peek() == ':') {
+        index++;
+        minutes = readDigits(2);
+        if (peek() == ':') {
+          index++;
+          seconds = readDigits(2);
+        }
+      } else if (peek() >= '0' && peek() <= '9') {
+        minutes = readDigits(2);
+      }
+      int total = hours * 3600 + minutes * 60 + seconds;
+      if (total > 18 * 3600) {
+        throw invalid();
+      }
+      return negative ? -total : total;
+    }
+  }
+}
@@ -0,0 +1,538 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Locale;
+import java.util.TimeZone;
+
+
+/**
+ * The {@code DateStyle} and {@code TimeZone} of a session, used to write dates and timestamps in text format like
+ * Postgres does.
+ *
+ * <p>
+ * Settings are usually created from the parameters of the StartupMessage with {@link #of(StartupParameters)} and
+ * updated when the frontend changes them. Dates and timestamps are written from the values of their binary format
+ * (days or microseconds since 2000-01-01) directly into the buffer, without creating {@code java.time} objects:
+ *
+ * <pre>
+ *   settings.writeTimestampTz(writer.beginCell(), micros);
+ *   writer.endCell();
+ * </pre>
+ *
+ * The offset of the time zone is cached together with the range of instants it applies to, which is the time between
+ * two transitions of the zone, so consecutive timestamps only cost a comparison. The codecs of
+ * {@link #registerCodecs(CodecRegistry)} use the same settings for {@link LocalDate}, {@link LocalDateTime} and
+ * {@link OffsetDateTime} values.
+ * <p>
+ * The four output styles are supported ({@code ISO}, {@code SQL}, {@code Postgres} and {@code German}), with the
+ * {@code DMY} or {@code MDY} field order where it applies. Text values received from the frontend are always parsed in
+ * ISO format. Zone abbreviations, written by the non ISO styles, come from the JDK and fall back to the numeric offset
+ * when the zone has none.
+ * <p>
+ * Instances belong to a session and are not thread safe.
+ */
+public class DateTimeSettings {
+  public enum Style {
+    ISO, POSTGRES, SQL, GERMAN
+  }
+
+  public enum Order {
+    YMD, DMY, MDY
+  }
+
+  private static final ZoneId DEFAULT_ZONE = ZoneId.of("UTC");
+  /**
+   * The seconds around a transition where a local time may be ambiguous, which is more than any change of offset.
+   */
+  private static final long TRANSITION_MARGIN = 2 * 86400;
+  private static final byte[][] DAY_NAMES = ascii("Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat");
+  private static final byte[][] MONTH_NAMES = ascii("Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep",
+      "Oct", "Nov", "Dec");
+
+  private Style style = Style.ISO;
+  private Order order = Order.MDY;
+  private ZoneId zone = DEFAULT_ZONE;
+  private ZoneRules rules = DEFAULT_ZONE.getRules();
+
+  /**
+   * The offset of the zone between the cached epoch seconds (end excluded), and its abbreviation or null if it has
+   * none.
+   */
+  private long cachedStart = 1;
+  private long cachedEnd = 0;
+  private int cachedOffset;
+  private byte[] cachedAbbreviation;
+
+  /**
+   * Settings with the Postgres defaults: {@code ISO, MDY} and {@code UTC}.
+   */
+  public DateTimeSettings() {
+  }
+
+  /**
+   * @param dateStyle the value of the {@code DateStyle} parameter or null to use the default
+   * @param timeZone the value of the {@code TimeZone} parameter or null to use the default
+   * @throws IllegalArgumentException if the values are not valid
+   */
+  public static DateTimeSettings of(CharSequence dateStyle, CharSequence timeZone) {
+    DateTimeSettings settings = new DateTimeSettings();
+    if (dateStyle != null) {
+      settings.setDateStyle(dateStyle);
+    }
+    if (timeZone != null) {
+      settings.setTimeZone(timeZone);
+    }
+    return settings;
+  }
+
+  /**
+   * Creates the settings from the {@code DateStyle} and {@code TimeZone} startup parameters, if present.
+   */
+  public static DateTimeSettings of(StartupParameters parameters) {
+    ByteBuf dateStyle = parameters.getDateStyle();
+    ByteBuf timeZone = parameters.getTimeZone();
+    return of(dateStyle == null ? null : dateStyle.toString(StandardCharsets.US_ASCII),
+        timeZone == null ? null : timeZone.toString(StandardCharsets.US_ASCII));
+  }
+
+  public Style getStyle() {
+    return style;
+  }
+
+  public Order getOrder() {
+    return order;
+  }
+
+  /**
+   * The canonical value of {@code DateStyle}, like {@code ISO, MDY}, which is what has to be reported in the
+   * ParameterStatus message.
+   */
+  public String getDateStyle() {
+    String name = style == Style.POSTGRES ? "Postgres" : style == Style.GERMAN ? "German" : style.name();
+    return name + ", " + order.name();
+  }
+
+  /**
+   * Changes the style and order with the syntax of {@code DateStyle}: a style ({@code ISO}, {@code SQL},
+   * {@code Postgres} or {@code German}), an order ({@code YMD}, {@code DMY} or {@code MDY}, also {@code Euro} and
+   * {@code US}) or both separated by a comma. The missing one is not changed, except that {@code German} implies
+   * {@code DMY}.
+   *
+   * @throws IllegalArgumentException if the value is not valid
+   */
+  public DateTimeSettings setDateStyle(CharSequence dateStyle) {
+    Style newStyle = null;
+    Order newOrder = null;
+    for (String token : dateStyle.toString().split(",", -1)) {
+      Style tokenStyle = null;
+      Order tokenOrder = null;
+      switch (token.trim().toUpperCase(Locale.ROOT)) {
+        case "ISO":
+          tokenStyle = Style.ISO;
+          break;
+        case "SQL":
+          tokenStyle = Style.SQL;
+          break;
+        case "POSTGRES":
+          tokenStyle = Style.POSTGRES;
+          break;
+        case "GERMAN":
+          tokenStyle = Style.GERMAN;
+          break;
+        case "YMD":
+          tokenOrder = Order.YMD;
+          break;
+        case "DMY":
+        case "EURO":
+        case "EUROPEAN":
+          tokenOrder = Order.DMY;
+          break;
+        case "MDY":
+        case "US":
+        case "NONEURO":
+        case "NONEUROPEAN":
+          tokenOrder = Order.MDY;
+          break;
+        case "DEFAULT":
+          tokenStyle = Style.ISO;
+          tokenOrder = Order.MDY;
+          break;
+        default:
+          throw new IllegalArgumentException("Invalid value for parameter DateStyle: \"" + dateStyle + '"');
+      }
+      if (tokenStyle != null && newStyle != null && tokenStyle != newStyle
+          || tokenOrder != null && newOrder != null && tokenOrder != newOrder) {
+        throw new IllegalArgumentException("Conflicting DateStyle specifications: \"" + dateStyle + '"');
+      }
+      newStyle = tokenStyle != null ? tokenStyle : newStyle;
+      newOrder = tokenOrder != null ? tokenOrder : newOrder;
+    }
+    if (newStyle == Style.GERMAN && newOrder == null) {
+      newOrder = Order.DMY;
+    }
+    if (newStyle != null) {
+      style = newStyle;
+    }
+    if (newOrder != null) {
+      order = newOrder;
+    }
+    return this;
+  }
+
+  public ZoneId getTimeZone() {
+    return zone;
+  }
+
+  /**
+   * Changes the time zone with the syntax of {@code TimeZone}: a zone name like {@code Europe/Madrid}, an abbreviation
+   * like {@code UTC} or {@code EST} or a POSIX offset like {@code -3} or {@code +05:30}, which like in Postgres means
+   * hours west of Greenwich.
+   *
+   * @throws IllegalArgumentException if the value is not valid
+   */
+  public DateTimeSettings setTimeZone(CharSequence timeZone) {
+    String name = timeZone.toString().trim();
+    try {
+      return setTimeZone(parseZone(name));
+    } catch (DateTimeException | NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid value for parameter TimeZone: \"" + timeZone + '"', ex);
+    }
+  }
+
+  public DateTimeSettings setTimeZone(ZoneId zone) {
+    this.zone = zone;
+    this.rules = zone.getRules();
+    this.cachedStart = 1;
+    this.cachedEnd = 0;
+    return this;
+  }
+
+  /**
+   * The offset of the time zone at the given instant.
+   */
+  public int getOffsetSeconds(long epochSecond) {
+    if (epochSecond < cachedStart || epochSecond >= cachedEnd) {
+      cacheOffset(epochSecond);
+    }
+    return cachedOffset;
+  }
+
+  /**
+   * The offset of the time zone at the given local time, expressed as seconds since 1970-01-01 as if it were UTC.
+   * Like in Postgres, local times in a gap of the zone use the offset before the transition and local times in an
+   * overlap use the offset after it.
+   */
+  public int getLocalOffsetSeconds(long localEpochSecond) {
+    int offset = getOffsetSeconds(localEpochSecond - getOffsetSeconds(localEpochSecond));
+    long epochSecond = localEpochSecond - offset;
+    if (getOffsetSeconds(epochSecond) == offset && epochSecond >= cachedStart + TRANSITION_MARGIN
+        && epochSecond < cachedEnd - TRANSITION_MARGIN) {
+      return offset;
+    }
+    // close to a transition, where the local time may be in a gap or an overlap
+    LocalDateTime local = LocalDateTime.ofEpochSecond(localEpochSecond, 0, ZoneOffset.UTC);
+    ZoneOffsetTransition transition = rules.getTransition(local);
+    if (transition == null) {
+      return rules.getOffset(local).getTotalSeconds();
+    }
+    return (transition.isGap() ? transition.getOffsetBefore() : transition.getOffsetAfter()).getTotalSeconds();
+  }
+
+  /**
+   * Writes a {@code date} in the current style.
+   *
+   * @param days the days since 2000-01-01, or {@link Integer#MAX_VALUE} and {@link Integer#MIN_VALUE} for infinity
+   *             and -infinity
+   */
+  public void writeDate(ByteBuf out, int days) {
+    if (DateTimeCodecs.writeInfinity(out, days == Integer.MAX_VALUE, days == Integer.MIN_VALUE)) {
+      return;
+    }
+    long date = DateTimeCodecs.civilDate(days + DateTimeCodecs.POSTGRES_EPOCH_DAYS);
+    int year = DateTimeCodecs.civilYear(date);
+    int month = DateTimeCodecs.civilMonth(date);
+    int day = DateTimeCodecs.civilDay(date);
+    switch (style) {
+      case ISO:
+        DateTimeCodecs.writeDate(out, year, month, day);
+        break;
+      case SQL:
+        writeDayAndMonth(out, day, month, '/');
+        out.writeByte('/');
+        DateTimeCodecs.writeYear(out, year);
+        break;
+      case POSTGRES:
+        writeDayAndMonth(out, day, month, '-');
+        out.writeByte('-');
+        DateTimeCodecs.writeYear(out, year);
+        break;
+      default:
+        DateTimeCodecs.writePadded(out, day, 2);
+        out.writeByte('.');
+        DateTimeCodecs.writePadded(out, month, 2);
+        out.writeByte('.');
+        DateTimeCodecs.writeYear(out, year);
+        break;
+    }
+    DateTimeCodecs.writeEra(out, year);
+  }
+
+  /**
+   * Writes a {@code timestamp} in the current style.
+   *
+   * @param micros the microseconds since 2000-01-01, or {@link Long#MAX_VALUE} and {@link Long#MIN_VALUE} for
+   *               infinity and -infinity
+   */
+  public void writeTimestamp(ByteBuf out, long micros) {
+    if (!DateTimeCodecs.writeInfinity(out, micros == Long.MAX_VALUE, micros == Long.MIN_VALUE)) {
+      writeDateTime(out, micros, false, 0);
+    }
+  }
+
+  /**
+   * Writes a {@code timestamptz} in the current style, converted to the current time zone.
+   *
+   * @param micros the microseconds since 2000-01-01 UTC, or {@link Long#MAX_VALUE} and {@link Long#MIN_VALUE} for
+   *               infinity and -infinity
+   */
+  public void writeTimestampTz(ByteBuf out, long micros) {
+    if (!DateTimeCodecs.writeInfinity(out, micros == Long.MAX_VALUE, micros == Long.MIN_VALUE)) {
+      long epochSecond = DateTimeCodecs.toEpochSecond(micros);
+      int offset = getOffsetSeconds(epochSecond);
+      writeDateTime(out, micros + offset * DateTimeCodecs.MICROS_PER_SECOND, true, offset);
+    }
+  }
+
+  /**
+   * Replaces the codecs of {@code date}, {@code timestamp} and {@code timestamptz} (and of their arrays) with ones that
+   * use these settings. Given the settings belong to a session, the registry should be a copy for the session, see
+   * {@link CodecRegistry#copy()}.
+   *
+   * @return the given registry
+   */
+  public CodecRegistry registerCodecs(CodecRegistry registry) {
+    DateCodec date = new DateCodec();
+    TimestampCodec timestamp = new TimestampCodec();
+    TimestampTzCodec timestampTz = new TimestampTzCodec();
+    return registry.register(date).register(timestamp).register(timestampTz)
+        .register(ArrayCodec.of(date)).register(ArrayCodec.of(timestamp)).register(ArrayCodec.of(timestampTz));
+  }
+
+  private void writeDateTime(ByteBuf out, long localMicros, boolean withZone, int offset) {
+    long epochDay = Math.floorDiv(localMicros, DateTimeCodecs.MICROS_PER_DAY) + DateTimeCodecs.POSTGRES_EPOCH_DAYS;
+    long time = Math.floorMod(localMicros, DateTimeCodecs.MICROS_PER_DAY);
+    long date = DateTimeCodecs.civilDate(epochDay);
+    int year = DateTimeCodecs.civilYear(date);
+    int month = DateTimeCodecs.civilMonth(date);
+    int day = DateTimeCodecs.civilDay(date);
+    switch (style) {
+      case ISO:
+        DateTimeCodecs.writeDate(out, year, month, day);
+        out.writeByte(' ');
+        DateTimeCodecs.writeTime(out, time);
+        if (withZone) {
+          DateTimeCodecs.writeOffset(out, offset);
+        }
+        break;
+      case POSTGRES:
+        // like Sun Jan 30 13:45:00.5 2000 CET
+        out.writeBytes(DAY_NAMES[Math.floorMod(epochDay + 4, 7)]);
+        out.writeByte(' ');
+        if (order == Order.DMY) {
+          DateTimeCodecs.writePadded(out, day, 2);
+          out.writeByte(' ');
+          out.writeBytes(MONTH_NAMES[month - 1]);
+        } else {
+          out.writeBytes(MONTH_NAMES[month - 1]);
+          out.writeByte(' ');
+          DateTimeCodecs.writePadded(out, day, 2);
+        }
+        out.writeByte(' ');
+        DateTimeCodecs.writeTime(out, time);
+        out.writeByte(' ');
+        DateTimeCodecs.writeYear(out, year);
+        if (withZone) {
+          out.writeByte(' ');
+          writeZone(out, offset);
+        }
+        break;
+      default:
+        // like 01/30/2000 13:45:00.5 CET or 30.01.2000 13:45:00.5 CET
+        if (style == Style.SQL) {
+          writeDayAndMonth(out, day, month, '/');
+          out.writeByte('/');
+        } else {
+          DateTimeCodecs.writePadded(out, day, 2);
+          out.writeByte('.');
+          DateTimeCodecs.writePadded(out, month, 2);
+          out.writeByte('.');
+        }
+        DateTimeCodecs.writeYear(out, year);
+        out.writeByte(' ');
+        DateTimeCodecs.writeTime(out, time);
+        if (withZone) {
+          if (cachedAbbreviation != null) {
+            out.writeByte(' ');
+          }
+          writeZone(out, offset);
+        }
+        break;
+    }
+    DateTimeCodecs.writeEra(out, year);
+  }
+
+  /**
+   * Writes {@code dd?mm} or {@code mm?dd} depending on the order.
+   */
+  private void writeDayAndMonth(ByteBuf out, int day, int month, char separator) {
+    DateTimeCodecs.writePadded(out, order == Order.DMY ? day : month, 2);
+    out.writeByte(separator);
+    DateTimeCodecs.writePadded(out, order == Order.DMY ? month : day, 2);
+  }
+
+  /**
+   * Writes the abbreviation of the zone or the offset if it has none. The offset must have been just looked up, so
+   * the cached abbreviation is the one of the offset.
+   */
+  private void writeZone(ByteBuf out, int offset) {
+    if (cachedAbbreviation != null) {
+      out.writeBytes(cachedAbbreviation);
+    } else {
+      DateTimeCodecs.writeOffset(out, offset);
+    }
+  }
+
+  private void cacheOffset(long epochSecond) {
+    if (rules.isFixedOffset()) {
+      cachedStart = Long.MIN_VALUE;
+      cachedEnd = Long.MAX_VALUE;
+      cachedOffset = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+      cachedAbbreviation = zone instanceof ZoneOffset ? null : abbreviation(false);
+      return;
+    }
+    Instant instant = Instant.ofEpochSecond(epochSecond);
+    // the last transition at or before the instant and the first one after it
+    ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+    ZoneOffsetTransition next = rules.nextTransition(instant);
+    cachedStart = previous == null ? Long.MIN_VALUE : previous.toEpochSecond();
+    cachedEnd = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+    cachedOffset = rules.getOffset(instant).getTotalSeconds();
+    cachedAbbreviation = abbreviation(rules.isDaylightSavings(instant));
+  }
+
+  /**
+   * The short name of the zone, or null if the JDK does not know one and just formats the offset.
+   */
+  private byte[] abbreviation(boolean daylight) {
+    String name = TimeZone.getTimeZone(zone).getDisplayName(daylight, TimeZone.SHORT, Locale.ROOT);
+    if (name.startsWith("GMT") && name.length() > 3) {
+      return null;
+    }
+    return name.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static ZoneId parseZone(String name) {
+    char first = name.isEmpty() ? ' ' : name.charAt(0);
+    if (first >= '0' && first <= '9' || (first == '+' || first == '-') && name.length() > 1) {
+      // POSIX offsets are hours west of Greenwich, the opposite of ISO offsets
+      boolean west = first != '-';
+      String[] fields = name.substring(first == '+' || first == '-' ? 1 : 0).split(":");
+      if (fields.length > 3) {
+        throw new DateTimeException("Invalid offset " + name);
+      }
+      int seconds = Integer.parseInt(fields[0]) * 3600;
+      if (fields.length > 1) {
+        seconds += Integer.parseInt(fields[1]) * 60;
+      }
+      if (fields.length > 2) {
+        seconds += Integer.parseInt(fields[2]);
+      }
+      return ZoneOffset.ofTotalSeconds(west ? -seconds : seconds);
+    }
+    return ZoneId.of(name, ZoneId.SHORT_IDS);
+  }
+
+  private static byte[][] ascii(String... values) {
+    byte[][] bytes = new byte[values.length][];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = values[i].getBytes(StandardCharsets.US_ASCII);
+    }
+    return bytes;
+  }
+
+  private class DateCodec extends DateTimeCodecs.DateCodec {
+    @Override
+    public void encodeText(ByteBuf out, LocalDate value) {
+      if (value.equals(LocalDate.MAX)) {
+        writeDate(out, Integer.MAX_VALUE);
+      } else if (value.equals(LocalDate.MIN)) {
+        writeDate(out, Integer.MIN_VALUE);
+      } else {
+        writeDate(out, Math.toIntExact(value.toEpochDay() - DateTimeCodecs.POSTGRES_EPOCH_DAYS));
+      }
+    }
+  }
+
+  private class TimestampCodec extends DateTimeCodecs.TimestampCodec {
+    @Override
+    public void encodeText(ByteBuf out, LocalDateTime value) {
+      if (value.equals(LocalDateTime.MAX)) {
+        writeTimestamp(out, Long.MAX_VALUE);
+      } else if (value.equals(LocalDateTime.MIN)) {
+        writeTimestamp(out, Long.MIN_VALUE);
+      } else {
+        writeTimestamp(out, DateTimeCodecs.toPostgresMicros(value.toEpochSecond(ZoneOffset.UTC), value.getNano()));
+      }
+    }
+  }
+
+  /**
+   * Writes the values in the time zone of the session and decodes them with its offset, also the text values without
+   * offset, like Postgres does.
+   */
+  private class TimestampTzCodec extends DateTimeCodecs.TimestampTzCodec {
+    @Override
+    public void encodeText(ByteBuf out, OffsetDateTime value) {
+      if (value.equals(OffsetDateTime.MAX)) {
+        writeTimestampTz(out, Long.MAX_VALUE);
+      } else if (value.equals(OffsetDateTime.MIN)) {
+        writeTimestampTz(out, Long.MIN_VALUE);
+      } else {
+        writeTimestampTz(out, DateTimeCodecs.toPostgresMicros(value.toEpochSecond(), value.getNano()));
+      }
+    }
+
+    @Override
+    public OffsetDateTime decodeText(ByteBuf in, int index, int length) {
+      return toOffsetDateTime(DateTimeCodecs.parseTimestampMicros(in, index, length, false, DateTimeSettings.this));
+    }
+
+    @Override
+    public OffsetDateTime decodeBinary(ByteBuf in, int index, int length) {
+      StandardCodecs.checkLength(getType(), length, 8);
+      return toOffsetDateTime(in.getLong(index));
+    }
+
+    private OffsetDateTime toOffsetDateTime(long micros) {
+      if (micros == Long.MAX_VALUE) {
+        return OffsetDateTime.MAX;
+      } else if (micros == Long.MIN_VALUE) {
+        return OffsetDateTime.MIN;
+      }
+      long epochSecond = DateTimeCodecs.toEpochSecond(micros);
+      int offset = getOffsetSeconds(epochSecond);
+      return DateTimeCodecs.fromPostgresMicros(micros + offset * DateTimeCodecs.MICROS_PER_SECOND)
+          .atOffset(ZoneOffset.ofTotalSeconds(offset));
+    }
+  }
+}
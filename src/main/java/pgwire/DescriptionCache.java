@@ -0,0 +1,71 @@
+package pgwire;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+
+/**
+ * A bounded cache of {@link StatementDescription}, keyed by statement.
+ *
+ * <p>
+ * The key is chosen by the server. Statement names are only meaningful within a connection, so caches shared by
+ * several connections should use something like the {@link QueryFingerprint} of the query plus whatever else changes
+ * its metadata (like the schema version). Keys must be immutable, so {@link io.netty.buffer.ByteBuf} names received in
+ * messages have to be converted or copied first.
+ * <p>
+ * Once the cache is full, new descriptions are still computed and returned but they are not stored until some entries
+ * are invalidated. Instances are thread safe.
+ */
+public class DescriptionCache<K> {
+  private final ConcurrentHashMap<K, StatementDescription> descriptions = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  public DescriptionCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive, but " + maxSize + " was found");
+    }
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cached description or null if there is none.
+   */
+  public StatementDescription get(K key) {
+    return descriptions.get(key);
+  }
+
+  /**
+   * Returns the cached description, creating and caching it with the given function if there is none.
+   */
+  public StatementDescription computeIfAbsent(K key, Function<? super K, StatementDescription> factory) {
+    StatementDescription description = descriptions.get(key);
+    if (description != null) {
+      return description;
+    }
+    if (descriptions.size() >= maxSize) {
+      return factory.apply(key);
+    }
+    return descriptions.computeIfAbsent(key, factory);
+  }
+
+  public void put(K key, StatementDescription description) {
+    if (descriptions.size() < maxSize || descriptions.containsKey(key)) {
+      descriptions.put(key, description);
+    }
+  }
+
+  /**
+   * Removes the description of the given statement, which must be called when its metadata changes.
+   */
+  public void invalidate(K key) {
+    descriptions.remove(key);
+  }
+
+  public void clear() {
+    descriptions.clear();
+  }
+
+  public int size() {
+    return descriptions.size();
+  }
+}
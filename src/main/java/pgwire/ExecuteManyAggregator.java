@@ -0,0 +1,322 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * A {@link FrontendMessageListener} that groups repeated executions of the same prepared statement.
+ *
+ * <p>
+ * Drivers implement JDBC {@code executeBatch} or psycopg {@code executemany} by sending several Bind and Execute
+ * pairs for the same prepared statement followed by a single Sync. This class detects that pattern and, instead of
+ * delegating each Bind and Execute, calls {@link ExecuteManyListener#onExecuteMany(Object, ParameterBatch)} once with
+ * the parameters of all rows. Then it sends the BindComplete and CommandComplete messages the frontend expects for
+ * each pair, in order.
+ * <p>
+ * Bind and Execute pairs are buffered until a message that does not follow the pattern is received. At that moment,
+ * if at least two pairs were buffered, they are delivered as a batch. Otherwise they are delivered to the delegate
+ * with the usual {@link #onBind(ChannelHandlerContext, BindMessage)} and
+ * {@link #onExecute(ChannelHandlerContext, ByteBuf, int)} calls, so the delegate still has to support them. Either way
+ * the message that broke the pattern is delegated afterwards. Executions with a row limit are never grouped.
+ * <p>
+ * Only Bind messages delivered with {@link FrontendMessageListener#onBind(Object, BindMessage)} are grouped, so the
+ * handler has to be configured to use them (see {@link PostgresBackendChannelInitializer#withFlyweightBind(boolean)}).
+ * <p>
+ * Like the other listeners, a single instance can be shared by several channels. The state of each channel is stored
+ * as a channel attribute.
+ */
+public class ExecuteManyAggregator implements BatchFrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> {
+
+  private static final Logger LOGGER = LogManager.getLogger(ExecuteManyAggregator.class);
+  private static final AttributeKey<State> STATE = AttributeKey.valueOf(ExecuteManyAggregator.class, "state");
+
+  private final ExecuteManyListener<ChannelHandlerContext, ByteBuf, ByteBuf> delegate;
+  private final BackendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> sender;
+
+  /**
+   * @param delegate the listener that receives all the messages and batches.
+   * @param sender the listener used to send the responses of the batches, usually a {@link BackendMessageSender}.
+   */
+  public ExecuteManyAggregator(ExecuteManyListener<ChannelHandlerContext, ByteBuf, ByteBuf> delegate,
+      BackendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> sender) {
+    this.delegate = delegate;
+    this.sender = sender;
+  }
+
+  @Override
+  public void onBind(ChannelHandlerContext ctx, BindMessage bind) {
+    State state = getState(ctx);
+    if (state.ignoreTillSync) {
+      return;
+    }
+    ParameterBatch batch = state.batch;
+    if (!batch.isEmpty() && (batch.isExecutePending() || !batch.matches(bind))) {
+      deliver(ctx, state);
+      if (state.ignoreTillSync) {
+        return;
+      }
+    }
+    batch.add(bind);
+  }
+
+  @Override
+  public void onExecute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+    State state = getState(ctx);
+    if (state.ignoreTillSync) {
+      return;
+    }
+    ParameterBatch batch = state.batch;
+    if (batch.isExecutePending() && rowLimit == 0 && batch.isPortal(name)) {
+      batch.execute();
+    } else if (flush(ctx)) {
+      delegate.onExecute(ctx, name, rowLimit);
+    }
+  }
+
+  @Override
+  public void onSync(ChannelHandlerContext ctx) {
+    State state = getState(ctx);
+    if (!state.ignoreTillSync) {
+      deliver(ctx, state);
+    }
+    state.ignoreTillSync = false;
+    delegate.onSync(ctx);
+  }
+
+  @Override
+  public void onBatchStart(ChannelHandlerContext ctx, int messages) {
+    if (delegate instanceof BatchFrontendMessageListener) {
+      ((BatchFrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf>) delegate).onBatchStart(ctx, messages);
+    }
+  }
+
+  @Override
+  public void onBatchEnd(ChannelHandlerContext ctx, boolean synced) {
+    if (delegate instanceof BatchFrontendMessageListener) {
+      ((BatchFrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf>) delegate).onBatchEnd(ctx, synced);
+    }
+  }
+
+  @Override
+  public void onStartup(ChannelHandlerContext ctx, int version, Map<ByteBuf, ByteBuf> parameters) {
+    delegate.onStartup(ctx, version, parameters);
+  }
+
+  @Override
+  public void onDescribe(ChannelHandlerContext ctx, TargetType type, ByteBuf name) {
+    if (flush(ctx)) {
+      delegate.onDescribe(ctx, type, name);
+    }
+  }
+
+  @Override
+  public void onClose(ChannelHandlerContext ctx, TargetType type, ByteBuf name) {
+    if (flush(ctx)) {
+      delegate.onClose(ctx, type, name);
+    }
+  }
+
+  @Override
+  public void onSslRequest(ChannelHandlerContext ctx) {
+    delegate.onSslRequest(ctx);
+  }
+
+  @Override
+  public void onBind(ChannelHandlerContext ctx, ByteBuf portalName, ByteBuf preparedStatementName,
+      List<ParameterBound<ByteBuf>> params, List<Format> resultFormats) {
+    if (flush(ctx)) {
+      delegate.onBind(ctx, portalName, preparedStatementName, params, resultFormats);
+    }
+  }
+
+  @Override
+  public void onCancelRequest(ChannelHandlerContext ctx, int processId, int secretKey) {
+    delegate.onCancelRequest(ctx, processId, secretKey);
+  }
+
+  @Override
+  public void onCopyData(ChannelHandlerContext ctx, ByteBuf bytes) {
+    if (flush(ctx)) {
+      delegate.onCopyData(ctx, bytes);
+    }
+  }
+
+  @Override
+  public void onCopyDone(ChannelHandlerContext ctx) {
+    if (flush(ctx)) {
+      delegate.onCopyDone(ctx);
+    }
+  }
+
+  @Override
+  public void onCopyFail(ChannelHandlerContext ctx, ByteBuf message) {
+    if (flush(ctx)) {
+      delegate.onCopyFail(ctx, message);
+    }
+  }
+
+  @Override
+  public void onFlush(ChannelHandlerContext ctx) {
+    if (flush(ctx)) {
+      delegate.onFlush(ctx);
+    }
+  }
+
+  @Override
+  public void onFunctionCall(ChannelHandlerContext ctx, int funcOid, List<ParameterBound<ByteBuf>> parameters,
+      Format resultFormat) {
+    if (flush(ctx)) {
+      delegate.onFunctionCall(ctx, funcOid, parameters, resultFormat);
+    }
+  }
+
+  @Override
+  public void onQuery(ChannelHandlerContext ctx, ByteBuf query) {
+    if (flush(ctx)) {
+      delegate.onQuery(ctx, query);
+    }
+  }
+
+  @Override
+  public void onTerminate(ChannelHandlerContext ctx) {
+    flush(ctx);
+    ctx.channel().attr(STATE).set(null);
+    delegate.onTerminate(ctx);
+  }
+
+  @Override
+  public void onParse(ChannelHandlerContext ctx, ByteBuf name, ByteBuf query, List<Integer> paramOids) {
+    if (flush(ctx)) {
+      delegate.onParse(ctx, name, query, paramOids);
+    }
+  }
+
+  @Override
+  public void onPasswordLikeMessage(ChannelHandlerContext ctx, ByteBuf bytes) {
+    delegate.onPasswordLikeMessage(ctx, bytes);
+  }
+
+  @Override
+  public void onGSSENCRequest(ChannelHandlerContext ctx) {
+    delegate.onGSSENCRequest(ctx);
+  }
+
+  @Override
+  public void onGSSResponse(ChannelHandlerContext ctx, ByteBuf data) {
+    delegate.onGSSResponse(ctx, data);
+  }
+
+  @Override
+  public void onSASLInitialResponse(ChannelHandlerContext ctx, ByteBuf saslName, ByteBuf initialResponse) {
+    delegate.onSASLInitialResponse(ctx, saslName, initialResponse);
+  }
+
+  @Override
+  public void onSASLResponse(ChannelHandlerContext ctx, ByteBuf data) {
+    delegate.onSASLResponse(ctx, data);
+  }
+
+  private State getState(ChannelHandlerContext ctx) {
+    State state = ctx.channel().attr(STATE).get();
+    if (state == null) {
+      state = new State();
+      ctx.channel().attr(STATE).set(state);
+    }
+    return state;
+  }
+
+  /**
+   * @return false if the message that caused the flush has to be ignored because of a previous error
+   */
+  private boolean flush(ChannelHandlerContext ctx) {
+    State state = getState(ctx);
+    if (!state.ignoreTillSync) {
+      deliver(ctx, state);
+    }
+    return !state.ignoreTillSync;
+  }
+
+  /**
+   * Delivers the buffered pairs, either as a batch or one by one, and clears the state.
+   */
+  private void deliver(ChannelHandlerContext ctx, State state) {
+    ParameterBatch batch = state.batch;
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      int executed = batch.size();
+      if (executed >= 2) {
+        LOGGER.debug("Executing batch of {} rows", executed);
+        delegate.onExecuteMany(ctx, batch);
+        sendResponses(ctx, state, batch);
+      } else if (executed == 1) {
+        replayBind(ctx, state, 0);
+        delegate.onExecute(ctx, batch.getPortalName(), 0);
+      }
+      if (batch.isExecutePending() && !state.ignoreTillSync) {
+        replayBind(ctx, state, executed);
+      }
+    } finally {
+      batch.clear();
+    }
+  }
+
+  private void sendResponses(ChannelHandlerContext ctx, State state, ParameterBatch batch) {
+    CommandType type = batch.getCommandType();
+    if (type == null && batch.getFailedRow() != 0) {
+      // the completed rows cannot be reported without a command type, so the batch fails instead of leaving the
+      // frontend waiting for their responses
+      LOGGER.error("The listener did not set the command type of the batch");
+      batch.fail(0, missingCommandTypeError());
+    }
+    int failedRow = batch.getFailedRow();
+    int completed = failedRow < 0 ? batch.size() : failedRow;
+    for (int i = 0; i < completed; i++) {
+      sender.onBindComplete(ctx);
+      sender.onCommandComplete(ctx, batch.getAffectedRows(i), type);
+    }
+    if (failedRow >= 0) {
+      sender.onBindComplete(ctx);
+      sender.onErrorResponse(ctx, batch.getErrorFields());
+      state.ignoreTillSync = true;
+    }
+  }
+
+  private static Map<Character, ByteBuf> missingCommandTypeError() {
+    Map<Character, ByteBuf> fields = new LinkedHashMap<>();
+    fields.put('S', Unpooled.copiedBuffer("ERROR", StandardCharsets.US_ASCII));
+    fields.put('V', Unpooled.copiedBuffer("ERROR", StandardCharsets.US_ASCII));
+    fields.put('C', Unpooled.copiedBuffer("XX000", StandardCharsets.US_ASCII)); // internal_error
+    fields.put('M', Unpooled.copiedBuffer("The command type of the batch was not set", StandardCharsets.US_ASCII));
+    return fields;
+  }
+
+  /**
+   * Delivers the given row as a Bind message.
+   */
+  private void replayBind(ChannelHandlerContext ctx, State state, int row) {
+    ByteBuf scratch = state.scratch.clear();
+    state.batch.writeBind(row, scratch);
+    delegate.onBind(ctx, state.bindMessage.wrap(scratch));
+  }
+
+  private static class State {
+    private final ParameterBatch batch = new ParameterBatch();
+    private final BindMessage bindMessage = new BindMessage();
+    private final ByteBuf scratch = Unpooled.buffer(256);
+    /**
+     * Set when a batch fails, given the backend must ignore all messages until the next Sync.
+     */
+    private boolean ignoreTillSync;
+  }
+}
@@ -0,0 +1,33 @@
+package pgwire;
+
+/**
+ * A {@link FrontendMessageListener} that can execute a prepared statement for several rows at once.
+ *
+ * <p>
+ * When used with an {@link ExecuteManyAggregator}, consecutive Bind and Execute pairs that target the same prepared
+ * statement are not delivered as independent {@link #onBind(Object, BindMessage)} and
+ * {@link #onExecute(Object, Object, int)} calls. Instead, all of them are delivered as a single call to
+ * {@link #onExecuteMany(Object, ParameterBatch)}.
+ */
+public interface ExecuteManyListener<C, S, B> extends FrontendMessageListener<C, S, B> {
+
+  /**
+   * Executes the prepared statement once per row of the batch.
+   *
+   * The implementation must not send any response. Instead it has to report the outcome in the batch itself (see
+   * {@link ParameterBatch#setCommandType(CommandType)}, {@link ParameterBatch#setAffectedRows(int, long)} and
+   * {@link ParameterBatch#fail(int, java.util.Map)}), which is then sent by the aggregator as the BindComplete and
+   * CommandComplete messages the frontend expects.
+   *
+   * @param batch The parameters of all the rows. It is reused once this method returns.
+   */
+  void onExecuteMany(C ctx, ParameterBatch batch);
+
+  abstract class Abstract<C, S, B> extends FrontendMessageListener.Abstract<C, S, B>
+      implements ExecuteManyListener<C, S, B> {
+    @Override
+    public void onExecuteMany(C ctx, ParameterBatch batch) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
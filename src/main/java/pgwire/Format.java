@@ -17,11 +17,13 @@ public enum Format {
   }
 
   public static Format fromId(int id) {
-    for (Format format : Format.values()) {
-      if (format.getId() == id) {
-        return format;
-      }
+    switch (id) {
+      case 0:
+        return TEXT;
+      case 1:
+        return BINARY;
+      default:
+        throw new IllegalArgumentException("Id " + id + " is not a valid id");
     }
-    throw new IllegalArgumentException("Id " + id + " is not a valid id");
   }
 }
@@ -0,0 +1,64 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import java.util.Arrays;
+
+
+/**
+ * A group of frames decoded by {@link PgFrameDecoder} from a single read when batching is enabled.
+ *
+ * Each frame contains exactly one message, like the ones emitted when batching is disabled.
+ * Releasing the batch releases all its frames.
+ */
+public class FrameBatch extends AbstractReferenceCounted {
+  private ByteBuf[] frames = new ByteBuf[8];
+  private int size;
+  private boolean endsWithSync;
+
+  void add(ByteBuf frame) {
+    if (size == frames.length) {
+      frames = Arrays.copyOf(frames, size * 2);
+    }
+    frames[size++] = frame;
+    endsWithSync = frame.getByte(frame.readerIndex()) == MessageConstants.SYNC;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public ByteBuf get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for batch of " + size + " frames");
+    }
+    return frames[index];
+  }
+
+  /**
+   * Whether the last frame of the batch is a Sync message.
+   *
+   * Batches are closed after each Sync, but also when there are no more complete frames in the read data, so the
+   * last batch of a read may not end with a Sync.
+   */
+  public boolean endsWithSync() {
+    return endsWithSync;
+  }
+
+  @Override
+  public FrameBatch touch(Object hint) {
+    for (int i = 0; i < size; i++) {
+      frames[i].touch(hint);
+    }
+    return this;
+  }
+
+  @Override
+  protected void deallocate() {
+    for (int i = 0; i < size; i++) {
+      frames[i].release();
+      frames[i] = null;
+    }
+    size = 0;
+  }
+}
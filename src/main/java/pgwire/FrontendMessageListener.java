@@ -31,7 +31,8 @@ public interface FrontendMessageListener<C, S, B> {
    *   issued instead of SQL statements. Value can be true, false, or database, and the default is false.
    *   See <a href="https://www.postgresql.org/docs/current/protocol-replication.html">Section 55.4</a> for details.</li>
    * </ol>
-   * @param parameters
+   * @param parameters The parameters sent by the frontend. When using {@link FrontendPostgresHandler} this is a
+   *                   {@link StartupParameters}, which offers cheap access to the well-known parameters.
    */
   void onStartup(C ctx, int version, Map<S, S> parameters);
 
@@ -47,6 +48,16 @@ public interface FrontendMessageListener<C, S, B> {
 
   void onBind(C ctx, S portalName, S preparedStatementName, List<ParameterBound<S>> params, List<Format> resultFormats);
 
+  /**
+   * An allocation free alternative to {@link #onBind(Object, Object, Object, List, List)}.
+   *
+   * It is called instead of the other method when the handler is configured to do so
+   * (see {@link PostgresBackendChannelInitializer#withFlyweightBind(boolean)}).
+   *
+   * @param bind A view of the message. Both the view and its content are reused once this method returns.
+   */
+  void onBind(C ctx, BindMessage bind);
+
   void onCancelRequest(C ctx, int processId, int secretKey);
 
   /**
@@ -67,6 +78,7 @@ public interface FrontendMessageListener<C, S, B> {
 
   /**
    * @param query the query to execute. It may contain several queries separated by semi-colon {@code ;}.
+   *              {@link QuerySplitter} can be used to iterate over them.
    */
   void onQuery(C ctx, S query);
 
@@ -146,6 +158,11 @@ public interface FrontendMessageListener<C, S, B> {
       throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void onBind(C ctx, BindMessage bind) {
+      throw new UnsupportedOperationException();
+    }
+
     @Override
     public void onCopyData(C ctx, B bytes) {
       throw new UnsupportedOperationException();
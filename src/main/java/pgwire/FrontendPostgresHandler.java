@@ -2,10 +2,10 @@ package pgwire;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.function.IntFunction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,17 +15,63 @@ import org.apache.logging.log4j.Logger;
  * The handler that frontend messages and process them by delegating into a {@link FrontendMessageListener}.
  *
  * This is the handler used by {@link PostgresServer} to process messages from the client.
+ *
+ * While a {@link ResultStreamer} is streaming a result to the channel, the following messages are not dispatched.
+ * They are kept (and the channel stops reading) until the stream is complete, so the listener answers them after the
+ * rows of the result.
+ *
+ * Optionally, the channel also stops reading while the client has too many requests waiting for their ReadyForQuery,
+ * see {@link #setInboundLimits(int, int)}.
  */
 public class FrontendPostgresHandler extends AbstractPostgresHandler {
 
   private static final Logger LOGGER = LogManager.getLogger(FrontendPostgresHandler.class);
   private boolean expectingStartup = true;
   private final FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener;
+  private final BindMessage bindMessage = new BindMessage();
+  private boolean flyweightBind;
+  /**
+   * The messages received while a stream was in progress, either frames or {@link FrameBatch}es.
+   */
+  private final ArrayDeque<Object> deferred = new ArrayDeque<>();
+  private boolean paused;
+  private InboundFlowControl flowControl;
 
   public FrontendPostgresHandler(FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener) {
     this.listener = listener;
   }
 
+  /**
+   * Whether Bind messages are delivered with {@link FrontendMessageListener#onBind(Object, BindMessage)}, which
+   * does not allocate, or with {@link FrontendMessageListener#onBind(Object, Object, Object, List, List)}.
+   */
+  public void setFlyweightBind(boolean flyweightBind) {
+    this.flyweightBind = flyweightBind;
+  }
+
+  /**
+   * Stops reading from the channel while the client has more than the given requests waiting to be answered, or while
+   * those requests take more than the given bytes, and reads again as ReadyForQuery messages are sent. This protects
+   * the server from clients that pipeline queries faster than they are answered, without disconnecting them. A
+   * request is a Query, Sync or FunctionCall message together with the messages before it, and it is answered by the
+   * next ReadyForQuery sent with {@link BackendMessageSender}. By default there is no limit.
+   * <p>
+   * The messages already read are still dispatched, so the limits are exceeded by at most the messages of one read.
+   * Must be called before the handler is added to the pipeline.
+   */
+  public void setInboundLimits(int maxPendingRequests, int maxPendingBytes) {
+    this.flowControl = new InboundFlowControl(maxPendingRequests, maxPendingBytes);
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx)
+      throws Exception {
+    if (flowControl != null) {
+      ctx.channel().attr(InboundFlowControl.FLOW_CONTROL).set(flowControl);
+    }
+    super.handlerAdded(ctx);
+  }
+
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, ByteBuf in)
       throws Exception {
@@ -49,53 +95,254 @@ public class FrontendPostgresHandler extends AbstractPostgresHandler {
         throw new UnsupportedOperationException("Unknown startup message type " + protocolVersion);
       }
     } else {
-      char id = (char) in.readByte();
-      in.skipBytes(4); // length
+      if (flowControl != null) {
+        flowControl.onReceived(in);
+        updateAutoRead(ctx);
+      }
+      if (paused) {
+        deferred.add(in.retain());
+        return;
+      }
+      char id = (char) in.getByte(in.readerIndex());
       LOGGER.debug("Read regular message with id {}", id);
+      dispatch(ctx, in);
+      pauseIfStreaming(ctx);
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg)
+      throws Exception {
+    if (msg instanceof FrameBatch) {
+      FrameBatch batch = (FrameBatch) msg;
+      if (flowControl != null) {
+        for (int i = 0; i < batch.size(); i++) {
+          flowControl.onReceived(batch.get(i));
+        }
+        updateAutoRead(ctx);
+      }
+      if (paused) {
+        deferred.add(batch);
+        return;
+      }
+      try {
+        channelReadBatch(ctx, batch);
+      } finally {
+        batch.release();
+      }
+    } else {
+      super.channelRead(ctx, msg);
+    }
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx)
+      throws Exception {
+    if (ctx.channel().isWritable()) {
+      ResultStreamer.resume(ctx);
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+      throws Exception {
+    if (evt == ResultStreamer.STREAM_COMPLETE) {
+      resumeDispatch(ctx);
+    } else if (evt == InboundFlowControl.WITHIN_BUDGET) {
+      updateAutoRead(ctx);
+    } else {
+      super.userEventTriggered(ctx, evt);
+    }
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx)
+      throws Exception {
+    releaseDeferred();
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx)
+      throws Exception {
+    releaseDeferred();
+    if (flowControl != null) {
+      ctx.channel().attr(InboundFlowControl.FLOW_CONTROL).set(null);
+    }
+    super.handlerRemoved(ctx);
+  }
+
+  /**
+   * Stops dispatching messages (and reading from the channel) if the last dispatched message started a stream.
+   */
+  private void pauseIfStreaming(ChannelHandlerContext ctx) {
+    if (!paused && ResultStreamer.isStreaming(ctx)) {
+      LOGGER.debug("Pausing the dispatch of messages until the stream is complete");
+      paused = true;
+      updateAutoRead(ctx);
+    }
+  }
 
-      switch (id) {
-        case MessageConstants.BIND:
-          decodeBind(ctx, in);
-          break;
-        case MessageConstants.PARSE:
-          decodeParse(ctx, in);
-          break;
-        case MessageConstants.QUERY:
-          decodeQuery(ctx, in);
-          break;
-        case MessageConstants.PASSWORD_MESSAGE:
-          listener.onPasswordLikeMessage(ctx, in);
-          break;
-        case MessageConstants.DESCRIBE:
-          decodeDescribe(ctx, in);
-          break;
-        case MessageConstants.EXECUTE:
-          decodeExecute(ctx, in);
-          break;
-        case MessageConstants.FLUSH:
-          listener.onFlush(ctx);
-          break;
-        case MessageConstants.SYNC:
-          listener.onSync(ctx);
-          break;
-        case MessageConstants.CLOSE:
-          decodeOnClose(ctx, in);
-          break;
-        case MessageConstants.TERMINATE:
-          listener.onTerminate(ctx);
-          break;
-        case MessageConstants.COPY_FAIL:
-          decodeCopyFail(ctx, in);
-          break;
-        case MessageConstants.FUNCTION_CALL:
-          decodeFunctionCall(ctx, in);
-          break;
-        default: {
-          ctx.close();
-          throw new UnsupportedOperationException("Unknown message type " + id);
+  /**
+   * Dispatches the messages received while the stream was in progress, until one of them starts another stream. If
+   * the stream ended because the channel was closed, the messages are discarded instead.
+   */
+  private void resumeDispatch(ChannelHandlerContext ctx) {
+    if (!paused || ResultStreamer.isStreaming(ctx)) {
+      return;
+    }
+    paused = false;
+    if (!ctx.channel().isActive()) {
+      releaseDeferred();
+      return;
+    }
+    Object msg;
+    while (!paused && (msg = deferred.poll()) != null) {
+      try {
+        if (msg instanceof FrameBatch) {
+          channelReadBatch(ctx, (FrameBatch) msg);
+        } else {
+          dispatch(ctx, (ByteBuf) msg);
+          pauseIfStreaming(ctx);
         }
+      } catch (Exception ex) {
+        ctx.fireExceptionCaught(ex);
+      } finally {
+        ReferenceCountUtil.release(msg);
       }
     }
+    updateAutoRead(ctx);
+  }
+
+  /**
+   * Reads from the channel unless a stream is in progress or the client has too many requests waiting.
+   */
+  private void updateAutoRead(ChannelHandlerContext ctx) {
+    boolean autoRead = !paused && (flowControl == null || !flowControl.isOverBudget());
+    if (ctx.channel().config().isAutoRead() != autoRead) {
+      LOGGER.debug("{} reading from the channel", autoRead ? "Resuming" : "Suspending");
+      ctx.channel().config().setAutoRead(autoRead);
+    }
+  }
+
+  private void releaseDeferred() {
+    Object msg;
+    while ((msg = deferred.poll()) != null) {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  /**
+   * Dispatches all the messages in the batch without traversing the pipeline once per message.
+   *
+   * If the listener is a {@link BatchFrontendMessageListener}, the messages are surrounded by calls to
+   * {@link BatchFrontendMessageListener#onBatchStart(Object, int)} and
+   * {@link BatchFrontendMessageListener#onBatchEnd(Object, boolean)}. If a message starts a stream, the batch ends
+   * there (as a batch that does not end with a Sync) and the rest of the messages are delivered as another batch once
+   * the stream is complete.
+   */
+  private void channelReadBatch(ChannelHandlerContext ctx, FrameBatch batch)
+      throws Exception {
+    LOGGER.debug("Read batch of {} messages", batch.size());
+    BatchFrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> batchListener =
+        listener instanceof BatchFrontendMessageListener
+            ? (BatchFrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf>) listener
+            : null;
+    if (batchListener != null) {
+      batchListener.onBatchStart(ctx, batch.size());
+    }
+    int dispatched = 0;
+    while (dispatched < batch.size() && !paused) {
+      dispatch(ctx, batch.get(dispatched++));
+      pauseIfStreaming(ctx);
+    }
+    if (dispatched < batch.size()) {
+      FrameBatch rest = new FrameBatch();
+      for (int i = dispatched; i < batch.size(); i++) {
+        rest.add(batch.get(i).retain());
+      }
+      deferred.addFirst(rest);
+    }
+    if (batchListener != null) {
+      batchListener.onBatchEnd(ctx, dispatched == batch.size() && batch.endsWithSync());
+    }
+    pauseIfStreaming(ctx);
+  }
+
+  /**
+   * Decodes a regular (not startup) message and calls the corresponding listener method.
+   */
+  private void dispatch(ChannelHandlerContext ctx, ByteBuf in) {
+    char id = (char) in.readByte();
+    in.skipBytes(4); // length
+
+    switch (id) {
+      case MessageConstants.BIND:
+        decodeBind(ctx, in);
+        break;
+      case MessageConstants.PARSE:
+        decodeParse(ctx, in);
+        break;
+      case MessageConstants.QUERY:
+        decodeQuery(ctx, in);
+        break;
+      case MessageConstants.PASSWORD_MESSAGE:
+        listener.onPasswordLikeMessage(ctx, in);
+        break;
+      case MessageConstants.DESCRIBE:
+        decodeDescribe(ctx, in);
+        break;
+      case MessageConstants.EXECUTE:
+        decodeExecute(ctx, in);
+        break;
+      case MessageConstants.FLUSH:
+        listener.onFlush(ctx);
+        break;
+      case MessageConstants.SYNC:
+        listener.onSync(ctx);
+        break;
+      case MessageConstants.CLOSE:
+        decodeOnClose(ctx, in);
+        break;
+      case MessageConstants.TERMINATE:
+        listener.onTerminate(ctx);
+        break;
+      case MessageConstants.COPY_DATA:
+        listener.onCopyData(ctx, in);
+        break;
+      case MessageConstants.COPY_DONE:
+        listener.onCopyDone(ctx);
+        break;
+      case MessageConstants.COPY_FAIL:
+        decodeCopyFail(ctx, in);
+        break;
+      case MessageConstants.FUNCTION_CALL:
+        decodeFunctionCall(ctx, in);
+        break;
+      default: {
+        ctx.close();
+        throw new UnsupportedOperationException("Unknown message type " + id);
+      }
+    }
+  }
+
+  /**
+   * Only CopyData messages can be streamed by the frontend. Given frontends may divide the copy stream arbitrarily,
+   * each chunk is delivered as an independent {@link FrontendMessageListener#onCopyData(Object, Object)}.
+   */
+  @Override
+  protected void channelReadStreamedHeader(ChannelHandlerContext ctx, StreamedMessageHeader header)
+      throws Exception {
+    if (header.getId() != MessageConstants.COPY_DATA) {
+      super.channelReadStreamedHeader(ctx, header);
+    }
+    LOGGER.debug("Streaming CopyData message of {} bytes", header.getLength());
+  }
+
+  @Override
+  protected void channelReadStreamedChunk(ChannelHandlerContext ctx, StreamedMessageChunk chunk) {
+    listener.onCopyData(ctx, chunk.content());
   }
 
   private void decodeFunctionCall(ChannelHandlerContext ctx, ByteBuf in) {
@@ -157,28 +404,13 @@ public class FrontendPostgresHandler extends AbstractPostgresHandler {
   }
 
   private void decodeBind(ChannelHandlerContext ctx, ByteBuf slice) {
-    ByteBuf portalName = readNullEndedSlice(slice);
-    ByteBuf psName = readNullEndedSlice(slice);
-
-    IntFunction<Format> formatDecoder = readFormatDecoder(slice);
-
-    int numParams = slice.readUnsignedShort();
-    List<ParameterBound<ByteBuf>> params = new ArrayList<>(numParams);
-    for (int i = 0; i < numParams; i++) {
-      Format format = formatDecoder.apply(i);
-      ByteBuf bytes = readNullEndedSlice(slice);
-      params.add(new ParameterBound<ByteBuf>(format, bytes));
-    }
-
-    int numResultFormats = slice.readUnsignedShort();
-    List<Format> resultFormats = new ArrayList<>(numResultFormats);
-    for (int i = 0; i < numResultFormats; i++) {
-      int formatId = slice.readUnsignedShort();
-      Format format = Format.fromId(formatId);
-      resultFormats.add(format);
+    bindMessage.wrap(slice);
+    if (flyweightBind) {
+      listener.onBind(ctx, bindMessage);
+    } else {
+      listener.onBind(ctx, bindMessage.getPortalName(), bindMessage.getStatementName(),
+          bindMessage.toParameterList(), bindMessage.toResultFormatList());
     }
-
-    listener.onBind(ctx, portalName, psName, params, resultFormats);
   }
 
   private boolean isSSL(int protocolVersion) {
@@ -219,12 +451,6 @@ public class FrontendPostgresHandler extends AbstractPostgresHandler {
   }
 
   private void readStartUpMessage(ChannelHandlerContext ctx, int protocolVersion, ByteBuf buf) {
-    Map<ByteBuf, ByteBuf> parameters = new HashMap<>();
-    while (buf.isReadable()) {
-      ByteBuf parameterName = readNullEndedSlice(buf);
-      ByteBuf parameterValue = readNullEndedSlice(buf);
-      parameters.put(parameterName, parameterValue);
-    }
-    listener.onStartup(ctx, protocolVersion, parameters);
+    listener.onStartup(ctx, protocolVersion, StartupParameters.read(buf));
   }
 }
@@ -3,6 +3,7 @@ package pgwire;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -12,7 +13,8 @@ import java.util.List;
  * Higher level API for {@link BackendMessageListener}.
  *
  * Although it is easier to send data in this way, it is also less efficient than using BackendMessageListener
- * directly given the onDataRow methods allocate a new ArrayList each time.
+ * directly given the onDataRow methods allocate a new ArrayList and a buffer per cell each time. See
+ * {@link RowWriter} for a cheaper alternative.
  */
 public class High<C, V, B> {
 
@@ -29,7 +31,7 @@ public class High<C, V, B> {
     for (int i = 0; i < cells.length; i++) {
       convertedCells.add(converters[i].convert(ctx, cells[i]));
     }
-    listener.onDataRow(ctx, convertedCells);
+    sendDataRow(ctx, convertedCells);
   }
 
   public void onDataRow(C ctx, List<V> cells) {
@@ -37,7 +39,20 @@ public class High<C, V, B> {
     for (int i = 0; i < cells.size(); i++) {
       convertedCells.add(converters[i].convert(ctx, cells.get(i)));
     }
-    listener.onDataRow(ctx, convertedCells);
+    sendDataRow(ctx, convertedCells);
+  }
+
+  /**
+   * Sends the converted cells and releases them, given the listener copies them.
+   */
+  private void sendDataRow(C ctx, ArrayList<B> convertedCells) {
+    try {
+      listener.onDataRow(ctx, convertedCells);
+    } finally {
+      for (int i = 0; i < convertedCells.size(); i++) {
+        ReferenceCountUtil.release(convertedCells.get(i));
+      }
+    }
   }
 
   public static class Builder<C, V, B> {
@@ -0,0 +1,154 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+
+
+/**
+ * Bounds the requests a channel has received and not answered yet, which {@link FrontendPostgresHandler} uses to stop
+ * reading from clients that pipeline more requests than the server can take.
+ *
+ * <p>
+ * A request is a Query, Sync or FunctionCall message, each of which is answered by exactly one ReadyForQuery, together
+ * with the messages received before it, like the Parse, Bind and Execute messages of an extended query. Requests are
+ * counted when they are received, whether they are dispatched right away or held back while a stream is in progress,
+ * and they are answered when {@link BackendMessageSender} sends ReadyForQuery. Messages of the COPY sub-protocol are
+ * not counted, given the listener consumes them as they arrive.
+ * <p>
+ * The channel is over budget when it has pending requests and either their number or their size exceeds the limits.
+ * Messages received after the last request never stop the reads by themselves, given the request they belong to can
+ * only be answered once the rest of it is read, and neither does a COPY FROM STDIN in progress, which needs its data
+ * to be answered.
+ * <p>
+ * Instances belong to a single channel and are only modified from its event loop. The sender may be called from
+ * other threads, so the answers it reports are counted in a task of the event loop.
+ */
+class InboundFlowControl {
+  static final AttributeKey<InboundFlowControl> FLOW_CONTROL =
+      AttributeKey.valueOf(InboundFlowControl.class, "flowControl");
+  /**
+   * The user event fired through the pipeline when a channel that was over budget is within budget again.
+   */
+  static final Object WITHIN_BUDGET = new Object() {
+    @Override
+    public String toString() {
+      return "WITHIN_BUDGET";
+    }
+  };
+
+  private final int maxRequests;
+  private final long maxBytes;
+  /**
+   * The sizes of the pending requests in the order they were received, as a ring buffer.
+   */
+  private long[] sizes = new long[8];
+  private int first;
+  private int requests;
+  private long requestBytes;
+  /**
+   * The size of the messages received after the last request.
+   */
+  private long openBytes;
+  /**
+   * Whether the frontend is sending COPY data, which the oldest pending request needs to be answered.
+   */
+  private boolean copying;
+
+  InboundFlowControl(int maxRequests, long maxBytes) {
+    checkLimits(maxRequests, maxBytes);
+    this.maxRequests = maxRequests;
+    this.maxBytes = maxBytes;
+  }
+
+  static void checkLimits(int maxRequests, long maxBytes) {
+    if (maxRequests <= 0) {
+      throw new IllegalArgumentException("Max pending requests must be positive, but " + maxRequests + " was found");
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Max pending bytes must be positive, but " + maxBytes + " was found");
+    }
+  }
+
+  /**
+   * Counts a message received from the frontend.
+   */
+  void onReceived(ByteBuf frame) {
+    char id = (char) frame.getByte(frame.readerIndex());
+    if (id == MessageConstants.COPY_DATA || id == MessageConstants.COPY_DONE || id == MessageConstants.COPY_FAIL) {
+      return;
+    }
+    openBytes += frame.readableBytes();
+    if (id == MessageConstants.QUERY || id == MessageConstants.SYNC || id == MessageConstants.FUNCTION_CALL) {
+      if (requests == sizes.length) {
+        long[] grown = new long[sizes.length * 2];
+        for (int i = 0; i < requests; i++) {
+          grown[i] = sizes[(first + i) % sizes.length];
+        }
+        sizes = grown;
+        first = 0;
+      }
+      sizes[(first + requests) % sizes.length] = openBytes;
+      requests++;
+      requestBytes += openBytes;
+      openBytes = 0;
+    }
+  }
+
+  /**
+   * Whether the channel should stop reading until some of its requests are answered.
+   */
+  boolean isOverBudget() {
+    return requests > 0 && !copying && (requests > maxRequests || requestBytes + openBytes > maxBytes);
+  }
+
+  /**
+   * Called when ReadyForQuery is sent to the channel, which answers its oldest request.
+   */
+  static void onReadyForQuery(ChannelHandlerContext ctx) {
+    InboundFlowControl control = get(ctx);
+    if (control != null) {
+      if (!ctx.executor().inEventLoop()) {
+        ctx.executor().execute(() -> onReadyForQuery(ctx));
+        return;
+      }
+      boolean wasOverBudget = control.isOverBudget();
+      control.copying = false;
+      // ReadyForQuery is also sent once the connection is authenticated, which does not answer any request
+      if (control.requests > 0) {
+        control.requestBytes -= control.sizes[control.first];
+        control.first = (control.first + 1) % control.sizes.length;
+        control.requests--;
+      }
+      notifyIfWithinBudget(ctx, control, wasOverBudget);
+    }
+  }
+
+  /**
+   * Called when CopyInResponse or CopyBothResponse is sent to the channel, after which the frontend has to send data
+   * for the request to be answered.
+   */
+  static void onCopyIn(ChannelHandlerContext ctx) {
+    InboundFlowControl control = get(ctx);
+    if (control != null) {
+      if (!ctx.executor().inEventLoop()) {
+        ctx.executor().execute(() -> onCopyIn(ctx));
+        return;
+      }
+      boolean wasOverBudget = control.isOverBudget();
+      control.copying = true;
+      notifyIfWithinBudget(ctx, control, wasOverBudget);
+    }
+  }
+
+  private static InboundFlowControl get(ChannelHandlerContext ctx) {
+    return ctx.channel().hasAttr(FLOW_CONTROL) ? ctx.channel().attr(FLOW_CONTROL).get() : null;
+  }
+
+  private static void notifyIfWithinBudget(ChannelHandlerContext ctx, InboundFlowControl control,
+      boolean wasOverBudget) {
+    if (wasOverBudget && !control.isOverBudget()) {
+      ctx.pipeline().fireUserEventTriggered(WITHIN_BUDGET);
+    }
+  }
+}
@@ -0,0 +1,543 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+
+/**
+ * The codec of {@code numeric} values as {@link BigDecimal}, which also encodes and decodes scaled longs (an unscaled
+ * value and the number of decimal digits of its fraction, so {@code 12345} with scale 2 is {@code 123.45}) without
+ * creating BigDecimals or Strings:
+ *
+ * <pre>
+ *   NumericCodec.INSTANCE.encode(writer.beginCell(), priceInCents, 2, format);
+ *   writer.endCell();
+ * </pre>
+ *
+ * BigDecimals whose unscaled value fits in a long are encoded through the same path. The special values {@code NaN},
+ * {@code Infinity} and {@code -Infinity}, which BigDecimal cannot represent, are encoded with
+ * {@link #encodeSpecial(ByteBuf, double, Format)} and decoded with
+ * {@link #decodeDouble(ByteBuf, int, int, Format)}.
+ *
+ * <p>
+ * The binary format is a sequence of base 10000 digits: the number of digits, the weight of the first digit (the
+ * exponent of its power of 10000), the sign, the display scale and the digits themselves, all of them as 16 bits
+ * integers. Trailing zero digits are not sent.
+ */
+public class NumericCodec implements PgCodec<BigDecimal> {
+  public static final NumericCodec INSTANCE = new NumericCodec();
+
+  static final int NBASE = 10000;
+  static final int DEC_DIGITS = 4;
+  static final short SIGN_POSITIVE = 0x0000;
+  static final short SIGN_NEGATIVE = 0x4000;
+  static final short SIGN_NAN = (short) 0xC000;
+  static final short SIGN_POSITIVE_INFINITY = (short) 0xD000;
+  static final short SIGN_NEGATIVE_INFINITY = (short) 0xF000;
+  /**
+   * The max display scale Postgres supports.
+   */
+  static final int MAX_SCALE = 0x3FFF;
+
+  private static final BigInteger BIG_NBASE = BigInteger.valueOf(NBASE);
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  @Override
+  public PgType getType() {
+    return PgType.StandardTypes.NUMERIC;
+  }
+
+  @Override
+  public void encodeText(ByteBuf out, BigDecimal value) {
+    BigDecimal compact = toCompact(value);
+    if (compact != null) {
+      encodeText(out, compact.scaleByPowerOfTen(compact.scale()).longValue(), compact.scale());
+    } else {
+      out.writeCharSequence(value.toPlainString(), StandardCharsets.US_ASCII);
+    }
+  }
+
+  @Override
+  public void encodeBinary(ByteBuf out, BigDecimal value) {
+    BigDecimal compact = toCompact(value);
+    if (compact != null) {
+      encodeBinary(out, compact.scaleByPowerOfTen(compact.scale()).longValue(), compact.scale());
+      return;
+    }
+    int scale = Math.max(value.scale(), 0);
+    BigInteger unscaled = value.abs().setScale(scale, RoundingMode.UNNECESSARY).unscaledValue();
+    // the fraction is padded to a whole number of base 10000 digits
+    int fractionDigits = (scale + DEC_DIGITS - 1) / DEC_DIGITS;
+    unscaled = unscaled.multiply(BigInteger.TEN.pow(fractionDigits * DEC_DIGITS - scale));
+
+    short[] digits = new short[unscaled.bitLength() / 13 + 1];
+    int count = 0;
+    while (unscaled.signum() != 0) {
+      BigInteger[] divRem = unscaled.divideAndRemainder(BIG_NBASE);
+      digits[count++] = divRem[1].shortValue();
+      unscaled = divRem[0];
+    }
+    int weight = count - fractionDigits - 1;
+    // digits are in reverse order, so trailing zeros are at the start
+    int skip = 0;
+    while (skip < count && digits[skip] == 0) {
+      skip++;
+    }
+    if (skip == count) {
+      weight = 0;
+    }
+    out.writeShort(count - skip);
+    out.writeShort(weight);
+    out.writeShort(value.signum() < 0 ? SIGN_NEGATIVE : SIGN_POSITIVE);
+    out.writeShort(scale);
+    for (int i = count - 1; i >= skip; i--) {
+      out.writeShort(digits[i]);
+    }
+  }
+
+  /**
+   * Encodes the number {@code unscaled * 10^-scale} with the given format.
+   */
+  public void encode(ByteBuf out, long unscaled, int scale, Format format) {
+    if (format == Format.TEXT) {
+      encodeText(out, unscaled, scale);
+    } else {
+      encodeBinary(out, unscaled, scale);
+    }
+  }
+
+  /**
+   * Writes the number {@code unscaled * 10^-scale} with exactly {@code scale} fraction digits, like Postgres does for
+   * a {@code numeric(p, scale)} column.
+   */
+  public void encodeText(ByteBuf out, long unscaled, int scale) {
+    checkScale(scale);
+    // digits are calculated on the negative value, given it can represent Long.MIN_VALUE
+    long negative = unscaled < 0 ? unscaled : -unscaled;
+    int digits = negative == 0 ? 1 : SenderUtils.asciiLength(negative) - 1;
+    int integerDigits = Math.max(digits - scale, 1);
+    int length = (unscaled < 0 ? 1 : 0) + integerDigits + (scale > 0 ? scale + 1 : 0);
+    out.ensureWritable(length);
+    int start = out.writerIndex();
+    int index = start + length;
+    for (int i = 0; i < scale; i++) {
+      out.setByte(--index, (int) ('0' - negative % 10));
+      negative /= 10;
+    }
+    if (scale > 0) {
+      out.setByte(--index, '.');
+    }
+    for (int i = 0; i < integerDigits; i++) {
+      out.setByte(--index, (int) ('0' - negative % 10));
+      negative /= 10;
+    }
+    if (unscaled < 0) {
+      out.setByte(start, '-');
+    }
+    out.writerIndex(start + length);
+  }
+
+  /**
+   * Writes the number {@code unscaled * 10^-scale} as base 10000 digits, with {@code scale} as display scale.
+   */
+  public void encodeBinary(ByteBuf out, long unscaled, int scale) {
+    checkScale(scale);
+    long negative = unscaled < 0 ? unscaled : -unscaled;
+    int fractionDigits = (scale + DEC_DIGITS - 1) / DEC_DIGITS;
+    // the last base 10000 digit is padded with zeros when the scale is not a multiple of 4
+    int padding = fractionDigits * DEC_DIGITS - scale;
+    int decimalDigits = negative == 0 ? 0 : SenderUtils.asciiLength(negative) - 1;
+    int count = (decimalDigits + padding + DEC_DIGITS - 1) / DEC_DIGITS;
+
+    out.ensureWritable(8 + count * 2);
+    int start = out.writerIndex();
+    // digits are written backwards from the least significant one, so trailing zeros can be dropped at the end
+    int index = start + 8 + count * 2;
+    int end = -1;
+    long divisor = POWERS_OF_TEN[DEC_DIGITS - padding];
+    long multiplier = POWERS_OF_TEN[padding];
+    for (int i = 0; i < count; i++) {
+      long quotient = negative / divisor;
+      int digit = (int) ((quotient * divisor - negative) * multiplier);
+      index -= 2;
+      out.setShort(index, digit);
+      if (end < 0 && digit != 0) {
+        end = index + 2;
+      }
+      negative = quotient;
+      divisor = NBASE;
+      multiplier = 1;
+    }
+    int written = end < 0 ? 0 : (end - start - 8) / 2;
+    out.setShort(start, written);
+    out.setShort(start + 2, written == 0 ? 0 : count - fractionDigits - 1);
+    out.setShort(start + 4, unscaled < 0 ? SIGN_NEGATIVE : SIGN_POSITIVE);
+    out.setShort(start + 6, scale);
+    out.writerIndex(start + 8 + written * 2);
+  }
+
+  /**
+   * Encodes {@code NaN}, {@code Infinity} or {@code -Infinity}.
+   *
+   * @param value {@link Double#NaN}, {@link Double#POSITIVE_INFINITY} or {@link Double#NEGATIVE_INFINITY}
+   */
+  public void encodeSpecial(ByteBuf out, double value, Format format) {
+    if (Double.isFinite(value)) {
+      throw new IllegalArgumentException("Only NaN and infinite values are special, but " + value + " was found");
+    }
+    if (format == Format.TEXT) {
+      out.writeCharSequence(Double.isNaN(value) ? "NaN" : value > 0 ? "Infinity" : "-Infinity",
+          StandardCharsets.US_ASCII);
+    } else {
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(Double.isNaN(value) ? SIGN_NAN : value > 0 ? SIGN_POSITIVE_INFINITY : SIGN_NEGATIVE_INFINITY);
+      out.writeShort(0);
+    }
+  }
+
+  @Override
+  public BigDecimal decodeText(ByteBuf in, int index, int length) {
+    TextNumber number = TextNumber.parse(in, index, length);
+    if (number.special != 0) {
+      throw new IllegalArgumentException("Special numeric values like NaN cannot be decoded as BigDecimal");
+    }
+    if (number.significantDigits() <= 18) {
+      int scale = number.naturalScale();
+      return BigDecimal.valueOf(number.toUnscaled(scale), scale);
+    }
+    String text = StandardCodecs.trimmedString(in, index, length);
+    try {
+      return new BigDecimal(text);
+    } catch (NumberFormatException ex) {
+      throw StandardCodecs.invalidText(in, index, length, "numeric");
+    }
+  }
+
+  @Override
+  public BigDecimal decodeBinary(ByteBuf in, int index, int length) {
+    int count = checkBinary(in, index, length);
+    int weight = in.getShort(index + 2);
+    short sign = in.getShort(index + 4);
+    int scale = in.getUnsignedShort(index + 6);
+    if (sign != SIGN_POSITIVE && sign != SIGN_NEGATIVE) {
+      throw new IllegalArgumentException("Special numeric values like NaN cannot be decoded as BigDecimal");
+    }
+    BigInteger unscaled = BigInteger.ZERO;
+    for (int i = 0; i < count; i++) {
+      unscaled = unscaled.multiply(BIG_NBASE).add(BigInteger.valueOf(digit(in, index, i)));
+    }
+    BigDecimal result = new BigDecimal(unscaled, (count - 1 - weight) * DEC_DIGITS).setScale(scale, RoundingMode.DOWN);
+    return sign == SIGN_NEGATIVE ? result.negate() : result;
+  }
+
+  /**
+   * Decodes the value as the unscaled long of the given scale, so {@code 123.45} with scale 2 is {@code 12345}.
+   * Values with more fraction digits are rounded half away from zero, like Postgres does when a value is stored in a
+   * column of smaller scale.
+   *
+   * @throws IllegalArgumentException if the value is special or the unscaled value does not fit in a long.
+   */
+  public long decodeUnscaled(ByteBuf in, int index, int length, Format format, int scale) {
+    if (format == Format.TEXT) {
+      TextNumber number = TextNumber.parse(in, index, length);
+      if (number.special != 0) {
+        throw new IllegalArgumentException("Special numeric values like NaN cannot be decoded as long");
+      }
+      return number.toUnscaled(scale);
+    }
+    int count = checkBinary(in, index, length);
+    int weight = in.getShort(index + 2);
+    short sign = in.getShort(index + 4);
+    if (sign != SIGN_POSITIVE && sign != SIGN_NEGATIVE) {
+      throw new IllegalArgumentException("Special numeric values like NaN cannot be decoded as long");
+    }
+    long negative = 0;
+    boolean roundUp = false;
+    digits:
+    for (int i = 0; i < count; i++) {
+      int digit = digit(in, index, i);
+      // the power of 10 of the last decimal digit of this base 10000 digit in the unscaled value
+      int exponent = (weight - i) * DEC_DIGITS + scale;
+      for (int d = DEC_DIGITS - 1; d >= 0; d--) {
+        int decimal = digit / (int) POWERS_OF_TEN[d] % 10;
+        if (exponent + d < 0) {
+          // rounds with the first digit below the units, which is zero if this one is not it
+          roundUp = exponent + d == -1 && decimal >= 5;
+          break digits;
+        }
+        negative = addDigit(negative, decimal, exponent + d);
+      }
+    }
+    return unscaledResult(negative, roundUp, sign == SIGN_NEGATIVE);
+  }
+
+  /**
+   * Decodes the value as a double, including the special values.
+   */
+  public double decodeDouble(ByteBuf in, int index, int length, Format format) {
+    if (format == Format.TEXT) {
+      return StandardCodecs.parseDouble(in, index, length, "numeric");
+    }
+    checkBinary(in, index, length);
+    switch (in.getShort(index + 4)) {
+      case SIGN_NAN:
+        return Double.NaN;
+      case SIGN_POSITIVE_INFINITY:
+        return Double.POSITIVE_INFINITY;
+      case SIGN_NEGATIVE_INFINITY:
+        return Double.NEGATIVE_INFINITY;
+      default:
+        return decodeBinary(in, index, length).doubleValue();
+    }
+  }
+
+  /**
+   * Returns the value with a non negative scale if its unscaled value fits in a long, or null otherwise.
+   */
+  private static BigDecimal toCompact(BigDecimal value) {
+    if (value.scale() < 0) {
+      if (value.precision() - value.scale() > 18) {
+        return null;
+      }
+      value = value.setScale(0, RoundingMode.UNNECESSARY);
+    }
+    return value.precision() <= 18 && value.scale() <= MAX_SCALE ? value : null;
+  }
+
+  private static void checkScale(int scale) {
+    if (scale < 0 || scale > MAX_SCALE) {
+      throw new IllegalArgumentException("The scale must be between 0 and " + MAX_SCALE + ", but " + scale
+          + " was found");
+    }
+  }
+
+  /**
+   * @return the number of digits of a binary numeric.
+   */
+  private static int checkBinary(ByteBuf in, int index, int length) {
+    if (length < 8) {
+      throw new IllegalArgumentException("Binary numeric values must have at least 8 bytes, but " + length
+          + " were found");
+    }
+    int count = in.getUnsignedShort(index);
+    if (length != 8 + count * 2) {
+      throw new IllegalArgumentException("Invalid binary numeric of " + count + " digits and " + length + " bytes");
+    }
+    return count;
+  }
+
+  private static int digit(ByteBuf in, int index, int i) {
+    int digit = in.getShort(index + 8 + i * 2);
+    if (digit < 0 || digit >= NBASE) {
+      throw new IllegalArgumentException("Invalid numeric digit " + digit);
+    }
+    return digit;
+  }
+
+  /**
+   * Adds {@code digit * 10^exponent} to an unscaled value accumulated as a negative number, given it can represent
+   * Long.MIN_VALUE.
+   */
+  private static long addDigit(long negative, int digit, int exponent) {
+    if (digit == 0) {
+      return negative;
+    }
+    if (exponent >= POWERS_OF_TEN.length) {
+      throw outOfRange();
+    }
+    try {
+      return Math.subtractExact(negative, Math.multiplyExact(digit, POWERS_OF_TEN[exponent]));
+    } catch (ArithmeticException ex) {
+      throw outOfRange();
+    }
+  }
+
+  private static long unscaledResult(long negative, boolean roundUp, boolean isNegative) {
+    if (roundUp) {
+      if (negative == Long.MIN_VALUE) {
+        throw outOfRange();
+      }
+      negative--;
+    }
+    if (isNegative) {
+      return negative;
+    }
+    if (negative == Long.MIN_VALUE) {
+      throw outOfRange();
+    }
+    return -negative;
+  }
+
+  private static IllegalArgumentException outOfRange() {
+    return new IllegalArgumentException("Numeric value out of range for a scaled long");
+  }
+
+  /**
+   * The layout of a number in text format: an optional sign, the integer digits, the fraction digits and an optional
+   * exponent, or one of the special values.
+   */
+  private static class TextNumber {
+    private final ByteBuf in;
+    private final int index;
+    private final int length;
+    private boolean negative;
+    private int integerStart;
+    private int integerEnd;
+    private int fractionStart;
+    private int fractionEnd;
+    private int exponent;
+    /**
+     * 0 for regular numbers or one of the special signs.
+     */
+    private short special;
+
+    private TextNumber(ByteBuf in, int index, int length) {
+      this.in = in;
+      this.index = index;
+      this.length = length;
+    }
+
+    static TextNumber parse(ByteBuf in, int index, int length) {
+      TextNumber number = new TextNumber(in, index, length);
+      int i = index;
+      int end = index + length;
+      while (i < end && QuerySplitter.isWhitespace(in.getByte(i))) {
+        i++;
+      }
+      while (end > i && QuerySplitter.isWhitespace(in.getByte(end - 1))) {
+        end--;
+      }
+      boolean signed = i < end && (in.getByte(i) == '-' || in.getByte(i) == '+');
+      if (signed) {
+        number.negative = in.getByte(i) == '-';
+        i++;
+      }
+      if (i < end && !isDigit(in.getByte(i)) && in.getByte(i) != '.') {
+        number.special = parseSpecial(in, i, end, signed, number.negative);
+        if (number.special == 0) {
+          throw number.invalid();
+        }
+        return number;
+      }
+      number.integerStart = i;
+      while (i < end && isDigit(in.getByte(i))) {
+        i++;
+      }
+      number.integerEnd = i;
+      number.fractionStart = i;
+      number.fractionEnd = i;
+      if (i < end && in.getByte(i) == '.') {
+        number.fractionStart = ++i;
+        while (i < end && isDigit(in.getByte(i))) {
+          i++;
+        }
+        number.fractionEnd = i;
+      }
+      if (number.integerEnd == number.integerStart && number.fractionEnd == number.fractionStart) {
+        throw number.invalid();
+      }
+      if (i < end && (in.getByte(i) | 0x20) == 'e') {
+        i++;
+        boolean negativeExponent = false;
+        if (i < end && (in.getByte(i) == '-' || in.getByte(i) == '+')) {
+          negativeExponent = in.getByte(i) == '-';
+          i++;
+        }
+        if (i == end) {
+          throw number.invalid();
+        }
+        int exponent = 0;
+        while (i < end && isDigit(in.getByte(i))) {
+          exponent = exponent * 10 + in.getByte(i) - '0';
+          if (exponent > 1000) {
+            throw new IllegalArgumentException("Invalid numeric exponent in \""
+                + in.toString(index, length, StandardCharsets.UTF_8) + '"');
+          }
+          i++;
+        }
+        number.exponent = negativeExponent ? -exponent : exponent;
+      }
+      if (i != end) {
+        throw number.invalid();
+      }
+      return number;
+    }
+
+    /**
+     * The number of digits without the leading zeros.
+     */
+    int significantDigits() {
+      int digits = integerEnd - integerStart + fractionEnd - fractionStart;
+      for (int i = integerStart; i < fractionEnd; i++) {
+        byte b = in.getByte(i);
+        if (b == '.') {
+          continue;
+        } else if (b != '0') {
+          break;
+        }
+        digits--;
+      }
+      return digits;
+    }
+
+    /**
+     * The scale of the number as written, which can be negative when there is an exponent.
+     */
+    int naturalScale() {
+      return fractionEnd - fractionStart - exponent;
+    }
+
+    long toUnscaled(int scale) {
+      long unscaled = 0;
+      boolean roundUp = false;
+      // the power of 10 of the first integer digit in the unscaled value
+      int digitExponent = integerEnd - integerStart - 1 + exponent + scale;
+      for (int i = integerStart; i < fractionEnd; i++) {
+        if (i == integerEnd && fractionStart != integerEnd) {
+          continue; // the decimal point
+        }
+        int digit = in.getByte(i) - '0';
+        if (digitExponent < 0) {
+          // rounds with the first digit below the units, which is zero if this one is not it
+          roundUp = digitExponent == -1 && digit >= 5;
+          break;
+        }
+        unscaled = addDigit(unscaled, digit, digitExponent--);
+      }
+      return unscaledResult(unscaled, roundUp, negative);
+    }
+
+    private IllegalArgumentException invalid() {
+      return StandardCodecs.invalidText(in, index, length, "numeric");
+    }
+
+    private static short parseSpecial(ByteBuf in, int start, int end, boolean signed, boolean negative) {
+      String word = in.toString(start, end - start, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+      switch (word) {
+        case "nan":
+          return signed ? 0 : SIGN_NAN;
+        case "infinity":
+        case "inf":
+          return negative ? SIGN_NEGATIVE_INFINITY : SIGN_POSITIVE_INFINITY;
+        default:
+          return 0;
+      }
+    }
+
+    private static boolean isDigit(byte b) {
+      return b >= '0' && b <= '9';
+    }
+  }
+}
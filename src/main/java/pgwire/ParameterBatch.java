@@ -0,0 +1,370 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.Map;
+
+
+/**
+ * The parameters of several Bind messages that target the same prepared statement, stored by column.
+ *
+ * <p>
+ * This is what {@link ExecuteManyListener#onExecuteMany(Object, ParameterBatch)} receives when a frontend sends
+ * several Bind and Execute pairs for the same statement (which is what JDBC {@code executeBatch} or psycopg
+ * {@code executemany} do). The values of all rows are copied into a single buffer (see {@link #getData()}) and, for
+ * each parameter, two primitive arrays indexed by row contain the offset and the length of each value in that buffer
+ * (see {@link #getOffsets(int)} and {@link #getLengths(int)}). That way a column can be appended to a columnar store
+ * with a single loop.
+ * <p>
+ * The listener reports the outcome of the execution with {@link #setCommandType(CommandType)} and
+ * {@link #setAffectedRows(int, long)} or {@link #fail(int, Map)}. Instances are reused by {@link ExecuteManyAggregator}
+ * so they are only valid during the listener call.
+ */
+public class ParameterBatch {
+  private final ByteBuf statementName = Unpooled.buffer(32);
+  private final ByteBuf portalName = Unpooled.buffer(8);
+  private final ByteBuf data = Unpooled.buffer(256);
+  private int paramCount;
+  private int[] paramFormats = new int[8];
+  private int resultFormatCount;
+  private int[] resultFormats = new int[8];
+  /**
+   * The number of rows whose Bind has been added, which may be one more than the executed ones.
+   */
+  private int boundRows;
+  private int size;
+  private int capacity = 16;
+  private int[][] offsets = new int[8][];
+  private int[][] lengths = new int[8][];
+
+  private CommandType commandType;
+  private long[] affectedRows = new long[capacity];
+  private int failedRow = -1;
+  private Map<Character, ByteBuf> errorFields;
+
+  /**
+   * The name of the prepared statement all rows are bound to (an empty buffer selects the unnamed statement).
+   */
+  public ByteBuf getStatementName() {
+    return statementName;
+  }
+
+  /**
+   * The name of the portal used by all the rows (an empty buffer selects the unnamed portal).
+   */
+  public ByteBuf getPortalName() {
+    return portalName;
+  }
+
+  /**
+   * The number of rows, which is the number of executions requested by the frontend.
+   */
+  public int size() {
+    return size;
+  }
+
+  public int getParameterCount() {
+    return paramCount;
+  }
+
+  public Format getParameterFormat(int param) {
+    checkParameter(param);
+    return Format.fromId(paramFormats[param]);
+  }
+
+  /**
+   * The number of result format codes, with the same semantics as {@link BindMessage#getResultFormatCount()}.
+   */
+  public int getResultFormatCount() {
+    return resultFormatCount;
+  }
+
+  public Format getResultFormat(int column) {
+    switch (resultFormatCount) {
+      case 0:
+        return Format.TEXT;
+      case 1:
+        return Format.fromId(resultFormats[0]);
+      default:
+        if (column < 0 || column >= resultFormatCount) {
+          throw new IndexOutOfBoundsException("Column " + column + " is out of bounds for "
+              + resultFormatCount + " result formats");
+        }
+        return Format.fromId(resultFormats[column]);
+    }
+  }
+
+  /**
+   * The buffer that contains the values of all the parameters, which can be used in conjunction with
+   * {@link #getOffsets(int)} and {@link #getLengths(int)}. Its reader index is always 0.
+   */
+  public ByteBuf getData() {
+    return data;
+  }
+
+  /**
+   * The offset in {@link #getData()} of the value of the given parameter for each row.
+   *
+   * The returned array is not copied and may be larger than {@link #size()}. Only its first {@link #size()} positions
+   * are meaningful.
+   */
+  public int[] getOffsets(int param) {
+    checkParameter(param);
+    return offsets[param];
+  }
+
+  /**
+   * The length of the value of the given parameter for each row, where -1 means null.
+   *
+   * The returned array is not copied and may be larger than {@link #size()}. Only its first {@link #size()} positions
+   * are meaningful.
+   */
+  public int[] getLengths(int param) {
+    checkParameter(param);
+    return lengths[param];
+  }
+
+  public boolean isNull(int param, int row) {
+    return getLength(param, row) < 0;
+  }
+
+  /**
+   * The length of the value or -1 if it is null.
+   */
+  public int getLength(int param, int row) {
+    checkParameter(param);
+    checkRow(row);
+    return lengths[param][row];
+  }
+
+  public int getOffset(int param, int row) {
+    checkParameter(param);
+    checkRow(row);
+    return offsets[param][row];
+  }
+
+  /**
+   * Returns a slice with the value or null if the value is null.
+   */
+  public ByteBuf getParameter(int param, int row) {
+    int length = getLength(param, row);
+    if (length < 0) {
+      return null;
+    }
+    return data.slice(offsets[param][row], length);
+  }
+
+  /**
+   * Sets the command tag used in the CommandComplete message sent for each row.
+   */
+  public void setCommandType(CommandType commandType) {
+    this.commandType = commandType;
+  }
+
+  /**
+   * Sets the number of affected rows reported for the given row, which is 0 by default.
+   */
+  public void setAffectedRows(int row, long affectedRows) {
+    checkRow(row);
+    this.affectedRows[row] = affectedRows;
+  }
+
+  /**
+   * Sets the number of affected rows reported for all rows.
+   */
+  public void setAffectedRows(long affectedRows) {
+    Arrays.fill(this.affectedRows, 0, size, affectedRows);
+  }
+
+  /**
+   * Reports that the execution of the given row failed.
+   *
+   * The rows before it are reported as completed, then the error is sent and the following messages are ignored
+   * until the next Sync, as the protocol requires.
+   */
+  public void fail(int row, Map<Character, ByteBuf> errorFields) {
+    checkRow(row);
+    this.failedRow = row;
+    this.errorFields = errorFields;
+  }
+
+  CommandType getCommandType() {
+    return commandType;
+  }
+
+  long getAffectedRows(int row) {
+    return affectedRows[row];
+  }
+
+  /**
+   * The row that failed or -1 if there was no error.
+   */
+  int getFailedRow() {
+    return failedRow;
+  }
+
+  Map<Character, ByteBuf> getErrorFields() {
+    return errorFields;
+  }
+
+  int getBoundRows() {
+    return boundRows;
+  }
+
+  boolean isEmpty() {
+    return boundRows == 0;
+  }
+
+  /**
+   * Whether the last bound row is waiting for its Execute.
+   */
+  boolean isExecutePending() {
+    return boundRows > size;
+  }
+
+  void clear() {
+    statementName.clear();
+    portalName.clear();
+    data.clear();
+    paramCount = 0;
+    resultFormatCount = 0;
+    boundRows = 0;
+    size = 0;
+    commandType = null;
+    failedRow = -1;
+    errorFields = null;
+  }
+
+  /**
+   * Whether the given Bind targets the same statement and portal with the same formats as the rows of this batch.
+   */
+  boolean matches(BindMessage bind) {
+    ByteBuf buf = bind.getBuffer();
+    if (bind.getStatementNameLength() != statementName.readableBytes()
+        || !ByteBufUtil.equals(buf, bind.getStatementNameIndex(), statementName, 0, statementName.readableBytes())
+        || bind.getPortalNameLength() != portalName.readableBytes()
+        || !ByteBufUtil.equals(buf, bind.getPortalNameIndex(), portalName, 0, portalName.readableBytes())
+        || bind.getParameterCount() != paramCount
+        || bind.getResultFormatCount() != resultFormatCount) {
+      return false;
+    }
+    for (int i = 0; i < paramCount; i++) {
+      if (bind.getParameterFormat(i).getId() != paramFormats[i]) {
+        return false;
+      }
+    }
+    for (int i = 0; i < resultFormatCount; i++) {
+      if (bind.getResultFormat(i).getId() != resultFormats[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether the given name is the name of the portal used by this batch.
+   */
+  boolean isPortal(ByteBuf name) {
+    return ByteBufUtil.equals(name, portalName);
+  }
+
+  /**
+   * Adds the parameters of the given Bind as a new row. The first row defines the statement, portal and formats.
+   */
+  void add(BindMessage bind) {
+    if (boundRows == 0) {
+      ByteBuf buf = bind.getBuffer();
+      statementName.writeBytes(buf, bind.getStatementNameIndex(), bind.getStatementNameLength());
+      portalName.writeBytes(buf, bind.getPortalNameIndex(), bind.getPortalNameLength());
+      paramCount = bind.getParameterCount();
+      if (paramFormats.length < paramCount) {
+        paramFormats = new int[paramCount];
+        offsets = Arrays.copyOf(offsets, paramCount);
+        lengths = Arrays.copyOf(lengths, paramCount);
+      }
+      for (int i = 0; i < paramCount; i++) {
+        paramFormats[i] = bind.getParameterFormat(i).getId();
+        if (offsets[i] == null) {
+          offsets[i] = new int[capacity];
+          lengths[i] = new int[capacity];
+        }
+      }
+      resultFormatCount = bind.getResultFormatCount();
+      if (resultFormats.length < resultFormatCount) {
+        resultFormats = new int[resultFormatCount];
+      }
+      for (int i = 0; i < resultFormatCount; i++) {
+        resultFormats[i] = bind.getResultFormat(i).getId();
+      }
+    }
+    if (boundRows == capacity) {
+      grow();
+    }
+    int row = boundRows++;
+    for (int i = 0; i < paramCount; i++) {
+      int length = bind.getParameterLength(i);
+      offsets[i][row] = data.writerIndex();
+      lengths[i][row] = length;
+      if (length > 0) {
+        data.writeBytes(bind.getBuffer(), bind.getParameterIndex(i), length);
+      }
+    }
+    affectedRows[row] = 0;
+  }
+
+  /**
+   * Marks the last bound row as executed.
+   */
+  void execute() {
+    assert isExecutePending();
+    size++;
+  }
+
+  /**
+   * Writes the content of a Bind message equivalent to the one that created the given row.
+   */
+  void writeBind(int row, ByteBuf out) {
+    out.writeBytes(portalName, 0, portalName.readableBytes()).writeByte(0);
+    out.writeBytes(statementName, 0, statementName.readableBytes()).writeByte(0);
+    out.writeShort(paramCount);
+    for (int i = 0; i < paramCount; i++) {
+      out.writeShort(paramFormats[i]);
+    }
+    out.writeShort(paramCount);
+    for (int i = 0; i < paramCount; i++) {
+      int length = lengths[i][row];
+      out.writeInt(length);
+      if (length > 0) {
+        out.writeBytes(data, offsets[i][row], length);
+      }
+    }
+    out.writeShort(resultFormatCount);
+    for (int i = 0; i < resultFormatCount; i++) {
+      out.writeShort(resultFormats[i]);
+    }
+  }
+
+  private void grow() {
+    capacity *= 2;
+    for (int i = 0; i < offsets.length && offsets[i] != null; i++) {
+      offsets[i] = Arrays.copyOf(offsets[i], capacity);
+      lengths[i] = Arrays.copyOf(lengths[i], capacity);
+    }
+    affectedRows = Arrays.copyOf(affectedRows, capacity);
+  }
+
+  private void checkParameter(int param) {
+    if (param < 0 || param >= paramCount) {
+      throw new IndexOutOfBoundsException("Parameter " + param + " is out of bounds for " + paramCount
+          + " parameters");
+    }
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for batch of " + size + " rows");
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+
+/**
+ * Encodes and decodes the values of a Postgres type in both the text and the binary formats.
+ *
+ * <p>
+ * Codecs only deal with the content of a value: the length prefix of DataRow cells and Bind parameters (and nulls,
+ * which are represented by a -1 length) are handled by the callers, like {@link RowWriter} or {@link RowEncoder}.
+ * Values are encoded at the writer index of the given buffer and decoded from an absolute index and length, without
+ * modifying the buffer indexes, so they can be read directly from a {@link BindMessage} or a {@link ParameterBatch}.
+ * <p>
+ * Decoding methods throw {@link IllegalArgumentException} when the content is not a valid value. Codecs are stateless
+ * and thread safe.
+ *
+ * @param <T> the Java type of the values.
+ * @see CodecRegistry
+ */
+public interface PgCodec<T> {
+
+  PgType getType();
+
+  void encodeText(ByteBuf out, T value);
+
+  void encodeBinary(ByteBuf out, T value);
+
+  T decodeText(ByteBuf in, int index, int length);
+
+  T decodeBinary(ByteBuf in, int index, int length);
+
+  default void encode(ByteBuf out, T value, Format format) {
+    if (format == Format.BINARY) {
+      encodeBinary(out, value);
+    } else {
+      encodeText(out, value);
+    }
+  }
+
+  default T decode(ByteBuf in, int index, int length, Format format) {
+    return format == Format.BINARY ? decodeBinary(in, index, length) : decodeText(in, index, length);
+  }
+
+  /**
+   * Decodes the readable bytes of the given buffer.
+   */
+  default T decode(ByteBuf in, Format format) {
+    return decode(in, in.readerIndex(), in.readableBytes(), format);
+  }
+
+  /**
+   * Adapts this codec to the {@link ValueConverter} used by {@link High}. Null values are converted to null buffers.
+   */
+  @SuppressWarnings("unchecked")
+  default ValueConverter<ByteBufAllocator, ByteBuf> toConverter(Format format) {
+    return (alloc, input) -> {
+      if (input == null) {
+        return null;
+      }
+      ByteBuf buffer = alloc.buffer();
+      try {
+        encode(buffer, (T) input, format);
+      } catch (RuntimeException ex) {
+        buffer.release();
+        throw ex;
+      }
+      return buffer;
+    };
+  }
+}
@@ -3,6 +3,8 @@ package pgwire;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,39 +13,198 @@ import org.apache.logging.log4j.Logger;
 /**
  * The class that frames a plain {@link ByteBuf} into smaller {@link ByteBuf} where each one contains exactly one
  * message.
+ *
+ * <p>
+ * By default, each message is fully buffered before being emitted. Optionally, a streaming threshold can be defined.
+ * In that case {@link MessageConstants#COPY_DATA} messages (and, when decoding backend messages,
+ * {@link MessageConstants#DATA_ROW} messages) whose content is larger than the threshold are not buffered. Instead, a
+ * {@link StreamedMessageHeader} is emitted as soon as the header is read, followed by one or more
+ * {@link StreamedMessageChunk}s of at most threshold bytes each.
+ * <p>
+ * A max frame length can also be defined. Messages that are not streamed and are larger than that are rejected with a
+ * {@link TooLongFrameException} and the channel is closed. Messages whose length field is smaller than the length
+ * field itself (or than the length and the protocol version of startup messages) are rejected with a
+ * {@link CorruptedFrameException} and the channel is closed too.
+ * <p>
+ * When batching is enabled (see {@link #setBatching(boolean)}), regular messages are not emitted one by one. Instead
+ * all complete messages found in the read data are emitted as a {@link FrameBatch}, which is closed after each Sync.
  */
 public class PgFrameDecoder extends ByteToMessageDecoder {
   private static final Logger LOGGER = LogManager.getLogger();
+  /**
+   * The value used to disable both the streaming threshold and the max frame length.
+   */
+  public static final int NO_LIMIT = Integer.MAX_VALUE;
+
   private boolean expectingStartup;
+  /**
+   * Whether the decoded messages are sent by the frontend, which is the case of decoders that expect the startup.
+   */
+  private final boolean frontend;
+  private final int streamingThreshold;
+  private final int maxFrameLength;
+  /**
+   * The number of bytes of the current streamed message that have not been emitted yet.
+   */
+  private int streamRemaining;
+  private boolean batching;
 
   public PgFrameDecoder(boolean expectingStartup) {
+    this(expectingStartup, NO_LIMIT, NO_LIMIT);
+  }
+
+  /**
+   * @param streamingThreshold messages that can be streamed and whose content is larger than this value are emitted
+   *                           as chunks of at most this size. Use {@link #NO_LIMIT} to disable streaming.
+   * @param maxFrameLength messages that are not streamed and are larger than this value are rejected.
+   *                       Use {@link #NO_LIMIT} to accept messages of any size.
+   */
+  public PgFrameDecoder(boolean expectingStartup, int streamingThreshold, int maxFrameLength) {
+    if (streamingThreshold <= 0) {
+      throw new IllegalArgumentException("Streaming threshold must be positive, but " + streamingThreshold
+          + " was found");
+    }
+    if (maxFrameLength <= 0) {
+      throw new IllegalArgumentException("Max frame length must be positive, but " + maxFrameLength + " was found");
+    }
     this.expectingStartup = expectingStartup;
+    this.frontend = expectingStartup;
+    this.streamingThreshold = streamingThreshold;
+    this.maxFrameLength = maxFrameLength;
+  }
+
+  /**
+   * Enables or disables the emission of {@link FrameBatch}es instead of single frames.
+   *
+   * Batching only applies to regular messages. The startup messages and the streamed messages are always emitted
+   * individually.
+   */
+  public void setBatching(boolean batching) {
+    this.batching = batching;
+  }
+
+  public boolean isBatching() {
+    return batching;
   }
 
   @Override
   protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
       throws Exception {
-    int frameLength;
+    if (streamRemaining > 0) {
+      readChunk(in, out);
+      return;
+    }
+    if (batching && !expectingStartup) {
+      decodeBatch(ctx, in, out);
+      if (!out.isEmpty()) {
+        return;
+      }
+    }
+    // the length field includes itself, so the frame length is at most Integer.MAX_VALUE + 1
+    long frameLength;
     if (in.readableBytes() < 4) {
       LOGGER.debug("At least 4 bytes are required to get the frame length, but {} were found", in.readableBytes());
       return ;
     }
     if (expectingStartup) {
       frameLength = in.getInt(in.readerIndex());
+      if (frameLength < 8) {
+        throw reject(ctx, in, new CorruptedFrameException("Invalid startup message length " + frameLength));
+      }
     } else {
-      if (in.readableBytes() < 8) {
+      if (in.readableBytes() < 5) {
         LOGGER.debug("Not enough bytes to find the length of the not startup message");
         return ;
       }
-      frameLength = in.getInt(in.readerIndex() + 1) + 1;
+      int length = in.getInt(in.readerIndex() + 1);
+      if (length < 4) {
+        throw reject(ctx, in, new CorruptedFrameException("Invalid message length " + length));
+      }
+      frameLength = length + 1L;
+      boolean streamed = length - 4 > streamingThreshold && isStreamable(in.getByte(in.readerIndex()));
+      if (!streamed && frameLength > maxFrameLength) {
+        throw reject(ctx, in, tooLong(frameLength));
+      }
+      if (streamed) {
+        char id = (char) in.readByte();
+        streamRemaining = in.readInt() - 4;
+        LOGGER.debug("Streaming message with id {} and {} bytes", id, streamRemaining);
+        out.add(new StreamedMessageHeader(id, streamRemaining));
+        readChunk(in, out);
+        return;
+      }
+    }
+    if (frameLength > maxFrameLength) {
+      throw reject(ctx, in, tooLong(frameLength));
     }
     if (frameLength <= in.readableBytes()) {
-      if (expectingStartup && in.getInt(4) == 196608) {
+      if (expectingStartup && in.getInt(in.readerIndex() + 4) == 196608) {
         expectingStartup = false;
       }
-      out.add(in.readRetainedSlice(frameLength));
+      out.add(in.readRetainedSlice((int) frameLength));
     } else {
       LOGGER.debug("Required {} bytes, but only {} available", frameLength, in.readableBytes());
     }
   }
+
+  /**
+   * Reads all the complete frames in the buffer until a Sync is found.
+   *
+   * Nothing is added to the output if the first frame is not complete or has to be streamed. Frames that have to be
+   * streamed or rejected, also because of an invalid length, end the batch and are processed by the next call to
+   * decode.
+   */
+  private void decodeBatch(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    FrameBatch batch = null;
+    while (in.readableBytes() >= 5) {
+      byte id = in.getByte(in.readerIndex());
+      int length = in.getInt(in.readerIndex() + 1);
+      if (length < 4 || length + 1L > maxFrameLength || length + 1L > in.readableBytes()
+          || length - 4 > streamingThreshold && isStreamable(id)) {
+        break;
+      }
+      if (batch == null) {
+        batch = new FrameBatch();
+      }
+      batch.add(in.readRetainedSlice(length + 1));
+      if (id == MessageConstants.SYNC) {
+        break;
+      }
+    }
+    if (batch != null) {
+      out.add(batch);
+    }
+  }
+
+  /**
+   * Discards the buffered data and closes the channel, given the framing cannot be recovered.
+   *
+   * @return the given exception, to be thrown
+   */
+  private static Exception reject(ChannelHandlerContext ctx, ByteBuf in, Exception ex) {
+    in.skipBytes(in.readableBytes());
+    ctx.close();
+    return ex;
+  }
+
+  private TooLongFrameException tooLong(long frameLength) {
+    return new TooLongFrameException("Frame of " + frameLength + " bytes is larger than the max of "
+        + maxFrameLength);
+  }
+
+  private void readChunk(ByteBuf in, List<Object> out) {
+    int chunkLength = Math.min(Math.min(in.readableBytes(), streamRemaining), streamingThreshold);
+    if (chunkLength == 0) {
+      return;
+    }
+    streamRemaining -= chunkLength;
+    out.add(new StreamedMessageChunk(in.readRetainedSlice(chunkLength), streamRemaining == 0));
+  }
+
+  /**
+   * Whether the message can be streamed. 'D' is DataRow for backend messages, but it is Describe for frontend ones.
+   */
+  private boolean isStreamable(byte id) {
+    return id == MessageConstants.COPY_DATA || !frontend && id == MessageConstants.DATA_ROW;
+  }
 }
@@ -0,0 +1,56 @@
+package pgwire;
+
+/**
+ * A Postgres interval, which is made of independent months, days and microseconds fields.
+ *
+ * <p>
+ * The fields are kept separated because their length depends on the date they are added to: a month may have 28 to 31
+ * days and a day may have 23 to 25 hours when daylight saving time changes. Instances are immutable.
+ */
+public class PgInterval {
+  public static final PgInterval ZERO = new PgInterval(0, 0, 0);
+
+  private final int months;
+  private final int days;
+  private final long micros;
+
+  public PgInterval(int months, int days, long micros) {
+    this.months = months;
+    this.days = days;
+    this.micros = micros;
+  }
+
+  public int getMonths() {
+    return months;
+  }
+
+  public int getDays() {
+    return days;
+  }
+
+  public long getMicros() {
+    return micros;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PgInterval that = (PgInterval) o;
+    return months == that.months && days == that.days && micros == that.micros;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * months + days) + Long.hashCode(micros);
+  }
+
+  @Override
+  public String toString() {
+    return "PgInterval{months=" + months + ", days=" + days + ", micros=" + micros + '}';
+  }
+}
@@ -58,6 +58,18 @@ public class PgType {
     return category;
   }
 
+  /**
+   * Creates the type of the arrays of the given type, whose OID is {@link #getArrayType()} and whose name is the name
+   * of the element prefixed by an underscore, like Postgres does.
+   */
+  public static PgType arrayOf(PgType element) {
+    if (element.getArrayType() == 0) {
+      throw new IllegalArgumentException("Type " + element.getName() + " has no array type");
+    }
+    return new PgType(element.getArrayType(), "_" + element.getName(), 0, element.getOid(), -1, Type.Base,
+        Category.ARRAY);
+  }
+
   public static class StandardTypes {
 
     public static final PgType BOOL = new PgType(16,"bool",1000,0,1, Type.Base, Category.BOOLEAN);
@@ -75,15 +87,45 @@ public class PgType {
 
     public static final PgType JSON = new PgType(114, "json", 199, 0, -1, Type.Base, Category.USER_DEFINED);
     public static final PgType XML = new PgType(142, "xml", 143, 0, -1, Type.Base, Category.USER_DEFINED);
+    public static final PgType FLOAT4 = new PgType(700, "float4", 1021, 0, 4, Type.Base, Category.NUMERIC);
+    public static final PgType FLOAT8 = new PgType(701, "float8", 1022, 0, 8, Type.Base, Category.NUMERIC);
     public static final PgType BPCHAR = new PgType(1042, "bpchar", 1014, 0, -1, Type.Base, Category.STRING);
     public static final PgType VARCHAR = new PgType(1043, "varchar", 1015, 0, -1, Type.Base, Category.STRING);
     public static final PgType DATE = new PgType(1082, "date", 1182, 0, 4, Type.Base, Category.DATE_TIME);
     public static final PgType TIME = new PgType(1083, "time", 1183, 0, 8, Type.Base, Category.DATE_TIME);
-    public static final PgType TIMESTAMP = new PgType(1114, "timestamp", 1114, 0, 8, Type.Base, Category.DATE_TIME);
-    public static final PgType TIMESTAMPTZ = new PgType(1184, "timestamptz", 1184, 0, 8, Type.Base, Category.DATE_TIME);
-    public static final PgType INTERVAL = new PgType(1186, "interpublic static final PgType ", 1186, 0, 16, Type.Base, Category.TIMESPAN);
-    public static final PgType NUMERIC = new PgType(1231, "numeric", 1231, 0, -1, Type.Base, Category.NUMERIC);
-        
+    public static final PgType TIMESTAMP = new PgType(1114, "timestamp", 1115, 0, 8, Type.Base, Category.DATE_TIME);
+    public static final PgType TIMESTAMPTZ = new PgType(1184, "timestamptz", 1185, 0, 8, Type.Base, Category.DATE_TIME);
+    public static final PgType INTERVAL = new PgType(1186, "interval", 1187, 0, 16, Type.Base, Category.TIMESPAN);
+    public static final PgType NUMERIC = new PgType(1700, "numeric", 1231, 0, -1, Type.Base, Category.NUMERIC);
+    public static final PgType UUID = new PgType(2950, "uuid", 2951, 0, 16, Type.Base, Category.USER_DEFINED);
+    public static final PgType JSONB = new PgType(3802, "jsonb", 3807, 0, -1, Type.Base, Category.USER_DEFINED);
+
+    public static final PgType BOOL_ARRAY = arrayOf(BOOL);
+    public static final PgType BYTEA_ARRAY = arrayOf(BYTEA);
+    public static final PgType CHAR_ARRAY = arrayOf(CHAR);
+    public static final PgType NAME_ARRAY = arrayOf(NAME);
+    public static final PgType INT8_ARRAY = arrayOf(INT8);
+    public static final PgType INT2_ARRAY = arrayOf(INT2);
+    public static final PgType INT2_VECTOR_ARRAY = arrayOf(INT2_VECTOR);
+    public static final PgType INT4_ARRAY = arrayOf(INT4);
+    public static final PgType REG_PROC_ARRAY = arrayOf(REG_PROC);
+    public static final PgType TEXT_ARRAY = arrayOf(TEXT);
+    public static final PgType OID_ARRAY = arrayOf(OID);
+    public static final PgType JSON_ARRAY = arrayOf(JSON);
+    public static final PgType XML_ARRAY = arrayOf(XML);
+    public static final PgType FLOAT4_ARRAY = arrayOf(FLOAT4);
+    public static final PgType FLOAT8_ARRAY = arrayOf(FLOAT8);
+    public static final PgType BPCHAR_ARRAY = arrayOf(BPCHAR);
+    public static final PgType VARCHAR_ARRAY = arrayOf(VARCHAR);
+    public static final PgType DATE_ARRAY = arrayOf(DATE);
+    public static final PgType TIME_ARRAY = arrayOf(TIME);
+    public static final PgType TIMESTAMP_ARRAY = arrayOf(TIMESTAMP);
+    public static final PgType TIMESTAMPTZ_ARRAY = arrayOf(TIMESTAMPTZ);
+    public static final PgType INTERVAL_ARRAY = arrayOf(INTERVAL);
+    public static final PgType NUMERIC_ARRAY = arrayOf(NUMERIC);
+    public static final PgType UUID_ARRAY = arrayOf(UUID);
+    public static final PgType JSONB_ARRAY = arrayOf(JSONB);
+
     public static List<PgType> allTypes() {
       ArrayList<PgType> result = new ArrayList<>();
       result.add(BOOL);
@@ -99,6 +141,8 @@ public class PgType {
       result.add(OID);
       result.add(JSON);
       result.add(XML);
+      result.add(FLOAT4);
+      result.add(FLOAT8);
       result.add(BPCHAR);
       result.add(VARCHAR);
       result.add(DATE);
@@ -107,6 +151,33 @@ public class PgType {
       result.add(TIMESTAMPTZ);
       result.add(INTERVAL);
       result.add(NUMERIC);
+      result.add(UUID);
+      result.add(JSONB);
+      result.add(BOOL_ARRAY);
+      result.add(BYTEA_ARRAY);
+      result.add(CHAR_ARRAY);
+      result.add(NAME_ARRAY);
+      result.add(INT8_ARRAY);
+      result.add(INT2_ARRAY);
+      result.add(INT2_VECTOR_ARRAY);
+      result.add(INT4_ARRAY);
+      result.add(REG_PROC_ARRAY);
+      result.add(TEXT_ARRAY);
+      result.add(OID_ARRAY);
+      result.add(JSON_ARRAY);
+      result.add(XML_ARRAY);
+      result.add(FLOAT4_ARRAY);
+      result.add(FLOAT8_ARRAY);
+      result.add(BPCHAR_ARRAY);
+      result.add(VARCHAR_ARRAY);
+      result.add(DATE_ARRAY);
+      result.add(TIME_ARRAY);
+      result.add(TIMESTAMP_ARRAY);
+      result.add(TIMESTAMPTZ_ARRAY);
+      result.add(INTERVAL_ARRAY);
+      result.add(NUMERIC_ARRAY);
+      result.add(UUID_ARRAY);
+      result.add(JSONB_ARRAY);
       return result;
     }
   }
@@ -0,0 +1,318 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * The portals of each channel, whose rows are produced lazily by a {@link Cursor} and sent in pages of at most the
+ * row limit of each Execute message.
+ *
+ * <p>
+ * Drivers page through large results by executing the same portal several times with a row limit, like pgjdbc does
+ * when a fetch size is set. The registry keeps the cursor of each portal between executions: each Execute streams at
+ * most {@code rowLimit} rows with a {@link ResultStreamer} and then sends PortalSuspended, and the next Execute
+ * resumes from the same position, so neither side has to hold the whole result:
+ *
+ * <pre>
+ *   public void onBind(ChannelHandlerContext ctx, BindMessage bind) {
+ *     portals.bind(ctx, bind.getPortalName(), new MyCursor(...));
+ *     sender.onBindComplete(ctx);
+ *   }
+ *
+ *   public void onExecute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+ *     portals.execute(ctx, name, rowLimit);
+ *   }
+ *
+ *   public void onClose(ChannelHandlerContext ctx, TargetType type, ByteBuf name) {
+ *     if (type == TargetType.PORTAL) {
+ *       portals.close(ctx, name);
+ *     }
+ *     sender.onCloseComplete(ctx);
+ *   }
+ *
+ *   public void onSync(ChannelHandlerContext ctx) {
+ *     portals.closeAll(ctx); // when the transaction ends
+ *     sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+ *   }
+ * </pre>
+ *
+ * Like in Postgres, binding the unnamed portal replaces the previous one, while named portals have to be closed
+ * before their names can be reused. The portals of a channel are closed when the channel is closed.
+ * <p>
+ * Registries can be shared by all the channels of a server and must be called from the event loop of the channel.
+ */
+public class PortalRegistry {
+  private static final AttributeKey<Portals> PORTALS = AttributeKey.valueOf(PortalRegistry.class, "portals");
+
+  private final BackendMessageSender sender;
+  private final ResultStreamer streamer;
+
+  public PortalRegistry(BackendMessageSender sender) {
+    this.sender = sender;
+    this.streamer = new ResultStreamer(sender);
+  }
+
+  /**
+   * Creates a portal with the given cursor, which does not produce any row until the portal is executed.
+   *
+   * @param name the name of the portal, where an empty name is the unnamed portal, which replaces the previous one
+   * @throws IllegalArgumentException if there is another portal with the same (not empty) name
+   */
+  public void bind(ChannelHandlerContext ctx, ByteBuf name, Cursor cursor) {
+    Portals portals = getPortals(ctx);
+    if (!name.isReadable()) {
+      if (portals.unnamed != null) {
+        portals.unnamed.close();
+      }
+      portals.unnamed = new Portal(null, cursor);
+      return;
+    }
+    String key = name.toString(StandardCharsets.UTF_8);
+    if (portals.named.containsKey(key)) {
+      throw new IllegalArgumentException("Portal \"" + key + "\" already exists");
+    }
+    portals.named.put(key, new Portal(key, cursor));
+  }
+
+  /**
+   * Returns the cursor of the portal or null if there is no portal with the given name, which is useful to describe
+   * the portal.
+   */
+  public Cursor get(ChannelHandlerContext ctx, ByteBuf name) {
+    Portal portal = find(ctx, name);
+    return portal == null ? null : portal.cursor;
+  }
+
+  /**
+   * Streams the next rows of the portal. If the row limit is reached, PortalSuspended is sent and the portal remains
+   * open to continue from there. Otherwise {@link Cursor#onComplete(ChannelHandlerContext, long)} is called, like
+   * for portals whose rows have already been sent, which just get an empty page. If the cursor fails, the portal is
+   * closed.
+   *
+   * @param rowLimit the max number of rows to send or 0 for no limit
+   * @throws IllegalArgumentException if the portal does not exist
+   * @throws IllegalStateException if the channel has another stream in progress
+   */
+  public void execute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+    Portal portal = find(ctx, name);
+    if (portal == null) {
+      throw new IllegalArgumentException("Portal \"" + name.toString(StandardCharsets.UTF_8) + "\" does not exist");
+    }
+    portal.executing = true;
+    try {
+      streamer.stream(ctx, new Page(portal, rowLimit));
+    } catch (IllegalStateException ex) {
+      portal.executing = false;
+      throw ex;
+    }
+  }
+
+  /**
+   * Closes the portal with the given name, if it exists.
+   */
+  public void close(ChannelHandlerContext ctx, ByteBuf name) {
+    Portal portal = find(ctx, name);
+    if (portal != null) {
+      remove(ctx, portal);
+      portal.close();
+    }
+  }
+
+  /**
+   * Closes all the portals of the channel, which has to be called when a transaction ends, given portals do not
+   * survive the transaction that created them.
+   */
+  public void closeAll(ChannelHandlerContext ctx) {
+    if (ctx.channel().hasAttr(PORTALS)) {
+      Portals portals = ctx.channel().attr(PORTALS).get();
+      if (portals != null) {
+        portals.closeAll();
+      }
+    }
+  }
+
+  /**
+   * The number of open portals of the channel.
+   */
+  public int size(ChannelHandlerContext ctx) {
+    if (!ctx.channel().hasAttr(PORTALS)) {
+      return 0;
+    }
+    Portals portals = ctx.channel().attr(PORTALS).get();
+    return portals == null ? 0 : (portals.unnamed != null ? 1 : 0) + portals.named.size();
+  }
+
+  private Portal find(ChannelHandlerContext ctx, ByteBuf name) {
+    if (!ctx.channel().hasAttr(PORTALS)) {
+      return null;
+    }
+    Portals portals = ctx.channel().attr(PORTALS).get();
+    if (portals == null) {
+      return null;
+    }
+    return name.isReadable() ? portals.named.get(name.toString(StandardCharsets.UTF_8)) : portals.unnamed;
+  }
+
+  private void remove(ChannelHandlerContext ctx, Portal portal) {
+    Portals portals = getPortals(ctx);
+    if (portal.name == null) {
+      if (portals.unnamed == portal) {
+        portals.unnamed = null;
+      }
+    } else {
+      portals.named.remove(portal.name, portal);
+    }
+  }
+
+  private Portals getPortals(ChannelHandlerContext ctx) {
+    Attribute<Portals> attribute = ctx.channel().attr(PORTALS);
+    Portals portals = attribute.get();
+    if (portals == null) {
+      portals = new Portals();
+      attribute.set(portals);
+      Portals closedPortals = portals;
+      ctx.channel().closeFuture().addListener(future -> closedPortals.closeAll());
+    }
+    return portals;
+  }
+
+  /**
+   * The rows of a portal, which are produced as they are written.
+   */
+  public interface Cursor extends ResultStreamer.RowSource {
+    /**
+     * Called once all the rows of the portal have been written, usually to send the CommandComplete message.
+     *
+     * @param rows the number of rows written by the last execution of the portal
+     */
+    @Override
+    void onComplete(ChannelHandlerContext ctx, long rows);
+
+    /**
+     * Releases the resources of the cursor, which is called once when the portal is closed, after it fails, when it
+     * is replaced or when the channel is closed. A portal closed while it is being executed, like when the channel is
+     * closed in the middle of a page, is closed once the execution ends, after
+     * {@link #onComplete(ChannelHandlerContext, long)} or {@link #onError(ChannelHandlerContext, Exception)}.
+     */
+    void close();
+  }
+
+  private static class Portal {
+    /**
+     * The name of the portal or null for the unnamed portal.
+     */
+    private final String name;
+    private final Cursor cursor;
+    private boolean exhausted;
+    /**
+     * Whether a page of the portal is being streamed, in which case closing the portal is deferred until it ends.
+     */
+    private boolean executing;
+    private boolean closeRequested;
+    private boolean closed;
+
+    Portal(String name, Cursor cursor) {
+      this.name = name;
+      this.cursor = cursor;
+    }
+
+    void close() {
+      if (executing) {
+        closeRequested = true;
+      } else if (!closed) {
+        closed = true;
+        cursor.close();
+      }
+    }
+
+    /**
+     * Called when the page in progress ends, which closes the portal if it was closed in the meantime.
+     */
+    void endExecution() {
+      executing = false;
+      if (closeRequested) {
+        close();
+      }
+    }
+  }
+
+  /**
+   * The rows of an execution of a portal.
+   */
+  private class Page implements ResultStreamer.RowSource {
+    private final Portal portal;
+    private final int rowLimit;
+    private int rows;
+
+    Page(Portal portal, int rowLimit) {
+      this.portal = portal;
+      this.rowLimit = rowLimit;
+    }
+
+    @Override
+    public boolean writeRow(RowWriter writer)
+        throws Exception {
+      if (portal.exhausted || rowLimit > 0 && rows == rowLimit) {
+        return false;
+      }
+      if (!portal.cursor.writeRow(writer)) {
+        portal.exhausted = true;
+        return false;
+      }
+      rows++;
+      return true;
+    }
+
+    @Override
+    public void onComplete(ChannelHandlerContext ctx, long rows) {
+      try {
+        if (portal.exhausted) {
+          portal.cursor.onComplete(ctx, rows);
+        } else {
+          sender.onPortalSuspended(ctx);
+        }
+      } finally {
+        portal.endExecution();
+      }
+    }
+
+    @Override
+    public void onError(ChannelHandlerContext ctx, Exception error) {
+      remove(ctx, portal);
+      try {
+        portal.cursor.onError(ctx, error);
+      } finally {
+        portal.endExecution();
+        portal.close();
+      }
+    }
+  }
+
+  /**
+   * The portals of a channel.
+   */
+  private static class Portals {
+    private Portal unnamed;
+    private final HashMap<String, Portal> named = new HashMap<>();
+
+    void closeAll() {
+      if (unnamed != null) {
+        unnamed.close();
+        unnamed = null;
+      }
+      if (!named.isEmpty()) {
+        ArrayList<Portal> portals = new ArrayList<>(named.values());
+        named.clear();
+        for (Portal portal : portals) {
+          portal.close();
+        }
+      }
+    }
+  }
+}
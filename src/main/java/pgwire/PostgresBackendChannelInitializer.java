@@ -3,6 +3,7 @@ package pgwire;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
@@ -19,6 +20,13 @@ public class PostgresBackendChannelInitializer extends ChannelInitializer<Socket
 
   private final IntFunction<PgType> typeLibrary;
   private final FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener;
+  private int streamingThreshold = PgFrameDecoder.NO_LIMIT;
+  private int maxFrameLength = PgFrameDecoder.NO_LIMIT;
+  private boolean batching;
+  private boolean flyweightBind;
+  private WriteBufferWaterMark writeBufferWaterMark;
+  private int maxPendingRequests;
+  private int maxPendingBytes;
 
   public PostgresBackendChannelInitializer(IntFunction<PgType> typeLibrary,
       FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener) {
@@ -26,12 +34,80 @@ public class PostgresBackendChannelInitializer extends ChannelInitializer<Socket
     this.listener = listener;
   }
 
+  /**
+   * Configures the limits used by the {@link PgFrameDecoder} of each channel.
+   *
+   * @param streamingThreshold CopyData messages larger than this are delivered in chunks instead of being buffered.
+   * @param maxFrameLength other messages larger than this are rejected and the channel is closed.
+   * @see PgFrameDecoder#PgFrameDecoder(boolean, int, int)
+   */
+  public PostgresBackendChannelInitializer withFrameLimits(int streamingThreshold, int maxFrameLength) {
+    this.streamingThreshold = streamingThreshold;
+    this.maxFrameLength = maxFrameLength;
+    return this;
+  }
+
+  /**
+   * Enables the delivery of all the messages decoded from a single read as a single pipeline event.
+   *
+   * @see PgFrameDecoder#setBatching(boolean)
+   * @see BatchFrontendMessageListener
+   */
+  public PostgresBackendChannelInitializer withBatching(boolean batching) {
+    this.batching = batching;
+    return this;
+  }
+
+  /**
+   * Delivers Bind messages with the allocation free {@link FrontendMessageListener#onBind(Object, BindMessage)}.
+   */
+  public PostgresBackendChannelInitializer withFlyweightBind(boolean flyweightBind) {
+    this.flyweightBind = flyweightBind;
+    return this;
+  }
+
+  /**
+   * Configures the water marks of the outbound buffer of each channel, which bound the memory used by the results
+   * streamed with {@link ResultStreamer}. By default the ones of Netty are used.
+   *
+   * @param low once the channel is not writable, it becomes writable again when the buffer drains below this size.
+   * @param high the size in bytes at which the channel stops being writable.
+   */
+  public PostgresBackendChannelInitializer withWriteBufferWaterMark(int low, int high) {
+    this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+    return this;
+  }
+
+  /**
+   * Stops reading from each channel while its client has too many requests waiting to be answered.
+   *
+   * @param maxPendingRequests the max number of Query, Sync and FunctionCall messages not answered yet.
+   * @param maxPendingBytes the max size in bytes of the messages of those requests.
+   * @see FrontendPostgresHandler#setInboundLimits(int, int)
+   */
+  public PostgresBackendChannelInitializer withInboundLimits(int maxPendingRequests, int maxPendingBytes) {
+    InboundFlowControl.checkLimits(maxPendingRequests, maxPendingBytes);
+    this.maxPendingRequests = maxPendingRequests;
+    this.maxPendingBytes = maxPendingBytes;
+    return this;
+  }
+
   @Override
   protected void initChannel(SocketChannel ch)
       throws Exception {
+    if (writeBufferWaterMark != null) {
+      ch.config().setWriteBufferWaterMark(writeBufferWaterMark);
+    }
+    PgFrameDecoder frameDecoder = new PgFrameDecoder(true, streamingThreshold, maxFrameLength);
+    frameDecoder.setBatching(batching);
+    FrontendPostgresHandler handler = new FrontendPostgresHandler(listener);
+    handler.setFlyweightBind(flyweightBind);
+    if (maxPendingRequests > 0) {
+      handler.setInboundLimits(maxPendingRequests, maxPendingBytes);
+    }
     ch.pipeline()
         .addLast(new LoggingHandler(LogLevel.DEBUG))
-        .addLast(new PgFrameDecoder(true))
-        .addLast(new FrontendPostgresHandler(listener));
+        .addLast(frameDecoder)
+        .addLast(handler);
   }
 }
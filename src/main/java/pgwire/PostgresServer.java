@@ -48,7 +48,7 @@ public abstract class PostgresServer {
     serverBootstrap.group(parentGroup, childGroup)
         .channel(getChannelClass())
         .handler(new LoggingHandler(LogLevel.TRACE))
-        .childHandler(new PostgresBackendChannelInitializer(createLibrary(), createMessageListener()));
+        .childHandler(createChannelInitializer());
 
     ChannelFuture bind = serverBootstrap.bind(host, port);
 
@@ -96,6 +96,16 @@ public abstract class PostgresServer {
    */
   protected abstract FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> createMessageListener();
 
+  /**
+   * Returns the {@link PostgresBackendChannelInitializer} that will configure the pipeline of each connection.
+   *
+   * It can be overridden to tune the pipeline, for example by calling
+   * {@link PostgresBackendChannelInitializer#withFrameLimits(int, int)} on the result of the super method.
+   */
+  protected PostgresBackendChannelInitializer createChannelInitializer() {
+    return new PostgresBackendChannelInitializer(createLibrary(), createMessageListener());
+  }
+
   /**
    * The life cycle method that is called before the server is started.
    *
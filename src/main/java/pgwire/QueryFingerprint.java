@@ -0,0 +1,264 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+
+import static pgwire.QuerySplitter.*;
+
+
+/**
+ * Computes the fingerprint of a query: a 64-bit hash of its normalized text.
+ *
+ * <p>
+ * Queries that only differ in their constants, whitespaces, comments or the case of their keywords and unquoted
+ * identifiers have the same normalized text and therefore the same fingerprint, so it can be used as the key of
+ * statement caches, per query statistics or result caches. The normalized text is built as follows:
+ * <ul>
+ *   <li>String constants (including {@code E''}, {@code B''}, {@code X''}, {@code U&''} and dollar quoted strings) and
+ *   numeric constants are replaced by {@code ?}. Positional parameters like {@code $1} are kept.</li>
+ *   <li>Keywords and unquoted identifiers are lower cased. Quoted identifiers are kept as they are.</li>
+ *   <li>Comments are removed and tokens are separated by a single space, except around punctuation like
+ *   {@code ( ) , . ::} which is not separated at all. Trailing semicolons are removed.</li>
+ * </ul>
+ * For example, {@code SELECT * FROM t WHERE id=42 AND name = 'x'} is normalized as
+ * {@code select * from t where id = ? and name = ?}.
+ * <p>
+ * The query is read directly from the {@link ByteBuf} in a single pass, without decoding it as a String. The hash is
+ * the 64-bit FNV-1a of the normalized text, so it is stable across processes. Instances are reusable but not thread
+ * safe.
+ */
+public class QueryFingerprint {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final int NONE = 0;
+  /**
+   * Identifiers, keywords, constants and parameters.
+   */
+  private static final int WORD = 1;
+  private static final int OPERATOR = 2;
+  private static final int PUNCTUATION = 3;
+
+  private long hash;
+  private ByteBuf out;
+  private int lastKind;
+  private boolean pendingSemicolon;
+
+  /**
+   * Returns the fingerprint of the query that starts at the reader index of the given buffer and ends at its writer
+   * index or at the first null byte. The indexes of the buffer are not modified.
+   */
+  public long fingerprint(ByteBuf query) {
+    return fingerprint(query, null);
+  }
+
+  /**
+   * Like {@link #fingerprint(ByteBuf)}, but also writes the normalized text into the given buffer.
+   *
+   * @param normalized the buffer where the normalized text is written, which may be null
+   */
+  public long fingerprint(ByteBuf query, ByteBuf normalized) {
+    hash = FNV_OFFSET_BASIS;
+    out = normalized;
+    lastKind = NONE;
+    pendingSemicolon = false;
+    try {
+      scan(query);
+      return hash;
+    } finally {
+      out = null;
+    }
+  }
+
+  private void scan(ByteBuf query) {
+    int lowerBound = query.readerIndex();
+    int nullIndex = query.bytesBefore((byte) 0);
+    int end = nullIndex < 0 ? query.writerIndex() : lowerBound + nullIndex;
+
+    int i = lowerBound;
+    while (i < end) {
+      byte b = query.getByte(i);
+      if (isWhitespace(b)) {
+        i++;
+      } else if (b == '-' && i + 1 < end && query.getByte(i + 1) == '-') {
+        i = skipLineComment(query, i, end);
+      } else if (b == '/' && i + 1 < end && query.getByte(i + 1) == '*') {
+        i = skipBlockComment(query, i, end);
+      } else if (b == '\'') {
+        i = skipString(query, i, end, false);
+        literal();
+      } else if (b == '"') {
+        int identifierEnd = skipQuotedIdentifier(query, i, end);
+        beginToken(WORD);
+        for (int j = i; j < identifierEnd; j++) {
+          emit(query.getByte(j));
+        }
+        i = identifierEnd;
+      } else if (b == '$') {
+        i = scanDollar(query, i, end);
+      } else if (b >= '0' && b <= '9' || b == '.' && i + 1 < end && isDigit(query.getByte(i + 1))) {
+        i = skipNumber(query, i, end);
+        literal();
+      } else if (isIdentifierChar(b)) {
+        i = scanWord(query, i, end);
+      } else if (b == ';') {
+        pendingSemicolon = lastKind != NONE;
+        i++;
+      } else if (isOperatorChar(b)) {
+        i = scanOperator(query, i, end);
+      } else {
+        beginToken(PUNCTUATION);
+        emit(b);
+        i++;
+      }
+    }
+  }
+
+  /**
+   * Scans an identifier or keyword, which may actually be the prefix of a string constant like {@code E'\n'}.
+   */
+  private int scanWord(ByteBuf query, int start, int end) {
+    int i = start + 1;
+    while (i < end && isIdentifierChar(query.getByte(i))) {
+      i++;
+    }
+    if (i - start == 1 && i < end) {
+      byte prefix = (byte) (query.getByte(start) | 0x20);
+      byte next = query.getByte(i);
+      if (next == '\'' && (prefix == 'e' || prefix == 'b' || prefix == 'x' || prefix == 'n')) {
+        int stringEnd = skipString(query, i, end, prefix == 'e');
+        literal();
+        return stringEnd;
+      }
+      if (prefix == 'u' && next == '&' && i + 1 < end && query.getByte(i + 1) == '\'') {
+        int stringEnd = skipString(query, i + 1, end, false);
+        literal();
+        return stringEnd;
+      }
+    }
+    beginToken(WORD);
+    for (int j = start; j < i; j++) {
+      byte b = query.getByte(j);
+      emit(b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b);
+    }
+    return i;
+  }
+
+  /**
+   * Scans a positional parameter, a dollar quoted string or a lonely dollar sign.
+   */
+  private int scanDollar(ByteBuf query, int start, int end) {
+    if (start + 1 < end && isDigit(query.getByte(start + 1))) {
+      beginToken(WORD);
+      emit((byte) '$');
+      int i = start + 1;
+      while (i < end && isDigit(query.getByte(i))) {
+        emit(query.getByte(i));
+        i++;
+      }
+      return i;
+    }
+    int stringEnd = skipDollarQuoted(query, start, end);
+    if (stringEnd >= 0) {
+      literal();
+      return stringEnd;
+    }
+    beginToken(PUNCTUATION);
+    emit((byte) '$');
+    return start + 1;
+  }
+
+  /**
+   * Scans a sequence of operator characters, which ends before any comment start.
+   */
+  private int scanOperator(ByteBuf query, int start, int end) {
+    beginToken(OPERATOR);
+    int i = start;
+    while (i < end) {
+      byte b = query.getByte(i);
+      if (!isOperatorChar(b)) {
+        break;
+      }
+      if (i + 1 < end) {
+        byte next = query.getByte(i + 1);
+        if (b == '-' && next == '-' || b == '/' && next == '*') {
+          break;
+        }
+      }
+      emit(b);
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipNumber(ByteBuf query, int start, int end) {
+    int i = start + 1;
+    while (i < end) {
+      byte b = query.getByte(i);
+      if (isIdentifierChar(b) || b == '.') {
+        i++;
+      } else if ((b == '+' || b == '-') && (query.getByte(i - 1) | 0x20) == 'e' && i + 1 < end
+          && isDigit(query.getByte(i + 1))) {
+        i += 2;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  private void literal() {
+    beginToken(WORD);
+    emit((byte) '?');
+  }
+
+  /**
+   * Writes the separator between the previous token and the next one, if needed.
+   */
+  private void beginToken(int kind) {
+    if (pendingSemicolon) {
+      emit((byte) ';');
+      lastKind = PUNCTUATION;
+      pendingSemicolon = false;
+    }
+    if (lastKind != NONE && lastKind != PUNCTUATION && kind != PUNCTUATION) {
+      emit((byte) ' ');
+    }
+    lastKind = kind;
+  }
+
+  private void emit(byte b) {
+    hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+    if (out != null) {
+      out.writeByte(b);
+    }
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static boolean isOperatorChar(byte b) {
+    switch (b) {
+      case '+':
+      case '-':
+      case '*':
+      case '/':
+      case '<':
+      case '>':
+      case '=':
+      case '~':
+      case '!':
+      case '@':
+      case '#':
+      case '%':
+      case '^':
+      case '&':
+      case '|':
+      case '`':
+      case '?':
+        return true;
+      default:
+        return false;
+    }
+  }
+}
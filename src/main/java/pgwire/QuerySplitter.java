@@ -0,0 +1,292 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+
+/**
+ * A cursor over the statements of a simple Query message, which may contain several statements separated by
+ * semicolons.
+ *
+ * <p>
+ * The query is scanned directly on the {@link ByteBuf}, without decoding it as a String. Semicolons inside string
+ * constants (including {@code E''} escaped strings), quoted identifiers, dollar quoted strings and line or block
+ * comments are not considered separators. Block comments can be nested, as in Postgres. Strings are assumed to
+ * follow {@code standard_conforming_strings}, so backslashes are only escape characters in {@code E''} strings.
+ * <p>
+ * Statements are trimmed of whitespaces and trailing comments (leading comments are kept, given they may contain
+ * hints) and the ones that only contain whitespaces and comments are skipped. The cursor does not allocate per
+ * statement: positions are available with {@link #getStart()} and {@link #getLength()} and {@link #current()}
+ * returns the same buffer for all the statements of a query.
+ *
+ * <pre>
+ *   splitter.reset(query);
+ *   while (splitter.next()) {
+ *     execute(splitter.current());
+ *   }
+ * </pre>
+ */
+public class QuerySplitter {
+  private ByteBuf query;
+  private ByteBuf current;
+  private int index;
+  private int end;
+  private int start;
+  private int length;
+
+  /**
+   * Starts the iteration over the given query, from its reader index to its writer index or to the first null byte.
+   *
+   * @return this instance
+   */
+  public QuerySplitter reset(ByteBuf query) {
+    this.query = query;
+    this.current = null;
+    this.index = query.readerIndex();
+    int nullIndex = query.bytesBefore((byte) 0);
+    this.end = nullIndex < 0 ? query.writerIndex() : index + nullIndex;
+    this.start = index;
+    this.length = 0;
+    return this;
+  }
+
+  /**
+   * Moves to the next statement.
+   *
+   * @return false if there are no more statements
+   */
+  public boolean next() {
+    int lowerBound = query.readerIndex();
+    while (index < end) {
+      int statementStart = -1;
+      int statementEnd = -1;
+      boolean hasToken = false;
+      int i = index;
+      while (i < end) {
+        byte b = query.getByte(i);
+        if (b == ';') {
+          break;
+        }
+        int tokenEnd;
+        boolean token = true;
+        switch (b) {
+          case '\'':
+            tokenEnd = skipString(query, i, end, isEscapeStringPrefix(query, i, lowerBound));
+            break;
+          case '"':
+            tokenEnd = skipQuotedIdentifier(query, i, end);
+            break;
+          case '$':
+            tokenEnd = i > lowerBound && isIdentifierChar(query.getByte(i - 1)) ? -1 : skipDollarQuoted(query, i, end);
+            if (tokenEnd < 0) {
+              tokenEnd = i + 1;
+            }
+            break;
+          case '-':
+            if (i + 1 < end && query.getByte(i + 1) == '-') {
+              tokenEnd = skipLineComment(query, i, end);
+              token = false;
+            } else {
+              tokenEnd = i + 1;
+            }
+            break;
+          case '/':
+            if (i + 1 < end && query.getByte(i + 1) == '*') {
+              tokenEnd = skipBlockComment(query, i, end);
+              token = false;
+            } else {
+              tokenEnd = i + 1;
+            }
+            break;
+          default:
+            if (isWhitespace(b)) {
+              i++;
+              continue;
+            }
+            tokenEnd = i + 1;
+        }
+        if (statementStart < 0) {
+          statementStart = i;
+        }
+        if (token) {
+          statementEnd = tokenEnd;
+          hasToken = true;
+        }
+        i = tokenEnd;
+      }
+      index = i + 1;
+      if (hasToken) {
+        start = statementStart;
+        length = statementEnd - statementStart;
+        return true;
+      }
+    }
+    start = end;
+    length = 0;
+    return false;
+  }
+
+  /**
+   * The index in the query buffer of the first byte of the current statement.
+   */
+  public int getStart() {
+    return start;
+  }
+
+  /**
+   * The length of the current statement, which does not include the semicolon.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * The current statement as a buffer that shares the content with the query.
+   *
+   * The same instance is returned for all the statements of the query, so it is only valid until {@link #next()} is
+   * called again.
+   */
+  public ByteBuf current() {
+    if (current == null) {
+      current = query.duplicate();
+    }
+    current.setIndex(start, start + length);
+    return current;
+  }
+
+  static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+  }
+
+  /**
+   * Whether the byte can be part of an identifier (but not necessarily its first byte). Non-ASCII bytes are
+   * considered letters, like Postgres does.
+   */
+  static boolean isIdentifierChar(byte b) {
+    return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_' || b == '$' || b < 0;
+  }
+
+  /**
+   * Whether the quote at the given index is preceded by an {@code E} that makes it an escape string.
+   */
+  static boolean isEscapeStringPrefix(ByteBuf buf, int quoteIndex, int lowerBound) {
+    if (quoteIndex <= lowerBound) {
+      return false;
+    }
+    byte prev = buf.getByte(quoteIndex - 1);
+    return (prev == 'e' || prev == 'E')
+        && (quoteIndex - 1 == lowerBound || !isIdentifierChar(buf.getByte(quoteIndex - 2)));
+  }
+
+  /**
+   * @param index the index of the opening quote
+   * @param backslashEscapes whether backslashes escape the next byte, as in {@code E''} strings
+   * @return the index just after the closing quote or end if the string is not closed
+   */
+  static int skipString(ByteBuf buf, int index, int end, boolean backslashEscapes) {
+    int i = index + 1;
+    while (i < end) {
+      byte b = buf.getByte(i);
+      if (b == '\\' && backslashEscapes) {
+        i += 2;
+      } else if (b == '\'') {
+        if (i + 1 < end && buf.getByte(i + 1) == '\'') {
+          i += 2;
+        } else {
+          return i + 1;
+        }
+      } else {
+        i++;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * @param index the index of the opening double quote
+   * @return the index just after the closing double quote or end if the identifier is not closed
+   */
+  static int skipQuotedIdentifier(ByteBuf buf, int index, int end) {
+    int i = index + 1;
+    while (i < end) {
+      if (buf.getByte(i) == '"') {
+        if (i + 1 < end && buf.getByte(i + 1) == '"') {
+          i += 2;
+        } else {
+          return i + 1;
+        }
+      } else {
+        i++;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * @param index the index of a dollar sign that is not preceded by an identifier character
+   * @return the index just after the closing tag, end if the string is not closed or -1 if the dollar sign does not
+   *     start a dollar quoted string (for example, when it is a positional parameter like {@code $1})
+   */
+  static int skipDollarQuoted(ByteBuf buf, int index, int end) {
+    int tagEnd = index + 1;
+    if (tagEnd < end) {
+      byte first = buf.getByte(tagEnd);
+      if (first >= '0' && first <= '9') {
+        return -1;
+      }
+    }
+    while (tagEnd < end) {
+      byte b = buf.getByte(tagEnd);
+      if (b == '$') {
+        break;
+      }
+      if (!isIdentifierChar(b)) {
+        return -1;
+      }
+      tagEnd++;
+    }
+    if (tagEnd >= end) {
+      return -1;
+    }
+    int tagLength = tagEnd + 1 - index;
+    for (int i = tagEnd + 1; i + tagLength <= end; i++) {
+      if (buf.getByte(i) == '$' && ByteBufUtil.equals(buf, index, buf, i, tagLength)) {
+        return i + tagLength;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * @param index the index of the first dash
+   * @return the index just after the end of the line or end
+   */
+  static int skipLineComment(ByteBuf buf, int index, int end) {
+    int newLine = buf.indexOf(index + 2, end, (byte) '\n');
+    return newLine < 0 ? end : newLine + 1;
+  }
+
+  /**
+   * @param index the index of the slash that opens the comment
+   * @return the index just after the comment, considering nested comments, or end if the comment is not closed
+   */
+  static int skipBlockComment(ByteBuf buf, int index, int end) {
+    int depth = 1;
+    int i = index + 2;
+    while (i < end) {
+      byte b = buf.getByte(i);
+      if (b == '*' && i + 1 < end && buf.getByte(i + 1) == '/') {
+        i += 2;
+        if (--depth == 0) {
+          return i;
+        }
+      } else if (b == '/' && i + 1 < end && buf.getByte(i + 1) == '*') {
+        depth++;
+        i += 2;
+      } else {
+        i++;
+      }
+    }
+    return end;
+  }
+}
@@ -0,0 +1,270 @@
+package pgwire;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.nio.channels.ClosedChannelException;
+
+
+/**
+ * Streams the rows of a result to a channel, pulling them from a {@link RowSource} only while the channel is writable.
+ *
+ * <p>
+ * Sending a large result row by row with {@link BackendMessageSender} buffers all the rows the client has not read
+ * yet in the outbound buffer of the channel. Instead the streamer writes rows until the outbound buffer reaches its
+ * high water mark, flushes them and waits until the buffer drains below the low water mark (see
+ * {@link io.netty.channel.WriteBufferWaterMark} and
+ * {@link PostgresBackendChannelInitializer#withWriteBufferWaterMark(int, int)}), so the memory used by each
+ * connection is bounded by the water mark rather than by the size of the result:
+ *
+ * <pre>
+ *   public void onExecute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+ *     Iterator&lt;Object[]&gt; rows = ...;
+ *     streamer.stream(ctx, new ResultStreamer.RowSource() {
+ *       public boolean writeRow(RowWriter writer) {
+ *         if (!rows.hasNext()) {
+ *           return false;
+ *         }
+ *         encoder.writeRow(writer, rows.next());
+ *         return true;
+ *       }
+ *
+ *       public void onComplete(ChannelHandlerContext ctx, long rows) {
+ *         sender.onCommandComplete(ctx, rows, CommandType.SELECT);
+ *       }
+ *
+ *       public void onError(ChannelHandlerContext ctx, Exception error) {
+ *         ...
+ *       }
+ *     });
+ *   }
+ * </pre>
+ *
+ * The stream is resumed by {@link FrontendPostgresHandler} when the writability of the channel changes, and the
+ * handler does not dispatch other messages of the channel until the stream is complete, so listeners can return as
+ * soon as the stream starts and the messages they send later (like the ReadyForQuery that answers the next Sync) keep
+ * the order of the protocol. Streams also yield the event loop to other channels each time they flush.
+ * <p>
+ * Streamers can be shared by all the channels of a server, but each channel can only have one stream at the time,
+ * which must be started from the event loop of the channel.
+ */
+public class ResultStreamer {
+  /**
+   * The user event fired through the pipeline when a stream that could not be completed immediately is complete.
+   */
+  static final Object STREAM_COMPLETE = new Object() {
+    @Override
+    public String toString() {
+      return "STREAM_COMPLETE";
+    }
+  };
+  private static final AttributeKey<ActiveStream> STREAM = AttributeKey.valueOf(ResultStreamer.class, "stream");
+
+  private final BackendMessageSender sender;
+
+  public ResultStreamer(BackendMessageSender sender) {
+    this.sender = sender;
+  }
+
+  /**
+   * Starts streaming the rows of the source, which may be completed before this method returns.
+   *
+   * @throws IllegalStateException if the channel has another stream in progress
+   */
+  public void stream(ChannelHandlerContext ctx, RowSource source) {
+    Stream stream = new Stream(ctx, source);
+    register(ctx, stream);
+    ctx.channel().closeFuture().addListener(stream);
+    stream.drain();
+  }
+
+  /**
+   * Whether the channel has a stream in progress.
+   */
+  public static boolean isStreaming(ChannelHandlerContext ctx) {
+    return ctx.channel().hasAttr(STREAM) && ctx.channel().attr(STREAM).get() != null;
+  }
+
+  /**
+   * Resumes the stream of the channel, if any, which is called when the channel becomes writable.
+   */
+  static void resume(ChannelHandlerContext ctx) {
+    if (ctx.channel().hasAttr(STREAM)) {
+      ActiveStream stream = ctx.channel().attr(STREAM).get();
+      if (stream != null) {
+        stream.resume();
+      }
+    }
+  }
+
+  /**
+   * Makes the stream the one in progress in the channel, which is resumed when the channel becomes writable.
+   *
+   * @throws IllegalStateException if the channel has another stream in progress
+   */
+  static void register(ChannelHandlerContext ctx, ActiveStream stream) {
+    Attribute<ActiveStream> attribute = ctx.channel().attr(STREAM);
+    if (attribute.get() != null) {
+      throw new IllegalStateException("The channel has another stream in progress");
+    }
+    attribute.set(stream);
+  }
+
+  /**
+   * Ends the stream in progress in the channel.
+   *
+   * @param notify whether the stream may have outlived the call that started it, in which case the pipeline is
+   *               notified, so {@link FrontendPostgresHandler} dispatches the messages it has held back
+   */
+  static void unregister(ChannelHandlerContext ctx, ActiveStream stream, boolean notify) {
+    Attribute<ActiveStream> attribute = ctx.channel().attr(STREAM);
+    if (attribute.get() == stream) {
+      attribute.set(null);
+    }
+    if (notify) {
+      ctx.pipeline().fireUserEventTriggered(STREAM_COMPLETE);
+    }
+  }
+
+  /**
+   * A stream in progress in a channel.
+   */
+  interface ActiveStream {
+    /**
+     * Continues the stream, which is called when the channel becomes writable.
+     */
+    void resume();
+  }
+
+  /**
+   * The rows of a result, which are pulled one by one.
+   */
+  public interface RowSource {
+    /**
+     * Writes all the cells of the next row and ends it, for example with
+     * {@link RowEncoder#writeRow(RowWriter, Object[])}.
+     *
+     * @param writer the writer of the row, which has already begun
+     * @return false if there are no more rows, in which case nothing has to be written
+     */
+    boolean writeRow(RowWriter writer) throws Exception;
+
+    /**
+     * Called once all the rows have been written, usually to send the CommandComplete message.
+     *
+     * @param rows the number of rows written
+     */
+    void onComplete(ChannelHandlerContext ctx, long rows);
+
+    /**
+     * Called instead of {@link #onComplete(ChannelHandlerContext, long)} when {@link #writeRow(RowWriter)} fails or
+     * the channel is closed before the stream is complete, usually to send an ErrorResponse and release the resources
+     * of the source. The row in progress, if any, has already been discarded.
+     */
+    void onError(ChannelHandlerContext ctx, Exception error);
+  }
+
+  private class Stream implements ActiveStream, ChannelFutureListener {
+    private final ChannelHandlerContext ctx;
+    private final RowSource source;
+    private long rows;
+    private boolean draining;
+    private boolean complete;
+    /**
+     * Whether the stream has had to wait, in which case the pipeline is notified when it is complete.
+     */
+    private boolean waited;
+
+    Stream(ChannelHandlerContext ctx, RowSource source) {
+      this.ctx = ctx;
+      this.source = source;
+    }
+
+    /**
+     * Writes rows until the channel is not writable or there are no more rows. Rows are flushed each time the
+     * channel stops being writable, so the outbound buffer can drain, and then the stream waits for the channel to be
+     * writable again. If the flush already made the channel writable, the stream continues in a later task of the
+     * event loop, so other channels are not starved.
+     */
+    void drain() {
+      if (draining || complete) {
+        return;
+      }
+      draining = true;
+      try {
+        Channel channel = ctx.channel();
+        if (!channel.isActive()) {
+          fail(new ClosedChannelException());
+          return;
+        }
+        RowWriter writer = null;
+        while (channel.isWritable()) {
+          boolean written;
+          try {
+            writer = sender.beginDataRow(ctx);
+            written = source.writeRow(writer);
+          } catch (Exception ex) {
+            if (writer != null) {
+              writer.cancel();
+            }
+            fail(ex);
+            return;
+          }
+          if (!written) {
+            writer.cancel();
+            complete();
+            return;
+          }
+          rows++;
+        }
+        waited = true;
+        sender.flush(ctx);
+        if (channel.isWritable()) {
+          ctx.executor().execute(this::drain);
+        }
+      } finally {
+        draining = false;
+      }
+    }
+
+    @Override
+    public void resume() {
+      drain();
+    }
+
+    /**
+     * Called when the channel is closed, which fails the stream if it is still in progress.
+     */
+    @Override
+    public void operationComplete(ChannelFuture future) {
+      drain();
+    }
+
+    private void complete() {
+      end();
+      source.onComplete(ctx, rows);
+      notifyPipeline();
+    }
+
+    private void fail(Exception error) {
+      end();
+      source.onError(ctx, error);
+      notifyPipeline();
+    }
+
+    private void end() {
+      complete = true;
+      unregister(ctx, this, false);
+      ctx.channel().closeFuture().removeListener(this);
+    }
+
+    private void notifyPipeline() {
+      if (waited) {
+        ctx.pipeline().fireUserEventTriggered(STREAM_COMPLETE);
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package pgwire;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Encodes the rows of a result with the codec of each column and the format the frontend requested for it.
+ *
+ * <p>
+ * Drivers request the format of each column in the result formats of the Bind message, usually binary for the types
+ * they know how to decode. The encoder resolves the codec and the format of each column once, so each cell only costs
+ * an array access and the encoding itself:
+ *
+ * <pre>
+ *   RowEncoder encoder = registry.rowEncoder(fields, bind);
+ *   ...
+ *   encoder.writeRow(sender.beginDataRow(ctx), values);
+ * </pre>
+ *
+ * Encoders are obtained from {@link CodecRegistry#rowEncoder(List, List)} and are immutable, so they can be kept with
+ * the portal they describe.
+ */
+public class RowEncoder {
+  private final List<Field> fields;
+  private final PgCodec<Object>[] codecs;
+  private final Format[] formats;
+
+  RowEncoder(CodecRegistry registry, List<Field> fields, List<Format> resultFormats) {
+    int size = fields.size();
+    if (resultFormats.size() > 1 && resultFormats.size() != size) {
+      throw new IllegalArgumentException("There are " + resultFormats.size() + " result formats for " + size
+          + " columns");
+    }
+    this.codecs = CodecRegistry.newCodecArray(size);
+    this.formats = new Format[size];
+    ArrayList<Field> formattedFields = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Field field = fields.get(i);
+      codecs[i] = registry.get(field.getPgType());
+      formats[i] = resultFormats.isEmpty() ? Format.TEXT : resultFormats.get(resultFormats.size() == 1 ? 0 : i);
+      if (field.getFormat() != formats[i]) {
+        field = new Field(field.getName(), field.getTableOid(), field.getColumnIdx(), field.getPgType(),
+            field.getTypeModifier(), formats[i]);
+      }
+      formattedFields.add(field);
+    }
+    this.fields = Collections.unmodifiableList(formattedFields);
+  }
+
+  public int getColumnCount() {
+    return formats.length;
+  }
+
+  public Format getFormat(int column) {
+    return formats[column];
+  }
+
+  public PgCodec<?> getCodec(int column) {
+    return codecs[column];
+  }
+
+  /**
+   * The fields with the format of each column, which is what the RowDescription of the portal has to contain.
+   */
+  public List<Field> getFields() {
+    return fields;
+  }
+
+  /**
+   * Writes the value of the given column as the next cell of the row, or null if the value is null.
+   */
+  public RowEncoder writeCell(RowWriter writer, int column, Object value) {
+    writer.write(codecs[column], formats[column], value);
+    return this;
+  }
+
+  /**
+   * Writes all the cells of the row and ends it. If the number of values does not match the columns or a value cannot
+   * be encoded, the row is cancelled and the exception is rethrown.
+   */
+  public void writeRow(RowWriter writer, List<?> values) {
+    try {
+      checkColumns(values.size());
+      for (int i = 0; i < formats.length; i++) {
+        writer.write(codecs[i], formats[i], values.get(i));
+      }
+    } catch (RuntimeException ex) {
+      writer.cancel();
+      throw ex;
+    }
+    writer.end();
+  }
+
+  /**
+   * Like {@link #writeRow(RowWriter, List)} but with an array of values.
+   */
+  public void writeRow(RowWriter writer, Object[] values) {
+    try {
+      checkColumns(values.length);
+      for (int i = 0; i < formats.length; i++) {
+        writer.write(codecs[i], formats[i], values[i]);
+      }
+    } catch (RuntimeException ex) {
+      writer.cancel();
+      throw ex;
+    }
+    writer.end();
+  }
+
+  private void checkColumns(int values) {
+    if (values != formats.length) {
+      throw new IllegalArgumentException("Expected " + formats.length + " values, but " + values + " were found");
+    }
+  }
+}
@@ -0,0 +1,318 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * A {@link Flow.Subscriber} that streams the rows of a {@link Flow.Publisher} to a channel, requesting rows only as
+ * the channel can take them.
+ *
+ * <p>
+ * Rows are requested in groups of at most {@link #setPrefetch(int) prefetch} rows, only while the channel is writable
+ * (see {@link ResultStreamer}) and never beyond the row limit of the Execute, so the demand of the client socket
+ * travels up to the publisher and neither side buffers more than a few rows. Each row is encoded with a
+ * {@link RowEncoder}. Once the publisher completes, CommandComplete (and optionally ReadyForQuery) is sent, and if it
+ * fails, an ErrorResponse is sent instead:
+ *
+ * <pre>
+ *   public void onExecute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+ *     RowSubscriber subscriber = new RowSubscriber(ctx, sender, encoder, CommandType.SELECT);
+ *     storage.scan(...).subscribe(subscriber);
+ *     subscriber.execute(rowLimit);
+ *   }
+ * </pre>
+ *
+ * When the row limit is reached, PortalSuspended is sent and the subscription is kept, so the subscriber can be kept
+ * with its portal and executed again to continue, or cancelled with {@link #cancel()} when the portal is closed.
+ * Like with {@link ResultStreamer}, the handler does not dispatch other messages of the channel until each execution
+ * is complete. The messages sent when the result completes or fails can be changed by overriding
+ * {@link #onComplete(ChannelHandlerContext, long)} and {@link #onError(ChannelHandlerContext, Throwable)}.
+ * <p>
+ * Publishers may signal from any thread: rows are queued and written from the event loop of the channel, where
+ * {@link #execute(int)} and {@link #cancel()} must be called.
+ */
+public class RowSubscriber implements Flow.Subscriber<Object[]>, ResultStreamer.ActiveStream, ChannelFutureListener {
+  private static final int DEFAULT_PREFETCH = 64;
+
+  private final ChannelHandlerContext ctx;
+  private final BackendMessageSender sender;
+  private final RowEncoder encoder;
+  private final CommandType commandType;
+  private TransactionStatus readyForQuery;
+  private int prefetch = DEFAULT_PREFETCH;
+
+  // written by the publisher
+  private volatile Flow.Subscription subscription;
+  private final Queue<Object[]> rows = new ConcurrentLinkedQueue<>();
+  private volatile boolean terminated;
+  private volatile Throwable error;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  // only used from the event loop
+  private boolean executing;
+  private boolean complete;
+  /**
+   * Whether the subscriber listens to the close of the channel, from the first execution until it is complete or
+   * cancelled, including while it is suspended.
+   */
+  private boolean listening;
+  /**
+   * The rows requested and not received yet.
+   */
+  private long outstanding;
+  private int rowLimit;
+  private long written;
+
+  public RowSubscriber(ChannelHandlerContext ctx, BackendMessageSender sender, RowEncoder encoder,
+      CommandType commandType) {
+    this.ctx = ctx;
+    this.sender = sender;
+    this.encoder = encoder;
+    this.commandType = commandType;
+  }
+
+  /**
+   * Sends ReadyForQuery with the given status after the result, which is what simple queries need. By default it is
+   * not sent, given the ReadyForQuery of extended queries answers the Sync message.
+   */
+  public void setReadyForQuery(TransactionStatus status) {
+    this.readyForQuery = status;
+  }
+
+  /**
+   * The max number of rows requested and not received yet, 64 by default.
+   */
+  public void setPrefetch(int prefetch) {
+    if (prefetch <= 0) {
+      throw new IllegalArgumentException("Prefetch must be positive, but " + prefetch + " was found");
+    }
+    this.prefetch = prefetch;
+  }
+
+  /**
+   * Streams the rows of the publisher until it completes or the row limit is reached. Executing a result that is
+   * already complete just sends an empty result.
+   *
+   * @param rowLimit the max number of rows to send or 0 for no limit
+   * @throws IllegalStateException if the channel has another stream in progress
+   */
+  public void execute(int rowLimit) {
+    if (complete) {
+      onComplete(ctx, 0);
+      return;
+    }
+    ResultStreamer.register(ctx, this);
+    if (!listening) {
+      listening = true;
+      ctx.channel().closeFuture().addListener(this);
+    }
+    this.executing = true;
+    this.rowLimit = rowLimit;
+    this.written = 0;
+    drain();
+  }
+
+  /**
+   * Cancels the subscription, which has to be called when the result is discarded before it is complete, like when
+   * its portal is closed.
+   */
+  public void cancel() {
+    if (!complete) {
+      complete = true;
+      Flow.Subscription current = subscription;
+      if (current != null) {
+        current.cancel();
+      }
+      rows.clear();
+      stopListening();
+      if (executing) {
+        executing = false;
+        ResultStreamer.unregister(ctx, this, true);
+      }
+    }
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    schedule();
+  }
+
+  @Override
+  public void onNext(Object[] row) {
+    rows.add(row);
+    schedule();
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    error = throwable;
+    terminated = true;
+    schedule();
+  }
+
+  @Override
+  public void onComplete() {
+    terminated = true;
+    schedule();
+  }
+
+  @Override
+  public void resume() {
+    drain();
+  }
+
+  /**
+   * Called when the channel is closed, which cancels the subscription.
+   */
+  @Override
+  public void operationComplete(ChannelFuture future) {
+    cancel();
+  }
+
+  /**
+   * Sends CommandComplete and, if configured, ReadyForQuery.
+   *
+   * @param rows the number of rows sent by the last execution
+   */
+  protected void onComplete(ChannelHandlerContext ctx, long rows) {
+    sender.onCommandComplete(ctx, rows, commandType);
+    if (readyForQuery != null) {
+      sender.onReadyForQuery(ctx, readyForQuery);
+    }
+  }
+
+  /**
+   * Sends an ErrorResponse with the message of the error and, if configured, ReadyForQuery.
+   */
+  protected void onError(ChannelHandlerContext ctx, Throwable error) {
+    Map<Character, ByteBuf> fields = new LinkedHashMap<>();
+    fields.put('S', Unpooled.copiedBuffer("ERROR", StandardCharsets.US_ASCII));
+    fields.put('V', Unpooled.copiedBuffer("ERROR", StandardCharsets.US_ASCII));
+    fields.put('C', Unpooled.copiedBuffer("XX000", StandardCharsets.US_ASCII)); // internal_error
+    fields.put('M', Unpooled.copiedBuffer(String.valueOf(error.getMessage()), StandardCharsets.UTF_8));
+    sender.onErrorResponse(ctx, fields);
+    if (readyForQuery != null) {
+      sender.onReadyForQuery(ctx, TransactionStatus.FAILED);
+    }
+  }
+
+  /**
+   * Makes the event loop drain the queued signals, unless it is already going to.
+   */
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      ctx.executor().execute(() -> {
+        scheduled.set(false);
+        drain();
+      });
+    }
+  }
+
+  /**
+   * Writes the received rows, finishes the execution if the publisher terminated or the row limit was reached and
+   * requests more rows if the channel can take them. Rows are flushed when the stream has to wait, either for the
+   * publisher or for the channel.
+   */
+  private void drain() {
+    if (!executing || complete) {
+      return;
+    }
+    if (!ctx.channel().isActive()) {
+      cancel();
+      return;
+    }
+    boolean wrote = false;
+    Object[] row;
+    while (!limitReached() && (row = rows.poll()) != null) {
+      outstanding--;
+      try {
+        encoder.writeRow(sender.beginDataRow(ctx), row);
+      } catch (RuntimeException ex) {
+        fail(ex);
+        return;
+      }
+      written++;
+      wrote = true;
+    }
+    if (limitReached()) {
+      executing = false;
+      sender.onPortalSuspended(ctx);
+      ResultStreamer.unregister(ctx, this, true);
+      return;
+    }
+    if (terminated && rows.isEmpty()) {
+      finish(error);
+      return;
+    }
+    request();
+    if (wrote || !ctx.channel().isWritable()) {
+      sender.flush(ctx);
+    }
+  }
+
+  private boolean limitReached() {
+    return rowLimit > 0 && written == rowLimit;
+  }
+
+  /**
+   * Requests up to the prefetch rows, without going beyond the row limit, if the channel is writable.
+   */
+  private void request() {
+    Flow.Subscription current = subscription;
+    if (current == null || !ctx.channel().isWritable()) {
+      return;
+    }
+    long demand = prefetch - outstanding;
+    if (rowLimit > 0) {
+      demand = Math.min(demand, rowLimit - written - outstanding);
+    }
+    if (demand > 0) {
+      outstanding += demand;
+      current.request(demand);
+    }
+  }
+
+  private void fail(RuntimeException ex) {
+    Flow.Subscription current = subscription;
+    if (current != null) {
+      current.cancel();
+    }
+    finish(ex);
+  }
+
+  private void finish(Throwable failure) {
+    complete = true;
+    executing = false;
+    rows.clear();
+    stopListening();
+    if (failure == null) {
+      onComplete(ctx, written);
+    } else {
+      onError(ctx, failure);
+    }
+    ResultStreamer.unregister(ctx, this, true);
+  }
+
+  private void stopListening() {
+    if (listening) {
+      listening = false;
+      ctx.channel().closeFuture().removeListener(this);
+    }
+  }
+}
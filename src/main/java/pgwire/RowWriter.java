@@ -0,0 +1,277 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+
+
+/**
+ * Encodes a DataRow message cell by cell directly into the outbound buffer.
+ *
+ * <p>
+ * Contrary to {@link BackendMessageListener#onDataRow(Object, java.util.List)}, cells are not encoded into their own
+ * buffers and then copied. Instead, the header of the message is reserved when the row starts, each
+ * <em>writeXXX</em> method appends a cell to the same buffer and the lengths are written once the value is known.
+ * Finally {@link #end()} completes the header and sends the message.
+ *
+ * <pre>
+ *   sender.beginDataRow(ctx)
+ *       .writeInt(id)
+ *       .writeText(name)
+ *       .writeNull()
+ *       .end();
+ * </pre>
+ *
+ * Methods like {@link #writeInt(int)} or {@link #writeDouble(double)} use the binary format, while
+ * {@link #writeText(CharSequence)} and the {@code writeAscii} methods, like {@link #writeAscii(long)}, use the text
+ * format, so the right one has to be chosen depending on the result format requested by the frontend. Other types can
+ * be written with their {@link PgCodec} (see {@link RowEncoder}) and custom encodings can be written between
+ * {@link #beginCell()} and {@link #endCell()}.
+ * <p>
+ * Writers are obtained from {@link BackendMessageSender#beginDataRow(ChannelHandlerContext)}, which reuses the same
+ * instance for all the rows of a channel.
+ */
+public class RowWriter {
+  private static final int MIN_CAPACITY = 64;
+
+  private final BackendMessageSender sender;
+  private ChannelHandlerContext ctx;
+  private ByteBuf buffer;
+  private int rowStart;
+  private int columns;
+  private int cellStart = -1;
+  /**
+   * The size of the last row, used to guess the size of the next one.
+   */
+  private int lastRowLength = MIN_CAPACITY;
+
+  RowWriter(BackendMessageSender sender) {
+    this.sender = sender;
+  }
+
+  RowWriter begin(ChannelHandlerContext ctx) {
+    if (buffer != null) {
+      cancel();
+      throw new IllegalStateException("The previous row has not been ended");
+    }
+    this.ctx = ctx;
+    this.buffer = sender.allocate(ctx, Math.max(lastRowLength, MIN_CAPACITY));
+    this.rowStart = buffer.writerIndex();
+    this.columns = 0;
+    buffer.writeByte(MessageConstants.DATA_ROW);
+    buffer.writeInt(0); // length, written at the end
+    buffer.writeShort(0); // number of columns, written at the end
+    return this;
+  }
+
+  public RowWriter writeNull() {
+    checkRow();
+    buffer.writeInt(-1);
+    columns++;
+    return this;
+  }
+
+  public RowWriter writeShort(short value) {
+    checkRow();
+    buffer.writeInt(2).writeShort(value);
+    columns++;
+    return this;
+  }
+
+  public RowWriter writeInt(int value) {
+    checkRow();
+    buffer.writeInt(4).writeInt(value);
+    columns++;
+    return this;
+  }
+
+  public RowWriter writeLong(long value) {
+    checkRow();
+    buffer.writeInt(8).writeLong(value);
+    columns++;
+    return this;
+  }
+
+  public RowWriter writeFloat(float value) {
+    checkRow();
+    buffer.writeInt(4).writeFloat(value);
+    columns++;
+    return this;
+  }
+
+  public RowWriter writeDouble(double value) {
+    checkRow();
+    buffer.writeInt(8).writeDouble(value);
+    columns++;
+    return this;
+  }
+
+  public RowWriter writeBoolean(boolean value) {
+    checkRow();
+    buffer.writeInt(1).writeByte(value ? 1 : 0);
+    columns++;
+    return this;
+  }
+
+  /**
+   * Writes the value encoded as UTF-8 or null if the value is null.
+   */
+  public RowWriter writeText(CharSequence value) {
+    if (value == null) {
+      return writeNull();
+    }
+    checkRow();
+    int lengthIndex = buffer.writerIndex();
+    buffer.writeInt(0);
+    int length = ByteBufUtil.writeUtf8(buffer, value);
+    buffer.setInt(lengthIndex, length);
+    columns++;
+    return this;
+  }
+
+  /**
+   * Writes the value in base 10, which is the text format of all the integer types.
+   */
+  public RowWriter writeAscii(long value) {
+    checkRow();
+    buffer.writeInt(SenderUtils.asciiLength(value));
+    SenderUtils.writeAscii(buffer, value);
+    columns++;
+    return this;
+  }
+
+  /**
+   * Writes the shortest text that reads back as the same value, which is the text format of {@code real}.
+   */
+  public RowWriter writeAscii(float value) {
+    RyuFormatter.writeFloat(beginCell(), value);
+    return endCell();
+  }
+
+  /**
+   * Writes the shortest text that reads back as the same value, which is the text format of
+   * {@code double precision}.
+   */
+  public RowWriter writeAscii(double value) {
+    RyuFormatter.writeDouble(beginCell(), value);
+    return endCell();
+  }
+
+  /**
+   * Writes the readable bytes of the value, without modifying its indexes, or null if the value is null.
+   */
+  public RowWriter writeBytes(ByteBuf value) {
+    if (value == null) {
+      return writeNull();
+    }
+    checkRow();
+    buffer.writeInt(value.readableBytes());
+    buffer.writeBytes(value, value.readerIndex(), value.readableBytes());
+    columns++;
+    return this;
+  }
+
+  /**
+   * Writes the readable bytes of the value in the hex format, which is the text format of {@code bytea}, or null if
+   * the value is null.
+   */
+  public RowWriter writeHex(ByteBuf value) {
+    if (value == null) {
+      return writeNull();
+    }
+    StandardCodecs.ByteaCodec.encodeHex(beginCell(), value, value.readerIndex(), value.readableBytes());
+    return endCell();
+  }
+
+  public RowWriter writeBytes(byte[] value, int offset, int length) {
+    checkRow();
+    buffer.writeInt(length);
+    buffer.writeBytes(value, offset, length);
+    columns++;
+    return this;
+  }
+
+  /**
+   * Writes the value with the given codec and format or null if the value is null.
+   */
+  public <T> RowWriter write(PgCodec<T> codec, Format format, T value) {
+    if (value == null) {
+      return writeNull();
+    }
+    codec.encode(beginCell(), value, format);
+    return endCell();
+  }
+
+  /**
+   * Starts a cell whose content is written directly into the returned buffer. The cell must be finished with
+   * {@link #endCell()}.
+   */
+  public ByteBuf beginCell() {
+    checkRow();
+    cellStart = buffer.writerIndex();
+    buffer.writeInt(0);
+    return buffer;
+  }
+
+  public RowWriter endCell() {
+    if (cellStart < 0) {
+      throw new IllegalStateException("There is no open cell");
+    }
+    buffer.setInt(cellStart, buffer.writerIndex() - cellStart - 4);
+    cellStart = -1;
+    columns++;
+    return this;
+  }
+
+  /**
+   * The number of cells written in the current row.
+   */
+  public int getColumnCount() {
+    return columns;
+  }
+
+  /**
+   * Completes the header of the message and sends it.
+   */
+  public void end() {
+    if (buffer == null) {
+      throw new IllegalStateException("There is no row in progress");
+    }
+    if (cellStart >= 0) {
+      throw new IllegalStateException("The current cell has not been ended");
+    }
+    int length = buffer.writerIndex() - rowStart;
+    buffer.setInt(rowStart + 1, length - 1);
+    buffer.setShort(rowStart + 1 + 4, columns);
+    lastRowLength = length;
+    ByteBuf row = buffer;
+    buffer = null;
+    ChannelHandlerContext rowCtx = ctx;
+    ctx = null;
+    sender.writeDataRow(rowCtx, row);
+  }
+
+  /**
+   * Discards the current row, which is useful when the encoding of a cell fails.
+   */
+  public void cancel() {
+    if (buffer != null) {
+      sender.discard(buffer, rowStart);
+      buffer = null;
+    }
+    cellStart = -1;
+    ctx = null;
+  }
+
+  private void checkRow() {
+    if (buffer == null) {
+      throw new IllegalStateException("There is no row in progress");
+    }
+    if (cellStart >= 0) {
+      throw new IllegalStateException("The current cell has not been ended");
+    }
+    if (columns >= 0xFFFF) {
+      throw new IllegalStateException("At most " + 0xFFFF + " cells can be sent");
+    }
+  }
+}
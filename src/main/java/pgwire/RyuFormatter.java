@@ -0,0 +1,486 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Writes floats and doubles as the shortest decimal text that reads back as the same value, which is what Postgres
+ * sends when {@code extra_float_digits} is greater than zero (the default since Postgres 12 and what drivers use).
+ *
+ * <p>
+ * The digits are computed with the Ryu algorithm (Ulf Adams, <em>Ryū: fast float-to-string conversion</em>, PLDI 2018)
+ * using only primitive arithmetic, and written directly into the buffer, so no String or intermediate object is
+ * created. The layout follows Postgres: plain notation when the decimal exponent is between -4 and 14 (5 for floats),
+ * scientific notation with at least two exponent digits otherwise, like {@code 1e+20} or {@code 1.5e-05}, and
+ * {@code NaN}, {@code Infinity} and {@code -Infinity} for the special values.
+ * <p>
+ * The multiplier tables are computed when the class is loaded.
+ */
+public class RyuFormatter {
+  /**
+   * The max length of the text of a double, like {@code -2.2250738585072014e-308}.
+   */
+  public static final int MAX_DOUBLE_LENGTH = 24;
+  /**
+   * The max length of the text of a float, like {@code -1.1754944e-38}.
+   */
+  public static final int MAX_FLOAT_LENGTH = 15;
+
+  private static final int DOUBLE_MANTISSA_BITS = 52;
+  private static final int DOUBLE_EXPONENT_BITS = 11;
+  private static final int DOUBLE_BIAS = 1023;
+  private static final int DOUBLE_POW5_INV_BITCOUNT = 125;
+  private static final int DOUBLE_POW5_BITCOUNT = 125;
+  private static final int DOUBLE_MAX_PLAIN_EXPONENT = 15;
+
+  private static final int FLOAT_MANTISSA_BITS = 23;
+  private static final int FLOAT_EXPONENT_BITS = 8;
+  private static final int FLOAT_BIAS = 127;
+  private static final int FLOAT_POW5_INV_BITCOUNT = 59;
+  private static final int FLOAT_POW5_BITCOUNT = 61;
+  private static final int FLOAT_MAX_PLAIN_EXPONENT = 6;
+
+  /**
+   * The 125 most significant bits of 5^i, split in two longs (low and high).
+   */
+  private static final long[][] DOUBLE_POW5_SPLIT = new long[326][];
+  /**
+   * The 125 most significant bits of 1/5^i (rounded up), split in two longs (low and high).
+   */
+  private static final long[][] DOUBLE_POW5_INV_SPLIT = new long[342][];
+  private static final long[] FLOAT_POW5_SPLIT = new long[47];
+  private static final long[] FLOAT_POW5_INV_SPLIT = new long[31];
+
+  static {
+    BigInteger mask64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    for (int i = 0; i < DOUBLE_POW5_INV_SPLIT.length; i++) {
+      BigInteger pow5 = BigInteger.valueOf(5).pow(i);
+      int pow5Length = pow5.bitLength();
+      if (i < DOUBLE_POW5_SPLIT.length) {
+        BigInteger split = pow5.shiftRight(pow5Length - DOUBLE_POW5_BITCOUNT);
+        DOUBLE_POW5_SPLIT[i] = new long[] {split.and(mask64).longValue(), split.shiftRight(64).longValue()};
+      }
+      BigInteger inv = BigInteger.ONE.shiftLeft(pow5Length - 1 + DOUBLE_POW5_INV_BITCOUNT).divide(pow5)
+          .add(BigInteger.ONE);
+      DOUBLE_POW5_INV_SPLIT[i] = new long[] {inv.and(mask64).longValue(), inv.shiftRight(64).longValue()};
+      if (i < FLOAT_POW5_SPLIT.length) {
+        FLOAT_POW5_SPLIT[i] = pow5.shiftRight(pow5Length - FLOAT_POW5_BITCOUNT).longValue();
+      }
+      if (i < FLOAT_POW5_INV_SPLIT.length) {
+        FLOAT_POW5_INV_SPLIT[i] = BigInteger.ONE.shiftLeft(pow5Length - 1 + FLOAT_POW5_INV_BITCOUNT).divide(pow5)
+            .add(BigInteger.ONE).longValue();
+      }
+    }
+  }
+
+  /**
+   * Writes the shortest text of the given double.
+   */
+  public static void writeDouble(ByteBuf out, double value) {
+    long bits = Double.doubleToRawLongBits(value);
+    boolean sign = bits < 0;
+    long ieeeMantissa = bits & ((1L << DOUBLE_MANTISSA_BITS) - 1);
+    int ieeeExponent = (int) ((bits >>> DOUBLE_MANTISSA_BITS) & ((1 << DOUBLE_EXPONENT_BITS) - 1));
+    if (ieeeExponent == (1 << DOUBLE_EXPONENT_BITS) - 1) {
+      writeSpecial(out, sign, ieeeMantissa != 0);
+      return;
+    }
+    if (ieeeExponent == 0 && ieeeMantissa == 0) {
+      writeZero(out, sign);
+      return;
+    }
+
+    int e2;
+    long m2;
+    if (ieeeExponent == 0) {
+      e2 = 1 - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+      m2 = ieeeMantissa;
+    } else {
+      e2 = ieeeExponent - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+      m2 = (1L << DOUBLE_MANTISSA_BITS) | ieeeMantissa;
+    }
+    boolean acceptBounds = (m2 & 1) == 0;
+
+    // determine the interval of valid decimal representations
+    long mv = 4 * m2;
+    int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+
+    long vr;
+    long vp;
+    long vm;
+    int e10;
+    boolean vmIsTrailingZeros = false;
+    boolean vrIsTrailingZeros = false;
+    if (e2 >= 0) {
+      int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+      e10 = q;
+      int k = DOUBLE_POW5_INV_BITCOUNT + pow5bits(q) - 1;
+      int i = -e2 + q + k;
+      long[] mul = DOUBLE_POW5_INV_SPLIT[q];
+      vr = mulShift64(4 * m2, mul, i);
+      vp = mulShift64(4 * m2 + 2, mul, i);
+      vm = mulShift64(4 * m2 - 1 - mmShift, mul, i);
+      if (q <= 21) {
+        // only one of mp, mv and mm can be a multiple of 5, if any
+        if (mv % 5 == 0) {
+          vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+        } else if (acceptBounds) {
+          vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+        } else if (multipleOfPowerOf5(mv + 2, q)) {
+          vp--;
+        }
+      }
+    } else {
+      int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+      e10 = q + e2;
+      int i = -e2 - q;
+      int k = pow5bits(i) - DOUBLE_POW5_BITCOUNT;
+      int j = q - k;
+      long[] mul = DOUBLE_POW5_SPLIT[i];
+      vr = mulShift64(4 * m2, mul, j);
+      vp = mulShift64(4 * m2 + 2, mul, j);
+      vm = mulShift64(4 * m2 - 1 - mmShift, mul, j);
+      if (q <= 1) {
+        // mv has at least q trailing zero bits, given it is 4 * m2
+        vrIsTrailingZeros = true;
+        if (acceptBounds) {
+          vmIsTrailingZeros = mmShift == 1;
+        } else {
+          vp--;
+        }
+      } else if (q < 63) {
+        vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+      }
+    }
+
+    // find the shortest decimal representation in the interval
+    int removed = 0;
+    int lastRemovedDigit = 0;
+    long output;
+    if (vmIsTrailingZeros || vrIsTrailingZeros) {
+      while (vp / 10 > vm / 10) {
+        vmIsTrailingZeros &= vm % 10 == 0;
+        vrIsTrailingZeros &= lastRemovedDigit == 0;
+        lastRemovedDigit = (int) (vr % 10);
+        vr /= 10;
+        vp /= 10;
+        vm /= 10;
+        removed++;
+      }
+      if (vmIsTrailingZeros) {
+        while (vm % 10 == 0) {
+          vrIsTrailingZeros &= lastRemovedDigit == 0;
+          lastRemovedDigit = (int) (vr % 10);
+          vr /= 10;
+          vp /= 10;
+          vm /= 10;
+          removed++;
+        }
+      }
+      if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+        // round to even if the exact number is .....50..0
+        lastRemovedDigit = 4;
+      }
+      output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+    } else {
+      boolean roundUp = false;
+      if (vp / 100 > vm / 100) {
+        // removes two digits at a time, which is the common case
+        roundUp = vr % 100 >= 50;
+        vr /= 100;
+        vp /= 100;
+        vm /= 100;
+        removed += 2;
+      }
+      while (vp / 10 > vm / 10) {
+        roundUp = vr % 10 >= 5;
+        vr /= 10;
+        vp /= 10;
+        vm /= 10;
+        removed++;
+      }
+      output = vr + (vr == vm || roundUp ? 1 : 0);
+    }
+    writeDecimal(out, sign, output, e10 + removed, DOUBLE_MAX_PLAIN_EXPONENT);
+  }
+
+  /**
+   * Writes the shortest text of the given float.
+   */
+  public static void writeFloat(ByteBuf out, float value) {
+    int bits = Float.floatToRawIntBits(value);
+    boolean sign = bits < 0;
+    int ieeeMantissa = bits & ((1 << FLOAT_MANTISSA_BITS) - 1);
+    int ieeeExponent = (bits >>> FLOAT_MANTISSA_BITS) & ((1 << FLOAT_EXPONENT_BITS) - 1);
+    if (ieeeExponent == (1 << FLOAT_EXPONENT_BITS) - 1) {
+      writeSpecial(out, sign, ieeeMantissa != 0);
+      return;
+    }
+    if (ieeeExponent == 0 && ieeeMantissa == 0) {
+      writeZero(out, sign);
+      return;
+    }
+
+    int e2;
+    long m2;
+    if (ieeeExponent == 0) {
+      e2 = 1 - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+      m2 = ieeeMantissa;
+    } else {
+      e2 = ieeeExponent - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+      m2 = (1L << FLOAT_MANTISSA_BITS) | ieeeMantissa;
+    }
+    boolean acceptBounds = (m2 & 1) == 0;
+
+    long mv = 4 * m2;
+    long mp = 4 * m2 + 2;
+    int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+    long mm = 4 * m2 - 1 - mmShift;
+
+    long vr;
+    long vp;
+    long vm;
+    int e10;
+    boolean vmIsTrailingZeros = false;
+    boolean vrIsTrailingZeros = false;
+    int lastRemovedDigit = 0;
+    if (e2 >= 0) {
+      int q = log10Pow2(e2);
+      e10 = q;
+      int k = FLOAT_POW5_INV_BITCOUNT + pow5bits(q) - 1;
+      int i = -e2 + q + k;
+      vr = mulShift32(mv, FLOAT_POW5_INV_SPLIT[q], i);
+      vp = mulShift32(mp, FLOAT_POW5_INV_SPLIT[q], i);
+      vm = mulShift32(mm, FLOAT_POW5_INV_SPLIT[q], i);
+      if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+        // one removed digit is needed even if the loop below does not run
+        int l = FLOAT_POW5_INV_BITCOUNT + pow5bits(q - 1) - 1;
+        lastRemovedDigit = (int) (mulShift32(mv, FLOAT_POW5_INV_SPLIT[q - 1], -e2 + q - 1 + l) % 10);
+      }
+      if (q <= 9) {
+        if (mv % 5 == 0) {
+          vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+        } else if (acceptBounds) {
+          vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+        } else if (multipleOfPowerOf5(mp, q)) {
+          vp--;
+        }
+      }
+    } else {
+      int q = log10Pow5(-e2);
+      e10 = q + e2;
+      int i = -e2 - q;
+      int k = pow5bits(i) - FLOAT_POW5_BITCOUNT;
+      int j = q - k;
+      vr = mulShift32(mv, FLOAT_POW5_SPLIT[i], j);
+      vp = mulShift32(mp, FLOAT_POW5_SPLIT[i], j);
+      vm = mulShift32(mm, FLOAT_POW5_SPLIT[i], j);
+      if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+        j = q - 1 - (pow5bits(i + 1) - FLOAT_POW5_BITCOUNT);
+        lastRemovedDigit = (int) (mulShift32(mv, FLOAT_POW5_SPLIT[i + 1], j) % 10);
+      }
+      if (q <= 1) {
+        vrIsTrailingZeros = true;
+        if (acceptBounds) {
+          vmIsTrailingZeros = mmShift == 1;
+        } else {
+          vp--;
+        }
+      } else if (q < 31) {
+        vrIsTrailingZeros = (mv & ((1L << (q - 1)) - 1)) == 0;
+      }
+    }
+
+    int removed = 0;
+    long output;
+    if (vmIsTrailingZeros || vrIsTrailingZeros) {
+      while (vp / 10 > vm / 10) {
+        vmIsTrailingZeros &= vm % 10 == 0;
+        vrIsTrailingZeros &= lastRemovedDigit == 0;
+        lastRemovedDigit = (int) (vr % 10);
+        vr /= 10;
+        vp /= 10;
+        vm /= 10;
+        removed++;
+      }
+      if (vmIsTrailingZeros) {
+        while (vm % 10 == 0) {
+          vrIsTrailingZeros &= lastRemovedDigit == 0;
+          lastRemovedDigit = (int) (vr % 10);
+          vr /= 10;
+          vp /= 10;
+          vm /= 10;
+          removed++;
+        }
+      }
+      if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+        lastRemovedDigit = 4;
+      }
+      output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+    } else {
+      while (vp / 10 > vm / 10) {
+        lastRemovedDigit = (int) (vr % 10);
+        vr /= 10;
+        vp /= 10;
+        vm /= 10;
+        removed++;
+      }
+      output = vr + (vr == vm || lastRemovedDigit >= 5 ? 1 : 0);
+    }
+    writeDecimal(out, sign, output, e10 + removed, FLOAT_MAX_PLAIN_EXPONENT);
+  }
+
+  /**
+   * Writes the value {@code output * 10^exponent}.
+   *
+   * @param maxPlainExponent the first decimal exponent that is written in scientific notation
+   */
+  private static void writeDecimal(ByteBuf out, boolean sign, long output, int exponent, int maxPlainExponent) {
+    int length = decimalLength(output);
+    int scientificExponent = exponent + length - 1;
+    out.ensureWritable(MAX_DOUBLE_LENGTH);
+    if (sign) {
+      out.writeByte('-');
+    }
+    int start = out.writerIndex();
+    if (scientificExponent < -4 || scientificExponent >= maxPlainExponent) {
+      // d.ddde+xx
+      int end = start + length + (length > 1 ? 1 : 0);
+      writeDigits(out, output, end, length > 1 ? start + 1 : -1);
+      if (length > 1) {
+        out.setByte(start + 1, '.');
+      }
+      out.writerIndex(end);
+      out.writeByte('e');
+      out.writeByte(scientificExponent < 0 ? '-' : '+');
+      int absExponent = Math.abs(scientificExponent);
+      if (absExponent < 10) {
+        out.writeByte('0');
+      }
+      SenderUtils.writeAscii(out, absExponent);
+    } else if (exponent >= 0) {
+      // ddd000
+      writeDigits(out, output, start + length, -1);
+      out.writerIndex(start + length);
+      writeZeros(out, exponent);
+    } else if (scientificExponent >= 0) {
+      // ddd.ddd
+      int pointIndex = start + scientificExponent + 1;
+      int end = start + length + 1;
+      writeDigits(out, output, end, pointIndex);
+      out.setByte(pointIndex, '.');
+      out.writerIndex(end);
+    } else {
+      // 0.000ddd
+      int zeros = -scientificExponent - 1;
+      out.writeByte('0').writeByte('.');
+      writeZeros(out, zeros);
+      int digitsStart = out.writerIndex();
+      writeDigits(out, output, digitsStart + length, -1);
+      out.writerIndex(digitsStart + length);
+    }
+  }
+
+  /**
+   * Writes the digits of the value backwards from the given end, skipping the index reserved for the decimal point.
+   */
+  private static void writeDigits(ByteBuf out, long value, int end, int pointIndex) {
+    int index = end;
+    do {
+      if (--index == pointIndex) {
+        index--;
+      }
+      out.setByte(index, (int) ('0' + value % 10));
+      value /= 10;
+    } while (value != 0);
+  }
+
+  private static void writeZeros(ByteBuf out, int count) {
+    for (int i = 0; i < count; i++) {
+      out.writeByte('0');
+    }
+  }
+
+  private static void writeSpecial(ByteBuf out, boolean sign, boolean nan) {
+    if (nan) {
+      out.writeCharSequence("NaN", StandardCharsets.US_ASCII);
+    } else {
+      out.writeCharSequence(sign ? "-Infinity" : "Infinity", StandardCharsets.US_ASCII);
+    }
+  }
+
+  private static void writeZero(ByteBuf out, boolean sign) {
+    if (sign) {
+      out.writeByte('-');
+    }
+    out.writeByte('0');
+  }
+
+  private static int decimalLength(long value) {
+    int length = 1;
+    for (long limit = 10; length < 19 && value >= limit; limit *= 10) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * The number of bits of 5^e, for e between 0 and 3528.
+   */
+  private static int pow5bits(int e) {
+    return ((e * 1217359) >>> 19) + 1;
+  }
+
+  /**
+   * floor(log10(2^e)), for e between 0 and 1650.
+   */
+  private static int log10Pow2(int e) {
+    return (e * 78913) >>> 18;
+  }
+
+  /**
+   * floor(log10(5^e)), for e between 0 and 2620.
+   */
+  private static int log10Pow5(int e) {
+    return (e * 732923) >>> 20;
+  }
+
+  private static boolean multipleOfPowerOf5(long value, int p) {
+    int count = 0;
+    while (value > 0 && value % 5 == 0) {
+      value /= 5;
+      count++;
+    }
+    return count >= p;
+  }
+
+  /**
+   * Computes {@code (m * mul) >> j}, where mul is a 125 bits number split in two longs and j is greater than 64.
+   */
+  private static long mulShift64(long m, long[] mul, int j) {
+    // m * mul[0], of which only the high part is needed
+    long high0 = Math.multiplyHigh(m, mul[0]) + ((mul[0] >> 63) & m);
+    // m * mul[1], which fits in 127 bits
+    long low2 = m * mul[1];
+    long high2 = Math.multiplyHigh(m, mul[1]);
+    long low = low2 + high0;
+    long high = high2 + (Long.compareUnsigned(low, low2) < 0 ? 1 : 0);
+    int shift = j - 64;
+    return (low >>> shift) | (high << (64 - shift));
+  }
+
+  /**
+   * Computes {@code (m * factor) >> shift}, where m has at most 32 bits, factor has at most 64 bits and shift is
+   * greater than 32.
+   */
+  private static long mulShift32(long m, long factor, int shift) {
+    long factorLow = factor & 0xFFFFFFFFL;
+    long factorHigh = factor >>> 32;
+    long bits0 = m * factorLow;
+    long bits1 = m * factorHigh;
+    long sum = (bits0 >>> 32) + bits1;
+    return (sum >>> (shift - 32)) & 0xFFFFFFFFL;
+  }
+}
@@ -1,6 +1,7 @@
 package pgwire;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import java.nio.charset.StandardCharsets;
@@ -9,6 +10,34 @@ import java.util.List;
 
 public class SenderUtils {
 
+  /**
+   * The messages without content, indexed by id. They are immutable and shared by all channels.
+   */
+  private static final ByteBuf[] SIMPLE_MESSAGES = new ByteBuf[128];
+
+  static {
+    char[] ids = {
+        MessageConstants.PARSE_COMPLETE, MessageConstants.BIND_COMPLETE, MessageConstants.CLOSE_COMPLETE,
+        MessageConstants.NO_DATA, MessageConstants.EMPTY_QUERY_RESPONSE, MessageConstants.PORTAL_SUSPENDED,
+        MessageConstants.COPY_DONE, MessageConstants.SYNC, MessageConstants.FLUSH, MessageConstants.TERMINATE
+    };
+    for (char id : ids) {
+      ByteBuf message = Unpooled.directBuffer(5, 5).writeByte(id).writeInt(4);
+      SIMPLE_MESSAGES[id] = Unpooled.unreleasableBuffer(message.asReadOnly());
+    }
+  }
+
+  /**
+   * The ASCII digits of the numbers between 0 and 99, two bytes per short, so integers are written two digits at a
+   * time.
+   */
+  private static final short[] DIGIT_PAIRS = new short[100];
+
+  static {
+    for (int i = 0; i < DIGIT_PAIRS.length; i++) {
+      DIGIT_PAIRS[i] = (short) (('0' + i / 10) << 8 | ('0' + i % 10));
+    }
+  }
 
   public static void writeByteN(ByteBuf into, ByteBuf data) {
     if (data == null) {
@@ -37,11 +66,63 @@ public class SenderUtils {
     buffer.writeByte(0);
   }
 
+  /**
+   * The number of ASCII characters needed to write the given value in base 10.
+   */
+  public static int asciiLength(long value) {
+    if (value < 0) {
+      return value == Long.MIN_VALUE ? 20 : 1 + asciiLength(-value);
+    }
+    int length = 1;
+    for (long limit = 10; length < 19 && value >= limit; limit *= 10) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Writes the given value in base 10 as ASCII characters, without creating intermediate strings.
+   */
+  public static void writeAscii(ByteBuf out, long value) {
+    int length = asciiLength(value);
+    out.ensureWritable(length);
+    int start = out.writerIndex();
+    int index = start + length;
+    // digits are calculated on the negative value, given it can represent Long.MIN_VALUE
+    long negative = value < 0 ? value : -value;
+    while (negative < Integer.MIN_VALUE) {
+      long quotient = negative / 100;
+      index -= 2;
+      out.setShort(index, DIGIT_PAIRS[(int) (quotient * 100 - negative)]);
+      negative = quotient;
+    }
+    // the rest fits in an int, whose division is cheaper
+    int rest = (int) negative;
+    while (rest <= -100) {
+      int quotient = rest / 100;
+      index -= 2;
+      out.setShort(index, DIGIT_PAIRS[quotient * 100 - rest]);
+      rest = quotient;
+    }
+    if (rest <= -10) {
+      out.setShort(index - 2, DIGIT_PAIRS[-rest]);
+    } else {
+      out.setByte(index - 1, '0' - rest);
+    }
+    if (value < 0) {
+      out.setByte(start, '-');
+    }
+    out.writerIndex(start + length);
+  }
+
   public static void writeUnsignedShort(ByteBuf out, int unsignedShort) {
-    out.writeShort((byte) unsignedShort);
+    out.writeShort(unsignedShort);
   }
 
   public static ChannelFuture sendSimpleMsg(ChannelHandlerContext ctx, char id) {
+    if (id < SIMPLE_MESSAGES.length && SIMPLE_MESSAGES[id] != null) {
+      return ctx.write(SIMPLE_MESSAGES[id].retainedDuplicate());
+    }
     return ctx.write(
         ctx.alloc().buffer(5)
             .writeByte(id)
@@ -49,6 +130,18 @@ public class SenderUtils {
     );
   }
 
+  /**
+   * Returns the shared buffer that contains the message with the given id and no content. Its indexes must not be
+   * modified, so it has to be duplicated before being written to a channel.
+   */
+  static ByteBuf simpleMessage(char id) {
+    ByteBuf message = id < SIMPLE_MESSAGES.length ? SIMPLE_MESSAGES[id] : null;
+    if (message == null) {
+      throw new IllegalArgumentException("Message " + id + " has content");
+    }
+    return message;
+  }
+
   public static void copyAnyResponse(ChannelHandlerContext ctx, Format overallFormat, List<Format> columnFormats,
       char id) {
     int length = 4 + 1 + 2 + columnFormats.size() * 2;
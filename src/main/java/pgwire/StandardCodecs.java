@@ -0,0 +1,1008 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+
+/**
+ * The codecs of the types defined in {@link PgType.StandardTypes}.
+ *
+ * <p>
+ * The Java types used by each codec are:
+ * <ul>
+ *   <li>{@code bool}: {@link Boolean}</li>
+ *   <li>{@code int2}, {@code int4} and {@code int8}: {@link Short}, {@link Integer} and {@link Long}</li>
+ *   <li>{@code oid} and {@code regproc}: {@link Integer}, interpreted as unsigned</li>
+ *   <li>{@code float4} and {@code float8}: {@link Float} and {@link Double}</li>
+ *   <li>{@code numeric}: {@link java.math.BigDecimal}</li>
+ *   <li>{@code text}, {@code varchar}, {@code bpchar}, {@code name}, {@code char}, {@code json} and {@code xml}:
+ *   {@link CharSequence} (decoded as {@link String})</li>
+ *   <li>{@code bytea}: {@code byte[]}</li>
+ *   <li>{@code uuid}: {@link java.util.UUID}</li>
+ *   <li>{@code jsonb}: {@link CharSequence}, or UTF-8 in a {@code byte[]} or a {@link ByteBuf} (decoded as
+ *   {@link String})</li>
+ *   <li>{@code int2vector}: {@code short[]}</li>
+ *   <li>{@code date}, {@code time}, {@code timestamp}, {@code timestamptz} and {@code interval}: see
+ *   {@link DateTimeCodecs}</li>
+ *   <li>the arrays of all of them: see {@link ArrayCodec}</li>
+ * </ul>
+ */
+public class StandardCodecs {
+
+  public static final PgCodec<Boolean> BOOL = new BoolCodec();
+  public static final PgCodec<byte[]> BYTEA = new ByteaCodec();
+  public static final PgCodec<CharSequence> CHAR = new TextCodec(PgType.StandardTypes.CHAR);
+  public static final PgCodec<CharSequence> NAME = new TextCodec(PgType.StandardTypes.NAME);
+  public static final PgCodec<Long> INT8 = new Int8Codec();
+  public static final PgCodec<Short> INT2 = new Int2Codec();
+  public static final PgCodec<short[]> INT2_VECTOR = new Int2VectorCodec();
+  public static final PgCodec<Integer> INT4 = new Int4Codec();
+  public static final PgCodec<Integer> REG_PROC = new OidCodec(PgType.StandardTypes.REG_PROC);
+  public static final PgCodec<CharSequence> TEXT = new TextCodec(PgType.StandardTypes.TEXT);
+  public static final PgCodec<Integer> OID = new OidCodec(PgType.StandardTypes.OID);
+  public static final PgCodec<CharSequence> JSON = new TextCodec(PgType.StandardTypes.JSON);
+  public static final PgCodec<CharSequence> XML = new TextCodec(PgType.StandardTypes.XML);
+  public static final PgCodec<Float> FLOAT4 = new Float4Codec();
+  public static final PgCodec<Double> FLOAT8 = new Float8Codec();
+  public static final PgCodec<CharSequence> BPCHAR = new TextCodec(PgType.StandardTypes.BPCHAR);
+  public static final PgCodec<CharSequence> VARCHAR = new TextCodec(PgType.StandardTypes.VARCHAR);
+  public static final PgCodec<UUID> UUID = new UuidCodec();
+  public static final PgCodec<Object> JSONB = new JsonbCodec();
+
+  public static List<PgCodec<?>> allCodecs() {
+    ArrayList<PgCodec<?>> result = new ArrayList<>();
+    result.add(BOOL);
+    result.add(BYTEA);
+    result.add(CHAR);
+    result.add(NAME);
+    result.add(INT8);
+    result.add(INT2);
+    result.add(INT2_VECTOR);
+    result.add(INT4);
+    result.add(REG_PROC);
+    result.add(TEXT);
+    result.add(OID);
+    result.add(JSON);
+    result.add(XML);
+    result.add(FLOAT4);
+    result.add(FLOAT8);
+    result.add(BPCHAR);
+    result.add(VARCHAR);
+    result.add(DateTimeCodecs.DATE);
+    result.add(DateTimeCodecs.TIME);
+    result.add(DateTimeCodecs.TIMESTAMP);
+    result.add(DateTimeCodecs.TIMESTAMPTZ);
+    result.add(DateTimeCodecs.INTERVAL);
+    result.add(NumericCodec.INSTANCE);
+    result.add(UUID);
+    result.add(JSONB);
+    int elements = result.size();
+    for (int i = 0; i < elements; i++) {
+      result.add(ArrayCodec.of(result.get(i)));
+    }
+    return result;
+  }
+
+  /**
+   * Parses a base 10 integer, ignoring leading and trailing whitespaces like Postgres does.
+   */
+  static long parseLong(ByteBuf in, int index, int length) {
+    int start = index;
+    int end = index + length;
+    while (start < end && QuerySplitter.isWhitespace(in.getByte(start))) {
+      start++;
+    }
+    while (end > start && QuerySplitter.isWhitespace(in.getByte(end - 1))) {
+      end--;
+    }
+    boolean negative = false;
+    if (start < end && (in.getByte(start) == '-' || in.getByte(start) == '+')) {
+      negative = in.getByte(start) == '-';
+      start++;
+    }
+    if (start == end) {
+      throw invalidText(in, index, length, "integer");
+    }
+    // digits are accumulated on the negative value, given it can represent Long.MIN_VALUE
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      int digit = in.getByte(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw invalidText(in, index, length, "integer");
+      }
+      if (result < Long.MIN_VALUE / 10 || result * 10 < Long.MIN_VALUE + digit) {
+        throw new IllegalArgumentException("Value is out of range for type bigint");
+      }
+      result = result * 10 - digit;
+    }
+    if (!negative) {
+      if (result == Long.MIN_VALUE) {
+        throw new IllegalArgumentException("Value is out of range for type bigint");
+      }
+      result = -result;
+    }
+    return result;
+  }
+
+  static int parseInt(ByteBuf in, int index, int length, long min, long max, String typeName) {
+    long value = parseLong(in, index, length);
+    if (value < min || value > max) {
+      throw new IllegalArgumentException("Value " + value + " is out of range for type " + typeName);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Decodes the text as UTF-8, trimming whitespaces.
+   */
+  static String trimmedString(ByteBuf in, int index, int length) {
+    int start = index;
+    int end = index + length;
+    while (start < end && QuerySplitter.isWhitespace(in.getByte(start))) {
+      start++;
+    }
+    while (end > start && QuerySplitter.isWhitespace(in.getByte(end - 1))) {
+      end--;
+    }
+    return in.toString(start, end - start, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses a boolean like Postgres does: {@code true}, {@code false}, {@code yes}, {@code no} and any of their
+   * prefixes, {@code on}, {@code off} and their prefixes of at least two letters, {@code 1} and {@code 0}, in any case
+   * and surrounded by any whitespace.
+   *
+   * @return 1 for true, 0 for false or -1 if the text is not a boolean
+   */
+  static int parseBoolean(ByteBuf in, int index, int length) {
+    int start = index;
+    int end = index + length;
+    while (start < end && QuerySplitter.isWhitespace(in.getByte(start))) {
+      start++;
+    }
+    while (end > start && QuerySplitter.isWhitespace(in.getByte(end - 1))) {
+      end--;
+    }
+    int trimmed = end - start;
+    if (trimmed == 0) {
+      return -1;
+    }
+    byte first = in.getByte(start);
+    switch (first >= 'A' && first <= 'Z' ? first | 0x20 : first) {
+      case 't':
+        return isPrefix(in, start, trimmed, "true") ? 1 : -1;
+      case 'f':
+        return isPrefix(in, start, trimmed, "false") ? 0 : -1;
+      case 'y':
+        return isPrefix(in, start, trimmed, "yes") ? 1 : -1;
+      case 'n':
+        return isPrefix(in, start, trimmed, "no") ? 0 : -1;
+      case 'o':
+        // "o" alone is ambiguous
+        if (trimmed >= 2 && isPrefix(in, start, trimmed, "on")) {
+          return 1;
+        }
+        return trimmed >= 2 && isPrefix(in, start, trimmed, "off") ? 0 : -1;
+      case '1':
+        return trimmed == 1 ? 1 : -1;
+      case '0':
+        return trimmed == 1 ? 0 : -1;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Whether the bytes are a prefix of the given ASCII lower case word, ignoring case.
+   */
+  private static boolean isPrefix(ByteBuf in, int start, int length, String word) {
+    if (length > word.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if ((in.getByte(start + i) | 0x20) != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static void checkLength(PgType type, int length, int expected) {
+    if (length != expected) {
+      throw new IllegalArgumentException("Binary " + type.getName() + " values must have " + expected
+          + " bytes, but " + length + " were found");
+    }
+  }
+
+  static IllegalArgumentException invalidText(ByteBuf in, int index, int length, String typeName) {
+    return new IllegalArgumentException("Invalid input syntax for type " + typeName + ": \""
+        + in.toString(index, length, StandardCharsets.UTF_8) + '"');
+  }
+
+  /**
+   * Text like types, whose binary format is the same as the text format.
+   */
+  public static class TextCodec implements PgCodec<CharSequence> {
+    private final PgType type;
+
+    public TextCodec(PgType type) {
+      this.type = type;
+    }
+
+    @Override
+    public PgType getType() {
+      return type;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, CharSequence value) {
+      ByteBufUtil.writeUtf8(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, CharSequence value) {
+      ByteBufUtil.writeUtf8(out, value);
+    }
+
+    @Override
+    public CharSequence decodeText(ByteBuf in, int index, int length) {
+      return in.toString(index, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public CharSequence decodeBinary(ByteBuf in, int index, int length) {
+      return in.toString(index, length, StandardCharsets.UTF_8);
+    }
+  }
+
+  public static class BoolCodec implements PgCodec<Boolean> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.BOOL;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Boolean value) {
+      out.writeByte(value ? 't' : 'f');
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Boolean value) {
+      out.writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Accepts all the representations Postgres accepts, see {@link #parseBoolean(ByteBuf, int, int)}.
+     */
+    @Override
+    public Boolean decodeText(ByteBuf in, int index, int length) {
+      switch (parseBoolean(in, index, length)) {
+        case 1:
+          return Boolean.TRUE;
+        case 0:
+          return Boolean.FALSE;
+        default:
+          throw invalidText(in, index, length, "boolean");
+      }
+    }
+
+    @Override
+    public Boolean decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(getType(), length, 1);
+      return in.getByte(index) != 0;
+    }
+  }
+
+  public static class Int2Codec implements PgCodec<Short> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.INT2;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Short value) {
+      SenderUtils.writeAscii(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Short value) {
+      out.writeShort(value);
+    }
+
+    @Override
+    public Short decodeText(ByteBuf in, int index, int length) {
+      return (short) parseInt(in, index, length, Short.MIN_VALUE, Short.MAX_VALUE, "smallint");
+    }
+
+    @Override
+    public Short decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(getType(), length, 2);
+      return in.getShort(index);
+    }
+  }
+
+  public static class Int4Codec implements PgCodec<Integer> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.INT4;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Integer value) {
+      SenderUtils.writeAscii(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Integer value) {
+      out.writeInt(value);
+    }
+
+    @Override
+    public Integer decodeText(ByteBuf in, int index, int length) {
+      return parseInt(in, index, length, Integer.MIN_VALUE, Integer.MAX_VALUE, "integer");
+    }
+
+    @Override
+    public Integer decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(getType(), length, 4);
+      return in.getInt(index);
+    }
+  }
+
+  public static class Int8Codec implements PgCodec<Long> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.INT8;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Long value) {
+      SenderUtils.writeAscii(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Long value) {
+      out.writeLong(value);
+    }
+
+    @Override
+    public Long decodeText(ByteBuf in, int index, int length) {
+      return parseLong(in, index, length);
+    }
+
+    @Override
+    public Long decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(getType(), length, 8);
+      return in.getLong(index);
+    }
+  }
+
+  /**
+   * Object identifiers, which are unsigned 32 bits integers stored in a Java int.
+   */
+  public static class OidCodec implements PgCodec<Integer> {
+    private final PgType type;
+
+    public OidCodec(PgType type) {
+      this.type = type;
+    }
+
+    @Override
+    public PgType getType() {
+      return type;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Integer value) {
+      SenderUtils.writeAscii(out, Integer.toUnsignedLong(value));
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Integer value) {
+      out.writeInt(value);
+    }
+
+    @Override
+    public Integer decodeText(ByteBuf in, int index, int length) {
+      return parseInt(in, index, length, Integer.MIN_VALUE, 0xFFFFFFFFL, type.getName());
+    }
+
+    @Override
+    public Integer decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(type, length, 4);
+      return in.getInt(index);
+    }
+  }
+
+  public static class Float4Codec implements PgCodec<Float> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.FLOAT4;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Float value) {
+      RyuFormatter.writeFloat(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Float value) {
+      out.writeFloat(value);
+    }
+
+    @Override
+    public Float decodeText(ByteBuf in, int index, int length) {
+      return (float) parseDouble(in, index, length, "real");
+    }
+
+    @Override
+    public Float decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(getType(), length, 4);
+      return in.getFloat(index);
+    }
+  }
+
+  public static class Float8Codec implements PgCodec<Double> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.FLOAT8;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Double value) {
+      RyuFormatter.writeDouble(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Double value) {
+      out.writeDouble(value);
+    }
+
+    @Override
+    public Double decodeText(ByteBuf in, int index, int length) {
+      return parseDouble(in, index, length, "double precision");
+    }
+
+    @Override
+    public Double decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(getType(), length, 8);
+      return in.getDouble(index);
+    }
+  }
+
+  /**
+   * Parses a floating point number, including the {@code NaN}, {@code Infinity} and {@code inf} spellings Postgres
+   * accepts.
+   */
+  static double parseDouble(ByteBuf in, int index, int length, String typeName) {
+    double fast = parseSimpleDouble(in, index, length);
+    if (!Double.isNaN(fast)) {
+      return fast;
+    }
+    String text = trimmedString(in, index, length);
+    switch (text.toLowerCase(Locale.ROOT)) {
+      case "nan":
+        return Double.NaN;
+      case "infinity":
+      case "+infinity":
+      case "inf":
+      case "+inf":
+        return Double.POSITIVE_INFINITY;
+      case "-infinity":
+      case "-inf":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        if (text.isEmpty() || !Character.isDigit(text.charAt(text.length() - 1)) || !isDecimal(text)) {
+          throw invalidText(in, index, length, typeName);
+        }
+        try {
+          return Double.parseDouble(text);
+        } catch (NumberFormatException ex) {
+          throw invalidText(in, index, length, typeName);
+        }
+    }
+  }
+
+  /**
+   * Whether the text only has the characters of decimal numbers, given {@link Double#parseDouble(String)} also
+   * accepts hexadecimal numbers, which Postgres does not.
+   */
+  private static boolean isDecimal(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if ((c < '0' || c > '9') && c != '.' && c != 'e' && c != 'E' && c != '+' && c != '-') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+      1e20, 1e21, 1e22
+  };
+
+  /**
+   * Parses the common case of decimal numbers with at most 15 significant digits and a small exponent without
+   * creating a String. Both the digits and the power of ten are exact doubles in that case, so a single multiplication
+   * or division is correctly rounded.
+   *
+   * @return the value or NaN if the text is not in the simple case, which includes the NaN text itself.
+   */
+  static double parseSimpleDouble(ByteBuf in, int index, int length) {
+    int i = index;
+    int end = index + length;
+    while (i < end && QuerySplitter.isWhitespace(in.getByte(i))) {
+      i++;
+    }
+    while (end > i && QuerySplitter.isWhitespace(in.getByte(end - 1))) {
+      end--;
+    }
+    boolean negative = false;
+    if (i < end && (in.getByte(i) == '-' || in.getByte(i) == '+')) {
+      negative = in.getByte(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significantDigits = 0;
+    int exponent = 0;
+    boolean digits = false;
+    boolean point = false;
+    for (; i < end; i++) {
+      byte b = in.getByte(i);
+      if (b >= '0' && b <= '9') {
+        digits = true;
+        if (mantissa != 0 || b != '0') {
+          if (++significantDigits > 15) {
+            return Double.NaN;
+          }
+          mantissa = mantissa * 10 + (b - '0');
+        }
+        if (point) {
+          exponent--;
+        }
+      } else if (b == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+    if (!digits) {
+      return Double.NaN;
+    }
+    if (i < end) {
+      byte b = in.getByte(i);
+      if (b != 'e' && b != 'E' || i + 1 == end) {
+        return Double.NaN;
+      }
+      i++;
+      boolean negativeExponent = false;
+      if (in.getByte(i) == '-' || in.getByte(i) == '+') {
+        negativeExponent = in.getByte(i) == '-';
+        i++;
+      }
+      int explicitExponent = 0;
+      if (i == end) {
+        return Double.NaN;
+      }
+      for (; i < end; i++) {
+        int digit = in.getByte(i) - '0';
+        if (digit < 0 || digit > 9 || explicitExponent > 1000) {
+          return Double.NaN;
+        }
+        explicitExponent = explicitExponent * 10 + digit;
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+    double value;
+    if (mantissa == 0) {
+      value = 0;
+    } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+      value = mantissa * POWERS_OF_TEN[exponent];
+    } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+      value = mantissa / POWERS_OF_TEN[-exponent];
+    } else {
+      return Double.NaN;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Binary data, whose text format is the hex format ({@code \x} followed by two hex digits per byte). Text values in
+   * the legacy escape format are also accepted.
+   * <p>
+   * Hex digits are written from a table of digit pairs, four bytes at a time, and read with a table of digit values.
+   * {@link #encodeHex(ByteBuf, ByteBuf, int, int)} and {@link #decodeHex(ByteBuf, int, int, ByteBuf)} work on buffers
+   * directly, without intermediate arrays.
+   */
+  public static class ByteaCodec implements PgCodec<byte[]> {
+    /**
+     * The two hex digits of each byte, with the first one in the high byte.
+     */
+    private static final short[] HEX_PAIRS = new short[256];
+    /**
+     * The value of each hex digit or -1 for other characters.
+     */
+    private static final byte[] HEX_VALUES = new byte[256];
+
+    static {
+      byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+      for (int i = 0; i < 256; i++) {
+        HEX_PAIRS[i] = (short) (digits[i >> 4] << 8 | digits[i & 0xF]);
+      }
+      Arrays.fill(HEX_VALUES, (byte) -1);
+      for (int i = 0; i < 16; i++) {
+        HEX_VALUES[digits[i]] = (byte) i;
+        HEX_VALUES[Character.toUpperCase(digits[i])] = (byte) i;
+      }
+    }
+
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.BYTEA;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, byte[] value) {
+      encodeHex(out, Unpooled.wrappedBuffer(value), 0, value.length);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, byte[] value) {
+      out.writeBytes(value);
+    }
+
+    @Override
+    public byte[] decodeText(ByteBuf in, int index, int length) {
+      if (length >= 2 && in.getByte(index) == '\\' && in.getByte(index + 1) == 'x') {
+        byte[] result = new byte[(length - 2) / 2];
+        int count = decodeHex(in, index, length, Unpooled.wrappedBuffer(result).writerIndex(0));
+        return count == result.length ? result : Arrays.copyOf(result, count);
+      }
+      return decodeEscape(in, index, length);
+    }
+
+    @Override
+    public byte[] decodeBinary(ByteBuf in, int index, int length) {
+      byte[] result = new byte[length];
+      in.getBytes(index, result);
+      return result;
+    }
+
+    /**
+     * Writes the given bytes in the hex text format, including the {@code \x} prefix.
+     */
+    public static void encodeHex(ByteBuf out, ByteBuf value, int index, int length) {
+      out.ensureWritable(2 + length * 2);
+      out.writeByte('\\').writeByte('x');
+      int writerIndex = out.writerIndex();
+      int end = index + length;
+      int i = index;
+      for (; i + 4 <= end; i += 4) {
+        int bytes = value.getInt(i);
+        out.setLong(writerIndex, (long) HEX_PAIRS[bytes >>> 24] << 48 | (long) HEX_PAIRS[bytes >>> 16 & 0xFF] << 32
+            | (long) HEX_PAIRS[bytes >>> 8 & 0xFF] << 16 | HEX_PAIRS[bytes & 0xFF]);
+        writerIndex += 8;
+      }
+      for (; i < end; i++) {
+        out.setShort(writerIndex, HEX_PAIRS[value.getByte(i) & 0xFF]);
+        writerIndex += 2;
+      }
+      out.writerIndex(writerIndex);
+    }
+
+    /**
+     * Decodes a value in the hex text format, including the {@code \x} prefix, into the given buffer. Like Postgres,
+     * whitespaces are accepted between pairs of digits.
+     *
+     * @return the number of bytes written
+     */
+    public static int decodeHex(ByteBuf in, int index, int length, ByteBuf out) {
+      int end = index + length;
+      if (length < 2 || in.getByte(index) != '\\' || in.getByte(index + 1) != 'x') {
+        throw invalidText(in, index, length, "bytea");
+      }
+      out.ensureWritable((length - 2) / 2);
+      int writerIndex = out.writerIndex();
+      int start = writerIndex;
+      int i = index + 2;
+      while (i < end) {
+        if (i + 1 < end) {
+          int pair = in.getShort(i);
+          int value = HEX_VALUES[pair >>> 8 & 0xFF] << 4 | HEX_VALUES[pair & 0xFF];
+          if (value >= 0) {
+            out.setByte(writerIndex++, value);
+            i += 2;
+            continue;
+          }
+        }
+        if (!QuerySplitter.isWhitespace(in.getByte(i))) {
+          throw invalidText(in, index, length, "bytea");
+        }
+        i++;
+      }
+      out.writerIndex(writerIndex);
+      return writerIndex - start;
+    }
+
+    private static byte[] decodeEscape(ByteBuf in, int index, int length) {
+      byte[] result = new byte[length];
+      int count = 0;
+      int end = index + length;
+      for (int i = index; i < end; i++) {
+        byte b = in.getByte(i);
+        if (b != '\\') {
+          result[count++] = b;
+        } else if (i + 1 < end && in.getByte(i + 1) == '\\') {
+          result[count++] = '\\';
+          i++;
+        } else if (i + 3 < end && isOctal(in.getByte(i + 1)) && isOctal(in.getByte(i + 2))
+            && isOctal(in.getByte(i + 3))) {
+          result[count++] = (byte) ((in.getByte(i + 1) - '0') << 6 | (in.getByte(i + 2) - '0') << 3
+              | (in.getByte(i + 3) - '0'));
+          i += 3;
+        } else {
+          throw invalidText(in, index, length, "bytea");
+        }
+      }
+      return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static boolean isOctal(byte b) {
+      return b >= '0' && b <= '7';
+    }
+  }
+
+  /**
+   * The vector of int2 used in system catalogs, whose text format is a list of integers separated by spaces and whose
+   * binary format is the one of a one-dimensional int2 array with lower bound 0.
+   */
+  public static class Int2VectorCodec implements PgCodec<short[]> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.INT2_VECTOR;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, short[] value) {
+      for (int i = 0; i < value.length; i++) {
+        if (i > 0) {
+          out.writeByte(' ');
+        }
+        SenderUtils.writeAscii(out, value[i]);
+      }
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, short[] value) {
+      out.writeInt(value.length == 0 ? 0 : 1); // dimensions
+      out.writeInt(0); // no nulls
+      out.writeInt(PgType.StandardTypes.INT2.getOid());
+      if (value.length > 0) {
+        out.writeInt(value.length);
+        out.writeInt(0); // lower bound
+        for (short element : value) {
+          out.writeInt(2).writeShort(element);
+        }
+      }
+    }
+
+    @Override
+    public short[] decodeText(ByteBuf in, int index, int length) {
+      short[] result = new short[length / 2 + 1];
+      int count = 0;
+      int end = index + length;
+      int i = index;
+      while (i < end) {
+        if (QuerySplitter.isWhitespace(in.getByte(i))) {
+          i++;
+          continue;
+        }
+        int start = i;
+        while (i < end && !QuerySplitter.isWhitespace(in.getByte(i))) {
+          i++;
+        }
+        result[count++] = (short) parseInt(in, start, i - start, Short.MIN_VALUE, Short.MAX_VALUE, "smallint");
+      }
+      return Arrays.copyOf(result, count);
+    }
+
+    @Override
+    public short[] decodeBinary(ByteBuf in, int index, int length) {
+      if (length < 12) {
+        throw new IllegalArgumentException("Binary int2vector values must have at least 12 bytes");
+      }
+      int dimensions = in.getInt(index);
+      if (dimensions == 0) {
+        return new short[0];
+      }
+      if (dimensions != 1 || length < 20) {
+        throw new IllegalArgumentException("Binary int2vector values must have one dimension");
+      }
+      int size = in.getInt(index + 12);
+      if (length != 20 + size * 6) {
+        throw new IllegalArgumentException("Invalid binary int2vector of " + size + " elements and " + length
+            + " bytes");
+      }
+      short[] result = new short[size];
+      int elementIndex = index + 20;
+      for (int i = 0; i < size; i++) {
+        if (in.getInt(elementIndex) != 2) {
+          throw new IllegalArgumentException("int2vector values cannot contain nulls");
+        }
+        result[i] = in.getShort(elementIndex + 4);
+        elementIndex += 6;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The {@code uuid} codec, whose binary format is the 16 bytes of the UUID. The static methods encode UUIDs from their
+   * two longs, without creating {@link UUID} instances.
+   */
+  public static class UuidCodec implements PgCodec<UUID> {
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.UUID;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, UUID value) {
+      encodeText(out, value.getMostSignificantBits(), value.getLeastSignificantBits());
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, UUID value) {
+      encodeBinary(out, value.getMostSignificantBits(), value.getLeastSignificantBits());
+    }
+
+    /**
+     * Writes the UUID in its canonical form, like {@code a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11}.
+     */
+    public static void encodeText(ByteBuf out, long mostSignificantBits, long leastSignificantBits) {
+      out.ensureWritable(36);
+      int index = out.writerIndex();
+      writeHex(out, index, mostSignificantBits >>> 32, 4);
+      out.setByte(index + 8, '-');
+      writeHex(out, index + 9, mostSignificantBits >>> 16, 2);
+      out.setByte(index + 13, '-');
+      writeHex(out, index + 14, mostSignificantBits, 2);
+      out.setByte(index + 18, '-');
+      writeHex(out, index + 19, leastSignificantBits >>> 48, 2);
+      out.setByte(index + 23, '-');
+      writeHex(out, index + 24, leastSignificantBits, 6);
+      out.writerIndex(index + 36);
+    }
+
+    public static void encodeBinary(ByteBuf out, long mostSignificantBits, long leastSignificantBits) {
+      out.writeLong(mostSignificantBits).writeLong(leastSignificantBits);
+    }
+
+    /**
+     * Parses the 32 hex digits of the UUID, which may be surrounded by braces and have hyphens after any group of four
+     * digits, like Postgres does.
+     */
+    @Override
+    public UUID decodeText(ByteBuf in, int index, int length) {
+      int start = index;
+      int end = index + length;
+      if (start < end && in.getByte(start) == '{') {
+        if (in.getByte(end - 1) != '}') {
+          throw invalidText(in, index, length, "uuid");
+        }
+        start++;
+        end--;
+      }
+      long mostSignificantBits = 0;
+      long leastSignificantBits = 0;
+      int digits = 0;
+      for (int i = start; i < end; i++) {
+        byte b = in.getByte(i);
+        if (b == '-' && digits % 4 == 0 && digits > 0 && digits < 32 && in.getByte(i - 1) != '-') {
+          continue;
+        }
+        int value = ByteaCodec.HEX_VALUES[b & 0xFF];
+        if (value < 0 || digits == 32) {
+          throw invalidText(in, index, length, "uuid");
+        }
+        if (digits < 16) {
+          mostSignificantBits = mostSignificantBits << 4 | value;
+        } else {
+          leastSignificantBits = leastSignificantBits << 4 | value;
+        }
+        digits++;
+      }
+      if (digits != 32) {
+        throw invalidText(in, index, length, "uuid");
+      }
+      return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    @Override
+    public UUID decodeBinary(ByteBuf in, int index, int length) {
+      checkLength(PgType.StandardTypes.UUID, length, 16);
+      return new UUID(in.getLong(index), in.getLong(index + 8));
+    }
+
+    /**
+     * Writes the given number of low bytes of the value as hex digits at the given index.
+     */
+    private static void writeHex(ByteBuf out, int index, long value, int bytes) {
+      for (int i = bytes - 1; i >= 0; i--) {
+        out.setShort(index + i * 2, ByteaCodec.HEX_PAIRS[(int) value & 0xFF]);
+        value >>>= 8;
+      }
+    }
+  }
+
+  /**
+   * The {@code jsonb} codec, whose binary format is a version byte followed by the JSON text. Values can be
+   * {@link CharSequence}s or JSON already serialized as UTF-8 in a {@code byte[]} or a {@link ByteBuf}, which are
+   * written as they are, without validating them. Values are decoded as {@link String}.
+   */
+  public static class JsonbCodec implements PgCodec<Object> {
+    /**
+     * The version of the binary format, which is the only one Postgres supports.
+     */
+    static final int VERSION = 1;
+
+    @Override
+    public PgType getType() {
+      return PgType.StandardTypes.JSONB;
+    }
+
+    @Override
+    public void encodeText(ByteBuf out, Object value) {
+      writeJson(out, value);
+    }
+
+    @Override
+    public void encodeBinary(ByteBuf out, Object value) {
+      out.writeByte(VERSION);
+      writeJson(out, value);
+    }
+
+    @Override
+    public String decodeText(ByteBuf in, int index, int length) {
+      return in.toString(index, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decodeBinary(ByteBuf in, int index, int length) {
+      if (length < 1 || in.getByte(index) != VERSION) {
+        throw new IllegalArgumentException("Unsupported binary jsonb version");
+      }
+      return in.toString(index + 1, length - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the readable bytes of the given buffer, without modifying its indexes, in the binary format.
+     */
+    public static void encodeBinary(ByteBuf out, ByteBuf utf8) {
+      out.ensureWritable(1 + utf8.readableBytes());
+      out.writeByte(VERSION);
+      out.writeBytes(utf8, utf8.readerIndex(), utf8.readableBytes());
+    }
+
+    private static void writeJson(ByteBuf out, Object value) {
+      if (value instanceof CharSequence) {
+        ByteBufUtil.writeUtf8(out, (CharSequence) value);
+      } else if (value instanceof ByteBuf) {
+        ByteBuf utf8 = (ByteBuf) value;
+        out.writeBytes(utf8, utf8.readerIndex(), utf8.readableBytes());
+      } else if (value instanceof byte[]) {
+        out.writeBytes((byte[]) value);
+      } else {
+        throw new IllegalArgumentException(value.getClass().getName() + " cannot be encoded as jsonb");
+      }
+    }
+  }
+}
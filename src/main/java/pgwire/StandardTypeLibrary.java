@@ -16,8 +16,11 @@ public class StandardTypeLibrary implements IntFunction<PgType> {
     }
   }
 
+  /**
+   * @return the type with the given oid or null if it is not a standard type
+   */
   @Override
   public PgType apply(int oid) {
-    return _types[oid];
+    return oid >= 0 && oid < _types.length ? _types[oid] : null;
   }
 }
@@ -0,0 +1,83 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+
+/**
+ * The sequence of messages sent by a server once the authentication succeeds.
+ *
+ * <p>
+ * The sequence consists of AuthenticationOk, one ParameterStatus per parameter, BackendKeyData and ReadyForQuery.
+ * All these messages are the same for all connections with the exception of the BackendKeyData content, so they
+ * are encoded once in a shared buffer. Each connection just copies the shared buffer, patches the process id and the
+ * secret key and writes the result with a single flush.
+ * <p>
+ * Instances are immutable and thread safe, so they can be shared between all the connections of a server.
+ *
+ * @see BackendMessageSender#onStartupGreeting(io.netty.channel.ChannelHandlerContext, StartupGreeting, int, int)
+ */
+public class StartupGreeting {
+  private final ByteBuf template;
+  private final int backendKeyDataIndex;
+
+  /**
+   * @param parameterStatus The parameters to report, in iteration order.
+   */
+  public StartupGreeting(Map<String, String> parameterStatus) {
+    this(parameterStatus, TransactionStatus.IDLE);
+  }
+
+  public StartupGreeting(Map<String, String> parameterStatus, TransactionStatus status) {
+    ByteBuf buffer = Unpooled.directBuffer();
+
+    buffer.writeByte(MessageConstants.AUTHENTICATION_OK);
+    buffer.writeInt(8);
+    buffer.writeInt(0);
+
+    for (Map.Entry<String, String> entry : parameterStatus.entrySet()) {
+      int lengthIndex = buffer.writerIndex() + 1;
+      buffer.writeByte(MessageConstants.PARAMETER_STATUS);
+      buffer.writeInt(-1);
+      SenderUtils.writeCStr(buffer, entry.getKey());
+      SenderUtils.writeCStr(buffer, entry.getValue());
+      buffer.setInt(lengthIndex, buffer.writerIndex() - lengthIndex);
+    }
+
+    backendKeyDataIndex = buffer.writerIndex() + 5;
+    buffer.writeByte(MessageConstants.BACKEND_KEY_DATA);
+    buffer.writeInt(12);
+    buffer.writeInt(0); // process id, patched on each connection
+    buffer.writeInt(0); // secret key, patched on each connection
+
+    buffer.writeByte(MessageConstants.READY_FOR_QUERY);
+    buffer.writeInt(5);
+    buffer.writeByte(status.getId());
+
+    template = Unpooled.unreleasableBuffer(buffer.asReadOnly());
+  }
+
+  /**
+   * The number of bytes of the whole sequence.
+   */
+  public int getLength() {
+    return template.readableBytes();
+  }
+
+  /**
+   * Writes the sequence into the given buffer, using the given process id and secret key as BackendKeyData content.
+   */
+  public void writeTo(ByteBuf out, int processId, int secretKey) {
+    int start = out.writerIndex();
+    out.writeBytes(template, template.readerIndex(), template.readableBytes());
+    out.setInt(start + backendKeyDataIndex, processId);
+    out.setInt(start + backendKeyDataIndex + 4, secretKey);
+  }
+
+  @Override
+  public String toString() {
+    return "StartupGreeting{" + template.toString(StandardCharsets.US_ASCII) + '}';
+  }
+}
@@ -0,0 +1,248 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * The parameters sent by the frontend in the StartupMessage.
+ *
+ * <p>
+ * This is the map received by {@link FrontendMessageListener#onStartup(Object, int, java.util.Map)} when using
+ * {@link FrontendPostgresHandler}. Well-known parameter names (like {@link #USER} or {@link #DATABASE}) are matched
+ * while parsing, so they can be read with specific getters like {@link #getUser()} without hashing nor comparing
+ * bytes. Their keys are duplicates of the shared constants, so moving the indexes of a key does not affect other
+ * connections.
+ * <p>
+ * Given the number of parameters is usually small, lookups by key are linear, which is cheaper than hashing
+ * {@link ByteBuf}s. Keys that are one of the constants defined in this class are matched by identity.
+ */
+public class StartupParameters extends AbstractMap<ByteBuf, ByteBuf> {
+  public static final ByteBuf USER = constant("user");
+  public static final ByteBuf DATABASE = constant("database");
+  public static final ByteBuf OPTIONS = constant("options");
+  public static final ByteBuf REPLICATION = constant("replication");
+  public static final ByteBuf APPLICATION_NAME = constant("application_name");
+  public static final ByteBuf CLIENT_ENCODING = constant("client_encoding");
+  public static final ByteBuf DATE_STYLE = constant("DateStyle");
+  public static final ByteBuf TIME_ZONE = constant("TimeZone");
+
+  private static final ByteBuf[] WELL_KNOWN = {
+      USER, DATABASE, OPTIONS, REPLICATION, APPLICATION_NAME, CLIENT_ENCODING, DATE_STYLE, TIME_ZONE
+  };
+  /**
+   * The names of {@link #WELL_KNOWN}, which are matched against the message without depending on the indexes of the
+   * shared constants.
+   */
+  private static final byte[][] WELL_KNOWN_NAMES = new byte[WELL_KNOWN.length][];
+
+  static {
+    for (int i = 0; i < WELL_KNOWN.length; i++) {
+      WELL_KNOWN_NAMES[i] = ByteBufUtil.getBytes(WELL_KNOWN[i]);
+    }
+  }
+
+  private ByteBuf[] keys = new ByteBuf[8];
+  private ByteBuf[] values = new ByteBuf[8];
+  /**
+   * The index in {@link #WELL_KNOWN} of each key or -1 if the key is not well-known.
+   */
+  private int[] wellKnownKeys = new int[8];
+  private int size;
+  /**
+   * The value of each well-known parameter, in the same order as {@link #WELL_KNOWN}.
+   */
+  private final ByteBuf[] wellKnownValues = new ByteBuf[WELL_KNOWN.length];
+
+  /**
+   * Reads the parameters from the given buffer, which must start just after the protocol version.
+   *
+   * @param buf the buffer to read. Values are slices of this buffer.
+   */
+  public static StartupParameters read(ByteBuf buf) {
+    StartupParameters parameters = new StartupParameters();
+    while (buf.isReadable()) {
+      int nameLength = buf.bytesBefore((byte) 0);
+      if (nameLength <= 0) { // the list of parameters is terminated by an empty name
+        break;
+      }
+      int nameIndex = buf.readerIndex();
+      int wellKnownIdx = findWellKnown(buf, nameIndex, nameLength);
+      ByteBuf name = wellKnownIdx >= 0 ? WELL_KNOWN[wellKnownIdx].duplicate() : buf.slice(nameIndex, nameLength);
+      buf.skipBytes(nameLength + 1);
+
+      ByteBuf value = AbstractPostgresHandler.readNullEndedSlice(buf);
+      parameters.add(name, wellKnownIdx, value);
+      if (wellKnownIdx >= 0) {
+        parameters.wellKnownValues[wellKnownIdx] = value;
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * The database user name to connect as or null if it was not sent.
+   */
+  public ByteBuf getUser() {
+    return wellKnownValues[0];
+  }
+
+  /**
+   * The database to connect to or null if it was not sent, in which case it defaults to the user name.
+   */
+  public ByteBuf getDatabase() {
+    return wellKnownValues[1];
+  }
+
+  public ByteBuf getOptions() {
+    return wellKnownValues[2];
+  }
+
+  public ByteBuf getReplication() {
+    return wellKnownValues[3];
+  }
+
+  public ByteBuf getApplicationName() {
+    return wellKnownValues[4];
+  }
+
+  public ByteBuf getClientEncoding() {
+    return wellKnownValues[5];
+  }
+
+  public ByteBuf getDateStyle() {
+    return wellKnownValues[6];
+  }
+
+  public ByteBuf getTimeZone() {
+    return wellKnownValues[7];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public ByteBuf get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : values[index];
+  }
+
+  @Override
+  public Set<Entry<ByteBuf, ByteBuf>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<ByteBuf, ByteBuf>> iterator() {
+        return new Iterator<>() {
+          private int next;
+
+          @Override
+          public boolean hasNext() {
+            return next < size;
+          }
+
+          @Override
+          public Entry<ByteBuf, ByteBuf> next() {
+            if (next >= size) {
+              throw new NoSuchElementException();
+            }
+            Entry<ByteBuf, ByteBuf> entry = new SimpleImmutableEntry<>(keys[next], values[next]);
+            next++;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private void add(ByteBuf name, int wellKnownIdx, ByteBuf value) {
+    int index = wellKnownIdx >= 0 ? indexOfWellKnown(wellKnownIdx) : indexOf(name);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+      wellKnownKeys = Arrays.copyOf(wellKnownKeys, size * 2);
+    }
+    keys[size] = name;
+    values[size] = value;
+    wellKnownKeys[size] = wellKnownIdx;
+    size++;
+  }
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < WELL_KNOWN.length; i++) {
+      if (WELL_KNOWN[i] == key) {
+        return indexOfWellKnown(i);
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+    if (!(key instanceof ByteBuf)) {
+      return -1;
+    }
+    for (int i = 0; i < size; i++) {
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOfWellKnown(int wellKnownIdx) {
+    for (int i = 0; i < size; i++) {
+      if (wellKnownKeys[i] == wellKnownIdx) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int findWellKnown(ByteBuf buf, int index, int length) {
+    for (int i = 0; i < WELL_KNOWN_NAMES.length; i++) {
+      byte[] candidate = WELL_KNOWN_NAMES[i];
+      if (candidate.length == length && matches(candidate, buf, index)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean matches(byte[] name, ByteBuf buf, int index) {
+    for (int i = 0; i < name.length; i++) {
+      if (buf.getByte(index + i) != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ByteBuf constant(String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+    return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(bytes).asReadOnly());
+  }
+}
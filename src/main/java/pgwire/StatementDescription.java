@@ -0,0 +1,206 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+
+
+/**
+ * The ParameterDescription and RowDescription messages of a prepared statement, encoded once.
+ *
+ * <p>
+ * The metadata of a prepared statement does not change between executions, but a frontend that sends Describe before
+ * each Execute (as most drivers do for the unnamed statement) receives it every time. Instead of encoding the names,
+ * OIDs and formats of the columns again and again, the messages are encoded in a shared buffer when the statement is
+ * prepared and sent with
+ * {@link BackendMessageSender#onStatementDescription(io.netty.channel.ChannelHandlerContext, StatementDescription)}
+ * or
+ * {@link BackendMessageSender#onPortalDescription(io.netty.channel.ChannelHandlerContext, StatementDescription, List)}.
+ * Statements that do not return rows are described with NoData.
+ * <p>
+ * Instances are immutable and thread safe, so they can be shared between all the connections of a server, usually by
+ * means of a {@link DescriptionCache}.
+ */
+public class StatementDescription {
+  private static final int FIELD_SIZE = 4 + 2 + 4 + 2 + 4 + 2;
+
+  private final ByteBuf encoded;
+  private final int parameterCount;
+  /**
+   * The index in the encoded buffer where the RowDescription (or NoData) message starts.
+   */
+  private final int rowDescriptionIndex;
+  /**
+   * The index of the format code of each column, relative to the start of the RowDescription.
+   */
+  private final int[] formatIndexes;
+  private final int[] formats;
+
+  /**
+   * @param parameters the types of the parameters.
+   * @param fields the columns returned by the statement or null if it does not return rows.
+   */
+  public StatementDescription(List<PgType> parameters, List<Field> fields) {
+    int fieldCount = fields == null ? 0 : fields.size();
+    int length = parameterDescriptionLength(parameters) + (fields == null ? 5 : rowDescriptionLength(fields));
+    ByteBuf buffer = Unpooled.directBuffer(length, length);
+
+    writeParameterDescription(buffer, parameters);
+    rowDescriptionIndex = buffer.writerIndex();
+    formatIndexes = new int[fieldCount];
+    formats = new int[fieldCount];
+    if (fields == null) {
+      buffer.writeByte(MessageConstants.NO_DATA);
+      buffer.writeInt(4);
+    } else {
+      writeRowDescription(buffer, fields, formatIndexes);
+      for (int i = 0; i < fieldCount; i++) {
+        formatIndexes[i] -= rowDescriptionIndex;
+        formats[i] = fields.get(i).getFormat().getId();
+      }
+    }
+    parameterCount = parameters.size();
+    encoded = Unpooled.unreleasableBuffer(buffer.asReadOnly());
+  }
+
+  public int getParameterCount() {
+    return parameterCount;
+  }
+
+  /**
+   * The number of columns or 0 if the statement does not return rows.
+   */
+  public int getColumnCount() {
+    return formats.length;
+  }
+
+  /**
+   * Whether the statement returns rows, in which case it is described with RowDescription instead of NoData.
+   */
+  public boolean hasRowDescription() {
+    return encoded.getByte(rowDescriptionIndex) == MessageConstants.ROW_DESCRIPTION;
+  }
+
+  /**
+   * The ParameterDescription message followed by the RowDescription or NoData message.
+   */
+  ByteBuf getStatementMessages() {
+    return encoded;
+  }
+
+  /**
+   * The RowDescription or NoData message, with the formats of the fields used to create this description.
+   */
+  ByteBuf getRowMessage() {
+    return encoded.slice(rowDescriptionIndex, encoded.writerIndex() - rowDescriptionIndex);
+  }
+
+  int getRowMessageLength() {
+    return encoded.writerIndex() - rowDescriptionIndex;
+  }
+
+  /**
+   * Whether the given result formats, with the semantics of the Bind message, are the ones already encoded.
+   *
+   * @throws IllegalArgumentException if there are several formats, but not one per column
+   */
+  boolean hasFormats(List<Format> resultFormats) {
+    checkResultFormats(resultFormats);
+    for (int i = 0; i < formats.length; i++) {
+      if (resultFormat(resultFormats, i) != formats[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the RowDescription or NoData message with the given result formats.
+   *
+   * @throws IllegalArgumentException if there are several formats, but not one per column
+   */
+  void writeRowMessage(ByteBuf out, List<Format> resultFormats) {
+    checkResultFormats(resultFormats);
+    int start = out.writerIndex();
+    out.writeBytes(encoded, rowDescriptionIndex, encoded.writerIndex() - rowDescriptionIndex);
+    for (int i = 0; i < formats.length; i++) {
+      out.setShort(start + formatIndexes[i], resultFormat(resultFormats, i));
+    }
+  }
+
+  private void checkResultFormats(List<Format> resultFormats) {
+    if (resultFormats.size() > 1 && resultFormats.size() != formats.length) {
+      throw new IllegalArgumentException("There are " + resultFormats.size() + " result formats for "
+          + formats.length + " columns");
+    }
+  }
+
+  /**
+   * Applies the semantics of the result format codes of a Bind message: no codes means text, a single code applies to
+   * all the columns and otherwise there is a code per column.
+   */
+  private static int resultFormat(List<Format> resultFormats, int column) {
+    switch (resultFormats.size()) {
+      case 0:
+        return Format.TEXT.getId();
+      case 1:
+        return resultFormats.get(0).getId();
+      default:
+        return resultFormats.get(column).getId();
+    }
+  }
+
+  static int parameterDescriptionLength(List<PgType> parameters) {
+    if (parameters.size() > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many parameters. Trying to send " + parameters.size()
+          + " when max is " + Short.MAX_VALUE);
+    }
+    return 1 + 4 + 2 + parameters.size() * 4;
+  }
+
+  static void writeParameterDescription(ByteBuf out, List<PgType> parameters) {
+    out.writeByte(MessageConstants.PARAMETER_DESCRIPTION);
+    out.writeInt(4 + 2 + parameters.size() * 4);
+    SenderUtils.writeUnsignedShort(out, parameters.size());
+    for (int i = 0; i < parameters.size(); i++) {
+      out.writeInt(parameters.get(i).getOid());
+    }
+  }
+
+  static int rowDescriptionLength(List<Field> fields) {
+    int length = 1 + 4 + 2 + fields.size() * FIELD_SIZE;
+    for (int i = 0; i < fields.size(); i++) {
+      length += SenderUtils.cStrLength(fields.get(i).getName());
+    }
+    return length;
+  }
+
+  /**
+   * @param formatIndexes if not null, receives the index in the buffer of the format code of each field.
+   */
+  static void writeRowDescription(ByteBuf out, List<Field> fields, int[] formatIndexes) {
+    int start = out.writerIndex();
+    out.writeByte(MessageConstants.ROW_DESCRIPTION);
+    out.writeInt(0); // length, written at the end
+    SenderUtils.writeUnsignedShort(out, fields.size());
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      SenderUtils.writeCStr(out, field.getName());
+      out.writeInt(field.getTableOid());
+      SenderUtils.writeUnsignedShort(out, field.getColumnIdx());
+      out.writeInt(field.getPgType().getOid());
+      SenderUtils.writeUnsignedShort(out, field.getPgType().getByteLength());
+      out.writeInt(field.getTypeModifier());
+      if (formatIndexes != null) {
+        formatIndexes[i] = out.writerIndex();
+      }
+      SenderUtils.writeUnsignedShort(out, field.getFormat().getId());
+    }
+    out.setInt(start + 1, out.writerIndex() - start - 1);
+  }
+
+  @Override
+  public String toString() {
+    return "StatementDescription{parameters=" + parameterCount + ", columns=" + formats.length + '}';
+  }
+}
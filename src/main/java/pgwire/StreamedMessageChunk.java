@@ -0,0 +1,29 @@
+package pgwire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+
+/**
+ * A part of the content of a message announced by a {@link StreamedMessageHeader}.
+ */
+public class StreamedMessageChunk extends DefaultByteBufHolder {
+  private final boolean last;
+
+  public StreamedMessageChunk(ByteBuf content, boolean last) {
+    super(content);
+    this.last = last;
+  }
+
+  /**
+   * Whether this is the last chunk of the message.
+   */
+  public boolean isLast() {
+    return last;
+  }
+
+  @Override
+  public StreamedMessageChunk replace(ByteBuf content) {
+    return new StreamedMessageChunk(content, last);
+  }
+}
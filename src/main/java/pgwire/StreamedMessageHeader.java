@@ -0,0 +1,35 @@
+package pgwire;
+
+/**
+ * The event emitted by {@link PgFrameDecoder} when a message is too large to be buffered.
+ *
+ * It is followed by one or more {@link StreamedMessageChunk}s whose content adds up to {@link #getLength()} bytes.
+ */
+public class StreamedMessageHeader {
+  private final char id;
+  private final int length;
+
+  public StreamedMessageHeader(char id, int length) {
+    this.id = id;
+    this.length = length;
+  }
+
+  /**
+   * The message type, like {@link MessageConstants#COPY_DATA}.
+   */
+  public char getId() {
+    return id;
+  }
+
+  /**
+   * The length of the message content, which does not include the id nor the length field itself.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return "StreamedMessageHeader{" + "id=" + id + ", length=" + length + '}';
+  }
+}
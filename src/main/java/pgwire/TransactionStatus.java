@@ -25,11 +25,15 @@ public enum TransactionStatus {
   }
 
   public static TransactionStatus fromValue(int id) {
-    for (TransactionStatus value : values()) {
-      if (value.id == (char) id) {
-        return value;
-      }
+    switch (id) {
+      case 'I':
+        return IDLE;
+      case 'T':
+        return STARTED;
+      case 'E':
+        return FAILED;
+      default:
+        throw new IllegalArgumentException("Value " + id + " is not a valid transaction status id");
     }
-    throw new IllegalArgumentException("Value " + id + " is not a valid transaction status id");
   }
 }
@@ -12,11 +12,46 @@ public interface ValueConverter<C, O> {
   class IntToText implements ValueConverter<ByteBufAllocator, ByteBuf> {
     @Override
     public ByteBuf convert(ByteBufAllocator ctx, Object input) {
-      Integer i = (Integer) input;
-      StringBuilder sb = new StringBuilder();
-      sb.append(i);
-      ByteBuf buffer = ctx.buffer(sb.length());
-      buffer.writeCharSequence(sb, StandardCharsets.UTF_8);
+      int i = (Integer) input;
+      ByteBuf buffer = ctx.buffer(SenderUtils.asciiLength(i));
+      SenderUtils.writeAscii(buffer, i);
+      return buffer;
+    }
+  }
+
+  /**
+   * Converts any integer type ({@code Short}, {@code Integer}, {@code Long}...) to its text format.
+   */
+  class LongToText implements ValueConverter<ByteBufAllocator, ByteBuf> {
+    @Override
+    public ByteBuf convert(ByteBufAllocator ctx, Object input) {
+      long l = ((Number) input).longValue();
+      ByteBuf buffer = ctx.buffer(SenderUtils.asciiLength(l));
+      SenderUtils.writeAscii(buffer, l);
+      return buffer;
+    }
+  }
+
+  /**
+   * Converts a {@code Float} to the text format of {@code real}, see {@link RyuFormatter}.
+   */
+  class FloatToText implements ValueConverter<ByteBufAllocator, ByteBuf> {
+    @Override
+    public ByteBuf convert(ByteBufAllocator ctx, Object input) {
+      ByteBuf buffer = ctx.buffer(RyuFormatter.MAX_FLOAT_LENGTH);
+      RyuFormatter.writeFloat(buffer, (Float) input);
+      return buffer;
+    }
+  }
+
+  /**
+   * Converts a {@code Double} to the text format of {@code double precision}, see {@link RyuFormatter}.
+   */
+  class DoubleToText implements ValueConverter<ByteBufAllocator, ByteBuf> {
+    @Override
+    public ByteBuf convert(ByteBufAllocator ctx, Object input) {
+      ByteBuf buffer = ctx.buffer(RyuFormatter.MAX_DOUBLE_LENGTH);
+      RyuFormatter.writeDouble(buffer, (Double) input);
       return buffer;
     }
   }
@@ -0,0 +1,198 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pgwire.StandardCodecsTest.decodeText;
+import static pgwire.StandardCodecsTest.encodeText;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+
+public class ArrayCodecTest {
+  private final ArrayCodec<Integer> ints = ArrayCodec.of(StandardCodecs.INT4);
+  private final ArrayCodec<CharSequence> texts = ArrayCodec.of(StandardCodecs.TEXT);
+
+  private static ByteBuf encode(PgCodec<Object> codec, Object value, Format format) {
+    ByteBuf buf = Unpooled.buffer();
+    codec.encode(buf, value, format);
+    return buf;
+  }
+
+  private static ByteBuf text(String text) {
+    return Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The header of a binary array of int4 with the given dimensions.
+   */
+  private static ByteBuf binaryHeader(int... sizes) {
+    ByteBuf buf = Unpooled.buffer();
+    buf.writeInt(sizes.length).writeInt(0).writeInt(PgType.StandardTypes.INT4.getOid());
+    for (int size : sizes) {
+      buf.writeInt(size).writeInt(1);
+    }
+    return buf;
+  }
+
+  private static int[] decodeInts(String text) {
+    return ArrayCodec.decodeIntArray(text(text), 0, text.length(), Format.TEXT);
+  }
+
+  @Test
+  public void textLayout() {
+    assertEquals("{1,-2,3}", encodeText(ints, new int[] {1, -2, 3}));
+    assertEquals("{{1,2},{3,4}}", encodeText(ints, new int[][] {{1, 2}, {3, 4}}));
+    assertEquals("{1,NULL,3}", encodeText(ints, Arrays.asList(1, null, 3)));
+    assertEquals("{}", encodeText(ints, new int[0]));
+    assertEquals("{}", encodeText(ints, new int[][] {{}, {}}));
+    assertEquals("{1.5,1e+20}", encodeText(ArrayCodec.of(StandardCodecs.FLOAT8), new double[] {1.5, 1e20}));
+    assertEquals("{0.1}", encodeText(ArrayCodec.of(StandardCodecs.FLOAT4), new double[] {0.1}));
+    assertEquals("{t,f}", encodeText(ArrayCodec.of(StandardCodecs.BOOL), new boolean[] {true, false}));
+    assertEquals("{a,\"b c\",\"\",\"NULL\",\"nuLL\",NULL,\"x\\\"y\",\"\\\\\",\"{}\",\"a,b\",nulls}",
+        encodeText(texts, Arrays.asList("a", "b c", "", "NULL", "nuLL", null, "x\"y", "\\", "{}", "a,b", "nulls")));
+  }
+
+  @Test
+  public void binaryLayout() {
+    ByteBuf expected = binaryHeader(2).writeInt(4).writeInt(7).writeInt(-1);
+    expected.setInt(4, 1);
+    assertEquals(expected, encode(ints, Arrays.asList(7, null), Format.BINARY));
+    assertEquals(binaryHeader(2).writeInt(4).writeInt(7).writeInt(4).writeInt(8),
+        encode(ints, new long[] {7, 8}, Format.BINARY));
+    assertEquals(binaryHeader(), encode(ints, List.of(), Format.BINARY));
+    assertEquals(binaryHeader(2, 1).writeInt(4).writeInt(1).writeInt(4).writeInt(2),
+        encode(ints, new int[][] {{1}, {2}}, Format.BINARY));
+  }
+
+  @Test
+  public void roundTrips() {
+    ArrayCodec<Double> doubles = ArrayCodec.of(StandardCodecs.FLOAT8);
+    ArrayCodec<Long> longs = ArrayCodec.of(StandardCodecs.INT8);
+    ArrayCodec<BigDecimal> numerics = ArrayCodec.of(NumericCodec.INSTANCE);
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      int[] values = random.ints(random.nextInt(20), -1000, 1000).toArray();
+      double[] doubleValues = random.doubles(values.length).toArray();
+      for (Format format : Format.values()) {
+        ByteBuf buf = encode(ints, values, format);
+        assertArrayEquals(values, ArrayCodec.decodeIntArray(buf, 0, buf.readableBytes(), format));
+        assertEquals(Arrays.stream(values).boxed().collect(Collectors.toList()),
+            ints.decode(buf, format));
+        buf = encode(longs, values, format);
+        assertArrayEquals(Arrays.stream(values).asLongStream().toArray(),
+            ArrayCodec.decodeLongArray(buf, 0, buf.readableBytes(), format));
+        buf = encode(doubles, doubleValues, format);
+        assertArrayEquals(doubleValues, ArrayCodec.decodeDoubleArray(buf, 0, buf.readableBytes(), format));
+        buf = encode(numerics, values, format);
+        assertArrayEquals(values, ArrayCodec.decodeIntArray(buf, 0, buf.readableBytes(), format));
+        assertArrayEquals(Arrays.stream(values).asDoubleStream().toArray(),
+            ArrayCodec.decodeDoubleArray(buf, 0, buf.readableBytes(), format));
+      }
+    }
+
+    List<List<String>> strings = List.of(Arrays.asList("a", null, "", " b "), List.of("NULL", "\"", "\\n", "é,{}"));
+    List<List<Object>> nested = List.of(List.of(List.of(1, 2), List.of(3, 4)), List.of(List.of(5, 6),
+        Arrays.asList(7, null)));
+    for (Format format : Format.values()) {
+      assertEquals(strings, texts.decode(encode(texts, strings, format), format));
+      assertEquals(strings, texts.decode(encode(texts, strings.stream().map(List::toArray).toArray(), format),
+          format));
+      assertEquals(nested, ints.decode(encode(ints, nested, format), format));
+      assertEquals(List.of(), ints.decode(encode(ints, new int[0][0], format), format));
+      assertEquals(List.of(true, false), ArrayCodec.of(StandardCodecs.BOOL).decode(encode(
+          ArrayCodec.of(StandardCodecs.BOOL), new boolean[] {true, false}, format), format));
+    }
+  }
+
+  @Test
+  public void textInput() {
+    assertEquals(List.of(1, 2, 3), decodeText(ints, " { 1 , 2,3 } "));
+    assertEquals(List.of(1, 2), decodeText(ints, "[0:1]={1,2}"));
+    assertEquals(Arrays.asList("a b", null, "NULL", "x\"y", "\\", "c"),
+        decodeText(texts, "{ a b ,NULL,\"NULL\",\"x\\\"y\",\"\\\\\",\\c}"));
+    assertEquals(List.of("a ", "b"), decodeText(texts, "{a\\ ,b}"));
+    assertEquals(List.of(List.of(), List.of()), decodeText(ints, "{{},{}}"));
+    assertArrayEquals(new int[] {1, 2}, decodeInts("{\"1\", 2 }"));
+    assertArrayEquals(new int[0], decodeInts(" {} "));
+    assertArrayEquals(new long[] {1L << 40}, ArrayCodec.decodeLongArray(text("{1099511627776}"), 0, 15, Format.TEXT));
+    assertArrayEquals(new double[] {1.5, Double.NaN},
+        ArrayCodec.decodeDoubleArray(text("{1.5,NaN}"), 0, 9, Format.TEXT));
+  }
+
+  @Test
+  public void malformedText() {
+    for (String text : new String[] {"", "1,2", "{1,2", "{1,,2}", "{1,2}}", "{1 2}", "{,}", "{1,}", "{\"1}",
+        "{{1,2},{3}}", "{{1},2}", "{1,{2}}", "{{{{{{{1}}}}}}}", "{a\\", "[1:2]{1,2}", "{1}x", "{\"1\"2}",
+        "{{},{1}}", "{{{}},{1}}", "{{1},{{2}}}", "{{1},{}}"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(ints, text), text);
+    }
+    // a trailing escape at the end of the buffer
+    assertThrows(IllegalArgumentException.class,
+        () -> texts.decode(Unpooled.wrappedBuffer("{a\\".getBytes(StandardCharsets.UTF_8)), Format.TEXT));
+    for (String text : new String[] {"", "{1,2", "{1,,2}", "{1,NULL}", "{{1}}", "{1}x", "{\"1\\2\"}", "{1 2}",
+        "{2147483648}"}) {
+      assertThrows(IllegalArgumentException.class,
+          () -> decodeInts(text), text);
+    }
+  }
+
+  @Test
+  public void invalidValues() {
+    assertThrows(IllegalArgumentException.class, () -> encodeText(ints, 1));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(ints, new int[][] {{1, 2}, {3}}));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(ints, List.of(List.of(1), 2)));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(ints, List.of(1, List.of(2))));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(ints, new int[][][][][][][] {{{{{{{1}}}}}}}));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(texts, new int[] {1}));
+    assertThrows(IllegalArgumentException.class,
+        () -> encode(ArrayCodec.of(StandardCodecs.INT2), new int[] {40000}, Format.BINARY));
+    assertThrows(IllegalArgumentException.class,
+        () -> encode(ArrayCodec.of(StandardCodecs.OID), new long[] {-1}, Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> encode(ints, new double[] {1.5}, Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> new ArrayCodec<>(PgType.StandardTypes.TEXT_ARRAY,
+        StandardCodecs.INT4));
+  }
+
+  @Test
+  public void malformedBinary() {
+    ByteBuf[] invalid = {
+        Unpooled.buffer().writeInt(1).writeInt(0),
+        binaryHeader(Integer.MAX_VALUE).writeInt(4).writeInt(1),
+        binaryHeader(65536, 65536).writeInt(4).writeInt(1),
+        binaryHeader(-1),
+        binaryHeader(2).writeInt(4).writeInt(1),
+        binaryHeader(1).writeInt(8).writeInt(1),
+        binaryHeader(1).writeInt(4).writeInt(1).writeByte(0),
+        binaryHeader(1, 1, 1, 1, 1, 1, 1).writeInt(4).writeInt(1),
+        Unpooled.buffer().writeInt(-1).writeInt(0).writeInt(23),
+        Unpooled.buffer().writeInt(2).writeInt(0).writeInt(23).writeInt(1).writeInt(1),
+    };
+    for (ByteBuf buf : invalid) {
+      assertThrows(IllegalArgumentException.class, () -> ints.decode(buf, Format.BINARY), ByteBufUtil.hexDump(buf));
+      assertThrows(IllegalArgumentException.class,
+          () -> ArrayCodec.decodeLongArray(buf, 0, buf.readableBytes(), Format.BINARY), ByteBufUtil.hexDump(buf));
+      assertThrows(IllegalArgumentException.class,
+          () -> ArrayCodec.decodeDoubleArray(buf, 0, buf.readableBytes(), Format.BINARY), ByteBufUtil.hexDump(buf));
+    }
+    ByteBuf withNull = binaryHeader(1).writeInt(-1);
+    assertEquals(Arrays.asList((Object) null), ints.decode(withNull, Format.BINARY));
+    assertThrows(IllegalArgumentException.class,
+        () -> ArrayCodec.decodeIntArray(withNull, 0, withNull.readableBytes(), Format.BINARY));
+    ByteBuf twoDimensions = encode(ints, new int[][] {{1}}, Format.BINARY);
+    assertThrows(IllegalArgumentException.class,
+        () -> ArrayCodec.decodeIntArray(twoDimensions, 0, twoDimensions.readableBytes(), Format.BINARY));
+    ByteBuf bigLong = encode(ArrayCodec.of(StandardCodecs.INT8), new long[] {1L << 40}, Format.BINARY);
+    assertThrows(IllegalArgumentException.class,
+        () -> ArrayCodec.decodeIntArray(bigLong, 0, bigLong.readableBytes(), Format.BINARY));
+  }
+}
@@ -0,0 +1,60 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalChannel;
+import org.junit.jupiter.api.Test;
+
+
+public class BackendMessageSenderTest {
+
+  @Test
+  public void writeCombining() {
+    EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    ChannelHandlerContext ctx = channel.pipeline().firstContext();
+    BackendMessageSender sender = new BackendMessageSender();
+    sender.setWriteCombining(1024);
+    sender.onParseComplete(ctx);
+    sender.onBindComplete(ctx);
+    sender.onNoData(ctx);
+    assertNull(channel.readOutbound());
+    sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+
+    ByteBuf expected = Unpooled.buffer().writeByte('1').writeInt(4).writeByte('2').writeInt(4).writeByte('n')
+        .writeInt(4).writeByte('Z').writeInt(5).writeByte('I');
+    ByteBuf combined = channel.readOutbound();
+    assertEquals(expected, combined);
+    combined.release();
+    assertNull(channel.readOutbound());
+  }
+
+  @Test
+  public void combinedStateIsConfinedToTheEventLoop() throws Exception {
+    DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+    try {
+      LocalChannel channel = new LocalChannel();
+      channel.pipeline().addLast(new ChannelInboundHandlerAdapter());
+      group.register(channel).sync();
+      ChannelHandlerContext ctx = channel.pipeline().firstContext();
+      BackendMessageSender sender = new BackendMessageSender();
+
+      // without write combining messages are handed off by the channel
+      sender.onNoData(ctx);
+      assertThrows(IllegalStateException.class, () -> sender.beginDataRow(ctx));
+      sender.setWriteCombining(1024);
+      assertThrows(IllegalStateException.class, () -> sender.onNoData(ctx));
+      channel.eventLoop().submit(() -> sender.onNoData(ctx)).sync();
+      channel.close().sync();
+    } finally {
+      group.shutdownGracefully().sync();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+public class BackendPostgresHandlerTest {
+  private final List<String> events = new ArrayList<>();
+  private final EmbeddedChannel channel = new EmbeddedChannel(new BackendPostgresHandler(new StandardTypeLibrary(),
+      new BackendMessageListener.Abstract<>() {
+        @Override
+        public void onAuthenticationOk(ChannelHandlerContext ctx) {
+          events.add("ok");
+        }
+
+        @Override
+        public void onDataRow(ChannelHandlerContext ctx, List<ByteBuf> cells) {
+          List<String> values = new ArrayList<>();
+          for (ByteBuf cell : cells) {
+            values.add(cell == null ? null : cell.toString(StandardCharsets.UTF_8));
+          }
+          events.add("row " + values);
+        }
+
+        @Override
+        public void onRawMessage(ChannelHandlerContext ctx, char id, ByteBuf content) {
+          events.add("raw " + id + " " + content.readableBytes() + " " + content.getInt(content.readerIndex()));
+        }
+      }));
+
+  private static ByteBuf message(char id, ByteBuf content) {
+    return Unpooled.buffer().writeByte(id).writeInt(4 + content.readableBytes()).writeBytes(content);
+  }
+
+  @Test
+  public void unknownAuthenticationTypesAreRaw() {
+    channel.writeInbound(message('R', Unpooled.buffer().writeInt(6)));
+    channel.writeInbound(message('R', Unpooled.buffer().writeInt(99).writeInt(7)));
+    channel.writeInbound(message('R', Unpooled.buffer().writeInt(0)));
+    assertEquals(List.of("raw R 4 6", "raw R 8 99", "ok"), events);
+    assertTrue(channel.isOpen());
+  }
+
+  @Test
+  public void dataRowsWithNulls() {
+    ByteBuf row = Unpooled.buffer().writeShort(3);
+    row.writeInt(1).writeByte('a');
+    row.writeInt(-1);
+    row.writeInt(0);
+    channel.writeInbound(message('D', row));
+    assertEquals(List.of("row [a, null, ]"), events);
+  }
+}
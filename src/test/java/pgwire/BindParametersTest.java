@@ -0,0 +1,136 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+
+public class BindParametersTest {
+  private static final StandardTypeLibrary LIBRARY = new StandardTypeLibrary();
+
+  /**
+   * The content of a Bind message with one format per parameter, where each value is a String in text format, a
+   * ByteBuf in binary format or null.
+   */
+  private static BindMessage bind(Object... values) {
+    ByteBuf buf = Unpooled.buffer().writeByte(0).writeByte(0);
+    buf.writeShort(values.length);
+    for (Object value : values) {
+      buf.writeShort(value instanceof ByteBuf ? 1 : 0);
+    }
+    buf.writeShort(values.length);
+    for (Object value : values) {
+      if (value == null) {
+        buf.writeInt(-1);
+      } else if (value instanceof ByteBuf) {
+        buf.writeInt(((ByteBuf) value).readableBytes()).writeBytes((ByteBuf) value);
+      } else {
+        byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+        buf.writeInt(bytes.length).writeBytes(bytes);
+      }
+    }
+    buf.writeShort(0);
+    return new BindMessage().wrap(buf);
+  }
+
+  private static BindParameters params(BindMessage bind, PgType... types) {
+    List<Integer> oids = Arrays.stream(types).map(type -> type == null ? 0 : type.getOid())
+        .collect(Collectors.toList());
+    return new BindParameters(LIBRARY, oids).wrap(bind);
+  }
+
+  private static ByteBuf binary(PgCodec<?> codec, Object value) {
+    @SuppressWarnings("unchecked")
+    PgCodec<Object> untyped = (PgCodec<Object>) codec;
+    ByteBuf buf = Unpooled.buffer();
+    untyped.encodeBinary(buf, value);
+    return buf;
+  }
+
+  @Test
+  public void integers() {
+    BindParameters params = params(bind(" -12 ", binary(StandardCodecs.INT2, (short) 7),
+        binary(StandardCodecs.INT4, -5), binary(StandardCodecs.INT8, 1L << 40), binary(StandardCodecs.OID, -1),
+        binary(NumericCodec.INSTANCE, new BigDecimal("123")), null),
+        null, PgType.StandardTypes.INT2, PgType.StandardTypes.INT4, PgType.StandardTypes.INT8,
+        PgType.StandardTypes.OID, PgType.StandardTypes.NUMERIC, PgType.StandardTypes.INT4);
+    assertEquals(7, params.size());
+    assertEquals(-12, params.getInt(0));
+    assertEquals(7, params.getLong(1));
+    assertEquals(-5, params.getInt(2));
+    assertEquals(1L << 40, params.getLong(3));
+    assertThrows(IllegalArgumentException.class, () -> params.getInt(3));
+    assertEquals(0xFFFFFFFFL, params.getLong(4));
+    assertEquals(123, params.getLong(5));
+    assertEquals(12300, params.getUnscaledLong(5, 2));
+    assertEquals(-1200, params.getUnscaledLong(0, 2));
+    assertTrue(params.isNull(6));
+    assertFalse(params.isNull(5));
+    assertThrows(IllegalStateException.class, () -> params.getLong(6));
+    assertNull(params.getBigDecimal(6));
+    assertEquals(new BigDecimal("-5"), params.getBigDecimal(2));
+    assertEquals(Format.BINARY, params.getFormat(1));
+    assertEquals(Format.TEXT, params.getFormat(0));
+  }
+
+  @Test
+  public void floatsAreNotReadAsIntegerBits() {
+    BindParameters params = params(bind(binary(StandardCodecs.FLOAT8, 42.0), binary(StandardCodecs.FLOAT4, -3f),
+        binary(StandardCodecs.FLOAT8, 1.5), binary(StandardCodecs.FLOAT8, Double.NaN),
+        binary(StandardCodecs.FLOAT8, 1e19), binary(StandardCodecs.FLOAT4, 0.125f)),
+        PgType.StandardTypes.FLOAT8, PgType.StandardTypes.FLOAT4, PgType.StandardTypes.FLOAT8,
+        PgType.StandardTypes.FLOAT8, PgType.StandardTypes.FLOAT8, PgType.StandardTypes.FLOAT4);
+    assertEquals(42, params.getLong(0));
+    assertEquals(42, params.getInt(0));
+    assertEquals(-3, params.getInt(1));
+    assertEquals(1.5, params.getDouble(2));
+    for (int param = 2; param < 5; param++) {
+      int p = param;
+      assertThrows(IllegalArgumentException.class, () -> params.getLong(p), Integer.toString(p));
+    }
+    assertEquals(4200, params.getUnscaledLong(0, 2));
+    assertEquals(15, params.getUnscaledLong(2, 1));
+    assertEquals(2, params.getUnscaledLong(2, 0));
+    assertEquals(13, params.getUnscaledLong(5, 2));
+    assertThrows(IllegalArgumentException.class, () -> params.getUnscaledLong(3, 0));
+    assertThrows(IllegalArgumentException.class, () -> params.getUnscaledLong(4, 1));
+    assertEquals(new BigDecimal("42.0"), params.getBigDecimal(0));
+    assertEquals(new BigDecimal("0.125"), params.getBigDecimal(5));
+
+    // without a declared type binary values are interpreted by their length
+    BindParameters untyped = params(bind(binary(StandardCodecs.INT8, 42L)), (PgType) null);
+    assertEquals(42, untyped.getLong(0));
+  }
+
+  @Test
+  public void otherTypes() {
+    BindParameters params = params(bind("yes", Unpooled.buffer().writeByte(0), "2000-01-02 00:00:01",
+        binary(DateTimeCodecs.DATE, LocalDate.of(2000, 1, 3)), "{1,2}", "hello", binary(StandardCodecs.TEXT,
+        "bye")), PgType.StandardTypes.BOOL, PgType.StandardTypes.BOOL, PgType.StandardTypes.TIMESTAMP,
+        PgType.StandardTypes.DATE, PgType.StandardTypes.INT4_ARRAY, PgType.StandardTypes.TEXT);
+    assertTrue(params.getBoolean(0));
+    assertFalse(params.getBoolean(1));
+    assertEquals(DateTimeCodecs.MICROS_PER_DAY + DateTimeCodecs.MICROS_PER_SECOND, params.getTimestampMicros(2));
+    assertEquals(2 * DateTimeCodecs.MICROS_PER_DAY, params.getTimestampMicros(3));
+    assertArrayEquals(new int[] {1, 2}, params.getIntArray(4));
+    assertEquals("hello", params.getUtf8(5).toString(StandardCharsets.UTF_8));
+    assertEquals("bye", params.get(6, StandardCodecs.TEXT));
+    assertEquals(List.of(1, 2), params.get(4, CodecRegistry.standard()));
+    assertNull(params.getType(6));
+    assertThrows(IllegalStateException.class, () -> params.get(6, CodecRegistry.standard()));
+    assertThrows(IllegalArgumentException.class, () -> params.getBoolean(5));
+  }
+}
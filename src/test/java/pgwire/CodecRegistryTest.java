@@ -0,0 +1,51 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import org.junit.jupiter.api.Test;
+
+
+public class CodecRegistryTest {
+
+  @Test
+  public void standardHasAllStandardTypes() throws IllegalAccessException {
+    CodecRegistry registry = CodecRegistry.standard();
+    for (Field field : PgType.StandardTypes.class.getFields()) {
+      if (Modifier.isStatic(field.getModifiers()) && field.getType() == PgType.class) {
+        PgType type = (PgType) field.get(null);
+        PgCodec<?> codec = registry.get(type.getOid());
+        assertNotNull(codec, type.getName());
+        assertEquals(type.getOid(), codec.getType().getOid(), type.getName());
+      }
+    }
+  }
+
+  @Test
+  public void missingCodecs() {
+    CodecRegistry registry = CodecRegistry.standard();
+    PgType custom = new PgType(50000, "custom", 0, 0, -1, PgType.Type.Base, PgType.Category.USER_DEFINED);
+    assertNull(registry.get(50000));
+    assertNull(registry.get(-1));
+    assertThrows(IllegalArgumentException.class, () -> registry.get(custom));
+  }
+
+  @Test
+  public void registerAndCopy() {
+    CodecRegistry registry = CodecRegistry.standard();
+    PgType custom = new PgType(50000, "custom", 0, 0, -1, PgType.Type.Base, PgType.Category.USER_DEFINED);
+    PgCodec<CharSequence> customCodec = new StandardCodecs.TextCodec(custom);
+    PgCodec<CharSequence> otherText = new StandardCodecs.TextCodec(PgType.StandardTypes.TEXT);
+
+    CodecRegistry copy = registry.copy().register(customCodec).register(otherText);
+    assertSame(customCodec, copy.get(custom));
+    assertSame(otherText, copy.get(PgType.StandardTypes.TEXT));
+    assertNull(registry.get(custom.getOid()));
+    assertSame(StandardCodecs.TEXT, registry.get(PgType.StandardTypes.TEXT));
+  }
+}
@@ -0,0 +1,203 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pgwire.StandardCodecsTest.decodeBinary;
+import static pgwire.StandardCodecsTest.decodeText;
+import static pgwire.StandardCodecsTest.encodeText;
+import static pgwire.StandardCodecsTest.roundTrip;
+
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+public class DateTimeCodecsTest {
+
+  @Test
+  public void civilDates() {
+    for (long epochDay = -1_000_000; epochDay < 3_000_000; epochDay += 7) {
+      LocalDate date = LocalDate.ofEpochDay(epochDay);
+      long civil = DateTimeCodecs.civilDate(epochDay);
+      assertEquals(date.getYear(), DateTimeCodecs.civilYear(civil));
+      assertEquals(date.getMonthValue(), DateTimeCodecs.civilMonth(civil));
+      assertEquals(date.getDayOfMonth(), DateTimeCodecs.civilDay(civil));
+      assertEquals(epochDay, DateTimeCodecs.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+    }
+  }
+
+  @Test
+  public void dates() {
+    assertEquals("2000-01-31", encodeText(DateTimeCodecs.DATE, LocalDate.of(2000, 1, 31)));
+    assertEquals("0001-12-31 BC", encodeText(DateTimeCodecs.DATE, LocalDate.of(0, 12, 31)));
+    assertEquals("infinity", encodeText(DateTimeCodecs.DATE, LocalDate.MAX));
+    assertEquals(LocalDate.of(-43, 3, 15), decodeText(DateTimeCodecs.DATE, " 0044-03-15 BC "));
+    assertEquals(LocalDate.of(2024, 2, 29), decodeText(DateTimeCodecs.DATE, "2024-02-29 AD"));
+    assertEquals(LocalDate.of(-4, 2, 29), decodeText(DateTimeCodecs.DATE, "0005-02-29 BC"));
+    assertEquals(LocalDate.MIN, decodeText(DateTimeCodecs.DATE, "-Infinity"));
+    assertEquals(LocalDate.of(2000, 1, 2), decodeBinary(DateTimeCodecs.DATE, Unpooled.buffer().writeInt(1)));
+    assertEquals(LocalDate.MAX, decodeBinary(DateTimeCodecs.DATE, Unpooled.buffer().writeInt(Integer.MAX_VALUE)));
+
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      LocalDate date = LocalDate.ofEpochDay(random.nextInt(5_000_000) - 2_500_000);
+      for (Format format : Format.values()) {
+        assertEquals(date, roundTrip(DateTimeCodecs.DATE, date, format));
+      }
+    }
+  }
+
+  @Test
+  public void malformedDates() {
+    for (String text : new String[] {"", "2000", "2000-1-31", "2000-01-32", "2023-02-29", "2000-13-01", "2000/01/31",
+        "2000-01-31 12:00:00", "2000-01-31 XX", "infinityx", "0000-01-01", "0004-02-29 BC",
+        "99999999999999999999-01-01"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(DateTimeCodecs.DATE, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(DateTimeCodecs.DATE, Unpooled.buffer(8)
+        .writeLong(0)));
+  }
+
+  @Test
+  public void times() {
+    assertEquals("13:45:00.5", encodeText(DateTimeCodecs.TIME, LocalTime.of(13, 45, 0, 500_000_000)));
+    assertEquals("00:00:00", encodeText(DateTimeCodecs.TIME, LocalTime.MIDNIGHT));
+    assertEquals("23:59:59.999999", encodeText(DateTimeCodecs.TIME, LocalTime.MAX));
+    assertEquals(LocalTime.of(1, 2), decodeText(DateTimeCodecs.TIME, "01:02"));
+    assertEquals(LocalTime.of(1, 2, 3, 123_456_000), decodeText(DateTimeCodecs.TIME, " 01:02:03.1234567 "));
+    for (LocalTime time : new LocalTime[] {LocalTime.MIN, LocalTime.NOON, LocalTime.of(7, 8, 9, 10_000)}) {
+      for (Format format : Format.values()) {
+        assertEquals(time, roundTrip(DateTimeCodecs.TIME, time, format));
+      }
+    }
+  }
+
+  @Test
+  public void malformedTimes() {
+    for (String text : new String[] {"", "12", "12:5", "12:60", "24:00:00", "12:00:61", "12:00:00+01", "a:00"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(DateTimeCodecs.TIME, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(DateTimeCodecs.TIME, Unpooled.buffer()
+        .writeLong(-1)));
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(DateTimeCodecs.TIME, Unpooled.buffer()
+        .writeLong(DateTimeCodecs.MICROS_PER_DAY)));
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(DateTimeCodecs.TIME, Unpooled.buffer()
+        .writeInt(0)));
+  }
+
+  @Test
+  public void timestamps() {
+    LocalDateTime value = LocalDateTime.of(2000, 1, 31, 13, 45, 0, 500_000_000);
+    assertEquals("2000-01-31 13:45:00.5", encodeText(DateTimeCodecs.TIMESTAMP, value));
+    assertEquals("10000-01-01 00:00:00", encodeText(DateTimeCodecs.TIMESTAMP, LocalDateTime.of(10000, 1, 1, 0, 0)));
+    assertEquals("0001-01-01 00:00:00 BC", encodeText(DateTimeCodecs.TIMESTAMP, LocalDateTime.of(0, 1, 1, 0, 0)));
+    assertEquals(value, decodeText(DateTimeCodecs.TIMESTAMP, "2000-01-31T13:45:00.5"));
+    assertEquals(LocalDateTime.MAX, decodeText(DateTimeCodecs.TIMESTAMP, "infinity"));
+    assertEquals(value, decodeBinary(DateTimeCodecs.TIMESTAMP, Unpooled.buffer().writeLong(
+        30 * DateTimeCodecs.MICROS_PER_DAY + (13 * 3600 + 45 * 60) * DateTimeCodecs.MICROS_PER_SECOND + 500_000)));
+
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      long micros = random.nextLong() % (200_000L * 365 * DateTimeCodecs.MICROS_PER_DAY);
+      LocalDateTime timestamp = DateTimeCodecs.fromPostgresMicros(micros);
+      for (Format format : Format.values()) {
+        assertEquals(timestamp, roundTrip(DateTimeCodecs.TIMESTAMP, timestamp, format));
+      }
+      assertEquals(micros, DateTimeCodecs.parseTimestampMicros(Unpooled.copiedBuffer(encodeText(
+          DateTimeCodecs.TIMESTAMP, timestamp), StandardCharsets.US_ASCII), 0, encodeText(DateTimeCodecs.TIMESTAMP,
+          timestamp).length(), true));
+    }
+  }
+
+  @Test
+  public void malformedTimestamps() {
+    for (String text : new String[] {"", "2000-01-31 13", "2000-01-31X13:45", "2000-01-31 25:00", "2000-02-30 00:00",
+        "2000-01-31 13:45 BCE", "2000-01-31 13:45:00+99", "1000000000-01-01 00:00", "2000-01-01 99999999999:00"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(DateTimeCodecs.TIMESTAMP, text), text);
+      assertThrows(IllegalArgumentException.class, () -> decodeText(DateTimeCodecs.TIMESTAMPTZ, text), text);
+    }
+  }
+
+  @Test
+  public void timestampsWithTimeZone() {
+    OffsetDateTime value = OffsetDateTime.of(2000, 1, 31, 13, 45, 0, 500_000_000, ZoneOffset.ofHours(1));
+    assertEquals("2000-01-31 13:45:00.5+01", encodeText(DateTimeCodecs.TIMESTAMPTZ, value));
+    assertEquals("2000-01-31 13:45:00-05:30", encodeText(DateTimeCodecs.TIMESTAMPTZ,
+        value.withNano(0).withOffsetSameLocal(ZoneOffset.ofHoursMinutes(-5, -30))));
+    assertEquals(value, decodeText(DateTimeCodecs.TIMESTAMPTZ, "2000-01-31 13:45:00.5+01"));
+    assertEquals(value, decodeText(DateTimeCodecs.TIMESTAMPTZ, "2000-01-31 13:45:00.5 +0100"));
+    assertEquals(value.withOffsetSameLocal(ZoneOffset.UTC), decodeText(DateTimeCodecs.TIMESTAMPTZ,
+        "2000-01-31 13:45:00.5"));
+    assertEquals(value.withOffsetSameLocal(ZoneOffset.UTC), decodeText(DateTimeCodecs.TIMESTAMPTZ,
+        "2000-01-31T13:45:00.5Z"));
+    for (Format format : Format.values()) {
+      assertEquals(value.toInstant(), roundTrip(DateTimeCodecs.TIMESTAMPTZ, value, format).toInstant());
+    }
+    assertEquals(ZoneOffset.UTC, roundTrip(DateTimeCodecs.TIMESTAMPTZ, value, Format.BINARY).getOffset());
+    assertEquals(OffsetDateTime.MIN, roundTrip(DateTimeCodecs.TIMESTAMPTZ, OffsetDateTime.MIN, Format.BINARY));
+  }
+
+  @Test
+  public void nanosAreRoundedToMicros() {
+    assertEquals("01:02:03", encodeText(DateTimeCodecs.TIME, LocalTime.of(1, 2, 3, 499)));
+    assertEquals("01:02:03.000001", encodeText(DateTimeCodecs.TIME, LocalTime.of(1, 2, 3, 500)));
+    assertEquals("01:02:04", encodeText(DateTimeCodecs.TIME, LocalTime.of(1, 2, 3, 999_999_500)));
+    assertEquals(LocalTime.of(1, 2, 4), roundTrip(DateTimeCodecs.TIME, LocalTime.of(1, 2, 3, 999_999_500),
+        Format.BINARY));
+    assertEquals(LocalTime.of(23, 59, 59, 999_999_000), roundTrip(DateTimeCodecs.TIME, LocalTime.MAX,
+        Format.BINARY));
+
+    LocalDateTime endOfYear = LocalDateTime.of(1999, 12, 31, 23, 59, 59, 999_999_500);
+    assertEquals("2000-01-01 00:00:00", encodeText(DateTimeCodecs.TIMESTAMP, endOfYear));
+    assertEquals(LocalDateTime.of(2000, 1, 1, 0, 0), roundTrip(DateTimeCodecs.TIMESTAMP, endOfYear, Format.BINARY));
+    assertEquals("1999-12-31 23:59:59.000002", encodeText(DateTimeCodecs.TIMESTAMP, endOfYear.withNano(1_500)));
+    assertEquals(-999_998, DateTimeCodecs.toPostgresMicros(endOfYear.toEpochSecond(ZoneOffset.UTC), 1_500));
+    assertEquals("0001-12-31 23:59:59.999999 BC", encodeText(DateTimeCodecs.TIMESTAMP,
+        LocalDateTime.of(0, 12, 31, 23, 59, 59, 999_999_499)));
+
+    OffsetDateTime endOfYearTz = OffsetDateTime.of(endOfYear.withNano(999_999_999), ZoneOffset.ofHours(1));
+    assertEquals("2000-01-01 00:00:00+01", encodeText(DateTimeCodecs.TIMESTAMPTZ, endOfYearTz));
+    assertEquals(OffsetDateTime.of(1999, 12, 31, 23, 0, 0, 0, ZoneOffset.UTC), roundTrip(DateTimeCodecs.TIMESTAMPTZ,
+        endOfYearTz, Format.BINARY));
+  }
+
+  @Test
+  public void intervals() {
+    long hour = 3600 * DateTimeCodecs.MICROS_PER_SECOND;
+    assertEquals("1 year 2 mons 3 days 04:05:06", encodeText(DateTimeCodecs.INTERVAL,
+        new PgInterval(14, 3, 4 * hour + 5 * 60_000_000L + 6_000_000L)));
+    assertEquals("-1 days +02:00:00", encodeText(DateTimeCodecs.INTERVAL, new PgInterval(0, -1, 2 * hour)));
+    assertEquals("-2 years -00:00:00.5", encodeText(DateTimeCodecs.INTERVAL, new PgInterval(-24, 0, -500_000)));
+    assertEquals("00:00:00", encodeText(DateTimeCodecs.INTERVAL, PgInterval.ZERO));
+    assertEquals("1 mon 1 day 25:00:00", encodeText(DateTimeCodecs.INTERVAL, new PgInterval(1, 1, 25 * hour)));
+
+    assertEquals(new PgInterval(14, 3, 4 * hour), decodeText(DateTimeCodecs.INTERVAL, "1 year 2 mons 3 days 4 hours"));
+    assertEquals(new PgInterval(0, -14, -90 * 60_000_000L), decodeText(DateTimeCodecs.INTERVAL,
+        "@ 2 weeks 1:30 ago"));
+    assertEquals(new PgInterval(0, -1, 2 * hour), decodeText(DateTimeCodecs.INTERVAL, "-1 days +02:00:00"));
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      PgInterval interval = new PgInterval(random.nextInt(100_000) - 50_000, random.nextInt(100_000) - 50_000,
+          (random.nextLong() >> 20) / 1000 * 1000);
+      for (Format format : Format.values()) {
+        assertEquals(interval, roundTrip(DateTimeCodecs.INTERVAL, interval, format));
+      }
+    }
+  }
+
+  @Test
+  public void malformedIntervals() {
+    for (String text : new String[] {"1", "1 fortnight", "year", "1 year 2", "1:", "1:2", "--1 day", "178956971 years",
+        "2147483647 days 1 day", "2562047789 hours", "9223372036854775808 secs", "-2147483648 days ago"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(DateTimeCodecs.INTERVAL, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(DateTimeCodecs.INTERVAL, Unpooled.buffer(8)
+        .writeLong(0)));
+  }
+}
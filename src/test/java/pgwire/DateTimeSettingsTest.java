@@ -0,0 +1,182 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pgwire.StandardCodecsTest.decodeText;
+import static pgwire.StandardCodecsTest.encodeText;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+public class DateTimeSettingsTest {
+  /**
+   * 2000-01-31 13:45:00.5 as microseconds since 2000-01-01.
+   */
+  private static final long MICROS = 30 * DateTimeCodecs.MICROS_PER_DAY
+      + (13 * 3600 + 45 * 60) * DateTimeCodecs.MICROS_PER_SECOND + 500_000;
+
+  private static String date(DateTimeSettings settings, int days) {
+    ByteBuf buf = Unpooled.buffer();
+    settings.writeDate(buf, days);
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  private static String timestamp(DateTimeSettings settings, long micros) {
+    ByteBuf buf = Unpooled.buffer();
+    settings.writeTimestamp(buf, micros);
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  private static String timestampTz(DateTimeSettings settings, long micros) {
+    ByteBuf buf = Unpooled.buffer();
+    settings.writeTimestampTz(buf, micros);
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void dateStyles() {
+    DateTimeSettings settings = new DateTimeSettings();
+    assertEquals("ISO, MDY", settings.getDateStyle());
+    assertEquals("SQL, DMY", settings.setDateStyle("sql, dmy").getDateStyle());
+    assertEquals("Postgres, DMY", settings.setDateStyle(" Postgres ").getDateStyle());
+    assertEquals("Postgres, MDY", settings.setDateStyle("US").getDateStyle());
+    assertEquals("German, DMY", settings.setDateStyle("German").getDateStyle());
+    assertEquals("German, YMD", settings.setDateStyle("German, YMD").getDateStyle());
+    assertEquals("ISO, DMY", settings.setDateStyle("ISO, Euro").getDateStyle());
+    assertEquals("ISO, MDY", settings.setDateStyle("Default").getDateStyle());
+    for (String dateStyle : new String[] {"", "ISO, SQL", "DMY, MDY", "ISO,", "Iso8601", "ISO; DMY"}) {
+      assertThrows(IllegalArgumentException.class, () -> settings.setDateStyle(dateStyle), dateStyle);
+    }
+    assertEquals("ISO, MDY", settings.getDateStyle());
+    assertEquals("SQL, YMD", DateTimeSettings.of("SQL, YMD", null).getDateStyle());
+  }
+
+  @Test
+  public void dates() {
+    DateTimeSettings settings = new DateTimeSettings();
+    assertEquals("2000-01-31", date(settings, 30));
+    int bc = Math.toIntExact(LocalDate.of(0, 12, 31).toEpochDay() - DateTimeCodecs.POSTGRES_EPOCH_DAYS);
+    assertEquals("0001-12-31 BC", date(settings, bc));
+    assertEquals("infinity", date(settings.setDateStyle("German"), Integer.MAX_VALUE));
+    assertEquals("-infinity", date(settings, Integer.MIN_VALUE));
+    assertEquals("31.01.2000", date(settings, 30));
+    assertEquals("31/01/2000", date(settings.setDateStyle("SQL"), 30));
+    assertEquals("01/31/2000", date(settings.setDateStyle("MDY"), 30));
+    assertEquals("01-31-2000", date(settings.setDateStyle("Postgres"), 30));
+    assertEquals("31-01-2000", date(settings.setDateStyle("DMY"), 30));
+    assertEquals("31-12-0001 BC", date(settings, bc));
+    assertEquals("2000-01-31", date(settings.setDateStyle("ISO"), 30));
+  }
+
+  @Test
+  public void timestamps() {
+    DateTimeSettings settings = new DateTimeSettings();
+    assertEquals("2000-01-31 13:45:00.5", timestamp(settings, MICROS));
+    assertEquals("2000-01-31 13:45:00.5+00", timestampTz(settings, MICROS));
+    assertEquals("infinity", timestampTz(settings, Long.MAX_VALUE));
+    assertEquals("Mon Jan 31 13:45:00.5 2000", timestamp(settings.setDateStyle("Postgres"), MICROS));
+    assertEquals("Mon Jan 31 13:45:00.5 2000 UTC", timestampTz(settings, MICROS));
+    assertEquals("Mon 31 Jan 13:45:00.5 2000", timestamp(settings.setDateStyle("DMY"), MICROS));
+    assertEquals("31/01/2000 13:45:00.5 UTC", timestampTz(settings.setDateStyle("SQL"), MICROS));
+    assertEquals("31.01.2000 13:45:00.5", timestamp(settings.setDateStyle("German"), MICROS));
+    assertEquals("-infinity", timestamp(settings, Long.MIN_VALUE));
+  }
+
+  @Test
+  public void timeZones() {
+    DateTimeSettings settings = new DateTimeSettings().setTimeZone("Europe/Madrid");
+    assertEquals(ZoneId.of("Europe/Madrid"), settings.getTimeZone());
+    assertEquals("2000-01-31 14:45:00.5+01", timestampTz(settings, MICROS));
+    long summer = MICROS + 182 * DateTimeCodecs.MICROS_PER_DAY;
+    assertEquals("2000-07-31 15:45:00.5+02", timestampTz(settings, summer));
+    assertEquals("Mon Jul 31 15:45:00.5 2000 CEST", timestampTz(settings.setDateStyle("Postgres"), summer));
+    assertEquals("31.01.2000 14:45:00.5 CET", timestampTz(settings.setDateStyle("German"), MICROS));
+
+    settings.setDateStyle("ISO");
+    assertEquals(ZoneOffset.ofHours(-3), settings.setTimeZone("3").getTimeZone());
+    assertEquals(ZoneOffset.ofHours(3), settings.setTimeZone("-3").getTimeZone());
+    assertEquals("2000-01-31 16:45:00.5+03", timestampTz(settings, MICROS));
+    assertEquals(ZoneOffset.ofHoursMinutes(-5, -30), settings.setTimeZone(" +05:30 ").getTimeZone());
+    assertEquals("2000-01-31 08:15:00.5-05:30", timestampTz(settings, MICROS));
+    assertEquals(ZoneId.of("UTC"), settings.setTimeZone("UTC").getTimeZone());
+    for (String timeZone : new String[] {"", "Mars/Olympus", "+", "1:2:3:4", "+25", "5:xx"}) {
+      assertThrows(IllegalArgumentException.class, () -> settings.setTimeZone(timeZone), timeZone);
+    }
+    assertEquals(ZoneId.of("UTC"), settings.getTimeZone());
+    assertEquals(ZoneOffset.ofHours(-8), DateTimeSettings.of(null, "8").getTimeZone());
+  }
+
+  @Test
+  public void gapsAndOverlaps() {
+    // Madrid jumps from 02:00 to 03:00 and New York from 02:00 to 03:00 in spring, and back in autumn
+    DateTimeSettings madrid = new DateTimeSettings().setTimeZone("Europe/Madrid");
+    assertEquals(3600, localOffset(madrid, LocalDateTime.of(2024, 3, 31, 2, 30)));
+    assertEquals(3600, localOffset(madrid, LocalDateTime.of(2024, 10, 27, 2, 30)));
+    assertEquals(7200, localOffset(madrid, LocalDateTime.of(2024, 10, 27, 1, 59)));
+    assertEquals(7200, localOffset(madrid, LocalDateTime.of(2024, 7, 1, 12, 0)));
+    DateTimeSettings newYork = new DateTimeSettings().setTimeZone("America/New_York");
+    assertEquals(-18000, localOffset(newYork, LocalDateTime.of(2024, 3, 10, 2, 30)));
+    assertEquals(-18000, localOffset(newYork, LocalDateTime.of(2024, 11, 3, 1, 30)));
+    assertEquals(-14400, localOffset(newYork, LocalDateTime.of(2024, 11, 3, 0, 59)));
+    assertEquals(-14400, localOffset(newYork, LocalDateTime.of(2024, 7, 1, 12, 0)));
+
+    for (String zone : new String[] {"Europe/Madrid", "America/New_York", "Australia/Lord_Howe", "UTC"}) {
+      DateTimeSettings settings = new DateTimeSettings().setTimeZone(zone);
+      ZoneRules rules = settings.getTimeZone().getRules();
+      for (LocalDateTime local = LocalDateTime.of(2023, 1, 1, 0, 0); local.getYear() < 2025;
+          local = local.plusMinutes(15)) {
+        ZoneOffsetTransition transition = rules.getTransition(local);
+        ZoneOffset expected = transition == null ? rules.getOffset(local)
+            : transition.isGap() ? transition.getOffsetBefore() : transition.getOffsetAfter();
+        assertEquals(expected.getTotalSeconds(), localOffset(settings, local), zone + " " + local);
+      }
+    }
+  }
+
+  private static int localOffset(DateTimeSettings settings, LocalDateTime local) {
+    return settings.getLocalOffsetSeconds(local.toEpochSecond(ZoneOffset.UTC));
+  }
+
+  @Test
+  public void registerCodecs() {
+    DateTimeSettings settings = DateTimeSettings.of("German", "Europe/Madrid");
+    CodecRegistry standard = CodecRegistry.standard();
+    CodecRegistry registry = settings.registerCodecs(standard.copy());
+
+    PgCodec<LocalDate> date = registry.get(PgType.StandardTypes.DATE);
+    assertEquals("31.01.2000", encodeText(date, LocalDate.of(2000, 1, 31)));
+    assertEquals("2000-01-31", encodeText(standard.get(PgType.StandardTypes.DATE), LocalDate.of(2000, 1, 31)));
+    assertEquals(LocalDate.of(2000, 1, 31), decodeText(date, "2000-01-31"));
+    PgCodec<LocalDateTime> timestamp = registry.get(PgType.StandardTypes.TIMESTAMP);
+    assertEquals("31.01.2000 13:45:00", encodeText(timestamp, LocalDateTime.of(2000, 1, 31, 13, 45)));
+    assertEquals("01.02.2000 00:00:00", encodeText(timestamp, LocalDateTime.of(2000, 1, 31, 23, 59, 59, 999_999_999)));
+    PgCodec<Object> dates = registry.get(PgType.StandardTypes.DATE_ARRAY);
+    assertEquals("{31.01.2000,NULL}", encodeText(dates, Arrays.asList(LocalDate.of(2000, 1, 31), null)));
+
+    PgCodec<OffsetDateTime> timestampTz = registry.get(PgType.StandardTypes.TIMESTAMPTZ);
+    OffsetDateTime summer = OffsetDateTime.of(2024, 7, 1, 12, 0, 0, 0, ZoneOffset.ofHours(2));
+    assertEquals("01.07.2024 12:00:00 CEST", encodeText(timestampTz, summer.withOffsetSameInstant(ZoneOffset.UTC)));
+    assertEquals(summer, decodeText(timestampTz, "2024-07-01 12:00"));
+    assertEquals(summer, decodeText(timestampTz, "2024-07-01 10:00+00"));
+    assertEquals(OffsetDateTime.of(2024, 3, 31, 3, 30, 0, 0, ZoneOffset.ofHours(2)),
+        decodeText(timestampTz, "2024-03-31 02:30"));
+    // the text input is always ISO, whatever the style
+    ByteBuf buf = Unpooled.buffer();
+    timestampTz.encode(buf, summer, Format.BINARY);
+    assertEquals(summer, timestampTz.decode(buf, Format.BINARY));
+    assertEquals(List.of(summer), decodeText(registry.get(PgType.StandardTypes.TIMESTAMPTZ_ARRAY),
+        "{\"2024-07-01 12:00\"}"));
+  }
+}
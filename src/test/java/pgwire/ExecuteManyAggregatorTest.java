@@ -0,0 +1,219 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+
+public class ExecuteManyAggregatorTest {
+  private final BackendMessageSender sender = new BackendMessageSender();
+  private final List<String> events = new ArrayList<>();
+  /**
+   * The row of the next batch that fails or -1.
+   */
+  private int failAt = -1;
+
+  private final ExecuteManyListener<ChannelHandlerContext, ByteBuf, ByteBuf> delegate =
+      new ExecuteManyListener.Abstract<>() {
+        @Override
+        public void onStartup(ChannelHandlerContext ctx, int version, Map<ByteBuf, ByteBuf> parameters) {
+        }
+
+        @Override
+        public void onBind(ChannelHandlerContext ctx, BindMessage bind) {
+          events.add("bind " + bind.getStatementName().toString(StandardCharsets.UTF_8) + " "
+              + bind.getParameter(0).toString(StandardCharsets.UTF_8));
+          sender.onBindComplete(ctx);
+        }
+
+        @Override
+        public void onExecute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+          events.add("execute " + rowLimit);
+          sender.onCommandComplete(ctx, 1, CommandType.INSERT);
+        }
+
+        @Override
+        public void onExecuteMany(ChannelHandlerContext ctx, ParameterBatch batch) {
+          StringBuilder values = new StringBuilder();
+          for (int row = 0; row < batch.size(); row++) {
+            values.append(row == 0 ? "" : ",").append(batch.getParameter(0, row).toString(StandardCharsets.UTF_8));
+          }
+          events.add("many " + batch.getStatementName().toString(StandardCharsets.UTF_8) + " " + values);
+          batch.setCommandType(CommandType.INSERT);
+          batch.setAffectedRows(1);
+          if (failAt >= 0) {
+            Map<Character, ByteBuf> fields = new LinkedHashMap<>();
+            fields.put('S', Unpooled.copiedBuffer("ERROR", StandardCharsets.US_ASCII));
+            fields.put('M', Unpooled.copiedBuffer("row " + failAt, StandardCharsets.US_ASCII));
+            batch.fail(failAt, fields);
+          }
+        }
+
+        @Override
+        public void onFlush(ChannelHandlerContext ctx) {
+          events.add("flush");
+          sender.flush(ctx);
+        }
+
+        @Override
+        public void onSync(ChannelHandlerContext ctx) {
+          events.add("sync");
+          sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+        }
+      };
+
+  private EmbeddedChannel channel(boolean batching) {
+    PgFrameDecoder decoder = new PgFrameDecoder(true);
+    decoder.setBatching(batching);
+    FrontendPostgresHandler handler = new FrontendPostgresHandler(new ExecuteManyAggregator(delegate, sender));
+    handler.setFlyweightBind(true);
+    EmbeddedChannel channel = new EmbeddedChannel(decoder, handler);
+    channel.writeInbound(Unpooled.buffer().writeInt(8).writeInt(196608));
+    return channel;
+  }
+
+  private static ByteBuf bind(String portal, String statement, Format format, String value) {
+    ByteBuf content = Unpooled.buffer();
+    content.writeCharSequence(portal, StandardCharsets.UTF_8);
+    content.writeByte(0);
+    content.writeCharSequence(statement, StandardCharsets.UTF_8);
+    content.writeByte(0);
+    content.writeShort(1).writeShort(format.getId());
+    content.writeShort(1).writeInt(value.length()).writeCharSequence(value, StandardCharsets.UTF_8);
+    content.writeShort(0);
+    return message('B', content);
+  }
+
+  private static ByteBuf bind(String statement, String value) {
+    return bind("", statement, Format.TEXT, value);
+  }
+
+  private static ByteBuf execute(String portal, int rowLimit) {
+    ByteBuf content = Unpooled.buffer();
+    content.writeCharSequence(portal, StandardCharsets.UTF_8);
+    content.writeByte(0);
+    return message('E', content.writeInt(rowLimit));
+  }
+
+  private static ByteBuf execute() {
+    return execute("", 0);
+  }
+
+  private static ByteBuf sync() {
+    return message('S', Unpooled.EMPTY_BUFFER);
+  }
+
+  private static ByteBuf flush() {
+    return message('H', Unpooled.EMPTY_BUFFER);
+  }
+
+  private static ByteBuf message(char id, ByteBuf content) {
+    return Unpooled.buffer().writeByte(id).writeInt(4 + content.readableBytes()).writeBytes(content);
+  }
+
+  /**
+   * Writes all the messages to the channel in a single read, so they are decoded as a batch if batching is enabled.
+   */
+  private static void send(EmbeddedChannel channel, ByteBuf... messages) {
+    channel.writeInbound(Unpooled.wrappedBuffer(messages));
+  }
+
+  /**
+   * The ids of the messages written to the channel since the last call.
+   */
+  private static String sent(EmbeddedChannel channel) {
+    channel.flushOutbound();
+    StringBuilder ids = new StringBuilder();
+    ByteBuf msg;
+    while ((msg = channel.readOutbound()) != null) {
+      while (msg.isReadable()) {
+        ids.append((char) msg.readByte());
+        msg.skipBytes(msg.readInt() - 4);
+      }
+      msg.release();
+    }
+    return ids.toString();
+  }
+
+  @Test
+  public void pairsFollowedBySync() {
+    for (boolean batching : new boolean[] {false, true}) {
+      events.clear();
+      EmbeddedChannel channel = channel(batching);
+      List<ByteBuf> messages = new ArrayList<>();
+      StringBuilder values = new StringBuilder();
+      StringBuilder expected = new StringBuilder();
+      // more rows than the initial capacity of the batch
+      for (int i = 0; i < 40; i++) {
+        messages.add(bind("s", "v" + i));
+        messages.add(execute());
+        values.append(i == 0 ? "" : ",").append("v").append(i);
+        expected.append("2C");
+      }
+      messages.add(sync());
+      send(channel, messages.toArray(new ByteBuf[0]));
+      assertEquals(List.of("many s " + values, "sync"), events);
+      assertEquals(expected + "Z", sent(channel));
+    }
+  }
+
+  @Test
+  public void failureAtRow() {
+    EmbeddedChannel channel = channel(false);
+    failAt = 1;
+    send(channel, bind("s", "a"), execute(), bind("s", "b"), execute(), bind("s", "c"), execute(),
+        message('P', Unpooled.wrappedBuffer(new byte[4])), bind("t", "d"), execute(), sync());
+    // the messages after the failed batch are ignored until the Sync
+    assertEquals(List.of("many s a,b,c", "sync"), events);
+    assertEquals("2C2EZ", sent(channel));
+
+    failAt = -1;
+    send(channel, bind("s", "e"), execute(), bind("s", "f"), execute(), sync());
+    assertEquals(List.of("many s a,b,c", "sync", "many s e,f", "sync"), events);
+    assertEquals("2C2CZ", sent(channel));
+  }
+
+  @Test
+  public void changesBreakTheGroup() {
+    EmbeddedChannel channel = channel(true);
+    send(channel, bind("s", "a"), execute(), bind("s", "b"), execute(),
+        bind("t", "c"), execute(), bind("t", "d"), execute(),
+        bind("", "t", Format.BINARY, "e"), execute(), bind("", "t", Format.BINARY, "f"), execute(),
+        bind("p", "t", Format.BINARY, "g"), execute("p", 0),
+        bind("t", "h"), sync());
+    assertEquals(List.of("many s a,b", "many t c,d", "many t e,f", "bind t g", "execute 0", "bind t h", "sync"),
+        events);
+    assertEquals("2C2C2C2C2C2C2C2Z", sent(channel));
+  }
+
+  @Test
+  public void rowLimit() {
+    EmbeddedChannel channel = channel(false);
+    send(channel, bind("s", "a"), execute("", 10), bind("s", "b"), execute(), bind("s", "c"), execute(),
+        bind("s", "d"), execute("", 1), sync());
+    // executions with a row limit are never grouped
+    assertEquals(List.of("bind s a", "execute 10", "many s b,c", "bind s d", "execute 1", "sync"), events);
+    assertEquals("2C2C2C2CZ", sent(channel));
+  }
+
+  @Test
+  public void flushInTheMiddle() {
+    EmbeddedChannel channel = channel(true);
+    send(channel, bind("s", "a"), execute(), bind("s", "b"), execute(), flush());
+    assertEquals(List.of("many s a,b", "flush"), events);
+    assertEquals("2C2C", sent(channel));
+    send(channel, bind("s", "c"), execute(), flush(), bind("s", "d"), execute(),
+        bind("s", "e"), execute(), sync());
+    assertEquals(List.of("many s a,b", "flush", "bind s c", "execute 0", "flush", "many s d,e", "sync"), events);
+    assertEquals("2C2C2CZ", sent(channel));
+  }
+}
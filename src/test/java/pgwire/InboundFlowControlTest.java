@@ -0,0 +1,287 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+public class InboundFlowControlTest {
+  private final BackendMessageSender sender = new BackendMessageSender();
+  private final List<String> events = new ArrayList<>();
+
+  /**
+   * Records the messages without answering them, so the test decides when each request is answered.
+   */
+  private final FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener =
+      new FrontendMessageListener.Abstract<>() {
+        @Override
+        public void onStartup(ChannelHandlerContext ctx, int version, Map<ByteBuf, ByteBuf> parameters) {
+        }
+
+        @Override
+        public void onQuery(ChannelHandlerContext ctx, ByteBuf query) {
+          String text = query.toString(StandardCharsets.UTF_8);
+          events.add(text);
+          if (text.startsWith("copy")) {
+            sender.onCopyInResponse(ctx, Format.TEXT, List.of(Format.TEXT));
+          }
+        }
+
+        @Override
+        public void onParse(ChannelHandlerContext ctx, ByteBuf name, ByteBuf query, List<Integer> paramOids) {
+          events.add("parse");
+        }
+
+        @Override
+        public void onBind(ChannelHandlerContext ctx, ByteBuf portalName, ByteBuf preparedStatementName,
+            List<ParameterBound<ByteBuf>> params, List<Format> resultFormats) {
+          events.add("bind");
+        }
+
+        @Override
+        public void onExecute(ChannelHandlerContext ctx, ByteBuf name, int rowLimit) {
+          events.add("execute");
+        }
+
+        @Override
+        public void onSync(ChannelHandlerContext ctx) {
+          events.add("sync");
+        }
+
+        @Override
+        public void onCopyData(ChannelHandlerContext ctx, ByteBuf bytes) {
+          events.add("data");
+        }
+
+        @Override
+        public void onCopyDone(ChannelHandlerContext ctx) {
+          events.add("done");
+        }
+      };
+
+  private EmbeddedChannel channel(int maxRequests, int maxBytes) {
+    FrontendPostgresHandler handler = new FrontendPostgresHandler(listener);
+    handler.setInboundLimits(maxRequests, maxBytes);
+    EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(true), handler);
+    channel.writeInbound(Unpooled.buffer().writeInt(8).writeInt(196608));
+    return channel;
+  }
+
+  private static ByteBuf message(char id, String... strings) {
+    ByteBuf content = Unpooled.buffer();
+    for (String string : strings) {
+      content.writeCharSequence(string, StandardCharsets.UTF_8);
+      content.writeByte(0);
+    }
+    return Unpooled.buffer().writeByte(id).writeInt(4 + content.readableBytes()).writeBytes(content);
+  }
+
+  private static ByteBuf query(String query) {
+    return message('Q', query);
+  }
+
+  private static ByteBuf parse(String query) {
+    ByteBuf parse = message('P', "", query).writeShort(0);
+    return parse.setInt(1, parse.readableBytes() - 1);
+  }
+
+  private static ByteBuf extendedQuery() {
+    ByteBuf bind = Unpooled.buffer().writeByte('B').writeInt(4 + 2 + 2 + 2 + 2).writeShort(0).writeShort(0)
+        .writeShort(0).writeShort(0);
+    ByteBuf execute = message('E', "").writeInt(0);
+    execute.setInt(1, execute.readableBytes() - 1);
+    return Unpooled.wrappedBuffer(parse("select 1"), bind, execute, message('S'));
+  }
+
+  private static ByteBuf copyData(int length) {
+    return Unpooled.buffer().writeByte('d').writeInt(4 + length).writeZero(length);
+  }
+
+  /**
+   * Sends ReadyForQuery and discards what was written.
+   */
+  private void answer(EmbeddedChannel channel, int requests) {
+    ChannelHandlerContext ctx = channel.pipeline().lastContext();
+    for (int i = 0; i < requests; i++) {
+      sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+    }
+    channel.runPendingTasks();
+    channel.releaseOutbound();
+  }
+
+  @Test
+  public void invalidLimits() {
+    assertThrows(IllegalArgumentException.class, () -> new InboundFlowControl(0, 10));
+    assertThrows(IllegalArgumentException.class, () -> new InboundFlowControl(10, -1));
+  }
+
+  @Test
+  public void pipelinedQueries() {
+    EmbeddedChannel channel = channel(2, 1 << 20);
+    // the ReadyForQuery sent after the authentication does not answer any request
+    answer(channel, 1);
+    channel.writeInbound(Unpooled.wrappedBuffer(query("a"), query("b")));
+    assertTrue(channel.config().isAutoRead());
+    // the messages already read are dispatched even if they exceed the limits
+    channel.writeInbound(Unpooled.wrappedBuffer(query("c"), query("d"), query("e")));
+    assertEquals(List.of("a", "b", "c", "d", "e"), events);
+    assertFalse(channel.config().isAutoRead());
+
+    answer(channel, 2);
+    assertFalse(channel.config().isAutoRead());
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+    answer(channel, 2);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void pendingBytes() {
+    EmbeddedChannel channel = channel(100, 64);
+    // the messages after the last request do not stop the reads by themselves
+    channel.writeInbound(parse("b".repeat(100)));
+    assertTrue(channel.config().isAutoRead());
+    channel.writeInbound(query("c"));
+    assertFalse(channel.config().isAutoRead());
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+
+    channel.writeInbound(query("a".repeat(40)));
+    channel.writeInbound(query("d"));
+    assertTrue(channel.config().isAutoRead());
+    channel.writeInbound(query("e".repeat(10)));
+    assertFalse(channel.config().isAutoRead());
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void syncsAreRequests() {
+    EmbeddedChannel channel = channel(2, 1 << 20);
+    channel.writeInbound(Unpooled.wrappedBuffer(extendedQuery(), extendedQuery()));
+    assertTrue(channel.config().isAutoRead());
+    channel.writeInbound(extendedQuery());
+    assertEquals(12, events.size());
+    assertEquals(List.of("parse", "bind", "execute", "sync"), events.subList(8, 12));
+    assertFalse(channel.config().isAutoRead());
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void copyIn() {
+    EmbeddedChannel channel = channel(1, 64);
+    channel.writeInbound(Unpooled.wrappedBuffer(query("copy"), copyData(100)));
+    channel.runPendingTasks();
+    channel.releaseOutbound();
+    assertTrue(channel.config().isAutoRead());
+    // neither the data nor the requests received during the copy stop the reads
+    channel.writeInbound(Unpooled.wrappedBuffer(copyData(100), message('c'), query("after")));
+    assertEquals(List.of("copy", "data", "data", "done", "after"), events);
+    assertTrue(channel.config().isAutoRead());
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+    channel.writeInbound(query("over"));
+    assertFalse(channel.config().isAutoRead());
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void overBudgetWhenTheCopyStarts() {
+    EmbeddedChannel channel = channel(1, 1 << 20);
+    channel.writeInbound(Unpooled.wrappedBuffer(query("copy"), query("next")));
+    channel.runPendingTasks();
+    channel.releaseOutbound();
+    // the copy has to be read to answer the requests, so the channel reads again when it starts
+    assertTrue(channel.config().isAutoRead());
+    channel.writeInbound(message('c'));
+    answer(channel, 1);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void answersOffTheEventLoop() throws Exception {
+    DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+    try {
+      FrontendPostgresHandler handler = new FrontendPostgresHandler(listener);
+      handler.setInboundLimits(1, 1 << 20);
+      LocalChannel channel = new LocalChannel();
+      channel.pipeline().addLast(handler, new ChannelInboundHandlerAdapter());
+      group.register(channel).sync();
+      channel.eventLoop().submit(() -> {
+        channel.pipeline().fireChannelRead(Unpooled.buffer().writeInt(8).writeInt(196608));
+        channel.pipeline().fireChannelRead(query("a"));
+        channel.pipeline().fireChannelRead(query("b"));
+      }).sync();
+      assertFalse(channel.eventLoop().submit(() -> channel.config().isAutoRead()).get());
+
+      sender.onReadyForQuery(channel.pipeline().lastContext(), TransactionStatus.IDLE);
+      assertTrue(channel.eventLoop().submit(() -> channel.config().isAutoRead()).get());
+      channel.close().sync();
+    } finally {
+      group.shutdownGracefully().sync();
+    }
+  }
+
+  @Test
+  public void ringBuffer() {
+    Random random = new Random(42);
+    long[] budgets = {50, 200, 800, 3200};
+    List<InboundFlowControl> controls = new ArrayList<>();
+    List<EmbeddedChannel> channels = new ArrayList<>();
+    for (long budget : budgets) {
+      InboundFlowControl control = new InboundFlowControl(1000, budget);
+      EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+      channel.attr(InboundFlowControl.FLOW_CONTROL).set(control);
+      controls.add(control);
+      channels.add(channel);
+    }
+    ArrayDeque<Long> pending = new ArrayDeque<>();
+    long pendingBytes = 0;
+    long openBytes = 0;
+    for (int i = 0; i < 10000; i++) {
+      // more messages than answers until the pending requests grow beyond the initial capacity, then the other way
+      boolean receive = pending.isEmpty() || random.nextInt(100) < (i % 2000 < 1000 ? 70 : 30);
+      if (receive) {
+        int length = random.nextInt(20);
+        boolean request = random.nextBoolean();
+        ByteBuf frame = Unpooled.buffer().writeByte(request ? 'S' : 'P').writeInt(4 + length).writeZero(length);
+        for (InboundFlowControl control : controls) {
+          control.onReceived(frame);
+        }
+        openBytes += frame.readableBytes();
+        if (request) {
+          pending.add(openBytes);
+          pendingBytes += openBytes;
+          openBytes = 0;
+        }
+      } else {
+        for (EmbeddedChannel channel : channels) {
+          InboundFlowControl.onReadyForQuery(channel.pipeline().firstContext());
+        }
+        pendingBytes -= pending.remove();
+      }
+      for (int c = 0; c < budgets.length; c++) {
+        assertEquals(!pending.isEmpty() && pendingBytes + openBytes > budgets[c], controls.get(c).isOverBudget(),
+            "step " + i + " budget " + budgets[c]);
+      }
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+public class NumericCodecTest {
+  private final NumericCodec codec = NumericCodec.INSTANCE;
+
+  private static ByteBuf binary(int... shorts) {
+    ByteBuf buf = Unpooled.buffer();
+    for (int s : shorts) {
+      buf.writeShort(s);
+    }
+    return buf;
+  }
+
+  private static ByteBuf text(String text) {
+    return Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+  }
+
+  private String encodeText(long unscaled, int scale) {
+    ByteBuf buf = Unpooled.buffer();
+    codec.encodeText(buf, unscaled, scale);
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  private ByteBuf encodeBinary(long unscaled, int scale) {
+    ByteBuf buf = Unpooled.buffer();
+    codec.encodeBinary(buf, unscaled, scale);
+    return buf;
+  }
+
+  private ByteBuf encode(BigDecimal value, Format format) {
+    ByteBuf buf = Unpooled.buffer();
+    codec.encode(buf, value, format);
+    return buf;
+  }
+
+  @Test
+  public void binaryLayout() {
+    // count, weight, sign, display scale and base 10000 digits
+    assertEquals(binary(2, 0, 0, 2, 123, 4500), encodeBinary(12345, 2));
+    assertEquals(binary(1, 1, 0, 0, 1), encodeBinary(10000, 0));
+    assertEquals(binary(1, -1, 0x4000, 4, 1), encodeBinary(-1, 4));
+    assertEquals(binary(1, -2, 0, 5, 1000), encodeBinary(1, 5));
+    assertEquals(binary(0, 0, 0, 3), encodeBinary(0, 3));
+    assertEquals(binary(5, 4, 0x4000, 0, 922, 3372, 368, 5477, 5808), encodeBinary(Long.MIN_VALUE, 0));
+    assertEquals(binary(2, 0, 0, 2, 123, 4500), encode(new BigDecimal("123.45"), Format.BINARY));
+    assertEquals(binary(1, 1, 0, 0, 1), encode(new BigDecimal("1E+4"), Format.BINARY));
+    assertEquals(binary(3, 5, 0x4000, 0, 1, 0, 1), encode(new BigDecimal("-1E+20").subtract(BigDecimal.valueOf(
+        1).movePointRight(12)), Format.BINARY));
+  }
+
+  @Test
+  public void scaledLongText() {
+    assertEquals("123.45", encodeText(12345, 2));
+    assertEquals("-0.005", encodeText(-5, 3));
+    assertEquals("0.00", encodeText(0, 2));
+    assertEquals("0", encodeText(0, 0));
+    assertEquals("-9223372036854775808", encodeText(Long.MIN_VALUE, 0));
+    assertEquals("0.000000000000000000009223372036854775807", encodeText(Long.MAX_VALUE, 39));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(1, -1));
+    assertThrows(IllegalArgumentException.class, () -> encodeBinary(1, NumericCodec.MAX_SCALE + 1));
+  }
+
+  @Test
+  public void bigDecimalsRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      BigInteger unscaled = new BigInteger(1 + random.nextInt(120), random);
+      BigDecimal value = new BigDecimal(random.nextBoolean() ? unscaled : unscaled.negate(), random.nextInt(40) - 5);
+      BigDecimal expected = value.scale() < 0 ? value.setScale(0, RoundingMode.UNNECESSARY) : value;
+      for (Format format : Format.values()) {
+        ByteBuf buf = encode(value, format);
+        assertEquals(expected, codec.decode(buf, format), value.toString());
+        assertEquals(expected.doubleValue(), codec.decodeDouble(buf, buf.readerIndex(), buf.readableBytes(), format));
+      }
+      assertEquals(expected.toPlainString(), encode(value, Format.TEXT).toString(StandardCharsets.US_ASCII));
+    }
+  }
+
+  @Test
+  public void scaledLongsRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      long unscaled = random.nextLong() >> random.nextInt(64);
+      int scale = random.nextInt(25);
+      BigDecimal value = BigDecimal.valueOf(unscaled, scale);
+      ByteBuf text = text(encodeText(unscaled, scale));
+      ByteBuf binary = encodeBinary(unscaled, scale);
+      assertEquals(value.toPlainString(), text.toString(StandardCharsets.US_ASCII));
+      assertEquals(value, codec.decode(binary, Format.BINARY));
+      assertEquals(unscaled, codec.decodeUnscaled(text, 0, text.readableBytes(), Format.TEXT, scale));
+      assertEquals(unscaled, codec.decodeUnscaled(binary, 0, binary.readableBytes(), Format.BINARY, scale));
+    }
+  }
+
+  @Test
+  public void decodeUnscaledRounds() {
+    for (Format format : Format.values()) {
+      assertEquals(124, decodeUnscaled("1.235", format, 2));
+      assertEquals(-124, decodeUnscaled("-1.235", format, 2));
+      assertEquals(123, decodeUnscaled("1.2349", format, 2));
+      assertEquals(1, decodeUnscaled("0.5", format, 0));
+      assertEquals(0, decodeUnscaled("0.00049", format, 3));
+      assertEquals(150, decodeUnscaled("1.5", format, 2));
+      assertEquals(Long.MAX_VALUE, decodeUnscaled("9223372036854775807", format, 0));
+      assertEquals(Long.MIN_VALUE, decodeUnscaled("-922337203685477580.8", format, 1));
+      assertThrows(IllegalArgumentException.class, () -> decodeUnscaled("9223372036854775808", format, 0));
+      assertThrows(IllegalArgumentException.class, () -> decodeUnscaled("9223372036854775807.5", format, 0));
+      assertThrows(IllegalArgumentException.class, () -> decodeUnscaled("1", format, 19));
+    }
+    assertEquals(1500, decodeUnscaled("1.5e3", Format.TEXT, 0));
+    assertEquals(15, decodeUnscaled("  150E-2 ", Format.TEXT, 1));
+  }
+
+  private long decodeUnscaled(String text, Format format, int scale) {
+    ByteBuf buf = format == Format.TEXT ? text(text) : encode(new BigDecimal(text), format);
+    return codec.decodeUnscaled(buf, buf.readerIndex(), buf.readableBytes(), format, scale);
+  }
+
+  @Test
+  public void specialValues() {
+    double[] specials = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    for (Format format : Format.values()) {
+      for (double special : specials) {
+        ByteBuf buf = Unpooled.buffer();
+        codec.encodeSpecial(buf, special, format);
+        assertEquals(special, codec.decodeDouble(buf, 0, buf.readableBytes(), format));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buf, format));
+        assertThrows(IllegalArgumentException.class,
+            () -> codec.decodeUnscaled(buf, 0, buf.readableBytes(), format, 0));
+      }
+      assertThrows(IllegalArgumentException.class, () -> codec.encodeSpecial(Unpooled.buffer(), 1.0, format));
+    }
+    assertEquals(binary(0, 0, 0xC000, 0), encodeSpecial(Double.NaN));
+    assertEquals(binary(0, 0, 0xF000, 0), encodeSpecial(Double.NEGATIVE_INFINITY));
+    for (String inf : new String[] {"Infinity", "+inf", " INFINITY "}) {
+      assertEquals(Double.POSITIVE_INFINITY, codec.decodeDouble(text(inf), 0, inf.length(), Format.TEXT), inf);
+    }
+    assertEquals(Double.NaN, codec.decodeDouble(text("nan"), 0, 3, Format.TEXT));
+  }
+
+  private ByteBuf encodeSpecial(double value) {
+    ByteBuf buf = Unpooled.buffer();
+    codec.encodeSpecial(buf, value, Format.BINARY);
+    return buf;
+  }
+
+  @Test
+  public void malformedText() {
+    for (String text : new String[] {"", " ", "-", ".", "1.2.3", "1e", "1e+", "--1", "1 2", "abc", "+nan", "0x10",
+        "1,5", "1e1001"}) {
+      assertThrows(IllegalArgumentException.class, () -> codec.decode(text(text), Format.TEXT), text);
+      assertThrows(IllegalArgumentException.class,
+          () -> codec.decodeUnscaled(text(text), 0, text.length(), Format.TEXT, 0), text);
+    }
+    assertEquals(new BigDecimal("0.5"), codec.decode(text(".5"), Format.TEXT));
+    assertEquals(new BigDecimal("5"), codec.decode(text("5."), Format.TEXT));
+    assertEquals(new BigDecimal("1.5E+3"), codec.decode(text(" +1.5e3\n"), Format.TEXT));
+    assertEquals(new BigDecimal("-12345678901234567890.123"), codec.decode(text("-12345678901234567890.123"),
+        Format.TEXT));
+  }
+
+  @Test
+  public void malformedBinary() {
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(binary(0, 0, 0), Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(binary(2, 0, 0, 0, 1), Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(binary(1, 0, 0, 0, 1, 1), Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(binary(1, 0, 0, 0, 10000), Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(binary(1, 0, 0, 0, -1), Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> codec.decode(binary(1, 0, 0x1234, 0, 1), Format.BINARY));
+  }
+}
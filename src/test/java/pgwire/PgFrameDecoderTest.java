@@ -0,0 +1,140 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.Test;
+
+
+public class PgFrameDecoderTest {
+
+  /**
+   * A message with the given id and content of the given length, filled with the given byte.
+   */
+  private static ByteBuf message(char id, int contentLength, int fill) {
+    ByteBuf buf = Unpooled.buffer().writeByte(id).writeInt(contentLength + 4);
+    for (int i = 0; i < contentLength; i++) {
+      buf.writeByte(fill);
+    }
+    return buf;
+  }
+
+  private static ByteBuf header(char id, int length) {
+    return Unpooled.buffer().writeByte(id).writeInt(length);
+  }
+
+  private static void assertFrame(ByteBuf expected, Object actual) {
+    assertEquals(expected, actual);
+    ((ByteBuf) actual).release();
+  }
+
+  private static void assertChunk(int length, boolean last, Object actual) {
+    StreamedMessageChunk chunk = (StreamedMessageChunk) actual;
+    assertEquals(length, chunk.content().readableBytes());
+    assertEquals(last, chunk.isLast());
+    chunk.release();
+  }
+
+  @Test
+  public void frames() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(true));
+    ByteBuf startup = Unpooled.buffer().writeInt(8).writeInt(196608);
+    ByteBuf query = message('Q', 5, 'x');
+    ByteBuf sync = message('S', 0, 0);
+    channel.writeInbound(Unpooled.wrappedBuffer(startup.copy(), query.copy(0, 3)));
+    assertFrame(startup, channel.readInbound());
+    assertNull(channel.readInbound());
+    channel.writeInbound(Unpooled.wrappedBuffer(query.copy(3, query.readableBytes() - 3), sync.copy()));
+    assertFrame(query, channel.readInbound());
+    assertFrame(sync, channel.readInbound());
+    assertNull(channel.readInbound());
+    assertTrue(channel.isOpen());
+  }
+
+  @Test
+  public void streaming() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(false, 4, 16));
+    ByteBuf copyData = message('d', 10, 'x');
+    channel.writeInbound(copyData.copy(0, 5 + 3));
+    StreamedMessageHeader header = channel.readInbound();
+    assertEquals('d', header.getId());
+    assertEquals(10, header.getLength());
+    assertChunk(3, false, channel.readInbound());
+    channel.writeInbound(Unpooled.wrappedBuffer(copyData.copy(8, 7), message('S', 0, 0)));
+    assertChunk(4, false, channel.readInbound());
+    assertChunk(3, true, channel.readInbound());
+    assertFrame(message('S', 0, 0), channel.readInbound());
+
+    // a backend DataRow is streamed and a message of the threshold is not
+    channel.writeInbound(Unpooled.wrappedBuffer(message('D', 5, 'y'), message('C', 4, 'z')));
+    assertEquals(5, ((StreamedMessageHeader) channel.readInbound()).getLength());
+    assertChunk(4, false, channel.readInbound());
+    assertChunk(1, true, channel.readInbound());
+    assertFrame(message('C', 4, 'z'), channel.readInbound());
+    assertNull(channel.readInbound());
+  }
+
+  @Test
+  public void describeIsNotStreamed() {
+    // 'D' is Describe for frontend messages, which is never streamed, so the max frame length applies
+    EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(true, 4, 16));
+    channel.writeInbound(Unpooled.buffer().writeInt(8).writeInt(196608));
+    ((ByteBuf) channel.readInbound()).release();
+    channel.writeInbound(message('D', 6, 'S'));
+    assertFrame(message('D', 6, 'S'), channel.readInbound());
+    assertThrows(TooLongFrameException.class, () -> channel.writeInbound(message('D', 20, 'S')));
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void maxFrameLength() {
+    EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(false, PgFrameDecoder.NO_LIMIT, 64));
+    channel.writeInbound(message('Q', 59, 'x'));
+    assertFrame(message('Q', 59, 'x'), channel.readInbound());
+    // rejected as soon as the header is read, without waiting for the content
+    assertThrows(TooLongFrameException.class, () -> channel.writeInbound(header('Q', 64)));
+    assertFalse(channel.isOpen());
+    assertNull(channel.readInbound());
+  }
+
+  @Test
+  public void invalidLengths() {
+    for (int length : new int[] {-10, 0, 2, 3, Integer.MIN_VALUE}) {
+      EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(false, 1024, 64 * 1024));
+      assertThrows(CorruptedFrameException.class,
+          () -> channel.writeInbound(Unpooled.wrappedBuffer(header('Q', length), message('S', 0, 0))));
+      assertFalse(channel.isOpen(), Integer.toString(length));
+      assertNull(channel.readInbound());
+    }
+    for (char id : new char[] {'Q', 'd'}) {
+      EmbeddedChannel channel = new EmbeddedChannel(new PgFrameDecoder(false));
+      assertThrows(TooLongFrameException.class, () -> channel.writeInbound(header(id, Integer.MAX_VALUE)));
+      assertFalse(channel.isOpen());
+    }
+    EmbeddedChannel startup = new EmbeddedChannel(new PgFrameDecoder(true));
+    assertThrows(CorruptedFrameException.class, () -> startup.writeInbound(Unpooled.buffer().writeInt(4)));
+    assertFalse(startup.isOpen());
+  }
+
+  @Test
+  public void invalidLengthEndsBatch() {
+    PgFrameDecoder decoder = new PgFrameDecoder(false, 1024, 64 * 1024);
+    decoder.setBatching(true);
+    EmbeddedChannel channel = new EmbeddedChannel(decoder);
+    assertThrows(CorruptedFrameException.class,
+        () -> channel.writeInbound(Unpooled.wrappedBuffer(message('P', 3, 0), header('B', -1))));
+    FrameBatch batch = channel.readInbound();
+    assertEquals(1, batch.size());
+    assertEquals(message('P', 3, 0), batch.get(0));
+    batch.release();
+    assertFalse(channel.isOpen());
+  }
+}
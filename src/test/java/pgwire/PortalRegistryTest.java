@@ -0,0 +1,149 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+public class PortalRegistryTest {
+  private static final RowEncoder ENCODER = CodecRegistry.standard().rowEncoder(List.of(new Field(
+      Unpooled.copiedBuffer("id", StandardCharsets.UTF_8), 0, 0, PgType.StandardTypes.INT4, -1, Format.TEXT)),
+      List.of());
+
+  private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+  private final ChannelHandlerContext ctx = channel.pipeline().firstContext();
+  private final BackendMessageSender sender = new BackendMessageSender();
+  private final PortalRegistry portals = new PortalRegistry(sender);
+  private final List<String> events = new ArrayList<>();
+
+  /**
+   * A cursor of the given number of rows that records the calls it gets.
+   */
+  private PortalRegistry.Cursor cursor(int size) {
+    return new PortalRegistry.Cursor() {
+      private int next;
+      private boolean closed;
+
+      @Override
+      public boolean writeRow(RowWriter writer) {
+        if (closed) {
+          throw new IllegalStateException("Closed cursor");
+        }
+        if (next == size) {
+          return false;
+        }
+        ENCODER.writeRow(writer, new Object[] {next++});
+        return true;
+      }
+
+      @Override
+      public void onComplete(ChannelHandlerContext ctx, long rows) {
+        events.add("complete " + rows);
+        sender.onCommandComplete(ctx, rows, CommandType.SELECT);
+      }
+
+      @Override
+      public void onError(ChannelHandlerContext ctx, Exception error) {
+        events.add(closed ? "error after close" : "error");
+      }
+
+      @Override
+      public void close() {
+        closed = true;
+        events.add("close");
+      }
+    };
+  }
+
+  private static ByteBuf name(String name) {
+    return Unpooled.copiedBuffer(name, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The ids of the messages written to the channel since the last call.
+   */
+  private String sent() {
+    channel.runPendingTasks();
+    channel.flushOutbound();
+    StringBuilder ids = new StringBuilder();
+    ByteBuf msg;
+    while ((msg = channel.readOutbound()) != null) {
+      while (msg.isReadable()) {
+        ids.append((char) msg.readByte());
+        msg.skipBytes(msg.readInt() - 4);
+      }
+      msg.release();
+    }
+    return ids.toString();
+  }
+
+  @Test
+  public void rowLimit() {
+    portals.bind(ctx, name("p"), cursor(5));
+    portals.execute(ctx, name("p"), 2);
+    assertEquals("DDs", sent());
+    portals.execute(ctx, name("p"), 2);
+    assertEquals("DDs", sent());
+    assertEquals(List.of(), events);
+    portals.execute(ctx, name("p"), 2);
+    assertEquals("DC", sent());
+    portals.execute(ctx, name("p"), 0);
+    assertEquals("C", sent());
+    assertEquals(List.of("complete 1", "complete 0"), events);
+    assertEquals(1, portals.size(ctx));
+
+    portals.close(ctx, name("p"));
+    assertEquals(List.of("complete 1", "complete 0", "close"), events);
+    assertEquals(0, portals.size(ctx));
+    assertThrows(IllegalArgumentException.class, () -> portals.execute(ctx, name("p"), 0));
+  }
+
+  @Test
+  public void rowLimitOfTheExactSize() {
+    portals.bind(ctx, name(""), cursor(2));
+    portals.execute(ctx, name(""), 2);
+    // the cursor does not know it has no more rows until the next execution
+    assertEquals("DDs", sent());
+    portals.execute(ctx, name(""), 2);
+    assertEquals("C", sent());
+    portals.bind(ctx, name(""), cursor(1));
+    assertEquals(List.of("complete 0", "close"), events);
+    portals.closeAll(ctx);
+    assertEquals(List.of("complete 0", "close", "close"), events);
+  }
+
+  @Test
+  public void channelClosedDuringAPage() {
+    // a client that does not read, so the stream waits for the channel to be writable
+    EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+      @Override
+      public void flush(ChannelHandlerContext ctx) {
+      }
+    }, new ChannelInboundHandlerAdapter());
+    channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+    ChannelHandlerContext ctx = channel.pipeline().lastContext();
+    portals.bind(ctx, name("a"), cursor(1000));
+    portals.bind(ctx, name("b"), cursor(10));
+    portals.execute(ctx, name("a"), 0);
+    channel.runPendingTasks();
+    assertTrue(ResultStreamer.isStreaming(ctx));
+    channel.close();
+    // the cursor being streamed fails before it is closed, and the other one is just closed
+    assertEquals(List.of("close", "error", "close"), events);
+    assertEquals(0, portals.size(ctx));
+    assertFalse(ResultStreamer.isStreaming(ctx));
+  }
+}
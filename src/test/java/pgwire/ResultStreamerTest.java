@@ -0,0 +1,186 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+
+public class ResultStreamerTest {
+  private static final RowEncoder ENCODER = CodecRegistry.standard().rowEncoder(List.of(new Field(
+      Unpooled.copiedBuffer("id", StandardCharsets.UTF_8), 0, 0, PgType.StandardTypes.INT4, -1, Format.TEXT)),
+      List.of());
+
+  private final BackendMessageSender sender = new BackendMessageSender();
+  private final ResultStreamer streamer = new ResultStreamer(sender);
+  private final List<String> events = new ArrayList<>();
+  private Client client;
+  /**
+   * The rows written by the stream in progress.
+   */
+  private int produced;
+
+  /**
+   * Answers each query with an empty result, except queries with a number, which are answered with that number of
+   * rows.
+   */
+  private final FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> listener =
+      new FrontendMessageListener.Abstract<>() {
+        @Override
+        public void onStartup(ChannelHandlerContext ctx, int version, Map<ByteBuf, ByteBuf> parameters) {
+        }
+
+        @Override
+        public void onQuery(ChannelHandlerContext ctx, ByteBuf query) {
+          String text = query.toString(StandardCharsets.UTF_8);
+          events.add(text);
+          if (!Character.isDigit(text.charAt(0))) {
+            sender.onCommandComplete(ctx, 0, CommandType.SELECT);
+            sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+            return;
+          }
+          int size = Integer.parseInt(text);
+          produced = 0;
+          streamer.stream(ctx, new ResultStreamer.RowSource() {
+            @Override
+            public boolean writeRow(RowWriter writer) {
+              if (produced == size) {
+                return false;
+              }
+              ENCODER.writeRow(writer, new Object[] {produced++});
+              return true;
+            }
+
+            @Override
+            public void onComplete(ChannelHandlerContext ctx, long rows) {
+              sender.onCommandComplete(ctx, rows, CommandType.SELECT);
+              sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+            }
+
+            @Override
+            public void onError(ChannelHandlerContext ctx, Exception error) {
+              events.add("error");
+            }
+          });
+        }
+      };
+
+  /**
+   * A client that does not read what is flushed to it until {@link #read(EmbeddedChannel)} is called.
+   */
+  private static class Client extends ChannelOutboundHandlerAdapter {
+    private boolean reading;
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+      if (reading) {
+        ctx.flush();
+      }
+    }
+
+    void read(EmbeddedChannel channel) {
+      reading = true;
+      channel.flush();
+      channel.runPendingTasks();
+    }
+  }
+
+  private EmbeddedChannel channel(boolean batching) {
+    PgFrameDecoder decoder = new PgFrameDecoder(true);
+    decoder.setBatching(batching);
+    client = new Client();
+    EmbeddedChannel channel = new EmbeddedChannel(client, decoder, new FrontendPostgresHandler(listener));
+    channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(64, 128));
+    channel.writeInbound(Unpooled.buffer().writeInt(8).writeInt(196608));
+    return channel;
+  }
+
+  private static ByteBuf query(String query) {
+    ByteBuf content = Unpooled.copiedBuffer(query, StandardCharsets.UTF_8).writeByte(0);
+    return Unpooled.buffer().writeByte('Q').writeInt(4 + content.readableBytes()).writeBytes(content);
+  }
+
+  /**
+   * The ids of the messages read by the client, where consecutive DataRow messages are counted.
+   */
+  private static String received(EmbeddedChannel channel) {
+    StringBuilder ids = new StringBuilder();
+    int rows = 0;
+    ByteBuf msg;
+    while ((msg = channel.readOutbound()) != null) {
+      while (msg.isReadable()) {
+        char id = (char) msg.readByte();
+        msg.skipBytes(msg.readInt() - 4);
+        if (id == 'D') {
+          rows++;
+          continue;
+        }
+        if (rows > 0) {
+          ids.append(rows).append('D');
+          rows = 0;
+        }
+        ids.append(id);
+      }
+      msg.release();
+    }
+    return ids.toString();
+  }
+
+  @Test
+  public void rowsStopWhileTheChannelIsNotWritable() {
+    EmbeddedChannel channel = channel(false);
+    channel.writeInbound(query("1000"));
+    assertTrue(produced > 0 && produced < 100, Integer.toString(produced));
+    assertFalse(channel.isWritable());
+    assertTrue(ResultStreamer.isStreaming(channel.pipeline().lastContext()));
+    int stopped = produced;
+    channel.runPendingTasks();
+    assertEquals(stopped, produced);
+
+    // flushing the outbound buffer makes the channel writable, which resumes the stream
+    client.read(channel);
+    assertEquals(1000, produced);
+    assertEquals("1000DCZ", received(channel));
+    assertTrue(channel.isWritable());
+    assertFalse(ResultStreamer.isStreaming(channel.pipeline().lastContext()));
+  }
+
+  @Test
+  public void messagesAreDeferredUntilTheStreamIsComplete() {
+    for (boolean batching : new boolean[] {false, true}) {
+      events.clear();
+      EmbeddedChannel channel = channel(batching);
+      channel.writeInbound(Unpooled.wrappedBuffer(query("a"), query("300"), query("b"), query("200"), query("c")));
+      assertEquals(List.of("a", "300"), events);
+      // the channel does not read more messages until the stream is complete
+      assertFalse(channel.config().isAutoRead());
+      channel.writeInbound(query("d"));
+      assertEquals(List.of("a", "300"), events);
+
+      client.read(channel);
+      assertEquals(List.of("a", "300", "b", "200", "c", "d"), events);
+      assertEquals("CZ300DCZCZ200DCZCZCZ", received(channel));
+      assertTrue(channel.config().isAutoRead());
+    }
+  }
+
+  @Test
+  public void channelClosedDuringAStream() {
+    EmbeddedChannel channel = channel(false);
+    channel.writeInbound(Unpooled.wrappedBuffer(query("1000"), query("a")));
+    channel.close();
+    // the message received during the stream is discarded
+    assertEquals(List.of("1000", "error"), events);
+  }
+}
@@ -0,0 +1,92 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+public class RowEncoderTest {
+  private final CodecRegistry registry = CodecRegistry.standard();
+  private final List<Field> fields = List.of(field("id", PgType.StandardTypes.INT4),
+      field("name", PgType.StandardTypes.TEXT), field("score", PgType.StandardTypes.FLOAT8));
+
+  private static Field field(String name, PgType type) {
+    return new Field(Unpooled.copiedBuffer(name, StandardCharsets.UTF_8), 0, 0, type, -1, Format.TEXT);
+  }
+
+  @Test
+  public void resultFormats() {
+    RowEncoder text = registry.rowEncoder(fields, List.of());
+    RowEncoder binary = registry.rowEncoder(fields, List.of(Format.BINARY));
+    RowEncoder mixed = registry.rowEncoder(fields, List.of(Format.BINARY, Format.TEXT, Format.BINARY));
+    for (int i = 0; i < fields.size(); i++) {
+      assertEquals(Format.TEXT, text.getFormat(i));
+      assertEquals(Format.BINARY, binary.getFormat(i));
+      assertEquals(Format.BINARY, binary.getFields().get(i).getFormat());
+      assertEquals(fields.get(i).getPgType().getOid(), binary.getCodec(i).getType().getOid());
+    }
+    assertEquals(Format.TEXT, mixed.getFormat(1));
+    assertEquals(Format.BINARY, mixed.getFormat(2));
+    assertEquals(3, mixed.getColumnCount());
+  }
+
+  @Test
+  public void invalidFormats() {
+    assertThrows(IllegalArgumentException.class,
+        () -> registry.rowEncoder(fields, List.of(Format.TEXT, Format.BINARY)));
+    PgType custom = new PgType(50000, "custom", 0, 0, -1, PgType.Type.Base, PgType.Category.USER_DEFINED);
+    assertThrows(IllegalArgumentException.class,
+        () -> registry.rowEncoder(List.of(field("custom", custom)), List.of()));
+  }
+
+  @Test
+  public void writeRows() {
+    EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    ChannelHandlerContext ctx = channel.pipeline().firstContext();
+    BackendMessageSender sender = new BackendMessageSender();
+    RowEncoder encoder = registry.rowEncoder(fields, List.of(Format.BINARY, Format.TEXT, Format.TEXT));
+
+    encoder.writeRow(sender.beginDataRow(ctx), new Object[] {7, "seven", 7.5});
+    encoder.writeRow(sender.beginDataRow(ctx), Arrays.asList(-1, null, 1e21));
+    sender.flush(ctx);
+
+    ByteBuf out = Unpooled.buffer();
+    for (ByteBuf message; (message = channel.readOutbound()) != null; message.release()) {
+      out.writeBytes(message);
+    }
+    ByteBuf expected = Unpooled.buffer();
+    expected.writeByte('D').writeInt(4 + 2 + 8 + 9 + 7).writeShort(3);
+    expected.writeInt(4).writeInt(7);
+    expected.writeInt(5).writeBytes("seven".getBytes(StandardCharsets.UTF_8));
+    expected.writeInt(3).writeBytes("7.5".getBytes(StandardCharsets.UTF_8));
+    expected.writeByte('D').writeInt(4 + 2 + 8 + 4 + 9).writeShort(3);
+    expected.writeInt(4).writeInt(-1);
+    expected.writeInt(-1);
+    expected.writeInt(5).writeBytes("1e+21".getBytes(StandardCharsets.UTF_8));
+    assertEquals(expected, out);
+  }
+
+  @Test
+  public void invalidRowsAreCancelled() {
+    EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    ChannelHandlerContext ctx = channel.pipeline().firstContext();
+    BackendMessageSender sender = new BackendMessageSender();
+    RowEncoder encoder = registry.rowEncoder(fields, List.of());
+
+    assertThrows(IllegalArgumentException.class, () -> encoder.writeRow(sender.beginDataRow(ctx), new Object[2]));
+    assertThrows(ClassCastException.class,
+        () -> encoder.writeRow(sender.beginDataRow(ctx), new Object[] {1, 2, 3.0}));
+    sender.flush(ctx);
+    assertFalse(channel.outboundMessages().stream().anyMatch(m -> ((ByteBuf) m).isReadable()));
+  }
+}
@@ -0,0 +1,116 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+import org.junit.jupiter.api.Test;
+
+
+public class RowSubscriberTest {
+  private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+  private final ChannelHandlerContext ctx = channel.pipeline().firstContext();
+  private final StubSubscription subscription = new StubSubscription();
+  private final RowSubscriber subscriber = new RowSubscriber(ctx, new BackendMessageSender(),
+      CodecRegistry.standard().rowEncoder(List.of(new Field(Unpooled.copiedBuffer("id", StandardCharsets.UTF_8), 0, 0,
+          PgType.StandardTypes.INT4, -1, Format.TEXT)), List.of()), CommandType.SELECT);
+
+  /**
+   * The subscription of a publisher driven by the test, which calls the subscriber directly.
+   */
+  private static class StubSubscription implements Flow.Subscription {
+    private long requested;
+    private boolean cancelled;
+
+    @Override
+    public void request(long n) {
+      requested += n;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+
+  /**
+   * The ids of the messages written to the channel since the last call.
+   */
+  private String sent() {
+    channel.runPendingTasks();
+    channel.flushOutbound();
+    StringBuilder ids = new StringBuilder();
+    ByteBuf msg;
+    while ((msg = channel.readOutbound()) != null) {
+      while (msg.isReadable()) {
+        ids.append((char) msg.readByte());
+        msg.skipBytes(msg.readInt() - 4);
+      }
+      msg.release();
+    }
+    return ids.toString();
+  }
+
+  private void publish(int from, int to) {
+    for (int i = from; i < to; i++) {
+      subscriber.onNext(new Object[] {i});
+    }
+  }
+
+  @Test
+  public void rowLimit() {
+    subscriber.onSubscribe(subscription);
+    subscriber.execute(2);
+    assertEquals(2, subscription.requested);
+    publish(0, 2);
+    assertEquals("DDs", sent());
+    assertFalse(ResultStreamer.isStreaming(ctx));
+
+    subscriber.execute(0);
+    assertEquals(2 + 64, subscription.requested);
+    publish(2, 5);
+    subscriber.onComplete();
+    assertEquals("DDDC", sent());
+    assertFalse(ResultStreamer.isStreaming(ctx));
+
+    // executing a complete result sends an empty one
+    subscriber.execute(0);
+    assertEquals("C", sent());
+    channel.close();
+    assertFalse(subscription.cancelled);
+  }
+
+  @Test
+  public void suspendedSubscriptionIsCancelledOnClose() {
+    subscriber.onSubscribe(subscription);
+    subscriber.execute(1);
+    publish(0, 1);
+    assertEquals("Ds", sent());
+    subscriber.execute(1);
+    publish(1, 2);
+    assertEquals("Ds", sent());
+    assertFalse(subscription.cancelled);
+    channel.close();
+    assertTrue(subscription.cancelled);
+  }
+
+  @Test
+  public void executingSubscriptionIsCancelledOnClose() {
+    subscriber.onSubscribe(subscription);
+    subscriber.execute(0);
+    publish(0, 1);
+    assertEquals("D", sent());
+    assertTrue(ResultStreamer.isStreaming(ctx));
+    channel.close();
+    assertTrue(subscription.cancelled);
+    assertFalse(ResultStreamer.isStreaming(ctx));
+  }
+}
@@ -0,0 +1,146 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+public class RyuFormatterTest {
+
+  private static String format(double value) {
+    ByteBuf buf = Unpooled.buffer();
+    RyuFormatter.writeDouble(buf, value);
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  private static String format(float value) {
+    ByteBuf buf = Unpooled.buffer();
+    RyuFormatter.writeFloat(buf, value);
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  private static String ascii(long value) {
+    ByteBuf buf = Unpooled.buffer();
+    SenderUtils.writeAscii(buf, value);
+    assertEquals(buf.readableBytes(), SenderUtils.asciiLength(value));
+    return buf.toString(StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void postgresLayout() {
+    assertEquals("0", format(0.0));
+    assertEquals("-0", format(-0.0));
+    assertEquals("1", format(1.0));
+    assertEquals("0.1", format(0.1));
+    assertEquals("0.30000000000000004", format(0.1 + 0.2));
+    assertEquals("0.3333333333333333", format(1.0 / 3));
+    assertEquals("0.0001", format(1e-4));
+    assertEquals("1.5e-05", format(1.5e-5));
+    assertEquals("123456789012345", format(123456789012345.0));
+    assertEquals("1e+15", format(1e15));
+    assertEquals("1e+20", format(1e20));
+    assertEquals("-1.7976931348623157e+308", format(-Double.MAX_VALUE));
+    assertEquals("5e-324", format(Double.MIN_VALUE));
+    assertEquals("2.2250738585072014e-308", format(Double.MIN_NORMAL));
+    assertEquals("NaN", format(Double.NaN));
+    assertEquals("Infinity", format(Double.POSITIVE_INFINITY));
+    assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+
+    assertEquals("1.1", format(1.1f));
+    assertEquals("100000", format(100000f));
+    assertEquals("1e+06", format(1e6f));
+    assertEquals("3.4028235e+38", format(Float.MAX_VALUE));
+    assertEquals("1e-45", format(Float.MIN_VALUE));
+    assertEquals("-1.1754944e-38", format(-Float.MIN_NORMAL));
+    assertEquals("-Infinity", format(Float.NEGATIVE_INFINITY));
+  }
+
+  @Test
+  public void doublesAreShortestRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      double value = Double.longBitsToDouble(random.nextLong());
+      if (Double.isFinite(value)) {
+        String text = format(value);
+        assertTrue(text.length() <= RyuFormatter.MAX_DOUBLE_LENGTH, text);
+        assertEquals(value, Double.parseDouble(text), text);
+        BigDecimal shorter = shorter(text);
+        if (shorter != null) {
+          assertNotEquals(Math.abs(value), shorter.doubleValue(), text);
+          assertNotEquals(Math.abs(value), shorter.add(shorter.ulp()).doubleValue(), text);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void floatsAreShortestRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      float value = Float.intBitsToFloat(random.nextInt());
+      if (Float.isFinite(value)) {
+        String text = format(value);
+        assertTrue(text.length() <= RyuFormatter.MAX_FLOAT_LENGTH, text);
+        assertEquals(value, Float.parseFloat(text), text);
+        BigDecimal shorter = shorter(text);
+        if (shorter != null) {
+          assertNotEquals(Math.abs(value), shorter.floatValue(), text);
+          assertNotEquals(Math.abs(value), shorter.add(shorter.ulp()).floatValue(), text);
+        }
+      }
+    }
+  }
+
+  /**
+   * The value truncated to one digit less, which is the lower of the two closest values with fewer digits, or null if
+   * the value has a single digit.
+   */
+  private static BigDecimal shorter(String text) {
+    BigDecimal value = new BigDecimal(text).abs();
+    int digits = value.stripTrailingZeros().precision();
+    return digits == 1 ? null : value.round(new MathContext(digits - 1, RoundingMode.DOWN));
+  }
+
+  @Test
+  public void integers() {
+    long[] values = {0, 1, -1, 9, 10, -10, 99, 100, 12345, Integer.MAX_VALUE, Integer.MIN_VALUE,
+        Integer.MIN_VALUE - 1L, 999_999_999_999_999_999L, 1_000_000_000_000_000_000L, Long.MAX_VALUE, Long.MIN_VALUE};
+    for (long value : values) {
+      assertEquals(Long.toString(value), ascii(value));
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      long value = random.nextLong() >> random.nextInt(64);
+      assertEquals(Long.toString(value), ascii(value));
+    }
+  }
+
+  @Test
+  public void converters() {
+    ByteBufAllocator alloc = ByteBufAllocator.DEFAULT;
+    assertEquals("-42", convert(new ValueConverter.IntToText(), alloc, -42));
+    assertEquals("-32768", convert(new ValueConverter.LongToText(), alloc, Short.MIN_VALUE));
+    assertEquals("1e+20", convert(new ValueConverter.DoubleToText(), alloc, 1e20));
+    assertEquals("0.1", convert(new ValueConverter.FloatToText(), alloc, 0.1f));
+  }
+
+  private static String convert(ValueConverter<ByteBufAllocator, ByteBuf> converter, ByteBufAllocator alloc,
+      Object value) {
+    ByteBuf buf = converter.convert(alloc, value);
+    try {
+      return buf.toString(StandardCharsets.US_ASCII);
+    } finally {
+      buf.release();
+    }
+  }
+}
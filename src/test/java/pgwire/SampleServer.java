@@ -18,6 +18,7 @@ public class SampleServer {
       @Override
       protected FrontendMessageListener<ChannelHandlerContext, ByteBuf, ByteBuf> createMessageListener() {
         BackendMessageSender sender = new BackendMessageSender();
+        StartupGreeting greeting = new StartupGreeting(Map.of("server_version", "14.0", "client_encoding", "UTF8"));
 
         return new FrontendMessageListener.Abstract<>() {
           @Override
@@ -28,9 +29,7 @@ public class SampleServer {
 
           @Override
           public void onStartup(ChannelHandlerContext ctx, int version, Map<ByteBuf, ByteBuf> parameters) {
-            sender.onAuthenticationOk(ctx);
-            sender.onBackendKeyData(ctx, 123, 123);
-            sender.onReadyForQuery(ctx, TransactionStatus.IDLE);
+            sender.onStartupGreeting(ctx, greeting, 123, 123);
           }
 
           @Override
@@ -0,0 +1,272 @@
+package pgwire;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+
+public class StandardCodecsTest {
+
+  static <T> T roundTrip(PgCodec<T> codec, T value, Format format) {
+    ByteBuf buf = Unpooled.buffer();
+    codec.encode(buf, value, format);
+    return codec.decode(buf, format);
+  }
+
+  static String encodeText(PgCodec<?> codec, Object value) {
+    ByteBuf buf = Unpooled.buffer();
+    @SuppressWarnings("unchecked")
+    PgCodec<Object> untyped = (PgCodec<Object>) codec;
+    untyped.encodeText(buf, value);
+    return buf.toString(StandardCharsets.UTF_8);
+  }
+
+  static <T> T decodeText(PgCodec<T> codec, String text) {
+    return codec.decode(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8), Format.TEXT);
+  }
+
+  static <T> T decodeBinary(PgCodec<T> codec, byte... bytes) {
+    return decodeBinary(codec, Unpooled.wrappedBuffer(bytes));
+  }
+
+  static <T> T decodeBinary(PgCodec<T> codec, ByteBuf buf) {
+    return codec.decode(buf, Format.BINARY);
+  }
+
+  @Test
+  public void integersRoundTrip() {
+    for (Format format : Format.values()) {
+      for (short value : new short[] {0, 1, -1, Short.MIN_VALUE, Short.MAX_VALUE}) {
+        assertEquals(value, roundTrip(StandardCodecs.INT2, value, format));
+      }
+      for (int value : new int[] {0, 42, -42, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+        assertEquals(value, roundTrip(StandardCodecs.INT4, value, format));
+      }
+      for (long value : new long[] {0, 1234567890123L, -1, Long.MIN_VALUE, Long.MAX_VALUE}) {
+        assertEquals(value, roundTrip(StandardCodecs.INT8, value, format));
+      }
+    }
+  }
+
+  @Test
+  public void integersIgnoreWhitespace() {
+    assertEquals(-12, decodeText(StandardCodecs.INT4, " \t-12\n"));
+    assertEquals(12L, decodeText(StandardCodecs.INT8, "+12 "));
+  }
+
+  @Test
+  public void malformedIntegers() {
+    for (String text : new String[] {"", " ", "-", "1a", "1 2", "0x10", "1.0"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.INT8, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.INT8, "9223372036854775808"));
+    assertEquals(Long.MIN_VALUE, decodeText(StandardCodecs.INT8, "-9223372036854775808"));
+    assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.INT4, "2147483648"));
+    assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.INT2, "-32769"));
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.INT4, (byte) 0, (byte) 1));
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.INT8, new byte[4]));
+  }
+
+  @Test
+  public void oidsAreUnsigned() {
+    assertEquals("4294967295", encodeText(StandardCodecs.OID, -1));
+    assertEquals(-1, decodeText(StandardCodecs.OID, "4294967295"));
+    assertEquals(-1, roundTrip(StandardCodecs.OID, -1, Format.BINARY));
+    assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.OID, "4294967296"));
+  }
+
+  @Test
+  public void booleans() {
+    for (Format format : Format.values()) {
+      assertEquals(true, roundTrip(StandardCodecs.BOOL, true, format));
+      assertEquals(false, roundTrip(StandardCodecs.BOOL, false, format));
+    }
+    assertEquals("t", encodeText(StandardCodecs.BOOL, true));
+    for (String text : new String[] {"t", "TRUE", "tr", "y", "Yes", "on", "ON", "1", " true "}) {
+      assertEquals(true, decodeText(StandardCodecs.BOOL, text), text);
+    }
+    for (String text : new String[] {"f", "False", "n", "NO", "of", "off", "0", "\tno\n"}) {
+      assertEquals(false, decodeText(StandardCodecs.BOOL, text), text);
+    }
+    for (String text : new String[] {"", "o", "tru e", "truer", "yess", "onn", "offf", "01", "10", "2", "\u0011"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.BOOL, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.BOOL, new byte[2]));
+  }
+
+  @Test
+  public void floatsRoundTrip() {
+    for (Format format : Format.values()) {
+      for (double value : new double[] {0, -0.0, 1.5, -1e-300, Double.MIN_VALUE, Double.MAX_VALUE, 0.1 + 0.2,
+          Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+        assertEquals(value, roundTrip(StandardCodecs.FLOAT8, value, format));
+      }
+      for (float value : new float[] {0, 1.1f, -3.4e38f, Float.MIN_VALUE, Float.NaN, Float.NEGATIVE_INFINITY}) {
+        assertEquals(value, roundTrip(StandardCodecs.FLOAT4, value, format));
+      }
+    }
+  }
+
+  @Test
+  public void floatSpellings() {
+    assertEquals(1.25, decodeText(StandardCodecs.FLOAT8, " 1.25 "));
+    assertEquals(-125.0, decodeText(StandardCodecs.FLOAT8, "-1.25e2"));
+    assertEquals(0.5, decodeText(StandardCodecs.FLOAT8, ".5"));
+    assertEquals(1.0, decodeText(StandardCodecs.FLOAT8, "1."));
+    assertEquals(0.1, decodeText(StandardCodecs.FLOAT8, "0.1000000000000000055511151231257827"));
+    assertEquals(Double.NaN, decodeText(StandardCodecs.FLOAT8, "NaN"));
+    assertEquals(Double.POSITIVE_INFINITY, decodeText(StandardCodecs.FLOAT8, "Infinity"));
+    assertEquals(Double.POSITIVE_INFINITY, decodeText(StandardCodecs.FLOAT8, "inf"));
+    assertEquals(Double.NEGATIVE_INFINITY, decodeText(StandardCodecs.FLOAT8, "-INFINITY"));
+    assertEquals(Float.POSITIVE_INFINITY, decodeText(StandardCodecs.FLOAT4, "+inf"));
+  }
+
+  @Test
+  public void malformedFloats() {
+    for (String text : new String[] {"", "-", ".", "e5", "1e", "1e+", "1.5f", "0x1p3", "nan1", "1,5"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.FLOAT8, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.FLOAT4, new byte[8]));
+  }
+
+  @Test
+  public void text() {
+    String value = "héllo ☃ 😀";
+    for (Format format : Format.values()) {
+      assertEquals(value, roundTrip(StandardCodecs.TEXT, value, format));
+      assertEquals("", roundTrip(StandardCodecs.VARCHAR, "", format));
+    }
+    assertEquals(value, encodeText(StandardCodecs.TEXT, value));
+  }
+
+  @Test
+  public void int2Vectors() {
+    short[] value = {1, -2, 300};
+    for (Format format : Format.values()) {
+      assertArrayEquals(value, roundTrip(StandardCodecs.INT2_VECTOR, value, format));
+    }
+    assertEquals("1 -2 300", encodeText(StandardCodecs.INT2_VECTOR, value));
+  }
+
+  @Test
+  public void byteaRoundTrip() {
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      byte[] value = new byte[random.nextInt(40)];
+      random.nextBytes(value);
+      for (Format format : Format.values()) {
+        assertArrayEquals(value, roundTrip(StandardCodecs.BYTEA, value, format));
+      }
+      StringBuilder hex = new StringBuilder("\\x");
+      for (byte b : value) {
+        hex.append(String.format("%02x", b));
+      }
+      assertEquals(hex.toString(), encodeText(StandardCodecs.BYTEA, value));
+      String upperCase = "\\x" + hex.substring(2).toUpperCase(Locale.ROOT);
+      assertArrayEquals(value, decodeText(StandardCodecs.BYTEA, upperCase));
+    }
+  }
+
+  @Test
+  public void byteaHex() {
+    byte[] value = {0, 1, (byte) 0xAB, (byte) 0xFF, 0x7F};
+    assertEquals("\\x0001abff7f", encodeText(StandardCodecs.BYTEA, value));
+    assertEquals("\\x", encodeText(StandardCodecs.BYTEA, new byte[0]));
+    assertArrayEquals(value, decodeText(StandardCodecs.BYTEA, "\\x00 01\tAb\nfF 7f "));
+
+    ByteBuf source = Unpooled.wrappedBuffer(new byte[] {-1, 0, 1, (byte) 0xAB, (byte) 0xFF, 0x7F, -1});
+    ByteBuf out = Unpooled.buffer().writeByte('[');
+    StandardCodecs.ByteaCodec.encodeHex(out, source, 1, 5);
+    assertEquals("[\\x0001abff7f", out.toString(StandardCharsets.US_ASCII));
+    ByteBuf decoded = Unpooled.buffer().writeByte(-1);
+    assertEquals(5, StandardCodecs.ByteaCodec.decodeHex(out, 1, out.readableBytes() - 1, decoded));
+    assertEquals(Unpooled.wrappedBuffer(new byte[] {-1, 0, 1, (byte) 0xAB, (byte) 0xFF, 0x7F}), decoded);
+  }
+
+  @Test
+  public void byteaEscape() {
+    assertArrayEquals("abc".getBytes(StandardCharsets.US_ASCII), decodeText(StandardCodecs.BYTEA, "abc"));
+    assertArrayEquals(new byte[] {'a', '\\', 0, (byte) 0377, 'x'},
+        decodeText(StandardCodecs.BYTEA, "a\\\\\\000\\377x"));
+    assertArrayEquals(new byte[0], decodeText(StandardCodecs.BYTEA, ""));
+  }
+
+  @Test
+  public void malformedBytea() {
+    for (String text : new String[] {"\\x0", "\\x0g", "\\x0 1", "\\x 1", "\\x00-", "a\\", "\\8", "\\12",
+        "\\x\\x"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.BYTEA, text), text);
+    }
+    assertThrows(IllegalArgumentException.class,
+        () -> StandardCodecs.ByteaCodec.decodeHex(Unpooled.copiedBuffer("00", StandardCharsets.US_ASCII), 0, 2,
+            Unpooled.buffer()));
+  }
+
+  @Test
+  public void uuids() {
+    UUID value = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+    assertEquals("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11", encodeText(StandardCodecs.UUID, value));
+    for (String text : new String[] {"A0EEBC99-9C0B-4EF8-BB6D-6BB9BD380A11", "{a0eebc99-9c0b4ef8-bb6d6bb9bd380a11}",
+        "a0eebc999c0b4ef8bb6d6bb9bd380a11", "a0ee-bc99-9c0b-4ef8-bb6d-6bb9-bd38-0a11"}) {
+      assertEquals(value, decodeText(StandardCodecs.UUID, text), text);
+    }
+    ByteBuf binary = Unpooled.buffer();
+    StandardCodecs.UuidCodec.encodeBinary(binary, value.getMostSignificantBits(), value.getLeastSignificantBits());
+    assertEquals(Unpooled.buffer().writeLong(0xa0eebc999c0b4ef8L).writeLong(0xbb6d6bb9bd380a11L), binary);
+    assertEquals(value, StandardCodecs.UUID.decode(binary, Format.BINARY));
+
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      UUID uuid = new UUID(random.nextLong(), random.nextLong());
+      assertEquals(uuid.toString(), encodeText(StandardCodecs.UUID, uuid));
+      for (Format format : Format.values()) {
+        assertEquals(uuid, roundTrip(StandardCodecs.UUID, uuid, format));
+      }
+    }
+  }
+
+  @Test
+  public void malformedUuids() {
+    for (String text : new String[] {"", "{}", "{", "a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a1",
+        "a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a111", "-a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11",
+        "a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11-", "a0eebc99--9c0b-4ef8-bb6d-6bb9bd380a11", "a0e-ebc99-9c0b-4ef8-bb6d",
+        "{a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11", "g0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11",
+        " a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11"}) {
+      assertThrows(IllegalArgumentException.class, () -> decodeText(StandardCodecs.UUID, text), text);
+    }
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.UUID, new byte[15]));
+  }
+
+  @Test
+  public void jsonb() {
+    String json = "{\"a\": [1, \"é\"]}";
+    byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+    ByteBuf expected = Unpooled.buffer().writeByte(1).writeBytes(utf8);
+    for (Object value : new Object[] {json, new StringBuilder(json), utf8, Unpooled.wrappedBuffer(utf8)}) {
+      ByteBuf binary = Unpooled.buffer();
+      StandardCodecs.JSONB.encode(binary, value, Format.BINARY);
+      assertEquals(expected, binary);
+      assertEquals(json, StandardCodecs.JSONB.decode(binary, Format.BINARY));
+      assertEquals(json, encodeText(StandardCodecs.JSONB, value));
+      assertEquals(json, decodeText(StandardCodecs.JSONB, json));
+    }
+
+    ByteBuf source = Unpooled.wrappedBuffer(utf8);
+    ByteBuf binary = Unpooled.buffer();
+    StandardCodecs.JsonbCodec.encodeBinary(binary, source);
+    assertEquals(expected, binary);
+    assertEquals(0, source.readerIndex());
+
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.JSONB));
+    assertThrows(IllegalArgumentException.class, () -> decodeBinary(StandardCodecs.JSONB, (byte) 2, (byte) '1'));
+    assertThrows(IllegalArgumentException.class, () -> encodeText(StandardCodecs.JSONB, 1));
+  }
+}